@@ -67,6 +67,7 @@ import net.yacy.cora.protocol.tld.SponsoredTLD;
 import net.yacy.cora.storage.ARC;
 import net.yacy.cora.storage.ConcurrentARC;
 import net.yacy.cora.storage.KeyList;
+import net.yacy.cora.storage.TinyLFUARC;
 import net.yacy.cora.util.CommonPattern;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.kelondro.util.MemoryControl;
@@ -95,8 +96,8 @@ public class Domains {
     private static final int CONCURRENCY_LEVEL = Runtime.getRuntime().availableProcessors() * 2;
 
     // a dns cache
-    private static final ARC<String, InetAddress> NAME_CACHE_HIT = new ConcurrentARC<>(MAX_NAME_CACHE_HIT_SIZE, CONCURRENCY_LEVEL);
-    private static final ARC<String, String> NAME_CACHE_MISS = new ConcurrentARC<>(MAX_NAME_CACHE_MISS_SIZE, CONCURRENCY_LEVEL);
+    private static volatile ARC<String, InetAddress> nameCacheHit = new ConcurrentARC<>(MAX_NAME_CACHE_HIT_SIZE, CONCURRENCY_LEVEL);
+    private static volatile ARC<String, String> nameCacheMiss = new ConcurrentARC<>(MAX_NAME_CACHE_MISS_SIZE, CONCURRENCY_LEVEL);
     private static final ConcurrentHashMap<String, Object> LOOKUP_SYNC = new ConcurrentHashMap<>(100, 0.75f, Runtime.getRuntime().availableProcessors() * 2);
     private static       List<Pattern> nameCacheNoCachingPatterns = Collections.synchronizedList(new LinkedList<Pattern>());
     public static long cacheHit_Hit = 0, cacheHit_Miss = 0, cacheHit_Insert = 0; // for statistics only; do not write
@@ -788,14 +789,14 @@ public class Domains {
         host = host.toLowerCase(Locale.ROOT).trim();
 
         // trying to resolve host by doing a name cache lookup
-        final InetAddress ip = NAME_CACHE_HIT.get(host);
+        final InetAddress ip = nameCacheHit.get(host);
         if (ip != null) {
             cacheHit_Hit++;
             return ip;
         }
         cacheHit_Miss++;
 
-        if (NAME_CACHE_MISS.containsKey(host)) {
+        if (nameCacheMiss.containsKey(host)) {
             cacheMiss_Hit++;
             return null;
         }
@@ -824,10 +825,10 @@ public class Domains {
     }
 
     public static String getHostName(final InetAddress i) {
-        final Collection<String> hosts = NAME_CACHE_HIT.getKeys(i);
+        final Collection<String> hosts = nameCacheHit.getKeys(i);
         if (!hosts.isEmpty()) return hosts.iterator().next();
         final String host = i.getHostName();
-        NAME_CACHE_HIT.insertIfAbsent(host, i);
+        nameCacheHit.insertIfAbsent(host, i);
         cacheHit_Insert++;
         return host;
     }
@@ -839,7 +840,7 @@ public class Domains {
      * @param host the known host name
      */
     public static void setHostName(final InetAddress i, final String host) {
-        NAME_CACHE_HIT.insertIfAbsent(host, i);
+        nameCacheHit.insertIfAbsent(host, i);
         cacheHit_Insert++;
     }
 
@@ -934,8 +935,8 @@ public class Domains {
         final String host = host0.toLowerCase(Locale.ROOT).trim();
 
         if (MemoryControl.shortStatus()) {
-            NAME_CACHE_HIT.clear();
-            NAME_CACHE_MISS.clear();
+            nameCacheHit.clear();
+            nameCacheMiss.clear();
         }
 
         if (host0.endsWith(".yacyh")) {
@@ -944,14 +945,14 @@ public class Domains {
         }
 
         // try to resolve host by doing a name cache lookup
-        InetAddress ip = NAME_CACHE_HIT.get(host);
+        InetAddress ip = nameCacheHit.get(host);
         if (ip != null) {
             //System.out.println("DNSLOOKUP-CACHE-HIT(CONC) " + host);
             cacheHit_Hit++;
             return ip;
         }
         cacheHit_Miss++;
-        if (NAME_CACHE_MISS.containsKey(host)) {
+        if (nameCacheMiss.containsKey(host)) {
             //System.out.println("DNSLOOKUP-CACHE-MISS(CONC) " + host);
             cacheMiss_Hit++;
             return null;
@@ -965,7 +966,7 @@ public class Domains {
         synchronized (sync_obj) {
             // now look again if the host is in the cache where it may be meanwhile because of the synchronization
 
-            ip = NAME_CACHE_HIT.get(host);
+            ip = nameCacheHit.get(host);
             if (ip != null) {
                 //System.out.println("DNSLOOKUP-CACHE-HIT(SYNC) " + host);
                 LOOKUP_SYNC.remove(host);
@@ -973,7 +974,7 @@ public class Domains {
                 return ip;
             }
             cacheHit_Miss++;
-            if (NAME_CACHE_MISS.containsKey(host)) {
+            if (nameCacheMiss.containsKey(host)) {
                 //System.out.println("DNSLOOKUP-CACHE-MISS(SYNC) " + host);
                 LOOKUP_SYNC.remove(host);
                 cacheMiss_Hit++;
@@ -1011,7 +1012,7 @@ public class Domains {
 	                    }, 3000L, TimeUnit.MILLISECONDS);
 	                    //ip = TimeoutRequest.getByName(host, 1000); // this makes the DNS request to backbone
 	                } catch (final InterruptedException | TimeoutException e) {
-	                	// in case of a timeout - maybe cause of massive requests - do not fill NAME_CACHE_MISS
+	                	// in case of a timeout - maybe cause of massive requests - do not fill nameCacheMiss
 	                	LOOKUP_SYNC.remove(host);
 	                    return null;
 	                } finally {
@@ -1021,7 +1022,7 @@ public class Domains {
                 //.out.println("DNSLOOKUP-*LOOKUP* " + host + ", time = " + (System.currentTimeMillis() - t) + "ms");
             } catch (final Throwable e) {
                 // add new entries
-                NAME_CACHE_MISS.insertIfAbsent(host, PRESENT);
+                nameCacheMiss.insertIfAbsent(host, PRESENT);
                 cacheMiss_Insert++;
                 LOOKUP_SYNC.remove(host);
                 return null;
@@ -1029,7 +1030,7 @@ public class Domains {
 
             if (ip == null) {
                 // add new entries
-                NAME_CACHE_MISS.insertIfAbsent(host, PRESENT);
+                nameCacheMiss.insertIfAbsent(host, PRESENT);
                 cacheMiss_Insert++;
                 LOOKUP_SYNC.remove(host);
                 return null;
@@ -1037,7 +1038,7 @@ public class Domains {
 
             if (!ip.isLoopbackAddress() && !matchesList(host, nameCacheNoCachingPatterns)) {
                 // add new ip cache entries
-                NAME_CACHE_HIT.insertIfAbsent(host, ip);
+                nameCacheHit.insertIfAbsent(host, ip);
                 cacheHit_Insert++;
 
                 // add also the isLocal host name caches
@@ -1056,22 +1057,53 @@ public class Domains {
     public static void clear() {
         try {
         	globalHosts.clear();
-        	NAME_CACHE_HIT.clear();
-        	NAME_CACHE_MISS.clear();
+        	nameCacheHit.clear();
+        	nameCacheMiss.clear();
         } catch (final IOException e) {}
     }
 
+    /**
+     * select the implementation of the dns caches; the caches are emptied if the implementation changes
+     * @param tinyLFU true to use a TinyLFUARC, false to use a ConcurrentARC
+     */
+    public static void setNameCacheTinyLFU(final boolean tinyLFU) {
+        if (tinyLFU == (nameCacheHit instanceof TinyLFUARC)) return;
+        if (tinyLFU) {
+            nameCacheHit = new TinyLFUARC<>(MAX_NAME_CACHE_HIT_SIZE, CONCURRENCY_LEVEL);
+            nameCacheMiss = new TinyLFUARC<>(MAX_NAME_CACHE_MISS_SIZE, CONCURRENCY_LEVEL);
+        } else {
+            nameCacheHit = new ConcurrentARC<>(MAX_NAME_CACHE_HIT_SIZE, CONCURRENCY_LEVEL);
+            nameCacheMiss = new ConcurrentARC<>(MAX_NAME_CACHE_MISS_SIZE, CONCURRENCY_LEVEL);
+        }
+    }
+
     /**
     * Returns the number of entries in the nameCacheHit map
     *
     * @return int The number of entries in the nameCacheHit map
     */
     public static int nameCacheHitSize() {
-        return NAME_CACHE_HIT.size();
+        return nameCacheHit.size();
     }
 
     public static int nameCacheMissSize() {
-        return NAME_CACHE_MISS.size();
+        return nameCacheMiss.size();
+    }
+
+    /**
+     * @return the number of entries which the TinyLFUARC of nameCacheHit evicted, or -1 if it is a ConcurrentARC
+     */
+    public static long nameCacheHitEvictions() {
+        final ARC<String, InetAddress> cache = nameCacheHit;
+        return cache instanceof TinyLFUARC ? ((TinyLFUARC<String, InetAddress>) cache).evictionCount() : -1;
+    }
+
+    /**
+     * @return the number of entries which the TinyLFUARC of nameCacheMiss evicted, or -1 if it is a ConcurrentARC
+     */
+    public static long nameCacheMissEvictions() {
+        final ARC<String, String> cache = nameCacheMiss;
+        return cache instanceof TinyLFUARC ? ((TinyLFUARC<String, String>) cache).evictionCount() : -1;
     }
 
     public static int nameCacheNoCachingPatternsSize() {
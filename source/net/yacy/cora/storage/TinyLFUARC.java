@@ -0,0 +1,560 @@
+/**
+ *  TinyLFUARC
+ *  Copyright 2026 by YaCy contributors
+ *  First released 18.10.2026 at https://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.cora.storage;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * A cache with the W-TinyLFU replacement strategy, see https://arxiv.org/abs/1512.00727
+ * New entries enter a small LRU window; an entry which falls out of the window is admitted to the
+ * segmented LRU main space only if it was accessed more often than the entry it would replace.
+ * The access frequencies are estimated with a count-min sketch which is halved periodically, so
+ * that old popularity fades out.
+ *
+ * Entries are stored in one ConcurrentHashMap, reads do not lock. The replacement policy is
+ * partitioned like ConcurrentARC; a read records the access in its partition only if the partition
+ * lock is free, otherwise the access is not recorded. The cache may be bounded by the number of
+ * entries or by the sum of weights of the values.
+ */
+public final class TinyLFUARC<K, V> extends AbstractMap<K, V> implements Map<K, V>, Iterable<Map.Entry<K, V>>, ARC<K, V> {
+
+    private static final int WINDOW = 0, PROBATION = 1, PROTECTED = 2, REMOVED = -1;
+
+    private final ConcurrentHashMap<K, Node<K, V>> data;
+    private final Partition<K, V>[] partitions;
+    private final int mask;
+    private final ToIntFunction<? super V> weigher;
+    private final LongAdder hits, misses, evictions;
+
+    /**
+     * create a cache which is bounded by the number of entries
+     * @param cacheSize the number of maximum entries
+     * @param partitions the number of partitions
+     */
+    public TinyLFUARC(final int cacheSize, final int partitions) {
+        this(cacheSize, partitions, null);
+    }
+
+    /**
+     * create a cache which is bounded by the weight of the values
+     * @param maxWeight the maximum sum of the weights of all values
+     * @param partitions the number of partitions
+     * @param weigher computes the weight of a value, which must not be negative; if null, each value has the weight 1
+     */
+    @SuppressWarnings("unchecked")
+    public TinyLFUARC(final long maxWeight, final int partitions, final ToIntFunction<? super V> weigher) {
+        int m = 1;
+        while (m < partitions) m = m * 2;
+        long partitionWeight = maxWeight / m;
+        if (partitionWeight < 4) partitionWeight = 4;
+        this.partitions = (Partition<K, V>[]) new Partition<?, ?>[m];
+        for (int i = 0; i < m; i++) this.partitions[i] = new Partition<K, V>(partitionWeight);
+        this.mask = m - 1;
+        this.weigher = weigher;
+        this.data = new ConcurrentHashMap<>(16, 0.75f, m);
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+    }
+
+    /**
+     * put a value to the cache.
+     * @param s
+     * @param v
+     */
+    @Override
+    public void insert(final K s, final V v) {
+        this.put(s, v, false);
+    }
+
+    /**
+     * put a value to the cache if there was not an entry before
+     * do not return a previous content value
+     * @param s
+     * @param v
+     */
+    @Override
+    public void insertIfAbsent(final K s, final V v) {
+        this.put(s, v, true);
+    }
+
+    /**
+     * put a value to the cache if there was not an entry before
+     * return a previous content value
+     * @param s
+     * @param v
+     * @return the value before inserting the new value
+     */
+    @Override
+    public V putIfAbsent(final K s, final V v) {
+        return this.put(s, v, true);
+    }
+
+    /**
+     * put a value to the cache.
+     * @param s
+     * @param v
+     */
+    @Override
+    public V put(final K s, final V v) {
+        return this.put(s, v, false);
+    }
+
+    /**
+     * get a value from the cache.
+     * @param s
+     * @return the value
+     */
+    @Override
+    public V get(final Object s) {
+        final Node<K, V> node = this.data.get(s);
+        if (node == null) {
+            this.misses.increment();
+            return null;
+        }
+        this.hits.increment();
+        this.partition(s).read(node);
+        return node.value;
+    }
+
+    /**
+     * check if the map contains the value
+     * @param value
+     * @return the keys that have the given value
+     */
+    @Override
+    public Collection<K> getKeys(final V value) {
+        final ArrayList<K> keys = new ArrayList<K>();
+        for (final Node<K, V> node: this.data.values()) {
+            if (value.equals(node.value)) keys.add(node.key);
+        }
+        return keys;
+    }
+
+    /**
+     * check if the map contains the key; this counts as an access of the entry
+     * @param s
+     * @return true if the map contains the key
+     */
+    @Override
+    public boolean containsKey(final Object s) {
+        return this.get(s) != null;
+    }
+
+    /**
+     * remove an entry from the cache
+     * @param s
+     * @return the old value
+     */
+    @Override
+    public V remove(final Object s) {
+        final Partition<K, V> p = this.partition(s);
+        p.lock.lock();
+        try {
+            final Node<K, V> node = this.data.remove(s);
+            if (node == null) return null;
+            p.unlink(node);
+            return node.value;
+        } finally {
+            p.lock.unlock();
+        }
+    }
+
+    /**
+     * clear the cache
+     */
+    @Override
+    public void clear() {
+        for (final Partition<K, V> p: this.partitions) p.lock.lock();
+        try {
+            this.data.clear();
+            for (final Partition<K, V> p: this.partitions) p.clear();
+        } finally {
+            for (final Partition<K, V> p: this.partitions) p.lock.unlock();
+        }
+    }
+
+    /**
+     * get the size of the cache.
+     * @return the complete number of entries in the cache
+     */
+    @Override
+    public int size() {
+        return this.data.size();
+    }
+
+    /**
+     * @return the sum of the weights of all values in the cache
+     */
+    public long weight() {
+        long w = 0;
+        for (final Partition<K, V> p: this.partitions) w += p.weight();
+        return w;
+    }
+
+    /**
+     * @return the number of reads which found a value
+     */
+    public long hitCount() {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return the number of reads which did not find a value
+     */
+    public long missCount() {
+        return this.misses.sum();
+    }
+
+    /**
+     * @return the number of entries which were removed to keep the cache within its bounds
+     */
+    public long evictionCount() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * iterator implements the Iterable interface
+     */
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return this.entrySet().iterator();
+    }
+
+    /**
+     * Return a Set view of the mappings contained in this map.
+     * This method is the basis for all methods that are implemented
+     * by a AbstractMap implementation
+     *
+     * @return a set view of the mappings contained in this map
+     */
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        final Set<Map.Entry<K, V>> m = new HashSet<Map.Entry<K, V>>();
+        for (final Node<K, V> node: this.data.values()) {
+            m.add(new AbstractMap.SimpleImmutableEntry<K, V>(node.key, node.value));
+        }
+        return m;
+    }
+
+    /**
+     * a hash code for this ARC
+     * @return a hash code
+     */
+    @Override
+    public int hashCode() {
+        return this.partitions.hashCode();
+    }
+
+    private V put(final K s, final V v, final boolean onlyIfAbsent) {
+        final int weight = this.weigher == null ? 1 : this.weigher.applyAsInt(v);
+        final Partition<K, V> p = this.partition(s);
+        p.lock.lock();
+        try {
+            final Node<K, V> node = this.data.get(s);
+            if (node != null) {
+                final V old = node.value;
+                if (!onlyIfAbsent) {
+                    node.value = v;
+                    p.reweigh(node, weight);
+                }
+                p.access(node);
+                this.evict(p);
+                return old;
+            }
+            final Node<K, V> added = new Node<K, V>(s, v, weight);
+            this.data.put(s, added);
+            p.add(added);
+            this.evict(p);
+            return null;
+        } finally {
+            p.lock.unlock();
+        }
+    }
+
+    private void evict(final Partition<K, V> p) {
+        for (final Node<K, V> node: p.evict()) {
+            this.data.remove(node.key, node);
+            this.evictions.increment();
+        }
+    }
+
+    private Partition<K, V> partition(final Object x) {
+        return this.partitions[spread(x.hashCode()) & this.mask];
+    }
+
+    private static int spread(final int h) {
+        final int x = (h ^ (h >>> 16)) * 0x45d9f3b;
+        return x ^ (x >>> 16);
+    }
+
+    private static final class Node<K, V> {
+        private final K key;
+        private volatile V value;
+        private int weight;
+        private int queue;
+        private Node<K, V> prev, next;
+        private Node(final K key, final V value, final int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.queue = REMOVED;
+        }
+    }
+
+    /**
+     * a doubly linked list of nodes in access order, the head is the least recently used node
+     */
+    private static final class AccessQueue<K, V> {
+        private final Node<K, V> sentinel;
+        private long weight;
+        private AccessQueue() {
+            this.sentinel = new Node<K, V>(null, null, 0);
+            this.sentinel.prev = this.sentinel;
+            this.sentinel.next = this.sentinel;
+            this.weight = 0;
+        }
+        private Node<K, V> head() {
+            return this.sentinel.next == this.sentinel ? null : this.sentinel.next;
+        }
+        private void addLast(final Node<K, V> node, final int queue) {
+            node.prev = this.sentinel.prev;
+            node.next = this.sentinel;
+            this.sentinel.prev.next = node;
+            this.sentinel.prev = node;
+            node.queue = queue;
+            this.weight += node.weight;
+        }
+        private void remove(final Node<K, V> node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+            node.queue = REMOVED;
+            this.weight -= node.weight;
+        }
+        private void clear() {
+            this.sentinel.prev = this.sentinel;
+            this.sentinel.next = this.sentinel;
+            this.weight = 0;
+        }
+    }
+
+    /**
+     * the replacement policy of a part of the keys. All methods must be called with the lock held.
+     */
+    private static final class Partition<K, V> {
+        private final ReentrantLock lock;
+        private final long maxWeight, maxWindow, maxProtected;
+        private final AccessQueue<K, V> window, probation, protectd;
+        private final FrequencySketch sketch;
+
+        private Partition(final long maxWeight) {
+            this.lock = new ReentrantLock();
+            this.maxWeight = maxWeight;
+            this.maxWindow = Math.max(1, maxWeight / 100);
+            this.maxProtected = (maxWeight - this.maxWindow) * 8 / 10;
+            this.window = new AccessQueue<>();
+            this.probation = new AccessQueue<>();
+            this.protectd = new AccessQueue<>();
+            this.sketch = new FrequencySketch((int) Math.min(maxWeight, 1 << 16));
+        }
+
+        private long weight() {
+            this.lock.lock();
+            try {
+                return this.total();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        /**
+         * record a read access if nobody else holds the lock; reads are never blocked
+         */
+        private void read(final Node<K, V> node) {
+            if (!this.lock.tryLock()) return;
+            try {
+                if (node.queue != REMOVED) this.access(node);
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        private void add(final Node<K, V> node) {
+            this.sketch.increment(node.key.hashCode());
+            this.window.addLast(node, WINDOW);
+        }
+
+        private void access(final Node<K, V> node) {
+            this.sketch.increment(node.key.hashCode());
+            switch (node.queue) {
+                case WINDOW:
+                    this.window.remove(node);
+                    this.window.addLast(node, WINDOW);
+                    break;
+                case PROBATION:
+                    // a second access promotes the node to the protected segment
+                    this.probation.remove(node);
+                    this.protectd.addLast(node, PROTECTED);
+                    Node<K, V> demoted;
+                    while (this.protectd.weight > this.maxProtected && (demoted = this.protectd.head()) != null && demoted != node) {
+                        this.protectd.remove(demoted);
+                        this.probation.addLast(demoted, PROBATION);
+                    }
+                    break;
+                case PROTECTED:
+                    this.protectd.remove(node);
+                    this.protectd.addLast(node, PROTECTED);
+                    break;
+                default:
+            }
+        }
+
+        private void reweigh(final Node<K, V> node, final int weight) {
+            final int queue = node.queue;
+            this.unlink(node);
+            node.weight = weight;
+            if (queue == WINDOW) this.window.addLast(node, WINDOW);
+            else if (queue == PROTECTED) this.protectd.addLast(node, PROTECTED);
+            else if (queue == PROBATION) this.probation.addLast(node, PROBATION);
+        }
+
+        private void unlink(final Node<K, V> node) {
+            if (node.queue == WINDOW) this.window.remove(node);
+            else if (node.queue == PROBATION) this.probation.remove(node);
+            else if (node.queue == PROTECTED) this.protectd.remove(node);
+        }
+
+        private void clear() {
+            this.window.clear();
+            this.probation.clear();
+            this.protectd.clear();
+            this.sketch.clear();
+        }
+
+        /**
+         * move the nodes which overflow the window to the main space if their frequency is higher than
+         * the frequency of the least recently used main node, and evict the nodes which do not fit
+         * @return the evicted nodes
+         */
+        private List<Node<K, V>> evict() {
+            final List<Node<K, V>> evicted = new ArrayList<>(2);
+            Node<K, V> candidate;
+            while (this.window.weight > this.maxWindow && (candidate = this.window.head()) != null) {
+                this.window.remove(candidate);
+                this.probation.addLast(candidate, PROBATION);
+                while (this.total() > this.maxWeight && candidate.queue != REMOVED) {
+                    Node<K, V> victim = this.probation.head();
+                    if (victim == candidate) victim = this.protectd.head();
+                    final Node<K, V> loser = victim == null ||
+                            this.sketch.frequency(candidate.key.hashCode()) <= this.sketch.frequency(victim.key.hashCode()) ? candidate : victim;
+                    this.unlink(loser);
+                    evicted.add(loser);
+                }
+            }
+            // a value which is heavier than the main space is evicted from wherever it is
+            while (this.total() > this.maxWeight) {
+                Node<K, V> victim = this.probation.head();
+                if (victim == null) victim = this.protectd.head();
+                if (victim == null) victim = this.window.head();
+                if (victim == null) break;
+                this.unlink(victim);
+                evicted.add(victim);
+            }
+            return evicted;
+        }
+
+        private long total() {
+            return this.window.weight + this.probation.weight + this.protectd.weight;
+        }
+    }
+
+    /**
+     * a count-min sketch with four 4-bit counters per key out of four counters per capacity slot.
+     * When the number of increments reaches ten times the capacity, all counters are halved.
+     */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+        private final long[] table;
+        private final int counterMask;
+        private final int sampleSize;
+        private int additions;
+
+        private FrequencySketch(final int capacity) {
+            int c = 16;
+            while (c < capacity) c = c * 2;
+            this.table = new long[c / 4];
+            this.counterMask = c * 4 - 1;
+            this.sampleSize = 10 * Math.max(1, capacity);
+            this.additions = 0;
+        }
+
+        private int index(final int hash, final int i) {
+            long h = (spread(hash) + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return (int) h & this.counterMask;
+        }
+
+        private int frequency(final int hash) {
+            int f = 15;
+            for (int i = 0; i < 4; i++) {
+                final int c = this.index(hash, i);
+                f = Math.min(f, (int) ((this.table[c >>> 4] >>> ((c & 15) << 2)) & 15L));
+            }
+            return f;
+        }
+
+        private void increment(final int hash) {
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                final int c = this.index(hash, i);
+                final int shift = (c & 15) << 2;
+                if (((this.table[c >>> 4] >>> shift) & 15L) < 15L) {
+                    this.table[c >>> 4] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++this.additions >= this.sampleSize) {
+                for (int i = 0; i < this.table.length; i++) this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+                this.additions = this.additions / 2;
+            }
+        }
+
+        private void clear() {
+            Arrays.fill(this.table, 0L);
+            this.additions = 0;
+        }
+    }
+}
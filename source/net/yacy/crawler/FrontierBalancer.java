@@ -0,0 +1,536 @@
+/**
+ *  FrontierBalancer
+ *  Copyright 2026 by YaCy contributors
+ *  First released 18.10.2026 at https://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.crawler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.cora.protocol.ClientIdentification;
+import net.yacy.cora.storage.HandleSet;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.crawler.data.CrawlProfile;
+import net.yacy.crawler.data.Latency;
+import net.yacy.crawler.retrieval.Request;
+import net.yacy.crawler.robots.RobotsTxt;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.index.RowHandleMap;
+import net.yacy.kelondro.table.Table;
+import net.yacy.kelondro.util.kelondroException;
+import net.yacy.repository.Blacklist.BlacklistType;
+import net.yacy.search.Switchboard;
+
+/**
+ * A balancer which stores the requests of all hosts in one table file, instead of one directory
+ * per host with one file per crawl depth as the {@link HostBalancer} does. The rows are keyed by
+ * (hosthash, depth, urlhash): the rows of a host are ordered by depth, so that the next request of
+ * a host is the first key at or after the host prefix. The number of open files does not depend on
+ * the number of hosts and a restart reads only the keys of one table.
+ *
+ * The hosts are scheduled by their next due time like in the HostBalancer, and like there all links
+ * from a given host are returned from the lowest crawldepth first.
+ */
+public class FrontierBalancer implements Balancer {
+
+    private final static ConcurrentLog log = new ConcurrentLog("FrontierBalancer");
+
+    /** suffix of the frontier file; the file is placed next to the directory of the HostBalancer it replaces */
+    public static final String FILE_SUFFIX = ".frontier";
+
+    private static final int HOSTHASH_LENGTH = 6;
+    private static final int KEY_LENGTH = HOSTHASH_LENGTH + 2 + Word.commonHashLength;
+    private static final Row rowdef = new Row("byte[] key-" + KEY_LENGTH + ", byte[] request-" + Request.rowdef.objectsize, NaturalOrder.naturalOrder);
+    private static final int EcoFSBufferSize = 1000;
+
+    /** the maximum time in milliseconds that pop waits for a host which is due */
+    private static final long MAX_WAIT = 5000;
+    /** the maximum number of hosts that pop puts back into the schedule because their delay has grown */
+    private static final int MAX_REEVALUATIONS = 10;
+
+    private final File frontierFile;
+    private final int onDemandLimit;
+    private final boolean exceed134217727;
+    private final Table table;
+    /** the depth of each stored url hash, to find the key of a url */
+    private final RowHandleMap depths;
+    /** the cursor of each host with stored requests */
+    private final Map<String, FrontierHost> hosts;
+    private final HostScheduler scheduler;
+
+    private static final class FrontierHost {
+        private final String hostName;
+        private final int port;
+        /** number of stored requests, guarded by the balancer */
+        private int size;
+        private FrontierHost(final DigestURL url) {
+            this.hostName = url.getHost() == null ? "localhost" : url.getHost();
+            this.port = url.getPort();
+            this.size = 0;
+        }
+    }
+
+    /**
+     * Create or open a frontier
+     * @param frontierFile the table file
+     * @param onDemandLimit
+     * @param exceed134217727
+     */
+    public FrontierBalancer(
+            final File frontierFile,
+            final int onDemandLimit,
+            final boolean exceed134217727) {
+        this.frontierFile = frontierFile;
+        this.onDemandLimit = onDemandLimit;
+        this.exceed134217727 = exceed134217727;
+        this.table = openTable(frontierFile, exceed134217727);
+        this.depths = new RowHandleMap(Word.commonHashLength, Word.commonHashOrder, 2, Math.max(1000, this.table.size()), "FrontierBalancer.depths");
+        this.hosts = new ConcurrentHashMap<>();
+        this.scheduler = new HostScheduler();
+        final int size = this.init();
+        log.info("opened frontier " + frontierFile.getAbsolutePath() + " with " + size + " urls of " + this.hosts.size() + " hosts.");
+    }
+
+    private static Table openTable(final File f, final boolean exceed134217727) {
+        try {
+            return new Table(f, rowdef, EcoFSBufferSize, 0, false, exceed134217727, true);
+        } catch (final SpaceExceededException e) {
+            try {
+                return new Table(f, rowdef, 0, 0, false, exceed134217727, true);
+            } catch (final SpaceExceededException e1) {
+                throw new kelondroException("cannot open frontier " + f + ": " + e1.getMessage());
+            }
+        }
+    }
+
+    /**
+     * build the url depths and the host cursors from the keys of the table
+     * @return the number of requests
+     */
+    private synchronized int init() {
+        int c = 0;
+        try {
+            final Iterator<byte[]> keys = this.table.keys(true, null);
+            while (keys.hasNext()) {
+                final byte[] key = keys.next();
+                final String hosthash = ASCII.String(key, 0, HOSTHASH_LENGTH);
+                FrontierHost host = this.hosts.get(hosthash);
+                if (host == null) {
+                    // read one request of the host to get its name
+                    final Request request = request(this.table.get(key, false));
+                    if (request == null) continue;
+                    host = new FrontierHost(request.url());
+                    this.hosts.put(hosthash, host);
+                    this.scheduler.add(hosthash);
+                }
+                this.depths.put(urlhash(key), depth(key));
+                host.size++;
+                c++;
+            }
+        } catch (final IOException | SpaceExceededException e) {
+            log.warn("cannot read frontier " + this.frontierFile + ": " + e.getMessage(), e);
+        }
+        return c;
+    }
+
+    private static byte[] key(final byte[] urlhash, final int depth) {
+        final int d = Math.max(0, Math.min(0xffff, depth));
+        final byte[] key = new byte[KEY_LENGTH];
+        System.arraycopy(urlhash, 6, key, 0, HOSTHASH_LENGTH); // the hosthash is the second part of the url hash
+        key[HOSTHASH_LENGTH] = (byte) (d >> 8);
+        key[HOSTHASH_LENGTH + 1] = (byte) d;
+        System.arraycopy(urlhash, 0, key, HOSTHASH_LENGTH + 2, Word.commonHashLength);
+        return key;
+    }
+
+    /**
+     * @return the smallest key of a host
+     */
+    private static byte[] firstKey(final String hosthash) {
+        final byte[] key = new byte[KEY_LENGTH];
+        System.arraycopy(ASCII.getBytes(hosthash), 0, key, 0, HOSTHASH_LENGTH);
+        return key;
+    }
+
+    private static boolean isHost(final byte[] key, final String hosthash) {
+        for (int i = 0; i < HOSTHASH_LENGTH; i++) if (key[i] != (byte) hosthash.charAt(i)) return false;
+        return true;
+    }
+
+    private static int depth(final byte[] key) {
+        return ((key[HOSTHASH_LENGTH] & 0xff) << 8) | (key[HOSTHASH_LENGTH + 1] & 0xff);
+    }
+
+    private static byte[] urlhash(final byte[] key) {
+        final byte[] urlhash = new byte[Word.commonHashLength];
+        System.arraycopy(key, HOSTHASH_LENGTH + 2, urlhash, 0, Word.commonHashLength);
+        return urlhash;
+    }
+
+    private static Request request(final Row.Entry row) throws IOException {
+        if (row == null) return null;
+        return new Request(Request.rowdef.newEntry(row.getColBytes(1, false)));
+    }
+
+    /**
+     * @return the key of a stored url or null if the url is not stored
+     */
+    private byte[] storedKey(final byte[] urlhash) {
+        final long depth = this.depths.get(urlhash);
+        if (depth < 0) return null;
+        return key(urlhash, (int) depth);
+    }
+
+    /**
+     * remove a stored request; the caller must synchronize on this
+     * @return the removed row or null if it was not stored
+     */
+    private Row.Entry removeKey(final byte[] key) throws IOException {
+        final Row.Entry row = this.table.remove(key);
+        if (row == null) return null;
+        final String hosthash = ASCII.String(key, 0, HOSTHASH_LENGTH);
+        this.depths.remove(urlhash(key));
+        final FrontierHost host = this.hosts.get(hosthash);
+        if (host != null && --host.size <= 0) {
+            this.hosts.remove(hosthash);
+            this.scheduler.remove(hosthash);
+        }
+        return row;
+    }
+
+    @Override
+    public synchronized void close() {
+        log.info("closing frontier " + this.frontierFile + " with " + this.table.size() + " urls");
+        this.table.close();
+        this.depths.close();
+        this.hosts.clear();
+        this.scheduler.clear();
+    }
+
+    @Override
+    public synchronized void clear() {
+        try {
+            this.table.clear();
+        } catch (final IOException e) {
+            log.warn("cannot clear frontier " + this.frontierFile + ": " + e.getMessage(), e);
+        }
+        this.depths.clear();
+        this.hosts.clear();
+        this.scheduler.clear();
+    }
+
+    @Override
+    public Request get(final byte[] urlhash) throws IOException {
+        final byte[] key = this.storedKey(urlhash);
+        if (key == null) return null;
+        return request(this.table.get(key, false));
+    }
+
+    @Override
+    public synchronized int removeAllByProfileHandle(final String profileHandle, final long timeout) throws IOException, SpaceExceededException {
+        // first find a list of keys that shall be deleted
+        final long terminate = timeout == Long.MAX_VALUE ? Long.MAX_VALUE : (timeout > 0) ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+        final List<byte[]> keys = new ArrayList<>();
+        final Iterator<Row.Entry> i = this.table.rows();
+        while (i.hasNext() && System.currentTimeMillis() < terminate) {
+            final Row.Entry row = i.next();
+            final Request request = request(row);
+            if (request != null && profileHandle.equals(request.profileHandle())) keys.add(row.getPrimaryKeyBytes());
+        }
+        int c = 0;
+        for (final byte[] key: keys) if (this.removeKey(key) != null) c++;
+        return c;
+    }
+
+    /**
+     * delete all urls which are stored for given host hashes
+     * @param hosthashes
+     * @return number of deleted urls
+     */
+    @Override
+    public int removeAllByHostHashes(final Set<String> hosthashes) {
+        int c = 0;
+        for (final String hosthash: hosthashes) {
+            if (!this.hosts.containsKey(hosthash)) continue;
+            synchronized (this) {
+                try {
+                    final List<byte[]> keys = new ArrayList<>();
+                    final Iterator<byte[]> i = this.table.keys(true, firstKey(hosthash));
+                    while (i.hasNext()) {
+                        final byte[] key = i.next();
+                        if (!isHost(key, hosthash)) break;
+                        keys.add(key);
+                    }
+                    for (final byte[] key: keys) if (this.removeKey(key) != null) c++;
+                } catch (final IOException e) {
+                    log.warn("cannot remove host " + hosthash + " from frontier: " + e.getMessage(), e);
+                }
+            }
+        }
+        return c;
+    }
+
+    @Override
+    public synchronized int remove(final HandleSet urlHashes) throws IOException {
+        int c = 0;
+        for (final byte[] urlhash: urlHashes) {
+            final byte[] key = this.storedKey(urlhash);
+            if (key != null && this.removeKey(key) != null) c++;
+        }
+        return c;
+    }
+
+    @Override
+    public boolean has(final byte[] urlhashb) {
+        return this.depths.has(urlhashb);
+    }
+
+    @Override
+    public int size() {
+        return this.table.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.table.isEmpty();
+    }
+
+    @Override
+    public int getOnDemandLimit() {
+        return this.onDemandLimit;
+    }
+
+    @Override
+    public boolean getExceed134217727() {
+        return this.exceed134217727;
+    }
+
+    @Override
+    public String push(final Request entry, final CrawlProfile profile, final RobotsTxt robots) throws IOException, SpaceExceededException {
+        assert entry != null;
+        final byte[] hash = entry.url().hash();
+        if (this.has(hash)) return "double occurrence";
+        final String hosthash = entry.url().hosthash();
+        boolean newHost = false;
+        synchronized (this) {
+            // double-check
+            if (this.has(hash)) return "double occurrence";
+
+            // increase dom counter
+            if (profile != null) {
+                final int maxPages = profile.domMaxPages();
+                if (maxPages != Integer.MAX_VALUE && maxPages > 0) {
+                    profile.domInc(entry.url().getHost());
+                }
+            }
+
+            final byte[] key = key(hash, entry.depth());
+            this.table.put(rowdef.newEntry(new byte[][]{key, entry.toRow().bytes()}));
+            this.depths.put(hash, depth(key));
+            FrontierHost host = this.hosts.get(hosthash);
+            if (host == null) {
+                host = new FrontierHost(entry.url());
+                this.hosts.put(hosthash, host);
+                this.scheduler.add(hosthash);
+                newHost = true;
+            }
+            host.size++;
+        }
+        // profile might be null when continue crawls after YaCy restart
+        if (newHost) robots.ensureExist(entry.url(), profile == null ? ClientIdentification.yacyInternetCrawlerAgent : profile.getAgent(), true); // concurrently load all robots.txt
+        return null;
+    }
+
+    /**
+     * take the request with the lowest depth of a host from the table
+     * @return the request or null if the host has no stored request
+     */
+    private synchronized Request take(final String hosthash) throws IOException {
+        final Iterator<Row.Entry> i = this.table.rows(true, firstKey(hosthash));
+        if (!i.hasNext()) return null;
+        final Row.Entry row = i.next();
+        final byte[] key = row.getPrimaryKeyBytes();
+        if (!isHost(key, hosthash)) return null;
+        this.removeKey(key);
+        return request(row);
+    }
+
+    @Override
+    public Request pop(final boolean delay, final CrawlSwitchboard cs, final RobotsTxt robots) throws IOException {
+        int reevaluations = 0;
+        tryagain: while (true) try {
+            final String rhh = this.scheduler.take(delay ? MAX_WAIT : 0);
+            if (rhh == null) return null;
+            final FrontierHost host = this.hosts.get(rhh);
+            if (host == null) {
+                this.scheduler.remove(rhh);
+                continue tryagain;
+            }
+
+            // the due time of the host was guessed when it was released; loads of the host and its robots.txt
+            // may have increased the delay since then: in that case put the host back with its new due time
+            if (delay && reevaluations < MAX_REEVALUATIONS) {
+                final int delta = Latency.waitingRemainingGuessed(host.hostName, host.port, rhh, robots, HostBalancer.unknwonAgentDefault);
+                if (delta > 0) {
+                    reevaluations++;
+                    this.scheduler.release(rhh, System.currentTimeMillis() + delta);
+                    continue tryagain;
+                }
+            }
+
+            Request crawlEntry = null;
+            CrawlProfile profileEntry = null;
+            try {
+                crawlEntry = this.take(rhh);
+                if (crawlEntry != null) {
+                    // check blacklist (again) because the user may have created blacklist entries after the queue has been filled
+                    if (Switchboard.urlBlacklist.isListed(BlacklistType.CRAWLER, crawlEntry.url())) {
+                        if (log.isFine()) log.fine("URL '" + crawlEntry.url() + "' is in blacklist.");
+                        crawlEntry = null;
+                    } else {
+                        // check if the crawlEntry has relevance because the crawl profile still exists
+                        profileEntry = cs.get(UTF8.getBytes(crawlEntry.profileHandle()));
+                        if (profileEntry == null) {
+                            if (log.isFine()) log.fine("no profile entry for handle " + crawlEntry.profileHandle());
+                            crawlEntry = null;
+                        }
+                    }
+                }
+                if (crawlEntry != null) {
+                    // depending on the caching policy we need sleep time to avoid DoS-like situations
+                    final long sleeptime = Latency.getDomainSleepTime(robots, profileEntry, crawlEntry.url());
+                    HostQueue.delay(crawlEntry, profileEntry, sleeptime, delay, robots);
+                }
+            } finally {
+                if (this.hosts.containsKey(rhh)) {
+                    // the request is loaded now, the host is due after the minimum waiting time
+                    final int waiting = Latency.waitingGuessed(host.hostName, host.port, rhh, robots, HostBalancer.unknwonAgentDefault);
+                    this.scheduler.release(rhh, System.currentTimeMillis() + Math.max(0, waiting));
+                } else {
+                    this.scheduler.remove(rhh);
+                }
+            }
+            if (crawlEntry == null) continue tryagain;
+            return crawlEntry;
+        } catch (final ConcurrentModificationException e) {
+            continue tryagain;
+        } catch (final IOException e) {
+            throw e;
+        } catch (final Throwable e) {
+            ConcurrentLog.logException(e);
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    @Override
+    public Iterator<Request> iterator() throws IOException {
+        final Iterator<Row.Entry> rows = this.table.rows();
+        return new Iterator<>() {
+            private byte[] key = null;
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+            @Override
+            public Request next() {
+                final Row.Entry row = rows.next();
+                this.key = row == null ? null : row.getPrimaryKeyBytes();
+                try {
+                    return request(row);
+                } catch (final IOException e) {
+                    return null;
+                }
+            }
+            @Override
+            public void remove() {
+                if (this.key == null) return;
+                synchronized (FrontierBalancer.this) {
+                    try {
+                        FrontierBalancer.this.removeKey(this.key);
+                    } catch (final IOException e) {
+                        ConcurrentLog.logException(e);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * get a list of domains that are currently maintained as domain stacks
+     * @return a map of clear text strings of host names + ports to an integer array: {the size of the domain stack, guessed delta waiting time}
+     */
+    @Override
+    public Map<String, Integer[]> getDomainStackHosts(final RobotsTxt robots) {
+        final Map<String, Integer[]> map = new TreeMap<>(); // we use a tree map to get a stable ordering
+        for (final Map.Entry<String, FrontierHost> entry: this.hosts.entrySet()) {
+            final FrontierHost host = entry.getValue();
+            final int delta = Latency.waitingRemainingGuessed(host.hostName, host.port, entry.getKey(), robots, HostBalancer.unknwonAgentDefault);
+            map.put(host.hostName + ":" + host.port, new Integer[]{host.size, delta});
+        }
+        return map;
+    }
+
+    /**
+     * get lists of crawl request entries for a specific host
+     * @param host
+     * @param maxcount
+     * @param maxtime
+     * @return a list of crawl loader requests
+     */
+    @Override
+    public List<Request> getDomainStackReferences(final String host, final int maxcount, final long maxtime) {
+        if (host == null) {
+            return Collections.emptyList();
+        }
+        try {
+            String hosthash = DigestURL.hosthash(host, host.startsWith("ftp.") ? 21 : 80);
+            if (!this.hosts.containsKey(hosthash)) hosthash = DigestURL.hosthash(host, 443);
+            if (!this.hosts.containsKey(hosthash)) return new ArrayList<>(0);
+            final long timeout = maxtime == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + maxtime;
+            final List<Request> cel = new ArrayList<>();
+            final Iterator<Row.Entry> i = this.table.rows(true, firstKey(hosthash));
+            while (i.hasNext() && cel.size() < maxcount && System.currentTimeMillis() < timeout) {
+                final Row.Entry row = i.next();
+                if (!isHost(row.getPrimaryKeyBytes(), hosthash)) break;
+                final Request request = request(row);
+                if (request != null) cel.add(request);
+            }
+            return cel;
+        } catch (final IOException e) {
+            ConcurrentLog.logException(e);
+            return Collections.emptyList();
+        }
+    }
+
+}
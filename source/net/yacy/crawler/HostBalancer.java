@@ -28,11 +28,9 @@ import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
@@ -71,9 +69,14 @@ public class HostBalancer implements Balancer {
     private final File hostsPath;
     private final boolean exceed134217727;
     private final ConcurrentHashMap<String, HostQueue> queues;
-    private final Set<String> roundRobinHostHashes;
+    private final HostScheduler scheduler;
     private final int onDemandLimit;
 
+    /** the maximum time in milliseconds that pop waits for a host which is due */
+    private static final long MAX_WAIT = 5000;
+    /** the maximum number of hosts that pop puts back into the schedule because their delay has grown */
+    private static final int MAX_REEVALUATIONS = 10;
+
     /**
      * Create a new instance and asynchronously fills the queue by scanning the hostsPath directory.
      * @param hostsPath path with persisted hosts queues
@@ -106,7 +109,7 @@ public class HostBalancer implements Balancer {
         // create a stack for newly entered entries
         if (!(hostsPath.exists())) hostsPath.mkdirs(); // make the path
         this.queues = new ConcurrentHashMap<>();
-        this.roundRobinHostHashes = new HashSet<>();
+        this.scheduler = new HostScheduler();
         this.init(asyncInit); // return without wait but starts a thread to fill the queues
     }
 
@@ -144,6 +147,7 @@ public class HostBalancer implements Balancer {
                     FileUtils.deletedelete(queuePath);
                 } else {
                     this.queues.put(queue.getHostHash(), queue);
+                    this.scheduler.add(queue.getHostHash());
                 }
             } catch (MalformedURLException | RuntimeException e) {
                 log.warn("delete queue due to init error for " + this.hostsPath.getName() + " host=" + hoststr + " " + e.getLocalizedMessage());
@@ -161,6 +165,7 @@ public class HostBalancer implements Balancer {
         }
         for (final HostQueue queue: this.queues.values()) queue.close();
         this.queues.clear();
+        this.scheduler.clear();
     }
 
     @Override
@@ -170,6 +175,7 @@ public class HostBalancer implements Balancer {
         }
         for (final HostQueue queue: this.queues.values()) queue.clear();
         this.queues.clear();
+        this.scheduler.clear();
     }
 
     @Override
@@ -298,6 +304,7 @@ public class HostBalancer implements Balancer {
             if (queue == null) {
                 queue = new HostQueue(this.hostsPath, entry.url(), this.queues.size() > this.onDemandLimit, this.exceed134217727);
                 this.queues.put(hosthash, queue);
+                this.scheduler.add(hosthash);
                 // profile might be null when continue crawls after YaCy restart
                 robots.ensureExist(entry.url(), profile == null ? ClientIdentification.yacyInternetCrawlerAgent : profile.getAgent(), true); // concurrently load all robots.txt
             }
@@ -307,7 +314,8 @@ public class HostBalancer implements Balancer {
 
     /**
      * get the next entry in this crawl queue in such a way that the domain access time delta is maximized
-     * and always above the given minimum delay time. In case the minimum time cannot ensured, this method pauses
+     * and always above the given minimum delay time. The hosts are taken from a schedule which is ordered
+     * by the time when a host may be accessed again. In case the minimum time cannot be ensured, this method pauses
      * the necessary time until the url is released and returned as CrawlEntry object. In case that a profile
      * for the computed Entry does not exist, null is returned
      * @param delay true if the requester demands forced delays using explicit thread sleep
@@ -318,199 +326,42 @@ public class HostBalancer implements Balancer {
      */
     @Override
     public Request pop(final boolean delay, final CrawlSwitchboard cs, final RobotsTxt robots) throws IOException {
+        int reevaluations = 0;
         tryagain: while (true) try {
-            HostQueue rhq = null;
-            String rhh = null;
-
-            synchronized (this) {
-                if (this.roundRobinHostHashes.size() == 0) {
-                    // refresh the round-robin cache
-                    this.roundRobinHostHashes.addAll(this.queues.keySet());
-                    // quickly get rid of small stacks to reduce number of files:
-                    // remove all stacks with more than 10 entries
-                    // this shall kick out small stacks to prevent that too many files are opened for very wide crawls
-                    boolean smallStacksExist = false;
-                    boolean singletonStacksExist = false;
-                    smallsearch: for (final String s: this.roundRobinHostHashes) {
-                        final HostQueue hq = this.queues.get(s);
-                        if (hq != null) {
-                            final int size = hq.size();
-                            if (size ==  1) {singletonStacksExist = true; break smallsearch;}
-                            if (size <= 10) {smallStacksExist = true; break smallsearch;}
-                        }
-                    }
-                    final ArrayList<String> freshhosts = new ArrayList<>();
-                    final ArrayList<String> removehosts = new ArrayList<>();
-                    final Iterator<String> i = this.roundRobinHostHashes.iterator();
-                    smallstacks: while (i.hasNext()) {
-                        if (this.roundRobinHostHashes.size() <= 10) break smallstacks; // don't shrink the hosts until nothing is left
-                        final String hosthash = i.next();
-                        final HostQueue hq = this.queues.get(hosthash);
-                        if (hq == null) {removehosts.add(hosthash); i.remove(); continue smallstacks;}
-
-                        final int delta = Latency.waitingRemainingGuessed(hq.getHost(), hq.getPort(), hosthash, robots, unknwonAgentDefault);
-                        if (delta == Integer.MIN_VALUE) {
-                            // never-crawled hosts; we do not want to have too many of them in here. Loading new hosts means: waiting for robots.txt to load
-                            freshhosts.add(hosthash);
-                            i.remove();
-                            continue smallstacks;
-                        }
-                        if (singletonStacksExist || smallStacksExist) {
-                            if (delta < 0) continue; // keep all non-waiting stacks; they are useful to speed up things
-                            // to protect all small stacks which have a fast throughput, remove all with long waiting time
-                            if (delta >= 1000) {removehosts.add(hosthash); i.remove(); continue smallstacks;}
-                            final int size = hq.size();
-                            if (singletonStacksExist) {
-                                if (size != 1) {removehosts.add(hosthash); i.remove(); continue smallstacks;} // remove all non-singletons
-                            } else /*smallStacksExist*/ {
-                                if (size > 10) {removehosts.add(hosthash); i.remove(); continue smallstacks;} // remove all large stacks
-                            }
-                        }
-                    }
-
-                    // shuffle the lists
-                    final Random r = new Random();
-
-                    // put at least one of the fresh hosts back
-                    if (freshhosts.size() > 0) this.roundRobinHostHashes.add(freshhosts.remove(r.nextInt(freshhosts.size())));
-                    // fill up so we can have at least 100 domains in the queue
-                    while (this.roundRobinHostHashes.size() < 100 && removehosts.size() > 0) {
-                        this.roundRobinHostHashes.add(removehosts.remove(r.nextInt(removehosts.size())));
-                    }
-                    while (this.roundRobinHostHashes.size() < 100 && freshhosts.size() > 0) {
-                        this.roundRobinHostHashes.add(freshhosts.remove(r.nextInt(freshhosts.size())));
-                    }
-
-                    // result
-                    if (this.roundRobinHostHashes.size() == 1) {
-                        if (log.isFine()) log.fine("(re-)initialized the round-robin queue with one host");
-                    } else {
-                        log.info("(re-)initialized the round-robin queue; " + this.roundRobinHostHashes.size() + " hosts.");
-                    }
-                }
-                if (this.roundRobinHostHashes.size() == 0) return null;
-
-                // if the queue size is 1, just take that
-                if (this.roundRobinHostHashes.size() == 1) {
-                    rhh = this.roundRobinHostHashes.iterator().next();
-                    rhq = this.queues.get(rhh);
-                }
-
-                if (rhq == null) {
-                    // mixed minimum sleep time / largest queue strategy:
-                    // create a map of sleep time / queue relations with a fuzzy sleep time (ms / 500).
-                    // if the entry with the smallest sleep time contains at least two entries,
-                    // then the larger one from these queues are selected.
-                    final TreeMap<Integer, List<String>> fastTree = new TreeMap<>();
-                    mixedstrategy: for (final String h: this.roundRobinHostHashes) {
-                        final HostQueue hq = this.queues.get(h);
-                        if (hq != null) {
-                            int delta = Latency.waitingRemainingGuessed(hq.getHost(), hq.getPort(), h, robots, unknwonAgentDefault) / 200;
-                            if (delta < 0) delta = 0;
-                            List<String> queueHashes = fastTree.get(delta);
-                            if (queueHashes == null) {
-                                queueHashes = new ArrayList<>(2);
-                                fastTree.put(delta, queueHashes);
-                            }
-                            queueHashes.add(h);
-                            // check stop criteria
-                            final List<String> firstEntries = fastTree.firstEntry().getValue();
-                            if (firstEntries.size() > 1) {
-                                // select larger queue from that list
-                                int largest = Integer.MIN_VALUE;
-                                for (final String hh: firstEntries) {
-                                    final HostQueue hhq = this.queues.get(hh);
-                                    if (hhq != null) {
-                                        final int s = hhq.size();
-                                        if (s > largest) {
-                                            largest = s;
-                                            rhh = hh;
-                                        }
-                                    }
-                                }
-                                rhq = this.queues.get(rhh);
-                                break mixedstrategy;
-                            }
-                        }
-                    }
-                    if (rhq == null && fastTree.size() > 0) {
-                        // it may be possible that the lowest entry never has more than one queues assigned
-                        // in this case just take the smallest entry
-                        final List<String> firstEntries = fastTree.firstEntry().getValue();
-                        assert firstEntries.size() == 1;
-                        rhh = firstEntries.get(0);
-                        rhq = this.queues.get(rhh);
-                    }
-                    // to prevent that the complete roundrobinhosthashes are taken for each round, we remove the entries from the top of the fast queue
-                    final List<String> lastEntries = fastTree.size() > 0 ? fastTree.lastEntry().getValue() : null;
-                    if (lastEntries != null) {
-                        for (final String h: lastEntries) this.roundRobinHostHashes.remove(h);
-                    }
-                }
-
-                /*
-                // first strategy: get one entry which does not need sleep time
-                Iterator<String> nhhi = this.roundRobinHostHashes.iterator();
-                nosleep: while (nhhi.hasNext()) {
-                    rhh = nhhi.next();
-                    rhq = this.queues.get(rhh);
-                    if (rhq == null) {
-                        nhhi.remove();
-                        continue nosleep;
-            }
-                    int delta = Latency.waitingRemainingGuessed(rhq.getHost(), rhh, robots, ClientIdentification.yacyInternetCrawlerAgent);
-                    if (delta <= 10 || this.roundRobinHostHashes.size() == 1 || rhq.size() == 1) {
-                        nhhi.remove();
-                        break nosleep;
-                    }
-                }
-                if (rhq == null) {
-                    // second strategy: take from the largest stack
-                    int largest = Integer.MIN_VALUE;
-                    for (String h: this.roundRobinHostHashes) {
-                        HostQueue hq = this.queues.get(h);
-                        if (hq != null) {
-                            int s = hq.size();
-                            if (s > largest) {
-                                largest = s;
-                                rhh = h;
-                            }
-                        }
-                    }
-                    rhq = this.queues.get(rhh);
-                }
-                */
-            }
-
+            final String rhh = this.scheduler.take(delay ? MAX_WAIT : 0);
+            if (rhh == null) return null;
+            final HostQueue rhq = this.queues.get(rhh);
             if (rhq == null) {
-                this.roundRobinHostHashes.clear(); // force re-initialization
+                this.scheduler.remove(rhh);
                 continue tryagain;
             }
-            this.roundRobinHostHashes.remove(rhh); // prevent that the queue is used again
-            final long timestamp = System.currentTimeMillis();
-            final Request request = rhq.pop(delay, cs, robots); // this pop is outside of synchronization to prevent blocking of pushes
-            final long actualwaiting = System.currentTimeMillis() - timestamp;
-
-            if (actualwaiting > 1000) {
-                synchronized (this) {
-                    // to prevent that this occurs again, remove all stacks with positive delay times (which may be less after that waiting)
-                    final Iterator<String> i = this.roundRobinHostHashes.iterator();
-                    protectcheck: while (i.hasNext()) {
-                        if (this.roundRobinHostHashes.size() <= 3) break protectcheck; // don't shrink the hosts until nothing is left
-                        final String s = i.next();
-                        final HostQueue hq = this.queues.get(s);
-                        if (hq == null) {i.remove(); continue protectcheck;}
-                        final int delta = Latency.waitingRemainingGuessed(hq.getHost(), hq.getPort(), s, robots, unknwonAgentDefault);
-                        if (delta >= 0) {i.remove();}
-                    }
+
+            // the due time of the host was guessed when it was released; loads of the host and its robots.txt
+            // may have increased the delay since then: in that case put the host back with its new due time
+            if (delay && reevaluations < MAX_REEVALUATIONS) {
+                final int delta = Latency.waitingRemainingGuessed(rhq.getHost(), rhq.getPort(), rhh, robots, unknwonAgentDefault);
+                if (delta > 0) {
+                    reevaluations++;
+                    this.scheduler.release(rhh, System.currentTimeMillis() + delta);
+                    continue tryagain;
                 }
             }
 
-            if (rhq.isEmpty()) {
-                synchronized (this) {
-                    this.queues.remove(rhh);
+            Request request = null;
+            try {
+                request = rhq.pop(delay, cs, robots); // this pop is outside of synchronization to prevent blocking of pushes
+            } finally {
+                if (rhq.isEmpty()) {
+                    this.scheduler.remove(rhh);
+                    synchronized (this) {
+                        this.queues.remove(rhh);
+                    }
+                    rhq.close();
+                } else {
+                    // the request is loaded now, the host is due after the minimum waiting time
+                    final int waiting = Latency.waitingGuessed(rhq.getHost(), rhq.getPort(), rhh, robots, unknwonAgentDefault);
+                    this.scheduler.release(rhh, System.currentTimeMillis() + Math.max(0, waiting));
                 }
-                rhq.close();
             }
             if (request == null) continue tryagain;
             return request;
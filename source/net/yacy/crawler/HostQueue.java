@@ -493,6 +493,20 @@ public class HostQueue implements Balancer {
             }
         }
         if (crawlEntry == null) return null;
+        delay(crawlEntry, profileEntry, sleeptime, delay, robots);
+        return crawlEntry;
+    }
+
+    /**
+     * update the latency entry of the host of a request which was taken from a queue and
+     * pause for the remaining crawl-delay of the host if demanded
+     * @param crawlEntry the request
+     * @param profileEntry the crawl profile of the request
+     * @param sleeptime the remaining crawl-delay as computed by {@link Latency#getDomainSleepTime(RobotsTxt, CrawlProfile, DigestURL)}
+     * @param delay true if the requester demands forced delays using explicit thread sleep
+     * @param robots
+     */
+    static void delay(final Request crawlEntry, final CrawlProfile profileEntry, final long sleeptime, final boolean delay, final RobotsTxt robots) {
         final ClientIdentification.Agent agent = profileEntry == null ? ClientIdentification.yacyInternetCrawlerAgent : profileEntry.getAgent();
         final long robotsTime = Latency.getRobotsTime(robots, crawlEntry.url(), agent);
         Latency.updateAfterSelection(crawlEntry.url(), profileEntry == null ? 0 : robotsTime);
@@ -520,7 +534,6 @@ public class HostQueue implements Balancer {
             Thread.currentThread().setName(tname); // restore the name so we do not see this in the thread dump as a waiting thread
             Latency.updateAfterSelection(crawlEntry.url(), robotsTime);
         }
-        return crawlEntry;
     }
 
     @Override
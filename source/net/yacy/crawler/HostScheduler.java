@@ -0,0 +1,148 @@
+/**
+ *  HostScheduler
+ *  Copyright 2026 by YaCy contributors
+ *  First released 18.10.2026 at https://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.crawler;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Schedule of the hosts of a balancer, ordered by the time when a host may be accessed again.
+ * A host is either waiting in the schedule or taken by a thread which pops a request from its queue;
+ * a taken host is released with its next due time when the pop is done. Selecting a host costs
+ * O(log hosts) and does not look at the other hosts, so that threads can take different hosts
+ * concurrently.
+ */
+public class HostScheduler {
+
+    private static final class Entry implements Comparable<Entry> {
+        private final String hosthash;
+        private final long due;
+        private final long seq;
+        private Entry(final String hosthash, final long due, final long seq) {
+            this.hosthash = hosthash;
+            this.due = due;
+            this.seq = seq;
+        }
+        @Override
+        public int compareTo(final Entry o) {
+            if (this.due != o.due) return this.due < o.due ? -1 : 1;
+            return Long.compare(this.seq, o.seq);
+        }
+    }
+
+    private final PriorityQueue<Entry> queue;
+    /** the entry of each waiting host; entries in the queue which are not in this map are outdated */
+    private final Map<String, Entry> waiting;
+    private final Set<String> taken;
+    private long seq;
+
+    public HostScheduler() {
+        this.queue = new PriorityQueue<>();
+        this.waiting = new HashMap<>();
+        this.taken = new HashSet<>();
+        this.seq = 0;
+    }
+
+    /**
+     * add a host which is due now; nothing happens if the host is already scheduled
+     * @param hosthash
+     */
+    public synchronized void add(final String hosthash) {
+        if (this.waiting.containsKey(hosthash) || this.taken.contains(hosthash)) return;
+        this.schedule(hosthash, System.currentTimeMillis());
+    }
+
+    /**
+     * release a taken host
+     * @param hosthash
+     * @param due the time in milliseconds when the host may be accessed again
+     */
+    public synchronized void release(final String hosthash, final long due) {
+        if (this.taken.remove(hosthash)) this.schedule(hosthash, due);
+    }
+
+    /**
+     * remove a host from the schedule, i.e. because its queue is empty
+     * @param hosthash
+     */
+    public synchronized void remove(final String hosthash) {
+        this.waiting.remove(hosthash);
+        this.taken.remove(hosthash);
+    }
+
+    /**
+     * take the host with the earliest due time. If that host is not due yet, this waits until it
+     * is due or until the given time is over; then the host is returned anyway.
+     * @param maxWait the maximum time in milliseconds to wait for a due host; 0 does not wait
+     * @return the hash of the host, which must be released or removed later; null if no host is waiting
+     */
+    public synchronized String take(final long maxWait) {
+        final long timeout = System.currentTimeMillis() + maxWait;
+        while (true) {
+            final Entry head = this.head();
+            final long now = System.currentTimeMillis();
+            if (head != null && (head.due <= now || now >= timeout)) {
+                this.queue.poll();
+                this.waiting.remove(head.hosthash);
+                this.taken.add(head.hosthash);
+                return head.hosthash;
+            }
+            // if all hosts are taken, wait for one which is released
+            if (now >= timeout || (head == null && this.taken.isEmpty())) return null;
+            try {
+                this.wait((head == null ? timeout : Math.min(timeout, head.due)) - now);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * @return the number of hosts in the schedule, waiting or taken
+     */
+    public synchronized int size() {
+        return this.waiting.size() + this.taken.size();
+    }
+
+    public synchronized void clear() {
+        this.queue.clear();
+        this.waiting.clear();
+        this.taken.clear();
+        this.notifyAll();
+    }
+
+    private void schedule(final String hosthash, final long due) {
+        final Entry entry = new Entry(hosthash, due, this.seq++);
+        this.waiting.put(hosthash, entry);
+        this.queue.add(entry);
+        this.notifyAll();
+    }
+
+    private Entry head() {
+        Entry head;
+        while ((head = this.queue.peek()) != null && this.waiting.get(head.hosthash) != head) this.queue.poll();
+        return head;
+    }
+}
@@ -39,6 +39,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicLong;
@@ -68,6 +70,9 @@ public final class Cache {
 	/** Default size in bytes of the response header data base buffer (buffered bytes before writing to the file system) */
 	protected static final int DEFAULT_RESPONSE_HEADER_BUFFER_SIZE = 2048;
 	
+	/** Default size in bytes of the memory tier which holds recently stored or read content uncompressed */
+	public static final long DEFAULT_MEMORY_TIER_SIZE = 16 * 1024 * 1024;
+	
 	
     private static final String RESPONSE_HEADER_DB_NAME = "responseHeader.heap";
     private static final String FILE_DB_NAME = "file.array";
@@ -75,6 +80,9 @@ public final class Cache {
     private static MapHeap responseHeaderDB = null;
     private static Compressor fileDB = null;
     private static ArrayStack fileDBunbuffered = null;
+    
+    /** recently stored or read content, so that snippet generation does not decompress it again; null if switched off */
+    private static volatile MemoryTier memoryTier = null;
 
     private static volatile long maxCacheSize = Long.MAX_VALUE;
     
@@ -102,6 +110,7 @@ public final class Cache {
         prefix = peerSalt;
         totalRequests.set(0);
         hits.set(0);
+        setMemoryTierSize(DEFAULT_MEMORY_TIER_SIZE);
 
         // set/make cache path
         if (!htCachePath.exists()) {
@@ -200,6 +209,8 @@ public final class Cache {
      * clear the cache
      */
     public static void clear() {
+        final MemoryTier tier = memoryTier;
+        if (tier != null) tier.clear();
         responseHeaderDB.clear();
         try {
             fileDB.clear();
@@ -249,6 +260,30 @@ public final class Cache {
     	fileDB.setCompressionLevel(newCompressionLevel);
     }
     
+    /**
+     * Set the codec for newly stored content. Stored content keeps its codec.
+     * @param codec the new codec
+     */
+    public static void setCodec(final Compressor.Codec codec) {
+    	fileDB.setCodec(codec);
+    }
+    
+    /**
+     * Set the size of the memory tier. The content of the memory tier is dropped.
+     * @param size the maximum size in bytes of the content in the memory tier, 0 switches the memory tier off
+     */
+    public static void setMemoryTierSize(final long size) {
+    	memoryTier = size <= 0 ? null : new MemoryTier(size);
+    }
+    
+    /**
+     * @return the number of content requests which were served from the memory tier
+     */
+    public static long getMemoryTierHits() {
+    	final MemoryTier tier = memoryTier;
+    	return tier == null ? 0 : tier.hits.get();
+    }
+    
     /**
      * Set the new synchronization lock timeout.
      * @param lockTimeout the new synchronization lock timeout (in milliseconds).
@@ -291,6 +326,8 @@ public final class Cache {
             fileDB.delete(url.hash());
             throw new IOException("Cache.store: cannot write to headerDB: " + e.getMessage());
         }
+        final MemoryTier tier = memoryTier;
+        if (tier != null) tier.put(ASCII.String(url.hash()), file);
         if (log.isFine()) log.fine("stored in cache: " + url.toNormalform(true));
     }
 
@@ -362,6 +399,15 @@ public final class Cache {
      */
     public static byte[] getContent(final byte[] hash) {
     	totalRequests.incrementAndGet();
+    	final MemoryTier tier = memoryTier;
+    	final String key = ASCII.String(hash);
+    	if (tier != null) {
+    	    final byte[] b = tier.get(key);
+    	    if (b != null) {
+    	        hits.incrementAndGet();
+    	        return b;
+    	    }
+    	}
         // load the url as resource from the cache
         try {
             final byte[] b = fileDB.get(hash);
@@ -369,6 +415,7 @@ public final class Cache {
             	return null;
             }
             hits.incrementAndGet();
+            if (tier != null) tier.put(key, b);
             return b;
         } catch (final UnsupportedEncodingException e) {
             ConcurrentLog.logException(e);
@@ -406,6 +453,8 @@ public final class Cache {
      * @throws IOException
      */
     public static void delete(final byte[] hash) throws IOException {
+        final MemoryTier tier = memoryTier;
+        if (tier != null) tier.remove(ASCII.String(hash));
         responseHeaderDB.delete(hash);
         fileDB.delete(hash);
     }
@@ -431,4 +480,51 @@ public final class Cache {
     	final long total = totalRequests.get();
     	return total > 0 ? ((Cache.getHits() / ((double) total))) : 0.0 ;
     }
+
+    /**
+     * The memory tier holds the content in least recently used order, bounded by the sum of the content sizes.
+     * A stored document is always admitted: its snippets are usually computed right after it was stored,
+     * before its access frequency could tell anything about it.
+     */
+    private static final class MemoryTier {
+        private final long maxSize;
+        private final LinkedHashMap<String, byte[]> content;
+        private long size;
+        private final AtomicLong hits;
+
+        private MemoryTier(final long maxSize) {
+            this.maxSize = maxSize;
+            this.content = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+            this.size = 0;
+            this.hits = new AtomicLong(0);
+        }
+
+        private synchronized byte[] get(final String key) {
+            final byte[] b = this.content.get(key);
+            if (b != null) this.hits.incrementAndGet();
+            return b;
+        }
+
+        private synchronized void put(final String key, final byte[] b) {
+            this.remove(key);
+            if (b.length > this.maxSize) return;
+            this.content.put(key, b);
+            this.size += b.length;
+            final Iterator<byte[]> i = this.content.values().iterator();
+            while (this.size > this.maxSize && i.hasNext()) {
+                this.size -= i.next().length;
+                i.remove();
+            }
+        }
+
+        private synchronized void remove(final String key) {
+            final byte[] b = this.content.remove(key);
+            if (b != null) this.size -= b.length;
+        }
+
+        private synchronized void clear() {
+            this.content.clear();
+            this.size = 0;
+        }
+    }
 }
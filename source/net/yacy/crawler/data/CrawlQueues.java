@@ -32,13 +32,12 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
 
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.response.QueryResponse;
@@ -73,12 +72,10 @@ import net.yacy.search.index.ErrorCacheFiller;
 
 public class CrawlQueues {
 
-    private final static Request POISON_REQUEST = new Request();
     private final static ConcurrentLog log = new ConcurrentLog("CRAWLER");
 
     private final Switchboard sb;
-    private final Loader[] worker;
-    private final ArrayBlockingQueue<Request> workerQueue;
+    private final FetchEngine fetchEngine;
     private ArrayList<String> remoteCrawlProviderHashes;
 
     public  NoticedURL noticeURL;
@@ -90,16 +87,15 @@ public class CrawlQueues {
     public CrawlQueues(final Switchboard sb, final File queuePath) {
         this.sb = sb;
         final int maxWorkers = (int) sb.getConfigLong(SwitchboardConstants.CRAWLER_THREADS_ACTIVE_MAX, 10);
-        this.worker = new Loader[maxWorkers];
-        /* We initialize workerQueue with the same capacity as worker array, because this same queue
-         * will be used to send POISON_REQUEST items consumed by all eventually running workers in the close() function*/
-        this.workerQueue = new ArrayBlockingQueue<>(maxWorkers);
+        final int maxLoads = sb.getConfigInt(SwitchboardConstants.CRAWLER_LOADS_ACTIVE_MAX, 1000);
+        final int maxSameHost = sb.getConfigInt(SwitchboardConstants.CRAWLER_MAX_SAME_HOST_IN_QUEUE, 20);
+        this.fetchEngine = new FetchEngine("CrawlQueues.Loader", maxWorkers, maxLoads, maxSameHost, this::fetch);
         this.remoteCrawlProviderHashes = null;
 
         // start crawling management
         log.config("Starting Crawling Management");
         log.config("Opening noticeURL..");
-        this.noticeURL = new NoticedURL(queuePath, sb.getConfigInt("crawler.onDemandLimit", 1000), sb.exceed134217727);
+        this.noticeURL = new NoticedURL(queuePath, sb.getConfigInt("crawler.onDemandLimit", 1000), sb.exceed134217727, sb.getConfigBool(SwitchboardConstants.CRAWLER_FRONTIER_SINGLE_FILE, false));
         log.config("Opening errorURL..");
         this.errorURL = new ErrorCache(sb);
         log.config("Opening delegatedURL..");
@@ -121,53 +117,29 @@ public class CrawlQueues {
      */
     public void relocate(final File newQueuePath) {
         // removed pending requests
-        this.workerQueue.clear();
+        this.fetchEngine.clear();
         this.errorURL.clearCache();
         /* Concurrently refill the error cache with recent errors from the index */
         new ErrorCacheFiller(this.sb, this.errorURL).start();
 
         if (this.remoteCrawlProviderHashes != null) this.remoteCrawlProviderHashes.clear();
         this.noticeURL.close();
-        this.noticeURL = new NoticedURL(newQueuePath, this.sb.getConfigInt("crawler.onDemandLimit", 1000), this.sb.exceed134217727);
+        this.noticeURL = new NoticedURL(newQueuePath, this.sb.getConfigInt("crawler.onDemandLimit", 1000), this.sb.exceed134217727, this.sb.getConfigBool(SwitchboardConstants.CRAWLER_FRONTIER_SINGLE_FILE, false));
         if (this.delegatedURL != null) this.delegatedURL.clear();
     }
 
     public synchronized void close() {
-    	/* We close first the noticeURL because it is used to fill the workerQueue.*/
+    	/* We close first the noticeURL because it is used to fill the fetch engine.*/
         this.noticeURL.close();
-        // removed pending requests
-        this.workerQueue.clear();
-        // Send one POISON_REQUEST per worker so that every worker blocked in poll() wakes up and
-        // terminates its while loop cleanly, without having to be interrupted.
-        // Note: we iterate over a fixed count (this.worker.length) and not over the shrinking
-        // remainingCapacity(): each offer() reduces remainingCapacity(), so using it as the loop
-        // bound would insert only half the required pills and leave the remaining workers blocked.
-        for (int i = 0; i < this.worker.length; i++) {
-        	/* We use the non-blocking offer() function instead of the blocking put() in the unlikely eventual case another thread
-        	 * added an element to workerQueue during this loop.*/
-			try {
-				this.workerQueue.offer(POISON_REQUEST, 1, TimeUnit.SECONDS);
-			} catch (InterruptedException e) {
-				CrawlQueues.log.warn("Interrupted while adding POISON_REQUEST to the workerQueue");
-			}
-        }
-        for (final Loader w: this.worker) {
-            if (w != null && w.isAlive()) {
-                try {
-                    w.join(1000);
-                    if (w.isAlive()) w.interrupt();
-                } catch (final InterruptedException e) {
-                	CrawlQueues.log.warn("Interrupted while waiting for worker termination.");
-                }
-            }
-        }
+        // remove pending requests and wait for the running loads
+        this.fetchEngine.close(1000);
         if (this.delegatedURL != null) this.delegatedURL.clear();
     }
 
     public void clear() {
-        // wait for all workers to finish
-        this.workerQueue.clear();
-        for (final Loader w: this.worker) if (w != null) w.interrupt();
+        // remove pending requests and stop the running loads
+        this.fetchEngine.clear();
+        this.fetchEngine.interrupt();
         if (this.remoteCrawlProviderHashes != null) this.remoteCrawlProviderHashes.clear();
         this.noticeURL.clear();
         if (this.delegatedURL != null) this.delegatedURL.clear();
@@ -200,13 +172,7 @@ public class CrawlQueues {
      */
     public int hostcount(final String host) {
         if (host == null || host.length() == 0) return 0;
-        int c = 0;
-        for (final DigestURL url: this.activeWorkerEntries().keySet()) {
-            if (host.equals(url.getHost())) {
-                c++;
-            }
-        }
-        return c;
+        return this.fetchEngine.hostcount(host);
     }
 
     public void removeURL(final byte[] hash) {
@@ -255,16 +221,7 @@ public class CrawlQueues {
     }
 
     public Map<DigestURL, Request> activeWorkerEntries() {
-        synchronized (this.worker) {
-            Map<DigestURL, Request> map = new HashMap<>();
-            for (final Loader w: this.worker) {
-                if (w != null) {
-                    Request r = w.loading();
-                    if (r != null) map.put(r.url(), r);
-                }
-            }
-            return map;
-        }
+        return this.fetchEngine.loading();
     }
 
     public int coreCrawlJobSize() {
@@ -385,13 +342,8 @@ public class CrawlQueues {
                 if (urlEntry == null || urlEntry.url() == null) {
                     CrawlQueues.log.info(stats + ": urlEntry = null");
                 } else {
-                    if (!this.activeWorkerEntries().containsKey(urlEntry.url())) {
-                        try {
-                            this.ensureLoaderRunning();
-                            this.workerQueue.put(urlEntry);
-                        } catch (InterruptedException e) {
-                            ConcurrentLog.logException(e);
-                        }
+                    if (!this.fetchEngine.contains(urlEntry.url())) {
+                        this.fetchEngine.offer(urlEntry);
                     }
                 }
             } else {
@@ -435,8 +387,8 @@ public class CrawlQueues {
         }
 
         // check again
-        if (this.workerQueue.remainingCapacity() == 0) {
-            return "too many workers active: " + this.workerQueue.size();
+        if (this.fetchEngine.remainingCapacity() == 0) {
+            return "too many workers active: " + this.fetchEngine.size();
         }
 
         final String cautionCause = this.sb.onlineCaution();
@@ -460,9 +412,9 @@ public class CrawlQueues {
         }
 
         // check again
-        if (this.workerQueue.remainingCapacity() == 0) {
+        if (this.fetchEngine.remainingCapacity() == 0) {
             if (CrawlQueues.log.isFine()) {
-                CrawlQueues.log.fine("remoteCrawlLoaderJob: too many processes in loader queue, dismissed (" + "workerQueue=" + this.workerQueue.size() + "), httpClients = " + ConnectionInfo.getCount());
+                CrawlQueues.log.fine("remoteCrawlLoaderJob: too many processes in loader queue, dismissed (" + "fetchEngine=" + this.fetchEngine.size() + "), httpClients = " + ConnectionInfo.getCount());
             }
             return false;
         }
@@ -714,106 +666,94 @@ public class CrawlQueues {
         }
     }
 
-    private void ensureLoaderRunning() {
-        // check if there is at least one loader available
-        for (int i = 0; i < this.worker.length; i++) {
-            if (this.worker[i] == null || !this.worker[i].isAlive()) {
-                this.worker[i] = new Loader();
-                this.worker[i].start();
-                return;
+    /**
+     * check the robots.txt, load the request and push the response to the indexer; called by the threads of the fetch engine
+     * @param request the request
+     */
+    /**
+     * prepare the load of a request: check robots.txt and start the load
+     * @return the load, which completes when the response has been handed over to the indexer
+     */
+    private CompletableFuture<Void> fetch(final Request request) {
+        request.setStatus("worker-initialized", WorkflowJob.STATUS_INITIATED);
+        final CrawlProfile profile = this.sb.crawler.get(UTF8.getBytes(request.profileHandle()));
+        try {
+            // checking robots.txt for http(s) resources
+            request.setStatus("worker-checkingrobots", WorkflowJob.STATUS_STARTED);
+            RobotsTxtEntry robotsEntry;
+            if ((request.url().getProtocol().equals("http") || request.url().getProtocol().equals("https")) &&
+                profile.getAgent().isRobot() &&
+                (robotsEntry = this.sb.robots.getEntry(request.url(), profile.getAgent())) != null &&
+                robotsEntry.isDisallowed(request.url())) {
+                //if (log.isFine()) log.logFine("Crawling of URL '" + request.url().toString() + "' disallowed by robots.txt.");
+                this.errorURL.push(request.url(), request.depth(), profile, FailCategory.FINAL_ROBOTS_RULE, "denied by robots.txt", -1);
+                request.setStatus("worker-disallowed", WorkflowJob.STATUS_FINISHED);
+                return CompletableFuture.completedFuture(null);
             }
-            if (this.worker[i].loading() == null) return;
-        }
-    }
-
-    private final class Loader extends Thread {
 
-        private Request request = null;
-        private Loader() {
+            // starting a load from the internet
+            request.setStatus("worker-loading", WorkflowJob.STATUS_RUNNING);
+
+            // load a resource and push queue entry to switchboard queue
+            request.setStatus("loading", WorkflowJob.STATUS_RUNNING);
+            return this.sb.loader.loadAsync(request, profile == null ? CacheStrategy.IFEXIST : profile.cacheStrategy(), BlacklistType.CRAWLER, profile.getAgent(), this.fetchEngine.executor())
+                    .handleAsync((response, e) -> {
+                        this.loaded(request, profile, response, e);
+                        return null;
+                    }, this.fetchEngine.executor());
+        } catch (final Exception e) {
+            this.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, e.getMessage() + " - in worker", -1);
+            request.setStatus("worker-exception", WorkflowJob.STATUS_FINISHED);
+            return CompletableFuture.completedFuture(null);
         }
+    }
 
-        public Request loading() {
-            return this.request;
-        }
+    /**
+     * hand a loaded response over to the indexer or record the failure of the load
+     * @param response the loaded response or null if the load failed
+     * @param failure the failure of the load or null
+     */
+    private void loaded(final Request request, final CrawlProfile profile, final Response response, Throwable failure) {
+        try {
+            // returns null if everything went fine, a fail reason string if a problem occurred
+            String error = null;
+            if (failure instanceof CompletionException && failure.getCause() != null) failure = failure.getCause();
+            if (failure instanceof IOException) {
+                request.setStatus("error", WorkflowJob.STATUS_FINISHED);
+                if (CrawlQueues.log.isFine()) {
+                    CrawlQueues.log.fine("problem loading " + request.url().toString() + ": " + failure.getMessage());
+                }
+                error = "load error - " + failure.getMessage();
+            } else if (failure != null) {
+                throw failure instanceof Exception ? (Exception) failure : new Exception(failure);
+            } else if (response == null) {
+                request.setStatus("error", WorkflowJob.STATUS_FINISHED);
+                if (CrawlQueues.log.isFine()) {
+                    CrawlQueues.log.fine("problem loading " + request.url().toString() + ": no content (possibly caused by cache policy)");
+                }
+                error = "no content (possibly caused by cache policy)";
+            } else {
+                request.setStatus("loaded", WorkflowJob.STATUS_RUNNING);
+                final String storedFailMessage = this.sb.toIndexer(response);
+                request.setStatus("enqueued-" + ((storedFailMessage == null) ? "ok" : "fail"), WorkflowJob.STATUS_FINISHED);
+                error = (storedFailMessage == null) ? null : "not enqueued to indexer: " + storedFailMessage;
+            }
 
-        @Override
-        public void run() {
-            this.setPriority(Thread.MIN_PRIORITY); // http requests from the crawler should not cause that other functions work worse
-            try {
-                while ((this.request = CrawlQueues.this.workerQueue.poll(10, TimeUnit.SECONDS)) != POISON_REQUEST) {
-                    if (this.request == null) break; // we run this only for a specific time and then let the process die to clear up resources
-                    this.request.setStatus("worker-initialized", WorkflowJob.STATUS_INITIATED);
-                    this.setName("CrawlQueues.Loader(" + this.request.url().toNormalform(false) + ")");
-                    CrawlProfile profile = CrawlQueues.this.sb.crawler.get(UTF8.getBytes(this.request.profileHandle()));
-                    try {
-                        // checking robots.txt for http(s) resources
-                        this.request.setStatus("worker-checkingrobots", WorkflowJob.STATUS_STARTED);
-                        RobotsTxtEntry robotsEntry;
-                        if ((this.request.url().getProtocol().equals("http") || this.request.url().getProtocol().equals("https")) &&
-                            profile.getAgent().isRobot() &&
-                            (robotsEntry = CrawlQueues.this.sb.robots.getEntry(this.request.url(), profile.getAgent())) != null &&
-                            robotsEntry.isDisallowed(this.request.url())) {
-                            //if (log.isFine()) log.logFine("Crawling of URL '" + request.url().toString() + "' disallowed by robots.txt.");
-                            CrawlQueues.this.errorURL.push(this.request.url(), this.request.depth(), profile, FailCategory.FINAL_ROBOTS_RULE, "denied by robots.txt", -1);
-                            this.request.setStatus("worker-disallowed", WorkflowJob.STATUS_FINISHED);
-                        } else {
-                            // starting a load from the internet
-                            this.request.setStatus("worker-loading", WorkflowJob.STATUS_RUNNING);
-                            String error = null;
-
-                            // load a resource and push queue entry to switchboard queue
-                            // returns null if everything went fine, a fail reason string if a problem occurred
-                            try {
-                                this.request.setStatus("loading", WorkflowJob.STATUS_RUNNING);
-                                final Response response = CrawlQueues.this.sb.loader.load(this.request, profile == null ? CacheStrategy.IFEXIST : profile.cacheStrategy(), BlacklistType.CRAWLER, profile.getAgent());
-                                if (response == null) {
-                                    this.request.setStatus("error", WorkflowJob.STATUS_FINISHED);
-                                    if (CrawlQueues.log.isFine()) {
-                                        CrawlQueues.log.fine("problem loading " + this.request.url().toString() + ": no content (possibly caused by cache policy)");
-                                    }
-                                    error = "no content (possibly caused by cache policy)";
-                                } else {
-                                    this.request.setStatus("loaded", WorkflowJob.STATUS_RUNNING);
-                                    final String storedFailMessage = CrawlQueues.this.sb.toIndexer(response);
-                                    this.request.setStatus("enqueued-" + ((storedFailMessage == null) ? "ok" : "fail"), WorkflowJob.STATUS_FINISHED);
-                                    error = (storedFailMessage == null) ? null : "not enqueued to indexer: " + storedFailMessage;
-                                }
-                            } catch (final IOException e) {
-                                this.request.setStatus("error", WorkflowJob.STATUS_FINISHED);
-                                if (CrawlQueues.log.isFine()) {
-                                    CrawlQueues.log.fine("problem loading " + this.request.url().toString() + ": " + e.getMessage());
-                                }
-                                error = "load error - " + e.getMessage();
-                            }
-
-                            if (error != null) {
-                                if (error.endsWith("$")) {
-                                    // the "$" mark at the end of the error message means, that the error was already pushed to the error-db by the reporting method
-                                    // thus we only push this message if we don't have that mark
-                                    error = error.substring(0, error.length() - 1).trim();
-                                } else {
-                                    CrawlQueues.this.errorURL.push(this.request.url(), this.request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "cannot load: " + error, -1);
-                                }
-                                this.request.setStatus("worker-error", WorkflowJob.STATUS_FINISHED);
-                            } else {
-                                this.request.setStatus("worker-processed", WorkflowJob.STATUS_FINISHED);
-                            }
-                        }
-                    } catch (final Exception e) {
-                        CrawlQueues.this.errorURL.push(this.request.url(), this.request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, e.getMessage() + " - in worker", -1);
-                        this.request.setStatus("worker-exception", WorkflowJob.STATUS_FINISHED);
-                    } finally {
-                        this.request = null;
-                        this.setName("CrawlQueues.Loader(WAITING)");
-                    }
-                    profile = null;
+            if (error != null) {
+                if (error.endsWith("$")) {
+                    // the "$" mark at the end of the error message means, that the error was already pushed to the error-db by the reporting method
+                    // thus we only push this message if we don't have that mark
+                    error = error.substring(0, error.length() - 1).trim();
+                } else {
+                    this.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "cannot load: " + error, -1);
                 }
-            } catch (InterruptedException e2) {
-                // an interrupt is the expected signal to stop this worker during shutdown or a
-                // network switch: terminate quietly instead of logging a stack trace. We restore
-                // the interrupt flag so that any caller up the stack can still observe it.
-                Thread.currentThread().interrupt();
+                request.setStatus("worker-error", WorkflowJob.STATUS_FINISHED);
+            } else {
+                request.setStatus("worker-processed", WorkflowJob.STATUS_FINISHED);
             }
+        } catch (final Exception e) {
+            this.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, e.getMessage() + " - in worker", -1);
+            request.setStatus("worker-exception", WorkflowJob.STATUS_FINISHED);
         }
     }
 }
@@ -0,0 +1,296 @@
+// FetchEngine.java
+// Copyright 2026 by YaCy contributors
+// First released 18.10.2026 at https://yacy.net
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with this program in the file lgpl21.txt
+// If not, see <http://www.gnu.org/licenses/>.
+
+package net.yacy.crawler.data;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.crawler.retrieval.Request;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
+
+/**
+ * Loading of crawl requests with asynchronous loads. The fetcher prepares a load in a bounded pool of
+ * threads and returns a future of the load; while the request is sent and the response is received
+ * the load does not occupy a thread. The number of concurrent loads is therefore limited by the
+ * capacity of the engine and not by the number of threads. The threads are started on demand and
+ * terminate when they are idle for some seconds.
+ *
+ * Each host has a budget of concurrent loads. A request for a host which has used up its budget is
+ * parked and started when the next load of that host is finished. This way a few slow hosts cannot
+ * use up the capacity of a broad crawl. The politeness delays of {@link Latency} and robots.txt are
+ * applied by the balancer and the loader as before.
+ */
+public class FetchEngine {
+
+    private final static ConcurrentLog log = new ConcurrentLog("CRAWLER");
+
+    /** threads which did not get a request for this time terminate */
+    private static final long KEEP_ALIVE = 10000;
+
+    private final Function<Request, CompletableFuture<?>> fetcher;
+    private final int maxPerHost, capacity;
+    private final ThreadPoolExecutor executor;
+    private final Map<Request, Thread> preparing; // requests of which the fetcher prepares the load
+    private final Map<Request, CompletableFuture<?>> running; // requests which are loading
+
+    /** the load slots of the hosts; guards also the pending counter and the submitted url hashes */
+    private final Map<String, HostSlot> hosts;
+    private final Set<String> submitted;
+    private int pending;
+
+    private static final class HostSlot {
+        /** number of requests of this host which are loading or waiting for a thread to prepare the load */
+        private int active = 0;
+        /** requests of this host which wait for a free slot */
+        private final ArrayDeque<Request> parked = new ArrayDeque<>();
+    }
+
+    /**
+     * @param name the name prefix of the threads
+     * @param maxThreads the maximum number of threads which prepare loads and process loaded responses
+     * @param maxLoads the maximum number of submitted requests, loading or parked
+     * @param maxPerHost the maximum number of concurrent loads of the same host
+     * @param fetcher prepares the load of a request in the calling thread and returns the future of the load,
+     * which completes when the response has been handed over to the indexer; the fetcher may use {@link #executor()}
+     * for the processing of the loaded response
+     */
+    public FetchEngine(final String name, final int maxThreads, final int maxLoads, final int maxPerHost, final Function<Request, CompletableFuture<?>> fetcher) {
+        final int threads = Math.max(1, maxThreads);
+        this.fetcher = fetcher;
+        this.maxPerHost = Math.max(1, maxPerHost);
+        this.capacity = Math.max(1, maxLoads);
+        this.executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new NamePrefixThreadFactory(name));
+        this.executor.allowCoreThreadTimeOut(true);
+        this.preparing = new ConcurrentHashMap<>();
+        this.running = new ConcurrentHashMap<>();
+        this.hosts = new HashMap<>();
+        this.submitted = new HashSet<>();
+        this.pending = 0;
+    }
+
+    /**
+     * @return the threads of the engine; the fetcher may use them to process the loaded responses
+     */
+    public Executor executor() {
+        return this.executor;
+    }
+
+    /**
+     * submit a request for loading. This does not block, the request is loaded as soon as a thread
+     * and a slot of its host is free.
+     * @param request the request
+     * @return false if the engine has been closed
+     */
+    public boolean offer(final Request request) {
+        if (this.executor.isShutdown()) return false;
+        final String host = hostOf(request);
+        synchronized (this.hosts) {
+            if (!this.submitted.add(ASCII.String(request.url().hash()))) return true; // the url is already loading or waiting
+            this.pending++;
+            final HostSlot slot = this.hosts.computeIfAbsent(host, h -> new HostSlot());
+            if (slot.active >= this.maxPerHost) {
+                slot.parked.addLast(request);
+                return true;
+            }
+            slot.active++;
+        }
+        this.execute(request, host);
+        return true;
+    }
+
+    private void execute(final Request request, final String host) {
+        try {
+            this.executor.execute(() -> this.run(request, host));
+        } catch (final RejectedExecutionException e) {
+            // the engine has been closed
+            this.done(request, host);
+        }
+    }
+
+    private void run(final Request request, final String host) {
+        final Thread t = Thread.currentThread();
+        final String name = t.getName();
+        t.setPriority(Thread.MIN_PRIORITY); // http requests from the crawler should not cause that other functions work worse
+        t.setName(name + "(" + request.url().toNormalform(false) + ")");
+        this.preparing.put(request, t);
+        CompletableFuture<?> load = null;
+        try {
+            load = this.fetcher.apply(request);
+        } catch (final RuntimeException e) {
+            log.warn("loading of " + request.url().toNormalform(false) + " failed: " + e.getMessage(), e);
+        } finally {
+            this.preparing.remove(request);
+            Thread.interrupted(); // a load may have been interrupted by interrupt(), the thread continues with the next request
+            t.setName(name);
+        }
+        if (load == null) {
+            this.done(request, host);
+            return;
+        }
+        this.running.put(request, load);
+        load.whenComplete((result, e) -> {
+            if (e instanceof CompletionException && e.getCause() != null) e = e.getCause();
+            if (e != null && !(e instanceof CancellationException) && !this.executor.isShutdown()) {
+                log.warn("loading of " + request.url().toNormalform(false) + " failed: " + e.getMessage(), e);
+            }
+            this.running.remove(request);
+            this.done(request, host);
+        });
+    }
+
+    /**
+     * a request of a host has been loaded: hand the slot over to the next parked request of that host
+     */
+    private void done(final Request request, final String host) {
+        final Request next;
+        synchronized (this.hosts) {
+            this.pending--;
+            this.submitted.remove(ASCII.String(request.url().hash()));
+            final HostSlot slot = this.hosts.get(host);
+            if (slot == null) return;
+            next = this.executor.isShutdown() ? null : slot.parked.pollFirst();
+            if (next == null) {
+                slot.active--;
+                if (slot.active <= 0 && slot.parked.isEmpty()) this.hosts.remove(host);
+            }
+        }
+        if (next != null) this.execute(next, host);
+    }
+
+    /**
+     * @return the number of requests which can be submitted before the engine is saturated
+     */
+    public int remainingCapacity() {
+        synchronized (this.hosts) {
+            return Math.max(0, this.capacity - this.pending);
+        }
+    }
+
+    /**
+     * @return the number of submitted requests which are not finished yet
+     */
+    public int size() {
+        synchronized (this.hosts) {
+            return this.pending;
+        }
+    }
+
+    /**
+     * @param host a host name
+     * @return the number of requests of the host which are loading, waiting for a thread or parked
+     */
+    public int hostcount(final String host) {
+        synchronized (this.hosts) {
+            final HostSlot slot = this.hosts.get(host);
+            return slot == null ? 0 : slot.active + slot.parked.size();
+        }
+    }
+
+    /**
+     * @param url a url
+     * @return true if a request of the url is loading, waiting for a thread or parked
+     */
+    public boolean contains(final DigestURL url) {
+        synchronized (this.hosts) {
+            return this.submitted.contains(ASCII.String(url.hash()));
+        }
+    }
+
+    /**
+     * @return the requests which are loading now
+     */
+    public Map<DigestURL, Request> loading() {
+        final Map<DigestURL, Request> map = new HashMap<>();
+        for (final Request r: this.preparing.keySet()) map.put(r.url(), r);
+        for (final Request r: this.running.keySet()) map.put(r.url(), r);
+        return map;
+    }
+
+    /**
+     * remove all parked requests; requests which are loading or waiting for a thread are not affected
+     */
+    public void clear() {
+        synchronized (this.hosts) {
+            final Iterator<HostSlot> i = this.hosts.values().iterator();
+            while (i.hasNext()) {
+                final HostSlot slot = i.next();
+                this.pending -= slot.parked.size();
+                for (final Request request: slot.parked) this.submitted.remove(ASCII.String(request.url().hash()));
+                slot.parked.clear();
+                if (slot.active <= 0) i.remove();
+            }
+        }
+    }
+
+    /**
+     * interrupt all running loads: the threads which prepare a load are interrupted and the loads are cancelled
+     */
+    public void interrupt() {
+        for (final Thread t: this.preparing.values()) t.interrupt();
+        for (final CompletableFuture<?> load: this.running.values()) load.cancel(true);
+    }
+
+    /**
+     * stop accepting requests, drop the parked requests and wait for the running loads
+     * @param timeout the time in milliseconds to wait before the running loads are interrupted
+     */
+    public void close(final long timeout) {
+        this.executor.shutdown();
+        this.clear();
+        final long deadline = System.currentTimeMillis() + timeout;
+        try {
+            if (this.executor.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+                CompletableFuture.allOf(this.running.values().toArray(new CompletableFuture<?>[0]))
+                        .get(Math.max(1, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } else {
+                this.executor.shutdownNow();
+            }
+        } catch (final InterruptedException e) {
+            this.executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        } catch (final ExecutionException | TimeoutException | CancellationException e) {
+            // the remaining loads are cancelled
+        }
+        this.interrupt();
+    }
+
+    private static String hostOf(final Request request) {
+        final String host = request.url().getHost();
+        return host == null ? "" : host;
+    }
+}
@@ -155,6 +155,28 @@ public class Latency {
         final Host host = map.get(hosthash);
         if (host == null) return Integer.MIN_VALUE; // no delay if host is new; use Integer because there is a cast to int somewhere
 
+        // the time since last access to the domain is the basis of the remaining calculation
+        final int timeSinceLastAccess = (int) (System.currentTimeMillis() - host.lastacc());
+
+        return waitingGuessed(host, hostname, port, robots, agent) - timeSinceLastAccess;
+    }
+
+    /**
+     * guess the minimum time between two accesses to a host, not counting the time since the last access
+     * @param hostname
+     * @param hosthash
+     * @param robots
+     * @param agent
+     * @return the waiting time in milliseconds; Integer.MIN_VALUE if the host was never accessed
+     */
+    public static int waitingGuessed(final String hostname, final int port, final String hosthash, final RobotsTxt robots, final ClientIdentification.Agent agent) {
+        final Host host = map.get(hosthash);
+        if (host == null) return Integer.MIN_VALUE;
+        return waitingGuessed(host, hostname, port, robots, agent);
+    }
+
+    private static int waitingGuessed(final Host host, final String hostname, final int port, final RobotsTxt robots, final ClientIdentification.Agent agent) {
+
         // find the minimum waiting time based on the network domain (local or global)
         int waiting = agent.minimumDelta();
 
@@ -169,17 +191,14 @@ public class Latency {
         // if the number of same hosts as in the url in the loading queue is greater than MaxSameHostInQueue, then increase waiting
         if (Switchboard.getSwitchboard().crawlQueues.hostcount(hostname) > Switchboard.getSwitchboard().getConfigInt(SwitchboardConstants.CRAWLER_MAX_SAME_HOST_IN_QUEUE, 20)) waiting += 3000;
 
-        // the time since last access to the domain is the basis of the remaining calculation
-        final int timeSinceLastAccess = (int) (System.currentTimeMillis() - host.lastacc());
-
         // find the delay as given by robots.txt on target site
         if (robots != null) {
             final int robotsDelay = waitingRobots(hostname + ":" + port, robots, agent, false);
-            if (robotsDelay < 0) return -timeSinceLastAccess; // no limits if granted exclusively for this peer
+            if (robotsDelay < 0) return 0; // no limits if granted exclusively for this peer
             waiting = Math.max(waiting, robotsDelay);
         }
 
-        return waiting - timeSinceLastAccess;
+        return waiting;
     }
 
     /**
@@ -43,6 +43,7 @@ import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.crawler.Balancer;
 import net.yacy.crawler.CrawlSwitchboard;
+import net.yacy.crawler.FrontierBalancer;
 import net.yacy.crawler.HostBalancer;
 import net.yacy.crawler.retrieval.Request;
 import net.yacy.crawler.robots.RobotsTxt;
@@ -70,31 +71,47 @@ public class NoticedURL {
 
     private final File cachePath;
 
+    /** if true, the requests of each stack are stored in one frontier file instead of one directory per host */
+    private final boolean singleFileFrontier;
+
+    /**
+     * @param cachePath the directory of the stacks
+     * @param onDemandLimit
+     * @param exceed134217727
+     * @param singleFileFrontier if true, each stack is a {@link FrontierBalancer}, otherwise a {@link HostBalancer}
+     */
     protected NoticedURL(
             final File cachePath,
             final int onDemandLimit,
-            final boolean exceed134217727) {
+            final boolean exceed134217727,
+            final boolean singleFileFrontier) {
         ConcurrentLog.info("NoticedURL", "START CREATING STACKS at " + cachePath.toString());
         ConcurrentLog.info("NoticedURL", "opening CrawlerCoreStacks..");
         this.cachePath = cachePath;
-        this.coreStack = new HostBalancer(new File(cachePath, "CrawlerCoreStacks"), onDemandLimit, exceed134217727);
+        this.singleFileFrontier = singleFileFrontier;
+        this.coreStack = this.openStack("CrawlerCoreStacks", onDemandLimit, exceed134217727);
         ConcurrentLog.info("NoticedURL", "opening CrawlerLimitStacks..");
-        this.limitStack = new HostBalancer(new File(cachePath, "CrawlerLimitStacks"), onDemandLimit, exceed134217727);
+        this.limitStack = this.openStack("CrawlerLimitStacks", onDemandLimit, exceed134217727);
 
         this.remoteStack = null; // init on demand (on first push)
 
         ConcurrentLog.info("NoticedURL", "opening CrawlerNoLoadStacks..");
-        this.noloadStack = new HostBalancer(new File(cachePath, "CrawlerNoLoadStacks"), onDemandLimit, exceed134217727);
+        this.noloadStack = this.openStack("CrawlerNoLoadStacks", onDemandLimit, exceed134217727);
         ConcurrentLog.info("NoticedURL", "FINISHED CREATING STACKS at " + cachePath.toString());
     }
 
+    private Balancer openStack(final String name, final int onDemandLimit, final boolean exceed134217727) {
+        if (this.singleFileFrontier) return new FrontierBalancer(new File(this.cachePath, name + FrontierBalancer.FILE_SUFFIX), onDemandLimit, exceed134217727);
+        return new HostBalancer(new File(this.cachePath, name), onDemandLimit, exceed134217727);
+    }
+
     /**
      * Init Remote crawl stack, internally called on 1st push to remoteStack
      */
     protected void initRemoteStack() {
         if (this.remoteStack == null && !MemoryControl.shortStatus()) {
             ConcurrentLog.info("NoticedURL", "opening CrawlerRemoteStacks..");
-            this.remoteStack = new HostBalancer(new File(this.cachePath, "CrawlerRemoteStacks"), this.coreStack.getOnDemandLimit(), this.coreStack.getExceed134217727());
+            this.remoteStack = this.openStack("CrawlerRemoteStacks", this.coreStack.getOnDemandLimit(), this.coreStack.getExceed134217727());
         }
     }
 
@@ -26,9 +26,38 @@
 package net.yacy.crawler.retrieval;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509ExtendedTrustManager;
 
 import org.apache.http.HttpStatus;
 import org.apache.http.StatusLine;
@@ -36,10 +65,12 @@ import org.apache.http.StatusLine;
 import net.yacy.cora.document.id.DigestURL;
 import net.yacy.cora.federate.solr.FailCategory;
 import net.yacy.cora.protocol.ClientIdentification;
+import net.yacy.cora.protocol.Domains;
 import net.yacy.cora.protocol.HeaderFramework;
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.protocol.ResponseHeader;
 import net.yacy.cora.protocol.http.HTTPClient;
+import net.yacy.cora.protocol.http.ProxySettings;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.HTTPInputStream;
 import net.yacy.cora.util.StrictLimitInputStream;
@@ -48,6 +79,7 @@ import net.yacy.crawler.data.Cache;
 import net.yacy.crawler.data.CrawlProfile;
 import net.yacy.crawler.data.Latency;
 import net.yacy.kelondro.io.ByteCount;
+import net.yacy.kelondro.util.FileUtils;
 import net.yacy.kelondro.util.Formatter;
 import net.yacy.repository.Blacklist.BlacklistType;
 import net.yacy.search.Switchboard;
@@ -64,6 +96,12 @@ public final class HTTPLoader {
     public  static final int    DEFAULT_MAXFILESIZE = 1024 * 1024 * 10;
     public  static final int    DEFAULT_CRAWLING_RETRY_COUNT = 5;
 
+    /** an asynchronous load which takes longer than this number of socket timeouts is aborted */
+    private static final int ASYNC_LOAD_TIMEOUTS = 4;
+
+    /** the client of the asynchronous loads, created with the first asynchronous load */
+    private static HttpClient asyncClient = null;
+
     /**
      * The socket timeout that should be used
      */
@@ -88,6 +126,323 @@ public final class HTTPLoader {
         return doc;
     }
 
+    /**
+     * @param url the url of a resource
+     * @return true if the resource can be loaded with {@link #loadAsync}: a http(s) resource which is not loaded
+     * over a remote proxy and is not on this host, where the administrator credentials are sent
+     */
+    public static boolean isAsyncLoadable(final DigestURL url) {
+        final String host = url.getHost();
+        if (host == null || !(url.isHTTP() || url.isHTTPS())) return false;
+        if (Domains.isLocalhost(host)) return false;
+        return !ProxySettings.useForHost(host, url.isHTTPS() ? ProxySettings.Protocol.HTTPS : ProxySettings.Protocol.HTTP);
+    }
+
+    /**
+     * Load a resource without blocking a thread while the request is sent and the response is received.
+     * The redirects, the status codes and the file size limit are handled like in {@link #load}.
+     * @param entry the request
+     * @param profile crawl profile
+     * @param maxFileSize max file size to load. -1 means no limit.
+     * @param blacklistType blacklist type to use
+     * @param agent agent identifier
+     * @return the response; the future fails with an IOException when the resource could not be loaded
+     */
+    public CompletableFuture<Response> loadAsync(final Request entry, final CrawlProfile profile, final int maxFileSize, final BlacklistType blacklistType, final ClientIdentification.Agent agent) {
+        Latency.updateBeforeLoad(entry.url());
+        final long start = System.currentTimeMillis();
+        return this.loadAsync(entry, profile, DEFAULT_CRAWLING_RETRY_COUNT, maxFileSize, blacklistType, agent)
+                .whenComplete((response, e) -> Latency.updateAfterLoad(entry.url(), System.currentTimeMillis() - start));
+    }
+
+    private CompletableFuture<Response> loadAsync(final Request request, final CrawlProfile profile, final int retryCount, final int maxFileSize, final BlacklistType blacklistType, final ClientIdentification.Agent agent) {
+        final RequestHeader requestHeader;
+        final HttpRequest httpRequest;
+        try {
+            if (retryCount < 0) {
+                this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "retry counter exceeded", -1);
+                throw new IOException("retry counter exceeded for URL " + request.url().toString() + ". Processing aborted.$");
+            }
+
+            DigestURL url = request.url();
+            final String host = url.getHost();
+            if (host == null || host.length() < 2) throw new IOException("host is not well-formed: '" + host + "'");
+            final String path = url.getFile();
+
+            // check if url is in blacklist
+            final String hostlow = host.toLowerCase(Locale.ROOT);
+            if (blacklistType != null && Switchboard.urlBlacklist.isListed(blacklistType, hostlow, path)) {
+                this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.FINAL_LOAD_CONTEXT, "url in blacklist", -1);
+                throw new IOException("CRAWLER Rejecting URL '" + request.url().toString() + "'. URL is in blacklist.$");
+            }
+
+            // resolve yacy and yacyh domains
+            final AlternativeDomainNames yacyResolver = this.sb.peers;
+            if (yacyResolver != null) {
+                final String yAddress = yacyResolver.resolve(host);
+                if (yAddress != null) {
+                    url = new DigestURL(url.getProtocol() + "://" + yAddress + path);
+                }
+            }
+
+            // create a request header
+            requestHeader = this.createRequestheader(request, agent);
+            final HttpRequest.Builder builder = HttpRequest.newBuilder(new URI(url.toNormalform(true)))
+                    .timeout(Duration.ofMillis(this.socketTimeout))
+                    .GET();
+            for (final Map.Entry<String, String> header: requestHeader.entrySet()) {
+                builder.setHeader(header.getKey(), header.getValue());
+            }
+            httpRequest = builder.build();
+        } catch (final IOException e) {
+            return CompletableFuture.failedFuture(e);
+        } catch (final URISyntaxException | IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(new IOException("CRAWLER Rejecting URL '" + request.url().toString() + "': " + e.getMessage()));
+        }
+
+        // send the request; the content is only read for the status code 200, like in HTTPClient.GETbytes
+        final CompletableFuture<HttpResponse<byte[]>> sent = asyncClient(this.socketTimeout).sendAsync(httpRequest,
+                info -> new ContentSubscriber(info.statusCode() == 200, info.headers(), maxFileSize));
+        CompletableFuture.delayedExecutor((long) this.socketTimeout * ASYNC_LOAD_TIMEOUTS, TimeUnit.MILLISECONDS).execute(() -> sent.cancel(true));
+        return sent.handle((httpResponse, e) -> {
+            if (e != null) throw new CompletionException(asyncLoadException(request, e));
+            try {
+                return this.asyncResponse(request, profile, retryCount, maxFileSize, blacklistType, agent, requestHeader, httpResponse);
+            } catch (final IOException ee) {
+                return CompletableFuture.<Response>failedFuture(ee);
+            }
+        }).thenCompose(response -> response);
+    }
+
+    private static IOException asyncLoadException(final Request request, Throwable e) {
+        if (e instanceof CompletionException && e.getCause() != null) e = e.getCause();
+        if (e instanceof IOException) return (IOException) e;
+        if (e instanceof CancellationException) return new IOException("timeout loading " + request.url().toNormalform(true));
+        return new IOException(e.getMessage(), e);
+    }
+
+    /**
+     * evaluate the response of an asynchronous load
+     * @return the response or the load of a redirect
+     */
+    private CompletableFuture<Response> asyncResponse(final Request request, final CrawlProfile profile, final int retryCount, final int maxFileSize, final BlacklistType blacklistType,
+            final ClientIdentification.Agent agent, final RequestHeader requestHeader, final HttpResponse<byte[]> httpResponse) throws IOException {
+        final int statusCode = httpResponse.statusCode();
+        final String statusline = "HTTP/1.1 " + statusCode;
+        final ResponseHeader responseHeader = new ResponseHeader(statusCode);
+        for (final Map.Entry<String, List<String>> header: httpResponse.headers().map().entrySet()) {
+            if (header.getKey().startsWith(":")) continue; // pseudo header
+            for (final String value: header.getValue()) responseHeader.add(header.getKey(), value);
+        }
+        byte[] responseBody = httpResponse.body();
+        if (responseBody != null) responseBody = decode(responseHeader, responseBody, maxFileSize);
+        final String requestURLString = request.url().toNormalform(true);
+
+        // check redirection
+        if (statusCode > 299 && statusCode < 310) {
+            final DigestURL redirectionUrl = this.extractRedirectURL(request, profile, request.url(), statusline, statusCode, responseHeader, requestURLString);
+
+            if (this.sb.getConfigBool(SwitchboardConstants.CRAWLER_FOLLOW_REDIRECTS, true)) {
+                // we have two use cases here: loading from a crawl or just loading the url. Check this:
+                if (profile != null && !CrawlSwitchboard.DEFAULT_PROFILES.contains(profile.name())) {
+                    // put redirect url on the crawler queue to repeat a double-check
+                    final Request redirectedRequest = new Request(request.initiator(),
+                            redirectionUrl,
+                            request.referrerhash(),
+                            request.name(),
+                            request.appdate(),
+                            request.profileHandle(),
+                            request.depth(),
+                            request.timezoneOffset());
+                    final String rejectReason = this.sb.crawlStacker.stackCrawl(redirectedRequest);
+                    // in the end we must throw an exception (even if this is not an error, just to abort the current process
+                    if (rejectReason != null) {
+                        throw new IOException("CRAWLER Redirect of URL=" + requestURLString + " aborted. Reason : " + rejectReason);
+                    }
+                    throw new IOException("CRAWLER Redirect of URL=" + requestURLString + " to " + redirectionUrl.toNormalform(false) + " placed on crawler queue for double-check");
+                }
+
+                // if we are already doing a shutdown we don't need to retry crawling
+                if (this.sb.shallTerminate()) {
+                    this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.FINAL_LOAD_CONTEXT, "server shutdown", statusCode);
+                    throw new IOException("CRAWLER Redirect of URL=" + requestURLString + " aborted because of server shutdown.$");
+                }
+
+                // retry crawling with new url
+                request.redirectURL(redirectionUrl);
+                return this.loadAsync(request, profile, retryCount - 1, maxFileSize, blacklistType, agent);
+            }
+            // we don't want to follow redirects
+            this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.FINAL_PROCESS_CONTEXT, "redirection not wanted", statusCode);
+            throw new IOException("REJECTED UNWANTED REDIRECTION '" + statusline + "' for URL '" + requestURLString + "'$");
+        } else if (responseBody == null) {
+            // no response, reject file
+            this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "no response body", statusCode);
+            throw new IOException("REJECTED EMPTY RESPONSE BODY '" + statusline + "' for URL '" + requestURLString + "'$");
+        } else if (statusCode == 200 || statusCode == 203) {
+            // the transfer is ok
+            final long contentLength = responseBody.length;
+            ByteCount.addAccountCount(ByteCount.CRAWLER, contentLength);
+
+            // check length again in case it was not possible to get the length before loading
+            if (maxFileSize >= 0 && contentLength > maxFileSize) {
+                this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.FINAL_PROCESS_CONTEXT, "file size limit exceeded", statusCode);
+                throw new IOException("REJECTED URL " + request.url() + " because file size '" + contentLength + "' exceeds max filesize limit of " + maxFileSize + " bytes. (GET)$");
+            }
+
+            // create a new cache entry
+            return CompletableFuture.completedFuture(new Response(request, requestHeader, responseHeader, profile, false, responseBody));
+        } else {
+            // if the response has not the right response type then reject file
+            this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "wrong http status code", statusCode);
+            throw new IOException("REJECTED WRONG STATUS TYPE '" + statusline + "' for URL '" + requestURLString + "'$");
+        }
+    }
+
+    /**
+     * decode gzip or deflate content like the content decoding of HTTPClient, which also removes the
+     * headers that describe the encoded content
+     */
+    private static byte[] decode(final ResponseHeader responseHeader, final byte[] content, final int maxFileSize) throws IOException {
+        final String encoding = responseHeader.get(HeaderFramework.CONTENT_ENCODING);
+        if (encoding == null) return content;
+        final String e = encoding.trim().toLowerCase(Locale.ROOT);
+        InputStream decoded;
+        if (e.equals("gzip") || e.equals("x-gzip")) {
+            decoded = new GZIPInputStream(new ByteArrayInputStream(content));
+        } else if (e.equals("deflate")) {
+            // the deflate encoding is either a zlib stream or, from some servers, a raw deflate stream
+            final boolean zlib = content.length > 1 && (content[0] & 0x0f) == 8 && (((content[0] & 0xff) << 8) | (content[1] & 0xff)) % 31 == 0;
+            decoded = new InflaterInputStream(new ByteArrayInputStream(content), new Inflater(!zlib));
+        } else if (e.equals("identity")) {
+            decoded = null;
+        } else {
+            return content;
+        }
+        responseHeader.remove(HeaderFramework.CONTENT_ENCODING);
+        responseHeader.remove(HeaderFramework.CONTENT_LENGTH);
+        responseHeader.remove(HeaderFramework.CONTENT_MD5);
+        if (decoded == null) return content;
+        if (maxFileSize >= 0) {
+            decoded = new StrictLimitInputStream(decoded, maxFileSize, "Content to download exceed maximum value of " + Formatter.bytesToString(maxFileSize));
+        }
+        try {
+            return FileUtils.read(decoded);
+        } finally {
+            decoded.close();
+        }
+    }
+
+    /**
+     * collects the content of a response up to the maximum file size; a content which is not wanted is not read
+     */
+    private static final class ContentSubscriber implements HttpResponse.BodySubscriber<byte[]> {
+
+        private final CompletableFuture<byte[]> content;
+        private final ByteArrayOutputStream buffer;
+        private final boolean read;
+        private final long contentLength;
+        private final int maxFileSize;
+        private Flow.Subscription subscription;
+
+        private ContentSubscriber(final boolean read, final HttpHeaders headers, final int maxFileSize) {
+            this.content = new CompletableFuture<>();
+            this.read = read;
+            this.contentLength = headers.firstValueAsLong(HeaderFramework.CONTENT_LENGTH).orElse(-1);
+            this.maxFileSize = maxFileSize;
+            this.buffer = read ? new ByteArrayOutputStream(this.contentLength > 0 && this.contentLength < Response.CRAWLER_MAX_SIZE_TO_CACHE ? (int) this.contentLength : 8192) : null;
+        }
+
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return this.content;
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription s) {
+            this.subscription = s;
+            if (!this.read) {
+                s.cancel();
+                this.content.complete(null);
+            } else if (this.maxFileSize >= 0 && this.contentLength > this.maxFileSize) {
+                /* the anticipated content length exceeds the limit: abort the connection, consistently with HTTPClient.GETbytes */
+                s.cancel();
+                this.content.completeExceptionally(new IOException("Content to download exceed maximum value of " + Formatter.bytesToString(this.maxFileSize)));
+            } else {
+                s.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onNext(final List<ByteBuffer> items) {
+            if (this.content.isDone()) return;
+            for (final ByteBuffer item: items) {
+                final byte[] b = new byte[item.remaining()];
+                item.get(b);
+                this.buffer.write(b, 0, b.length);
+            }
+            if (this.maxFileSize >= 0 && this.buffer.size() > this.maxFileSize) {
+                this.subscription.cancel();
+                this.content.completeExceptionally(new IOException("Content to download exceed maximum value of " + Formatter.bytesToString(this.maxFileSize)));
+            }
+        }
+
+        @Override
+        public void onError(final Throwable e) {
+            this.content.completeExceptionally(e);
+        }
+
+        @Override
+        public void onComplete() {
+            if (this.read) this.content.complete(this.buffer.toByteArray());
+        }
+    }
+
+    /**
+     * The client of the asynchronous loads. Like the HTTPClient of the crawler it accepts all server certificates,
+     * does not follow redirects (they are handled by the loader) and speaks HTTP/1.1.
+     */
+    private static synchronized HttpClient asyncClient(final int connectTimeout) {
+        if (asyncClient == null) {
+            final HttpClient.Builder builder = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .followRedirects(HttpClient.Redirect.NEVER)
+                    .connectTimeout(Duration.ofMillis(connectTimeout));
+            try {
+                final SSLContext sslContext = SSLContext.getInstance("TLS");
+                sslContext.init(null, new TrustManager[] {new AcceptAllTrustManager()}, null);
+                builder.sslContext(sslContext);
+            } catch (final NoSuchAlgorithmException | KeyManagementException e) {
+                ConcurrentLog.warn("HTTPLoader", "cannot create the ssl context of the asynchronous loader: " + e.getMessage());
+            }
+            asyncClient = builder.build();
+        }
+        return asyncClient;
+    }
+
+    /**
+     * accepts all server certificates and does not verify the host name, like the NoopHostnameVerifier of HTTPClient;
+     * an extended trust manager is needed because the client would verify the host name otherwise
+     */
+    private static final class AcceptAllTrustManager extends X509ExtendedTrustManager {
+        @Override
+        public void checkClientTrusted(final X509Certificate[] chain, final String authType) {}
+        @Override
+        public void checkServerTrusted(final X509Certificate[] chain, final String authType) {}
+        @Override
+        public void checkClientTrusted(final X509Certificate[] chain, final String authType, final Socket socket) {}
+        @Override
+        public void checkServerTrusted(final X509Certificate[] chain, final String authType, final Socket socket) {}
+        @Override
+        public void checkClientTrusted(final X509Certificate[] chain, final String authType, final SSLEngine engine) {}
+        @Override
+        public void checkServerTrusted(final X509Certificate[] chain, final String authType, final SSLEngine engine) {}
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    }
+
     /**
      * Open an input stream on a requested HTTP resource. When the resource content size is small
      * (lower than {@link Response#CRAWLER_MAX_SIZE_TO_CACHE}, fully load it and use a ByteArrayInputStream instance.
@@ -270,6 +625,12 @@ public final class HTTPLoader {
     private DigestURL extractRedirectURL(final Request request, CrawlProfile profile, DigestURL url,
             final StatusLine statusline, final ResponseHeader responseHeader, String requestURLString)
                     throws IOException {
+        return this.extractRedirectURL(request, profile, url, statusline.toString(), statusline.getStatusCode(), responseHeader, requestURLString);
+    }
+
+    private DigestURL extractRedirectURL(final Request request, CrawlProfile profile, DigestURL url,
+            final String statusline, final int statusCode, final ResponseHeader responseHeader, String requestURLString)
+                    throws IOException {
         // read redirection URL
         String redirectionUrlString = responseHeader.get(HeaderFramework.LOCATION);
         redirectionUrlString = redirectionUrlString == null ? "" : redirectionUrlString.trim();
@@ -277,7 +638,7 @@ public final class HTTPLoader {
         if (redirectionUrlString.isEmpty()) {
             this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile,
                     FailCategory.TEMPORARY_NETWORK_FAILURE,
-                    "no redirection url provided, field '" + HeaderFramework.LOCATION + "' is empty", statusline.getStatusCode());
+                    "no redirection url provided, field '" + HeaderFramework.LOCATION + "' is empty", statusCode);
             throw new IOException("REJECTED EMTPY REDIRECTION '" + statusline
                     + "' for URL '" + requestURLString + "'$");
         }
@@ -294,7 +655,7 @@ public final class HTTPLoader {
 
         if (this.sb.getConfigBool(SwitchboardConstants.CRAWLER_RECORD_REDIRECTS, true)) {
             this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile,
-                    FailCategory.FINAL_REDIRECT_RULE, "redirect to " + redirectionUrlString, statusline.getStatusCode());
+                    FailCategory.FINAL_REDIRECT_RULE, "redirect to " + redirectionUrlString, statusCode);
         }
         return redirectionUrl;
     }
@@ -57,6 +57,7 @@ import net.yacy.kelondro.util.Formatter;
 import net.yacy.peers.Seed;
 import net.yacy.search.Switchboard;
 import net.yacy.search.SwitchboardConstants;
+import net.yacy.server.http.TemplateEngine;
 import net.yacy.server.serverSwitch;
 import net.yacy.utils.translation.ExtensionsFileFilter;
 
@@ -352,6 +353,8 @@ public class Translator {
                 ret = true;
             }
         }
+        // the translated templates were replaced, compiled ones of the former language must not be served
+        TemplateEngine.clearCache();
         return ret;
     }
 
@@ -22,10 +22,22 @@
  */
 package net.yacy.document.importer;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPInputStream;
 
 import org.jwat.common.HeaderLine;
@@ -42,13 +54,16 @@ import net.yacy.cora.protocol.ClientIdentification;
 import net.yacy.cora.protocol.HeaderFramework;
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.protocol.ResponseHeader;
-import net.yacy.cora.util.ByteBuffer;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.crawler.data.CrawlProfile;
 import net.yacy.crawler.retrieval.Request;
 import net.yacy.crawler.retrieval.Response;
 import net.yacy.document.TextParser;
+import net.yacy.kelondro.util.FileUtils;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
+import net.yacy.kelondro.workflow.WorkflowProcessor;
 import net.yacy.search.Switchboard;
+import net.yacy.search.SwitchboardConstants;
 import net.yacy.server.http.ChunkedInputStream;
 
 /**
@@ -71,10 +86,18 @@ import net.yacy.server.http.ChunkedInputStream;
  * cp yacy.net.warc.gz DATA/PACKS/load/
  *
  * after processing, that warc file is moved to DATA/PACKS/loaded/
+ *
+ * The import is a pipeline: a thread reads and decompresses the archive ahead of the record reader,
+ * the record reader (this thread) splits the archive into records and reads the payload of the responses,
+ * and a pool of threads creates the Response objects and hands them over to the indexer.
+ * Every stage is connected with a bounded queue, so the import slows down when the indexer queue is full.
  */
 public class WarcImporter extends Thread implements Importer {
 
-    static public WarcImporter job; // static object to assure only one importer is running (if started from a servlet, this object is used to store the thread)
+    private static final int CHUNK_SIZE = 1024 * 1024; // size of the decompressed chunks handed over to the record reader
+    private static final int CHUNKS = 8; // number of chunks which are decompressed ahead of the record reader
+
+    private static final Set<WarcImporter> jobs = ConcurrentHashMap.newKeySet(); // all running importers; the packs import runs several at once
 
     private InputStream source; // current input warc archive
     private String name; // file name of input source
@@ -83,9 +106,29 @@ public class WarcImporter extends Thread implements Importer {
     private long startTime; // (for statistic)
     private final long sourceSize; // length of the input source (for statistic)
     private long consumed; // bytes consumed from input source (for statistic)
-    private boolean abort = false; // flag to signal stop of import
+    private volatile boolean abort = false; // flag to signal stop of import
+    private volatile boolean stopped = false; // the import was stopped before the end of the input source
     private String collection;
 
+    /** a response record of the archive with the complete payload */
+    private static final class WarcResponse {
+        private final String url;
+        private final int statusCode;
+        private final List<HeaderLine> headers;
+        private final boolean chunked;
+        private final byte[] payload;
+
+        private WarcResponse(final String url, final int statusCode, final List<HeaderLine> headers, final boolean chunked, final byte[] payload) {
+            this.url = url;
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.chunked = chunked;
+            this.payload = payload;
+        }
+    }
+
+    private static final WarcResponse POISON = new WarcResponse(null, 0, null, false, null);
+
     public WarcImporter(MultiProtocolURL url, String collection) throws IOException {
         super("WarcImporter - from InputStream");
         this.recordCnt = 0;
@@ -126,98 +169,142 @@ public class WarcImporter extends Thread implements Importer {
      * @param f inputstream for the warc file
      * @throws IOException
      */
-    @SuppressWarnings("resource")
-	public void indexWarcRecords(InputStream f) throws IOException {
+    public void indexWarcRecords(InputStream f) throws IOException {
 
-        byte[] content;
-        job = this;
+        jobs.add(this);
         this.startTime = System.currentTimeMillis();
 
-        final CrawlProfile warcProfile = (CrawlProfile) Switchboard.getSwitchboard().crawler.defaultPackProfile.clone();
+        final Switchboard sb = Switchboard.getSwitchboard();
+        final CrawlProfile warcProfile = (CrawlProfile) sb.crawler.defaultPackProfile.clone();
         warcProfile.setCollections(this.collection);
         warcProfile.setHandle();
 
-        WarcReader localwarcReader = WarcReaderFactory.getReader(f);
-        WarcRecord wrec = localwarcReader.getNextRecord();
-        while (wrec != null && !this.abort) {
-
-            HeaderLine hl = wrec.getHeader(WarcConstants.FN_WARC_TYPE);
-            if (hl != null && hl.value.equals(WarcConstants.RT_RESPONSE)) { // filter responses
-
-                hl = wrec.getHeader(WarcConstants.FN_WARC_TARGET_URI);
-                // the content of that line was lately surrounded with '<' and '>', we must remove that
-                String url = hl.value;
-                if (url.startsWith("<") && url.endsWith(">")) url = url.substring(1, url.length() - 1);
-                DigestURL location = new DigestURL(url);
-
-                HttpHeader http = wrec.getHttpHeader();
-
-                if (http != null && http.statusCode == 200) { // process http response header OK (status 200)
-
-                    if (TextParser.supportsMime(http.contentType) == null) { // check availability of parser
-
-                        InputStream istream = wrec.getPayloadContent();
-                        hl = http.getHeader(HeaderFramework.TRANSFER_ENCODING);
-                        content = null;
-                        try {
-                            if (hl != null && hl.value.contains("chunked")) {
-                                // because chunked stream.read doesn't read source fully, make sure all chunks are read
-                                istream = new ChunkedInputStream(istream);
-                                final ByteBuffer bbuffer = new ByteBuffer();
-                                int c;
-                                while ((c = istream.read()) >= 0) {
-                                    bbuffer.append(c);
-                                }
-                                content = bbuffer.getBytes();
-                                bbuffer.close();
-                            } else {
-                                content = new byte[(int) http.getPayloadLength()];
-                                istream.read(content, 0, content.length);
-                            }
+        // start the threads which create the responses and hand them over to the indexer
+        int threads = sb.getConfigInt(SwitchboardConstants.PACKS_WARC_THREADS, 0);
+        if (threads <= 0) threads = WorkflowProcessor.availableCPU;
+        final BlockingQueue<WarcResponse> responses = new ArrayBlockingQueue<>(threads * 4);
+        final ExecutorService service = Executors.newFixedThreadPool(threads,
+                new NamePrefixThreadFactory(WarcImporter.class.getSimpleName() + ".toIndexer"));
+        for (int i = 0; i < threads; i++) {
+            service.execute(() -> this.indexResponses(responses, warcProfile));
+        }
 
-                            RequestHeader requestHeader = new RequestHeader();
-                            ResponseHeader responseHeader = new ResponseHeader(http.statusCode);
-                            for (HeaderLine hx : http.getHeaderList()) { // include all original response headers for parser
-                                responseHeader.put(hx.name, hx.value);
+        final InputStream source = new ReadAheadInputStream(f, this.name);
+        WarcReader localwarcReader = null;
+        boolean interrupted = false;
+        try {
+            localwarcReader = WarcReaderFactory.getReader(source);
+            WarcRecord wrec = localwarcReader.getNextRecord();
+            while (wrec != null && !this.abort) {
+
+                HeaderLine hl = wrec.getHeader(WarcConstants.FN_WARC_TYPE);
+                if (hl != null && hl.value.equals(WarcConstants.RT_RESPONSE)) { // filter responses
+
+                    hl = wrec.getHeader(WarcConstants.FN_WARC_TARGET_URI);
+                    // the content of that line was lately surrounded with '<' and '>', we must remove that
+                    String url = hl.value;
+                    if (url.startsWith("<") && url.endsWith(">")) url = url.substring(1, url.length() - 1);
+
+                    HttpHeader http = wrec.getHttpHeader();
+
+                    if (http != null && http.statusCode == 200) { // process http response header OK (status 200)
+
+                        if (TextParser.supportsMime(http.contentType) == null) { // check availability of parser
+
+                            // the payload must be read before the next record is read; the remaining work is done by the pool
+                            hl = http.getHeader(HeaderFramework.TRANSFER_ENCODING);
+                            try {
+                                final byte[] payload = FileUtils.read(wrec.getPayloadContent());
+                                responses.put(new WarcResponse(url, http.statusCode, new ArrayList<>(http.getHeaderList()),
+                                        hl != null && hl.value.contains("chunked"), payload));
+                            } catch (IOException e) {
+                                ConcurrentLog.info("WarcImporter", "error reading: " + e.getMessage());
                             }
 
-                            final Request request = new Request(
-                                    ASCII.getBytes(Switchboard.getSwitchboard().peers.mySeed().hash),
-                                    location,
-                                    requestHeader.referer() == null ? null : requestHeader.referer().hash(),
-                                    "warc",
-                                    responseHeader.lastModified(),
-                                    warcProfile.handle(),
-                                    0,
-                                    warcProfile.timezoneOffset());
-
-                            final Response response = new Response(
-                                    request,
-                                    requestHeader,
-                                    responseHeader,
-                                    warcProfile,
-                                    false,
-                                    content
-                            );
-
-                            String error = Switchboard.getSwitchboard().toIndexer(response);
-                            if (error != null) ConcurrentLog.info("WarcImporter", "error parsing: " + error);
-                        } catch (IOException e) {
-                            ConcurrentLog.info("WarcImporter", "error reading: " + e.getMessage());
-                        } finally {
-                            try {istream.close();} catch (IOException e) {}
+                            this.recordCnt++;
                         }
-
-                        this.recordCnt++;
                     }
                 }
+                this.consumed = localwarcReader.getConsumed();
+                wrec = localwarcReader.getNextRecord();
             }
-            this.consumed = localwarcReader.getConsumed();
-            wrec = localwarcReader.getNextRecord();
+            this.stopped = wrec != null;
+        } catch (final InterruptedException e) {
+            interrupted = true;
+            this.stopped = true;
+        } finally {
+            if (interrupted) {
+                service.shutdownNow();
+            } else {
+                try {
+                    for (int i = 0; i < threads; i++) responses.put(POISON);
+                    service.shutdown();
+                    service.awaitTermination(1, TimeUnit.HOURS);
+                } catch (final InterruptedException e) {
+                    service.shutdownNow();
+                }
+            }
+            if (localwarcReader != null) localwarcReader.close();
+            source.close();
         }
-        localwarcReader.close();
         ConcurrentLog.info("WarcImporter", "Indexed " + this.recordCnt + " documents");
-        job = null;
+    }
+
+    /**
+     * take responses from the queue and hand them over to the indexer until the poison is taken;
+     * the indexer blocks when its queue is full
+     */
+    private void indexResponses(final BlockingQueue<WarcResponse> responses, final CrawlProfile warcProfile) {
+        try {
+            WarcResponse record;
+            while ((record = responses.take()) != POISON) {
+                try {
+                    final String error = Switchboard.getSwitchboard().toIndexer(this.response(record, warcProfile));
+                    if (error != null) ConcurrentLog.info("WarcImporter", "error parsing: " + error);
+                } catch (IOException e) {
+                    ConcurrentLog.info("WarcImporter", "error reading: " + e.getMessage());
+                } catch (RuntimeException e) {
+                    ConcurrentLog.logException(e);
+                }
+            }
+        } catch (final InterruptedException e) {
+            // the import was interrupted
+        }
+    }
+
+    private Response response(final WarcResponse record, final CrawlProfile warcProfile) throws IOException {
+        DigestURL location = new DigestURL(record.url);
+
+        byte[] content = record.payload;
+        if (record.chunked) {
+            // because chunked stream.read doesn't read source fully, make sure all chunks are read
+            content = FileUtils.read(new ChunkedInputStream(new ByteArrayInputStream(content)));
+        }
+
+        RequestHeader requestHeader = new RequestHeader();
+        ResponseHeader responseHeader = new ResponseHeader(record.statusCode);
+        for (HeaderLine hx : record.headers) { // include all original response headers for parser
+            responseHeader.put(hx.name, hx.value);
+        }
+
+        final Request request = new Request(
+                ASCII.getBytes(Switchboard.getSwitchboard().peers.mySeed().hash),
+                location,
+                requestHeader.referer() == null ? null : requestHeader.referer().hash(),
+                "warc",
+                responseHeader.lastModified(),
+                warcProfile.handle(),
+                0,
+                warcProfile.timezoneOffset());
+
+        return new Response(
+                request,
+                requestHeader,
+                responseHeader,
+                warcProfile,
+                false,
+                content
+        );
     }
 
     @Override
@@ -226,6 +313,8 @@ public class WarcImporter extends Thread implements Importer {
             this.indexWarcRecords(this.source);
         } catch (IOException ex) {
             ConcurrentLog.info("WarcImporter", ex.getMessage());
+        } finally {
+            jobs.remove(this);
         }
     }
 
@@ -236,6 +325,22 @@ public class WarcImporter extends Thread implements Importer {
         this.abort = true;
     }
 
+    /**
+     * @return true if the import was stopped before the end of the input source was reached
+     */
+    public boolean isStopped() {
+        return this.stopped;
+    }
+
+    /**
+     * @return the running importers
+     */
+    public static List<WarcImporter> jobs() {
+        final List<WarcImporter> running = new ArrayList<>(jobs.size());
+        for (final WarcImporter job: jobs) if (job.isAlive()) running.add(job);
+        return running;
+    }
+
     /**
      * Filename of the input source
      * @return
@@ -292,4 +397,99 @@ public class WarcImporter extends Thread implements Importer {
         return "";
     }
 
+    /**
+     * Reads the source in a separate thread ahead of the consumer. If the source is a GZIPInputStream,
+     * the decompression runs in this thread while the consumer parses the records.
+     */
+    private static class ReadAheadInputStream extends InputStream {
+
+        private static final byte[] EOF = new byte[0];
+
+        private final InputStream source;
+        private final BlockingQueue<byte[]> chunks;
+        private final Thread reader;
+        private volatile IOException error;
+        private byte[] chunk;
+        private int pos;
+        private boolean eof;
+
+        private ReadAheadInputStream(final InputStream source, final String name) {
+            this.source = source;
+            this.chunks = new ArrayBlockingQueue<>(CHUNKS);
+            this.error = null;
+            this.chunk = null;
+            this.pos = 0;
+            this.eof = false;
+            this.reader = new Thread(this::readAhead, "WarcImporter.readAhead " + name);
+            this.reader.setDaemon(true);
+            this.reader.start();
+        }
+
+        private void readAhead() {
+            try {
+                int n;
+                do {
+                    final byte[] b = new byte[CHUNK_SIZE];
+                    n = 0;
+                    int r;
+                    while (n < b.length && (r = this.source.read(b, n, b.length - n)) > 0) n += r;
+                    if (n > 0) this.chunks.put(n == b.length ? b : Arrays.copyOf(b, n));
+                } while (n == CHUNK_SIZE);
+            } catch (final IOException e) {
+                this.error = e;
+            } catch (final InterruptedException e) {
+                return; // closed
+            }
+            try {
+                this.chunks.put(EOF);
+            } catch (final InterruptedException e) {}
+        }
+
+        private boolean fill() throws IOException {
+            while (this.chunk == null || this.pos >= this.chunk.length) {
+                if (this.eof) return false;
+                try {
+                    this.chunk = this.chunks.take();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while reading " + this.reader.getName());
+                }
+                this.pos = 0;
+                if (this.chunk == EOF) {
+                    this.eof = true;
+                    if (this.error != null) throw this.error;
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!this.fill()) return -1;
+            return this.chunk[this.pos++] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) return 0;
+            if (!this.fill()) return -1;
+            final int n = Math.min(len, this.chunk.length - this.pos);
+            System.arraycopy(this.chunk, this.pos, b, off, n);
+            this.pos += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return this.chunk == null ? 0 : this.chunk.length - this.pos;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.reader.interrupt();
+            this.chunks.clear();
+            this.source.close();
+        }
+    }
 }
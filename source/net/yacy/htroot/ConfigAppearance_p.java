@@ -49,6 +49,7 @@ import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.kelondro.util.FileUtils;
 import net.yacy.search.Switchboard;
 import net.yacy.search.SwitchboardConstants;
+import net.yacy.server.http.TemplateEngine;
 import net.yacy.server.serverObjects;
 import net.yacy.server.serverSwitch;
 
@@ -175,6 +176,7 @@ public class ConfigAppearance_p {
         try {
             Files.copy(skinFile, styleFile);
             sb.setConfig("currentSkin", skin.substring(0, skin.length() - 4));
+            TemplateEngine.clearCache();
             return true;
         } catch (final IOException e) {
             return false;
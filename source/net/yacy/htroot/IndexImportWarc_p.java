@@ -22,6 +22,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
+import java.util.List;
 
 import net.yacy.cora.document.id.MultiProtocolURL;
 import net.yacy.cora.protocol.RequestHeader;
@@ -34,19 +35,31 @@ public class IndexImportWarc_p {
     public static serverObjects respond(@SuppressWarnings("unused") final RequestHeader header, final serverObjects post, @SuppressWarnings("unused") final serverSwitch env) {
         final serverObjects prop = new serverObjects();
 
-        if (WarcImporter.job != null && WarcImporter.job.isAlive()) {
-            // one import is running, no option to insert anything
+        final List<WarcImporter> jobs = WarcImporter.jobs();
+        if (!jobs.isEmpty()) {
+            // imports are running, no option to insert anything; the packs import may run several importers at once
+            final StringBuilder warcfiles = new StringBuilder();
+            int count = 0, speed = 0;
+            long runningTime = 0, remainingTime = 0;
+            for (final WarcImporter job: jobs) {
+                if (warcfiles.length() > 0) warcfiles.append(", ");
+                warcfiles.append(job.source());
+                count += job.count();
+                speed += job.speed();
+                runningTime = Math.max(runningTime, job.runningTime());
+                remainingTime = Math.max(remainingTime, job.remainingTime());
+            }
             prop.put("import", 1);
             prop.put("import_thread", "running");
-            prop.put("import_warcfile", WarcImporter.job.source());
-            prop.put("import_count", WarcImporter.job.count());
-            prop.put("import_speed", WarcImporter.job.speed());
-            prop.put("import_runningHours", (WarcImporter.job.runningTime() / 60) / 60);
-            prop.put("import_runningMinutes", (WarcImporter.job.runningTime() / 60) % 60);
-            prop.put("import_remainingHours", (WarcImporter.job.remainingTime() / 60) / 60);
-            prop.put("import_remainingMinutes", (WarcImporter.job.remainingTime() / 60) % 60);
+            prop.put("import_warcfile", warcfiles.toString());
+            prop.put("import_count", count);
+            prop.put("import_speed", speed);
+            prop.put("import_runningHours", (runningTime / 60) / 60);
+            prop.put("import_runningMinutes", (runningTime / 60) % 60);
+            prop.put("import_remainingHours", (remainingTime / 60) / 60);
+            prop.put("import_remainingMinutes", (remainingTime / 60) % 60);
             if (post != null && post.containsKey("abort")) {
-                WarcImporter.job.quit();
+                for (final WarcImporter job: jobs) job.quit();
             }
         } else {
             prop.put("import", 0);
@@ -25,6 +25,7 @@ import java.util.Iterator;
 
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.kelondro.workflow.WorkflowProcessor;
+import net.yacy.search.query.SearchExecutor;
 import net.yacy.server.serverObjects;
 import net.yacy.server.serverSwitch;
 
@@ -90,6 +91,23 @@ public class PerformanceConcurrency_p {
             c++;
         }
         prop.put("table", c);
+
+        // the shared pools of the search events
+        c = 0;
+        for (final SearchExecutor.Pool pool: SearchExecutor.Pool.values()) {
+            prop.put("search_" + c + "_poolname", pool.getName());
+            prop.putHTML("search_" + c + "_longdescr", pool.getDescription());
+            prop.put("search_" + c + "_queuesize", pool.getQueueSize());
+            prop.put("search_" + c + "_active", pool.getActiveCount());
+            prop.put("search_" + c + "_executors", pool.getPoolSize());
+            prop.put("search_" + c + "_concurrency", pool.getMaxPoolSize());
+            prop.putNum("search_" + c + "_completed", pool.getCompletedCount());
+            prop.putNum("search_" + c + "_expired", pool.getExpiredCount());
+            prop.putNum("search_" + c + "_cancelled", pool.getCancelledCount());
+            prop.put("search_" + c + "_class", pool.getQueueSize() == 0 ? 0 : pool.getActiveCount() < pool.getMaxPoolSize() ? 1 : 2);
+            c++;
+        }
+        prop.put("search", c);
         // return rewrite values for templates
         return prop;
     }
@@ -40,7 +40,10 @@ import net.yacy.kelondro.table.Table.TableStatistics;
 import net.yacy.kelondro.util.Formatter;
 import net.yacy.kelondro.util.MemoryControl;
 import net.yacy.search.Switchboard;
+import net.yacy.search.index.BatchIngest;
+import net.yacy.search.index.Fulltext;
 import net.yacy.search.query.SearchEventCache;
+import net.yacy.search.snippet.TextSnippet;
 import net.yacy.server.serverObjects;
 import net.yacy.server.serverSwitch;
 
@@ -205,18 +208,51 @@ public class PerformanceMemory_p {
         prop.putNum("namecacheHit.Hit", Domains.cacheHit_Hit);
         prop.putNum("namecacheHit.Miss", Domains.cacheHit_Miss);
         prop.putNum("namecacheHit.Insert", Domains.cacheHit_Insert);
+        putEvictions(prop, "namecacheHit.Delete", Domains.nameCacheHitEvictions());
         prop.putNum("namecacheMiss.size", Domains.nameCacheMissSize());
         prop.putNum("namecacheMiss.Hit", Domains.cacheMiss_Hit);
         prop.putNum("namecacheMiss.Miss", Domains.cacheMiss_Miss);
         prop.putNum("namecacheMiss.Insert", Domains.cacheMiss_Insert);
+        putEvictions(prop, "namecacheMiss.Delete", Domains.nameCacheMissEvictions());
         prop.putNum("namecache.noCache", Domains.nameCacheNoCachingPatternsSize());
+        prop.putNum("snippetcache.size", TextSnippet.snippetsCache.size());
+        prop.putNum("snippetcache.hit", TextSnippet.snippetsCache.hitCount());
+        prop.putNum("snippetcache.miss", TextSnippet.snippetsCache.missCount());
+        prop.putNum("snippetcache.insert", TextSnippet.snippetsCache.insertCount());
+        putEvictions(prop, "snippetcache.delete", TextSnippet.snippetsCache.evictionCount());
         prop.putNum("blacklistcache.size", Switchboard.urlBlacklist.blacklistCacheSize());
+        final long blacklistListed = Switchboard.urlBlacklist.matcherListed();
+        prop.putNum("blacklistmatcher.size", Switchboard.urlBlacklist.matcherSize());
+        prop.putNum("blacklistmatcher.listed", blacklistListed);
+        prop.putNum("blacklistmatcher.notlisted", Switchboard.urlBlacklist.matcherLookups() - blacklistListed);
+        prop.putNum("blacklistmatcher.time", Switchboard.urlBlacklist.matcherAverageLookupTime());
         prop.putNum("searchevent.size", SearchEventCache.size());
         prop.putNum("searchevent.hit", SearchEventCache.cacheHit);
         prop.putNum("searchevent.miss", SearchEventCache.cacheMiss);
         prop.putNum("searchevent.insert", SearchEventCache.cacheInsert);
         prop.putNum("searchevent.delete", SearchEventCache.cacheDelete);
+
+        // write table of the batches which are written to Solr
+        final Fulltext fulltext = ((Switchboard) env).index.fulltext();
+        c = 0;
+        for (final BatchIngest ingest: new BatchIngest[]{fulltext.getDocumentIngest(), fulltext.getEdgeIngest()}) {
+            prop.put("ingest_" + c + "_Name", ingest.getName());
+            prop.putNum("ingest_" + c + "_Buffered", ingest.size());
+            prop.putNum("ingest_" + c + "_Batches", ingest.getBatchCount());
+            prop.putNum("ingest_" + c + "_Documents", ingest.getDocumentCount());
+            prop.putNum("ingest_" + c + "_Failures", ingest.getFailureCount());
+            prop.putNum("ingest_" + c + "_WriteTime", ingest.getAverageWriteTime());
+            c++;
+        }
+        prop.put("ingest", c);
         // return rewrite values for templates
         return prop;
     }
+
+    /**
+     * show the evictions of a TinyLFUARC; a negative count marks a ConcurrentARC, which does not count them
+     */
+    private static void putEvictions(final serverObjects prop, final String key, final long evictions) {
+        if (evictions < 0) prop.put(key, "(ARC)"); else prop.put(key, Formatter.number(evictions) + " (TinyLFU)");
+    }
 }
@@ -47,6 +47,7 @@ import net.yacy.search.schema.CollectionSchema;
 import net.yacy.search.schema.WebgraphSchema;
 import net.yacy.server.serverObjects;
 import net.yacy.server.serverSwitch;
+import net.yacy.server.servletProperties;
 
 public class status_p {
 
@@ -56,7 +57,7 @@ public class status_p {
     public static serverObjects respond(@SuppressWarnings("unused") final RequestHeader header, final serverObjects post, final serverSwitch env) {
         // return variable that accumulates replacements
         final Switchboard sb = (Switchboard) env;
-        final serverObjects prop = new serverObjects();
+        final serverObjects prop = new servletProperties();
         final boolean html = post != null && post.containsKey("html");
         prop.setLocalized(html);
         final Segment segment = sb.index;
@@ -94,10 +95,11 @@ public class status_p {
         prop.putNum("citationSegmentCount", segment.citationSegmentCount());
         prop.putNum("rwipublictextSize", segment.RWICount());
         prop.putNum("rwipublictextSegmentCount", segment.RWISegmentCount());
+        prop.putNum("rwipublictextMergeDebt", segment.RWIMergeDebt());
 
         // loader queue
         prop.putNum("loaderSize", sb.crawlQueues.activeWorkerEntries().size());
-        prop.putNum("loaderMax", sb.getConfigLong(SwitchboardConstants.CRAWLER_THREADS_ACTIVE_MAX, 10));
+        prop.putNum("loaderMax", sb.getConfigLong(SwitchboardConstants.CRAWLER_LOADS_ACTIVE_MAX, 1000));
 
         //local crawl queue
         final BusyThread localCrawl = sb.getThread(SwitchboardConstants.CRAWLJOB_LOCAL_CRAWL);
@@ -85,6 +85,7 @@ import net.yacy.search.ranking.RankingProfile;
 import net.yacy.server.serverCore;
 import net.yacy.server.serverObjects;
 import net.yacy.server.serverSwitch;
+import net.yacy.server.servletProperties;
 import net.yacy.utils.crypt;
 
 public final class search {
@@ -94,7 +95,7 @@ public final class search {
         final Switchboard sb = (Switchboard) env;
         sb.remoteSearchLastAccess = System.currentTimeMillis();
 
-        final serverObjects prop = new serverObjects();
+        final serverObjects prop = new servletProperties();
         // set nice default values for error cases
         prop.put("searchtime", "0");
         prop.put("references", "");
@@ -74,6 +74,7 @@ import net.yacy.search.query.SearchEventType;
 import net.yacy.search.snippet.TextSnippet;
 import net.yacy.server.serverObjects;
 import net.yacy.server.serverSwitch;
+import net.yacy.server.servletProperties;
 import net.yacy.utils.crypt;
 import net.yacy.utils.nxTools;
 import net.yacy.visualization.ImageViewer;
@@ -97,7 +98,7 @@ public class yacysearchitem {
 		}
 
         final Switchboard sb = (Switchboard) env;
-        final serverObjects prop = new serverObjects();
+        final serverObjects prop = new servletProperties();
 
         final String eventID = post.get("eventID", "");
         final boolean adminAuthenticated = sb.verifyAuthentication(header);
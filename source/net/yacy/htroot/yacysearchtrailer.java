@@ -55,6 +55,7 @@ import net.yacy.search.query.SearchEventCache;
 import net.yacy.search.query.SearchEventType;
 import net.yacy.server.serverObjects;
 import net.yacy.server.serverSwitch;
+import net.yacy.server.servletProperties;
 
 
 public class yacysearchtrailer {
@@ -69,7 +70,7 @@ public class yacysearchtrailer {
             throw new TemplateMissingParameterException("The eventID parameter is required");
         }
 
-        final serverObjects prop = new serverObjects();
+        final serverObjects prop = new servletProperties();
         final Switchboard sb = (Switchboard) env;
         final String eventID = post.get("eventID", "");
 
@@ -0,0 +1,214 @@
+//  TemplateServletRegistry
+//  Copyright 2026 by YaCy contributors
+//  First released 18.10.2026 at https://yacy.net
+//
+//  This library is free software; you can redistribute it and/or
+//  modify it under the terms of the GNU Lesser General Public
+//  License as published by the Free Software Foundation; either
+//  version 2.1 of the License, or (at your option) any later version.
+//
+//  This library is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+//  Lesser General Public License for more details.
+//
+//  You should have received a copy of the GNU Lesser General Public License
+//  along with this program in the file lgpl21.txt
+//  If not, see <http://www.gnu.org/licenses/>.
+//
+package net.yacy.http.servlets;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import net.yacy.cora.protocol.RequestHeader;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.server.serverObjects;
+import net.yacy.server.serverSwitch;
+
+/**
+ * Registry of the servlet classes in the htroot package. The classes are found once when the
+ * registry is created; the static respond method of a class is bound to a {@link TemplateServlet}
+ * on first use, so that a request is a direct call instead of a reflective Method.invoke and a request
+ * for a static file does not cost a failed class lookup.
+ */
+public class TemplateServletRegistry {
+
+    public static final String HTROOT_PACKAGE = "net.yacy.htroot";
+
+    /**
+     * the static method respond(RequestHeader, serverObjects, serverSwitch) of a htroot servlet class
+     */
+    @FunctionalInterface
+    public interface TemplateServlet {
+        public Object respond(RequestHeader header, serverObjects post, serverSwitch env) throws Exception;
+    }
+
+    /** the number of target paths which are remembered, targets are chosen by the client */
+    private static final int MAX_TARGETS = 1000;
+
+    private static final MethodType RESPOND_TYPE = MethodType.methodType(Object.class, RequestHeader.class, serverObjects.class, serverSwitch.class);
+
+    /** class names of the htroot package, null if they could not be listed */
+    private final Set<String> classNames;
+    private final ClassLoader classLoader;
+    private final Map<String, TemplateServlet> servlets;
+    private final Map<String, TemplateServlet> targets;
+
+    public TemplateServletRegistry() {
+        this.classLoader = TemplateServletRegistry.class.getClassLoader();
+        this.classNames = listClasses(this.classLoader, HTROOT_PACKAGE);
+        this.servlets = new ConcurrentHashMap<>();
+        this.targets = new ConcurrentHashMap<>();
+        if (this.classNames == null) {
+            ConcurrentLog.warn("FILEHANDLER", "event=servlet.registry subsystem=http result=no-class-list package=" + HTROOT_PACKAGE + " fallback=class-lookup");
+        } else {
+            ConcurrentLog.info("FILEHANDLER", "event=servlet.registry subsystem=http result=success package=" + HTROOT_PACKAGE + " classes=" + this.classNames.size());
+        }
+    }
+
+    /**
+     * get the servlet for a target path
+     * @param target the path of the template within htroot, starting with a slash, i.e. "/api/status_p.xml"
+     * @return the servlet or null if the target has no servlet class
+     */
+    public TemplateServlet get(final String target) {
+        assert target.charAt(0) == '/';
+        TemplateServlet servlet = this.targets.get(target);
+        if (servlet != null) return servlet;
+        final int p = target.lastIndexOf('.');
+        if (p < 0) return null;
+        final String classname = HTROOT_PACKAGE + target.substring(0, p).replace('/', '.');
+        servlet = this.servlets.get(classname);
+        if (servlet == null) {
+            servlet = this.bind(classname);
+            if (servlet == null) servlet = this.bind(classname + "_"); // for some targets we need alternative names
+            if (servlet == null) return null;
+            this.servlets.put(classname, servlet);
+        }
+        if (this.targets.size() < MAX_TARGETS) this.targets.put(target, servlet);
+        return servlet;
+    }
+
+    /**
+     * @return the number of servlets which have been bound so far
+     */
+    public int size() {
+        return this.servlets.size();
+    }
+
+    private TemplateServlet bind(final String classname) {
+        if (this.classNames != null && !this.classNames.contains(classname)) return null;
+        final Class<?> servletClass;
+        try {
+            servletClass = Class.forName(classname, false, this.classLoader); // initialized by the first call
+        } catch (final ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+        final Method m;
+        try {
+            m = servletClass.getMethod("respond", RequestHeader.class, serverObjects.class, serverSwitch.class);
+        } catch (final NoSuchMethodException e) {
+            ConcurrentLog.severe("FILEHANDLER","YaCyDefaultServlet: method 'respond' not found in class " + servletClass.getName()  + ": " + e.getMessage());
+            return null;
+        }
+        if (!Modifier.isStatic(m.getModifiers())) return null;
+        try {
+            return bindRespond(m);
+        } catch (final ReflectiveOperationException e) {
+            ConcurrentLog.severe("FILEHANDLER", "YaCyDefaultServlet: method 'respond' cannot be called in class " + servletClass.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * bind a static respond method to a generated implementation of {@link TemplateServlet}
+     */
+    protected static TemplateServlet bindRespond(final Method m) throws IllegalAccessException {
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        final MethodHandle handle = lookup.unreflect(m);
+        try {
+            final CallSite site = LambdaMetafactory.metafactory(lookup, "respond", MethodType.methodType(TemplateServlet.class),
+                    RESPOND_TYPE, handle, RESPOND_TYPE);
+            return (TemplateServlet) site.getTarget().invoke();
+        } catch (final Throwable e) {
+            // the class cannot be linked to a generated class, i.e. because of a different class loader: call the method handle
+            final MethodHandle generic = handle.asType(RESPOND_TYPE);
+            return (header, post, env) -> {
+                try {
+                    return generic.invokeExact(header, post, env);
+                } catch (final Exception | Error ee) {
+                    throw ee;
+                } catch (final Throwable ee) {
+                    throw new Exception(ee);
+                }
+            };
+        }
+    }
+
+    /**
+     * list the top level classes of a package and its sub-packages in directories and jar files of the class path
+     * @return the fully qualified class names or null if the package could not be listed
+     */
+    protected static Set<String> listClasses(final ClassLoader classLoader, final String packageName) {
+        final String path = packageName.replace('.', '/');
+        final Set<String> classNames = new HashSet<>();
+        try {
+            final Enumeration<URL> urls = classLoader.getResources(path);
+            while (urls.hasMoreElements()) {
+                final URL url = urls.nextElement();
+                if ("file".equals(url.getProtocol())) {
+                    listClasses(new File(url.toURI()), packageName, classNames);
+                } else {
+                    final URLConnection connection = url.openConnection();
+                    if (!(connection instanceof JarURLConnection)) return null;
+                    connection.setUseCaches(false);
+                    try (final JarFile jar = ((JarURLConnection) connection).getJarFile()) {
+                        final Enumeration<JarEntry> entries = jar.entries();
+                        while (entries.hasMoreElements()) {
+                            final String name = entries.nextElement().getName();
+                            if (name.startsWith(path + "/") && name.endsWith(".class") && name.indexOf('$') < 0) {
+                                classNames.add(name.substring(0, name.length() - 6).replace('/', '.'));
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (final IOException | URISyntaxException | IllegalArgumentException e) {
+            ConcurrentLog.warn("FILEHANDLER", "event=servlet.registry subsystem=http result=list-failure package=" + packageName + " reason=" + e.getMessage());
+            return null;
+        }
+        return classNames.isEmpty() ? null : classNames;
+    }
+
+    private static void listClasses(final File dir, final String packageName, final Set<String> classNames) {
+        final File[] files = dir.listFiles();
+        if (files == null) return;
+        for (final File f: files) {
+            final String name = f.getName();
+            if (f.isDirectory()) {
+                listClasses(f, packageName + "." + name, classNames);
+            } else if (name.endsWith(".class") && name.indexOf('$') < 0) {
+                classNames.add(packageName + "." + name.substring(0, name.length() - 6));
+            }
+        }
+    }
+}
@@ -21,7 +21,6 @@ package net.yacy.http.servlets;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -31,9 +30,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Writer;
 import java.io.FilterOutputStream;
-import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
@@ -44,7 +41,6 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletContext;
@@ -67,12 +63,12 @@ import net.yacy.cora.protocol.Domains;
 import net.yacy.cora.protocol.HeaderFramework;
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.protocol.ResponseHeader;
-import net.yacy.cora.util.ByteBuffer;
 import net.yacy.cora.util.ChunkedBytes;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.data.BadTransactionException;
 import net.yacy.data.InvalidURLLicenceException;
 import net.yacy.data.TransactionManager;
+import net.yacy.http.servlets.TemplateServletRegistry.TemplateServlet;
 import net.yacy.kelondro.util.FileUtils;
 import net.yacy.kelondro.util.MemoryControl;
 import net.yacy.peers.Seed;
@@ -136,7 +132,7 @@ public class YaCyDefaultServlet extends HttpServlet  {
     protected File _htLocalePath;
     protected File _htDocsPath;
     protected static final serverClassLoader provider = new serverClassLoader(/*this.getClass().getClassLoader()*/);
-    protected ConcurrentHashMap<String, Method> templateMethodCache = null;
+    protected TemplateServletRegistry templateServlets = null;
     // settings for multipart/form-data
     protected static final File TMPDIR = new File(System.getProperty("java.io.tmpdir"));
     protected static final int SIZE_FILE_THRESHOLD = 1024 * 1024 * 1024; // 1GB is a lot but appropriate for multi-document pushed using the push_p.json servlet
@@ -175,7 +171,7 @@ public class YaCyDefaultServlet extends HttpServlet  {
         if (ConcurrentLog.isFine("FILEHANDLER")) {
             ConcurrentLog.fine("FILEHANDLER","YaCyDefaultServlet: resource base = " + this._resourceBase);
         }
-        this.templateMethodCache = new ConcurrentHashMap<>();
+        this.templateServlets = new TemplateServletRegistry();
     }
 
     protected boolean getInitBoolean(final String name, final boolean dft) {
@@ -256,8 +252,7 @@ public class YaCyDefaultServlet extends HttpServlet  {
             if (reqRanges == null && !endsWithSlash) {
                 final int p = pathInContext.lastIndexOf('.');
                 if (p >= 0) {
-                    final Method rewriteMethod = this.rewriteMethod(pathInContext);
-                    if (rewriteMethod != null) {
+                    if (this.templateServlets.get(pathInContext) != null) {
                         hasClass = true;
                     } else {
                         final String pathofClass = pathInContext.substring(0, p) + ".class";
@@ -747,10 +742,16 @@ public class YaCyDefaultServlet extends HttpServlet  {
         }
     }
 
-    protected Object invokeServlet(final Method targetMethod, final RequestHeader request, final serverObjects args) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+    /**
+     * call the respond method of a servlet
+     * @throws InvocationTargetException wrapping any exception thrown by the servlet, as a reflective call would do
+     */
+    protected Object invokeServlet(final TemplateServlet targetServlet, final RequestHeader request, final serverObjects args) throws InvocationTargetException {
         final serverSwitch.SaveConfigOrigin previousOrigin = serverSwitch.pushSaveConfigOriginUI();
         try {
-            return targetMethod.invoke(null, request, args, Switchboard.getSwitchboard()); // add switchboard
+            return targetServlet.respond(request, args, Switchboard.getSwitchboard()); // add switchboard
+        } catch (final Throwable e) {
+            throw new InvocationTargetException(e);
         } finally {
             serverSwitch.popSaveConfigOrigin(previousOrigin);
         }
@@ -841,48 +842,6 @@ public class YaCyDefaultServlet extends HttpServlet  {
         return this._resourceBase.addPath(path).getFile();
     }
 
-    private final Method rewriteMethod(final String target) {
-        assert target.charAt(0) == '/';
-
-        final Method cachedMethod = this.templateMethodCache.get(target);
-        if (cachedMethod != null) return cachedMethod;
-
-        final int p = target.lastIndexOf('.');
-        if (p < 0) {
-            return null;
-        }
-        final String classname = "net.yacy.htroot" + target.substring(0, p).replace('/', '.');
-        try {
-            final Class<?> servletClass = Class.forName(classname);
-            final Method rewriteMethod = rewriteMethod(servletClass);
-            this.templateMethodCache.put(target, rewriteMethod);
-            return rewriteMethod;
-        } catch (final ClassNotFoundException | InvocationTargetException e) {
-            try {
-                final Class<?> servletClass = Class.forName(classname + "_"); // for some targets we need alternative names
-                final Method rewriteMethod = rewriteMethod(servletClass);
-                this.templateMethodCache.put(target, rewriteMethod);
-                return rewriteMethod;
-            } catch (final ClassNotFoundException | InvocationTargetException ee) {
-                return null;
-            }
-        }
-    }
-
-    private final static Method rewriteMethod(final Class<?> rewriteClass) throws InvocationTargetException {
-        final Class<?>[] params = (Class<?>[]) Array.newInstance(Class.class, 3);
-        params[0] = RequestHeader.class;
-        params[1] = serverObjects.class;
-        params[2] = serverSwitch.class;
-        try {
-            final Method m = rewriteClass.getMethod("respond", params);
-            return m;
-        } catch (final NoSuchMethodException e) {
-            ConcurrentLog.severe("FILEHANDLER","YaCyDefaultServlet: method 'respond' not found in class " + rewriteClass.getName()  + ": " + e.getMessage());
-            throw new InvocationTargetException(e, "method 'respond' not found in class " + rewriteClass.getName()  + ": " + e.getMessage());
-        }
-    }
-
     /**
      * Handles a YaCy servlet template, reads the template and replaces the template
      * items with actual values. Because of supported server side includes target
@@ -907,7 +866,7 @@ public class YaCyDefaultServlet extends HttpServlet  {
             }
         }
         final File targetLocalizedFile = this.getLocalizedFile(target, localeSelection);
-        final Method targetMethod = this.rewriteMethod(target);
+        final TemplateServlet targetServlet = this.templateServlets.get(target);
         final String targetExt = target.substring(target.lastIndexOf('.') + 1);
 
         final long now = System.currentTimeMillis();
@@ -929,7 +888,7 @@ public class YaCyDefaultServlet extends HttpServlet  {
             response.setHeader(HeaderFramework.CORS_ALLOW_ORIGIN, "*");
         }
 
-        if (targetMethod != null) {
+        if (targetServlet != null) {
             final serverObjects args = new serverObjects();
             final Enumeration<String> argNames = request.getParameterNames(); // on ssi jetty dispatcher merged local ssi query parameters
             while (argNames.hasMoreElements()) {
@@ -947,9 +906,9 @@ public class YaCyDefaultServlet extends HttpServlet  {
             try {
                 if (args.isEmpty()) {
                     // yacy servlets typically test for args != null (but not for args .isEmpty())
-                    tmp = this.invokeServlet(targetMethod, legacyRequestHeader, null);
+                    tmp = this.invokeServlet(targetServlet, legacyRequestHeader, null);
                 } else {
-                    tmp = this.invokeServlet(targetMethod, legacyRequestHeader, args);
+                    tmp = this.invokeServlet(targetServlet, legacyRequestHeader, args);
                 }
             } catch(final InvocationTargetException e) {
                 if(e.getCause() instanceof InvalidURLLicenceException) {
@@ -977,9 +936,6 @@ public class YaCyDefaultServlet extends HttpServlet  {
                 }
                 ConcurrentLog.logException(e);
                 throw new ServletException(targetLocalizedFile.getAbsolutePath());
-            } catch (IllegalArgumentException | IllegalAccessException e) {
-                ConcurrentLog.logException(e);
-                throw new ServletException(targetLocalizedFile.getAbsolutePath());
             }
 
             if (tmp instanceof RasterPlotter || tmp instanceof EncodedImage || tmp instanceof Image) {
@@ -1140,39 +1096,25 @@ public class YaCyDefaultServlet extends HttpServlet  {
 
                 final String mimeType = Classification.ext2mime(targetExt, MIME_TEXT_HTML);
 
-                InputStream fis;
                 final long fileSize = targetLocalizedFile.length();
-
+                final TemplateEngine.Template template;
                 if (fileSize <= Math.min(4 * 1024 * 1204, MemoryControl.available() / 100)) {
-                    // read file completely into ram, avoid that too many files are open at the same time
-                    fis = new ByteArrayInputStream(FileUtils.read(targetLocalizedFile));
+                    // compiled templates are cached until the file changes
+                    template = TemplateEngine.getTemplate(targetLocalizedFile);
                 } else {
-                    fis = new BufferedInputStream(new FileInputStream(targetLocalizedFile));
+                    try (final InputStream fis = new BufferedInputStream(new FileInputStream(targetLocalizedFile))) {
+                        template = TemplateEngine.compileTemplate(targetLocalizedFile.getName(), fis);
+                    }
                 }
 
                 // set response header
                 response.setContentType(mimeType);
                 response.setStatus(HttpServletResponse.SC_OK);
-                final ByteArrayOutputStream bas = new ByteArrayOutputStream(4096);
-                try {
-                    // apply templates
-                    TemplateEngine.writeTemplate(targetLocalizedFile.getName(), fis, bas, templatePatterns);
-
-                    // handle SSI
-                    this.parseSSI (bas.toByteArray(),request,response);
-                } finally {
-                    try {
-                        fis.close();
-                    } catch(final IOException ignored) {
-                        ConcurrentLog.warn("FILEHANDLER", "YaCyDefaultServlet: could not close target file " + targetLocalizedFile.getName());
-                    }
 
-                    try {
-                        bas.close();
-                    } catch(final IOException ignored) {
-                        /* Should never happen with a ByteArrayOutputStream */
-                    }
-                }
+                // apply templates and handle SSI
+                final OutputStream out = response.getOutputStream();
+                template.write(targetLocalizedFile.getName(), out, templatePatterns, path -> this.includeSSI(path, out, request, response));
+                //DO NOT out.close(); because that would interrupt the server stream - it causes that the content is cut off from here on
             }
         }
     }
@@ -1265,38 +1207,19 @@ public class YaCyDefaultServlet extends HttpServlet  {
     }
 
     /**
-     * parse SSI line and include resource (<!--#include virtual="file.html" -->)
+     * include the resource of a SSI line (<!--#include virtual="file.html" -->)
      */
-    protected void parseSSI(final byte[] in, final HttpServletRequest request, final HttpServletResponse response) throws IOException, ServletException {
-        final ByteBuffer buffer = new ByteBuffer(in);
-        final OutputStream out = response.getOutputStream();
-        final byte[] inctxt ="<!--#include virtual=\"".getBytes();
-        int offset = 0;
-        int p = buffer.indexOf(inctxt, offset);
-        int end;
-        while (p >= 0 && (end = buffer.indexOf("-->".getBytes(), p + 24)) > 0 ) { // min length 24; <!--#include virtual="a"
-            out.write(in, offset, p - offset);
-            out.flush();
-            // find right end quote
-            final int rightquote = buffer.indexOf("\"".getBytes(), p + 23);
-            if (rightquote > 0 && rightquote < end) {
-                final String path = buffer.toString(p + 22, rightquote - p - 22);
-                final RequestDispatcher dispatcher = request.getRequestDispatcher(path);
-                try {
-                    dispatcher.include(request, response);
-                } catch (final IOException ex) {
-                    if (path.indexOf("yacysearch") < 0) ConcurrentLog.warn("FILEHANDLER", "YaCyDefaultServlet: parseSSI dispatcher problem - " + ex.getMessage() + ": " + path);
-                    // this is probably a time-out; it may occur during search requests; for search requests we consider that normal
-                }
-            } else {
-                ConcurrentLog.warn("FILEHANDLER", "YaCyDefaultServlet: parseSSI closing quote missing " + buffer.toString(p, end - p) + " in " + request.getPathInfo());
-            }
-            offset = end + 3; // after "-->"
-            p = buffer.indexOf(inctxt, offset);
+    private void includeSSI(final String path, final OutputStream out, final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        out.flush();
+        final RequestDispatcher dispatcher = request.getRequestDispatcher(path);
+        try {
+            dispatcher.include(request, response);
+        } catch (final IOException ex) {
+            if (path.indexOf("yacysearch") < 0) ConcurrentLog.warn("FILEHANDLER", "YaCyDefaultServlet: includeSSI dispatcher problem - " + ex.getMessage() + ": " + path);
+            // this is probably a time-out; it may occur during search requests; for search requests we consider that normal
+        } catch (final ServletException ex) {
+            throw new IOException(ex);
         }
-        out.write(in, offset, in.length - offset);
-        //DO NOT out.close(); because that would interrupt the server stream - it causes that the content is cut off from here on
-        buffer.close();
     }
 
     /**
@@ -31,10 +31,12 @@ import java.io.IOException;
 import java.lang.reflect.Array;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
@@ -51,7 +53,6 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import net.yacy.cora.date.GenericFormatter;
-import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.encoding.UTF8;
 import net.yacy.cora.order.ByteOrder;
 import net.yacy.cora.order.CloneableIterator;
@@ -59,12 +60,11 @@ import net.yacy.cora.order.NaturalOrder;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.LookAheadIterator;
 import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.io.IOBudget;
 import net.yacy.kelondro.rwi.Reference;
-import net.yacy.kelondro.rwi.ReferenceContainer;
 import net.yacy.kelondro.rwi.ReferenceFactory;
-import net.yacy.kelondro.rwi.ReferenceIterator;
+import net.yacy.kelondro.rwi.ReferenceMerger;
 import net.yacy.kelondro.util.FileUtils;
-import net.yacy.kelondro.util.MemoryControl;
 import net.yacy.kelondro.util.MergeIterator;
 import net.yacy.kelondro.util.NamePrefixThreadFactory;
 
@@ -87,6 +87,28 @@ public class ArrayStack implements BLOB {
     private static final long maxFileSize = Integer.MAX_VALUE;
     public  static final long oneMonth    = 1000L * 60L * 60L * 24L * 365L / 12L;
 
+    /**
+     * read access for sealed BLOB files, which are all files that are not used for write operations:
+     * MONITOR    - all reads are serialized with the index monitor and the shared file pointer
+     * POSITIONAL - reads are done concurrently with positional reads
+     * MAPPED     - reads are done concurrently from a memory-mapped file
+     */
+    public enum SealedReadMode {
+        MONITOR, POSITIONAL, MAPPED;
+
+        public static SealedReadMode parse(final String mode) {
+            if (mode == null) return MONITOR;
+            try {
+                return SealedReadMode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+            } catch (final IllegalArgumentException e) {
+                ConcurrentLog.warn("KELONDRO", "ArrayStack: unknown sealed read mode '" + mode + "', using " + MONITOR);
+                return MONITOR;
+            }
+        }
+    }
+
+    public static SealedReadMode sealedReadMode = SealedReadMode.MONITOR;
+
     private       int            keylength;
     private       ByteOrder      ordering;
     private final File           heapLocation;
@@ -208,6 +230,7 @@ public class ArrayStack implements BLOB {
                        } else {
                            oneBlob = new HeapModifier(f, keylength, ordering);
                            oneBlob.optimize(); // no writings here, can be used with minimum memory
+                           openSealed(oneBlob);
                        }
                        sortedItems.put(Long.valueOf(time), new blobItem(d, f, oneBlob));
                    } catch (final IOException e) {
@@ -263,10 +286,23 @@ public class ArrayStack implements BLOB {
         } else {
             oneBlob = new HeapModifier(location, this.keylength, this.ordering);
             oneBlob.optimize();
+            openSealed(oneBlob);
         }
         this.blobs.add(new blobItem(d, location, oneBlob));
     }
 
+    /**
+     * open the key filter and the concurrent read access for a BLOB that is not used for write operations
+     * according to the sealedReadMode
+     * @param blob
+     */
+    private static void openSealed(final BLOB blob) {
+        if (blob instanceof Heap || !(blob instanceof HeapReader)) return; // a Heap has a write buffer and appends to its file
+        ((HeapReader) blob).openKeyFilter();
+        if (sealedReadMode == SealedReadMode.MONITOR) return;
+        ((HeapReader) blob).openSealedAccess(sealedReadMode == SealedReadMode.MAPPED);
+    }
+
     private synchronized void unmountBLOB(final File location, final boolean writeIDX) {
         blobItem b;
         for (int i = 0; i < this.blobs.size(); i++) {
@@ -291,38 +327,87 @@ public class ArrayStack implements BLOB {
         return f;
     }
 
-    public synchronized File[] unmountBestMatch(final float maxq, long maxResultSize) {
-    	if (this.blobs.size() < 2) return null;
-        long l, r, m;
-        File lf, rf;
-        float min = Float.MAX_VALUE;
-        final File[] bestMatch = new File[2];
-        maxResultSize = maxResultSize >> 1;
-    	int loopcount = 0;
-        mainloop: for (int i = 0; i < this.blobs.size() - 1; i++) {
-            for (int j = i + 1; j < this.blobs.size(); j++) {
-                loopcount++;
-            	lf = this.blobs.get(i).location;
-            	rf = this.blobs.get(j).location;
-            	m = this.blobs.get(i).blob.mem();
-            	m += this.blobs.get(j).blob.mem();
-                l = 1 + (lf.length() >> 1);
-                r = 1 + (rf.length() >> 1);
-                if (l + r > maxResultSize) continue;
-                if (!MemoryControl.request(m, true)) continue;
-                final float q = Math.max((float) l, (float) r) / Math.min((float) l, (float) r);
-                if (q < min) {
-                    min = q;
-                    bestMatch[0] = lf;
-                    bestMatch[1] = rf;
-                }
-                if (loopcount > 1000 && min <= maxq && min != Float.MAX_VALUE) break mainloop;
+    /**
+     * size tier of a BLOB file for the size-tiered merge policy: all files smaller than the base size
+     * are in tier 0, larger files are in tier 1 + log2(length / baseSize). Files within the same tier
+     * differ in size by less than factor two, so a merge of two files of a tier produces a file of
+     * the next tier and each entry is rewritten only once per tier.
+     * @param length the file length
+     * @param baseSize the upper size limit of tier 0
+     * @return the tier number
+     */
+    private static int sizeTier(final long length, final long baseSize) {
+        if (length < baseSize) return 0;
+        return 64 - Long.numberOfLeadingZeros(length / baseSize);
+    }
+
+    /**
+     * compute the merge candidates of the size-tiered merge policy
+     * @param baseSize the upper size limit of tier 0
+     * @param maxResultSize the maximum size of a merge result
+     * @return the files of each tier in ascending size order, the lowest tier first
+     */
+    private TreeMap<Integer, List<File>> sizeTiers(final long baseSize, final long maxResultSize) {
+        final TreeMap<Integer, List<File>> tiers = new TreeMap<Integer, List<File>>();
+        for (final blobItem bi: this.blobs) {
+            final File f = bi.location;
+            if (f == null) continue;
+            final long l = f.length();
+            if (l >= maxResultSize) continue; // this file is finished
+            final Integer tier = Integer.valueOf(sizeTier(l, baseSize));
+            List<File> files = tiers.get(tier);
+            if (files == null) {
+                files = new ArrayList<File>();
+                tiers.put(tier, files);
+            }
+            files.add(f);
+        }
+        for (final List<File> files: tiers.values()) {
+            files.sort((a, b) -> Long.compare(a.length(), b.length()));
+        }
+        return tiers;
+    }
+
+    /**
+     * unmount two files for a merge according to the size-tiered policy: the two smallest files
+     * from the lowest tier which has at least two files and where the merge result does not exceed
+     * the maximum result size.
+     * @param baseSize the upper size limit of tier 0
+     * @param maxResultSize the maximum size of the merge result
+     * @return the two unmounted files or null if there is no merge candidate
+     */
+    public synchronized File[] unmountSizeTiered(final long baseSize, final long maxResultSize) {
+        if (this.blobs.size() < 2) return null;
+        for (final List<File> files: sizeTiers(baseSize, maxResultSize).values()) {
+            if (files.size() < 2) continue;
+            final File f0 = files.get(0);
+            final File f1 = files.get(1);
+            if (f0.length() + f1.length() > maxResultSize) continue;
+            unmountBLOB(f1, false);
+            unmountBLOB(f0, false);
+            return new File[]{f0, f1};
+        }
+        return null;
+    }
+
+    /**
+     * compute the merge debt of the size-tiered policy: the number of bytes in files that are
+     * merge candidates but have not been merged yet.
+     * @param baseSize the upper size limit of tier 0
+     * @param maxResultSize the maximum size of a merge result
+     * @return the number of bytes which are waiting to be merged
+     */
+    public synchronized long mergeDebt(final long baseSize, final long maxResultSize) {
+        if (this.blobs.size() < 2) return 0;
+        long debt = 0;
+        for (final List<File> files: sizeTiers(baseSize, maxResultSize).values()) {
+            for (int i = 0; i + 1 < files.size(); i += 2) {
+                final long l = files.get(i).length() + files.get(i + 1).length();
+                if (l > maxResultSize) break;
+                debt += l;
             }
         }
-        if (min > maxq) return null;
-        unmountBLOB(bestMatch[1], false);
-        unmountBLOB(bestMatch[0], false);
-        return bestMatch;
+        return debt;
     }
 
     public synchronized File unmountOldest() {
@@ -554,7 +639,7 @@ public class ArrayStack implements BLOB {
      * @throws IOException
      */
     @Override
-    public synchronized boolean containsKey(final byte[] key) {
+    public boolean containsKey(final byte[] key) {
     	final blobItem bi = keeperOf(key);
     	return bi != null;
         //for (blobItem bi: blobs) if (bi.blob.has(key)) return true;
@@ -568,21 +653,25 @@ public class ArrayStack implements BLOB {
      * @return the blobItem that holds the key or null if no blobItem is found
      */
     private blobItem keeperOf(final byte[] key) {
-        if (this.blobs.isEmpty()) return null;
-        if (this.blobs.size() == 1) {
-            final blobItem bi = this.blobs.get(0);
-            if (bi.blob.containsKey(key)) return bi;
+        // work on a snapshot because this is not synchronized and blobs may be mounted and unmounted concurrently
+        final List<blobItem> blobs = this.blobs;
+        if (blobs == null) return null;
+        final blobItem[] snapshot = candidates(blobs.toArray(new blobItem[0]), key);
+        if (snapshot.length == 0) return null;
+        if (snapshot.length == 1) {
+            final blobItem bi = snapshot[0];
+            if (contains(bi, key)) return bi;
             return null;
         }
 
         // first check the current blob only because that has most probably the key if any has that key
-        int bs1 = this.blobs.size() - 1;
-        blobItem bi = this.blobs.get(bs1);
-        if (bi.blob.containsKey(key)) return bi;
-        if (this.blobs.size() == 2) {
+        int bs1 = snapshot.length - 1;
+        blobItem bi = snapshot[bs1];
+        if (contains(bi, key)) return bi;
+        if (snapshot.length == 2) {
             // this should not be done concurrently
-            bi = this.blobs.get(0);
-            if (bi.blob.containsKey(key)) return bi;
+            bi = snapshot[0];
+            if (contains(bi, key)) return bi;
             return null;
         }
 
@@ -590,12 +679,12 @@ public class ArrayStack implements BLOB {
         final CompletionService<blobItem> cs = new ExecutorCompletionService<blobItem>(this.executor);
         int accepted = 0;
         for (int i = 0; i < bs1; i++) {
-            final blobItem b = this.blobs.get(i);
+            final blobItem b = snapshot[i];
             try {
                 cs.submit(new Callable<blobItem>() {
                     @Override
                     public blobItem call() {
-                        if (b.blob.containsKey(key)) return b;
+                        if (contains(b, key)) return b;
                         return null;
                     }
                 });
@@ -603,7 +692,7 @@ public class ArrayStack implements BLOB {
             } catch (final RejectedExecutionException e) {
                 // the executor is either shutting down or the blocking queue is full
                 // execute the search direct here without concurrency
-                if (b.blob.containsKey(key)) return b;
+                if (contains(b, key)) return b;
             }
         }
 
@@ -631,6 +720,27 @@ public class ArrayStack implements BLOB {
         return null;
     }
 
+    /**
+     * remove all items from a snapshot which cannot hold the key according to their key filter
+     * @param snapshot
+     * @param key
+     * @return the items which may hold the key, in the same order
+     */
+    private static blobItem[] candidates(final blobItem[] snapshot, final byte[] key) {
+        int c = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            final BLOB blob = snapshot[i].blob;
+            if (blob == null || (blob instanceof HeapReader && !((HeapReader) blob).mightContain(key))) continue;
+            snapshot[c++] = snapshot[i];
+        }
+        return c == snapshot.length ? snapshot : Arrays.copyOf(snapshot, c);
+    }
+
+    private static boolean contains(final blobItem bi, final byte[] key) {
+        final BLOB blob = bi.blob;
+        return blob != null && blob.containsKey(key); // blob is null if the item was unmounted concurrently
+    }
+
     /**
      * retrieve the whole BLOB from the table
      * @param key  the primary key
@@ -646,7 +756,9 @@ public class ArrayStack implements BLOB {
         }
 
         final blobItem bi = keeperOf(key);
-    	return (bi == null) ? null : bi.blob.get(key);
+        if (bi == null) return null;
+        final BLOB blob = bi.blob;
+    	return (blob == null) ? null : blob.get(key);
 
     	/*
     	byte[] b;
@@ -719,10 +831,13 @@ public class ArrayStack implements BLOB {
      * @throws IOException
      */
     @Override
-    public synchronized long length(final byte[] key) throws IOException {
+    public long length(final byte[] key) throws IOException {
         long l;
-        for (final blobItem bi: this.blobs) {
-            l = bi.blob.length(key);
+        BLOB blob;
+        for (final blobItem bi: this.blobs) { // the iterator of the CopyOnWriteArrayList works on a snapshot
+            blob = bi.blob;
+            if (blob == null) continue;
+            l = blob.length(key);
             if (l >= 0) return l;
         }
         return -1;
@@ -766,6 +881,59 @@ public class ArrayStack implements BLOB {
         }
     }
 
+    /**
+     * get the first bytes of all BLOBs for a given key
+     * @param key
+     * @param n the maximum number of bytes of each BLOB
+     * @return an iteration of the heads of all BLOBs which exist for the key
+     * @throws IOException
+     */
+    public Iterable<byte[]> headAll(final byte[] key, final int n) throws IOException {
+        return new BlobHeads(key, n);
+    }
+
+    private class BlobHeads extends LookAheadIterator<byte[]> {
+
+        private final Iterator<blobItem> bii;
+        private final byte[] key;
+        private final int n;
+
+        public BlobHeads(final byte[] key, final int n) {
+            this.bii = ArrayStack.this.blobs.iterator();
+            this.key = key;
+            this.n = n;
+        }
+
+        @Override
+        protected byte[] next0() {
+            while (this.bii.hasNext()) {
+                final BLOB b = this.bii.next().blob;
+                if (b == null) continue;
+                try {
+                    byte[] head;
+                    if (b instanceof HeapReader) {
+                        head = ((HeapReader) b).head(this.key, this.n);
+                    } else {
+                        head = b.get(this.key);
+                        if (head != null && head.length > this.n) {
+                            final byte[] h = new byte[this.n];
+                            System.arraycopy(head, 0, h, 0, this.n);
+                            head = h;
+                        }
+                    }
+                    if (head != null) return head;
+                } catch (final IOException e) {
+                    ConcurrentLog.severe("KELONDRO", "ArrayStack", e);
+                    return null;
+                } catch (final SpaceExceededException e) {
+                    ConcurrentLog.severe("KELONDRO", "ArrayStack", e);
+                    return null;
+                }
+            }
+            return null;
+        }
+    }
+
     /**
      * retrieve the sizes of all BLOB
      * @param key
@@ -923,10 +1091,26 @@ public class ArrayStack implements BLOB {
     public File mergeMount(final File f1, final File f2,
             final ReferenceFactory<? extends Reference> factory,
             final File newFile, final int writeBuffer) {
+        return mergeMount(f1, f2, factory, newFile, writeBuffer, null);
+    }
+
+    /**
+     * merge two blob files into one with a limited write rate.
+     * @param f1
+     * @param f2 (may also be null)
+     * @param factory
+     * @param newFile
+     * @param writeBuffer
+     * @param budget the write budget for the new file, or null for no limitation
+     * @return the target file where the given files are merged in
+     */
+    public File mergeMount(final File f1, final File f2,
+            final ReferenceFactory<? extends Reference> factory,
+            final File newFile, final int writeBuffer, final IOBudget budget) {
         if (f2 == null) {
             // this is a rewrite
             ConcurrentLog.info("KELONDRO", "BLOBArray: rewrite of " + f1.getName());
-            final File resultFile = rewriteWorker(factory, this.keylength, this.ordering, f1, newFile, writeBuffer);
+            final File resultFile = rewriteWorker(factory, this.keylength, this.ordering, f1, newFile, writeBuffer, budget);
             if (resultFile == null) {
                 ConcurrentLog.warn("KELONDRO", "BLOBArray: rewrite of file " + f1 + " returned null. newFile = " + newFile);
                 return null;
@@ -941,7 +1125,7 @@ public class ArrayStack implements BLOB {
             return resultFile;
         }
         ConcurrentLog.info("KELONDRO", "BLOBArray: merging " + f1.getName() + " with " + f2.getName());
-        final File resultFile = mergeWorker(factory, this.keylength, this.ordering, f1, f2, newFile, writeBuffer);
+        final File resultFile = mergeWorker(factory, this.keylength, this.ordering, f1, f2, newFile, writeBuffer, budget);
         if (resultFile == null) {
             ConcurrentLog.warn("KELONDRO", "BLOBArray: merge of files " + f1 + ", " + f2 + " returned null. newFile = " + newFile);
             return null;
@@ -958,87 +1142,72 @@ public class ArrayStack implements BLOB {
 
     private static <ReferenceType extends Reference> File mergeWorker(
                     final ReferenceFactory<ReferenceType> factory,
-                    final int keylength, final ByteOrder order, final File f1, final File f2, final File newFile, final int writeBuffer) {
-        // iterate both files and write a new one
-        ReferenceIterator<ReferenceType> i1 = null;
+                    final int keylength, final ByteOrder order, final File f1, final File f2, final File newFile, final int writeBuffer, final IOBudget budget) {
+        // if one of the files is empty, the other one is the result
+        final boolean e1, e2;
         try {
-            i1 = new ReferenceIterator<ReferenceType>(f1, factory);
-            ReferenceIterator<ReferenceType> i2 = null;
-            try {
-                i2 = new ReferenceIterator<ReferenceType>(f2, factory);
-                if (!i1.hasNext()) {
-                    if (i2.hasNext()) {
-                        HeapWriter.delete(f1);
-                        if (f2.renameTo(newFile)) return newFile;
-                        return f2;
-                    }
-                    HeapWriter.delete(f1);
-                    HeapWriter.delete(f2);
-                    return null;
-                } else if (!i2.hasNext()) {
-                    HeapWriter.delete(f2);
-                    if (f1.renameTo(newFile)) return newFile;
-                    return f1;
-                }
-                assert i1.hasNext();
-                assert i2.hasNext();
-                final File tmpFile = new File(newFile.getParentFile(), newFile.getName() + ".prt");
-                try {
-                    final HeapWriter writer = new HeapWriter(tmpFile, newFile, keylength, order, writeBuffer);
-                    merge(i1, i2, order, writer);
-                    writer.close(true);
-                } catch (final IOException e) {
-                    ConcurrentLog.severe("KELONDRO", "ArrayStack: cannot writing or close writing merge, newFile = " + newFile.toString() + ", tmpFile = " + tmpFile.toString() + ": " + e.getMessage(), e);
-                    HeapWriter.delete(tmpFile);
-                    HeapWriter.delete(newFile);
-                    return null;
-                } catch (final SpaceExceededException e) {
-                    ConcurrentLog.severe("KELONDRO", "ArrayStack: cannot merge because of memory failure: " + e.getMessage(), e);
-                    HeapWriter.delete(tmpFile);
-                    HeapWriter.delete(newFile);
-                    return null;
-                }
-                // we don't need the old files any more
-                HeapWriter.delete(f1);
+            e1 = isEmpty(f1, factory);
+            e2 = isEmpty(f2, factory);
+        } catch (final IOException e) {
+            ConcurrentLog.severe("KELONDRO", "ArrayStack: cannot merge because input files cannot be read, f1 = " + f1.toString() + ", f2 = " + f2.toString() + ": " + e.getMessage(), e);
+            return null;
+        }
+        if (e1) {
+            HeapWriter.delete(f1);
+            if (e2) {
                 HeapWriter.delete(f2);
-                return newFile;
-            } catch (final IOException e) {
-                ConcurrentLog.severe("KELONDRO", "ArrayStack: cannot merge because input files cannot be read, f2 = " + f2.toString() + ": " + e.getMessage(), e);
                 return null;
-            } finally {
-                if (i2 != null) i2.close();
             }
+            if (f2.renameTo(newFile)) return newFile;
+            return f2;
+        } else if (e2) {
+            HeapWriter.delete(f2);
+            if (f1.renameTo(newFile)) return newFile;
+            return f1;
+        }
+
+        // iterate both files and write a new one
+        final File tmpFile = new File(newFile.getParentFile(), newFile.getName() + ".prt");
+        try {
+            final HeapWriter writer = new HeapWriter(tmpFile, newFile, keylength, order, writeBuffer, budget);
+            ReferenceMerger.merge(new File[]{f1, f2}, factory, order, writer);
+            writer.close(true);
         } catch (final IOException e) {
-            ConcurrentLog.severe("KELONDRO", "ArrayStack: cannot merge because input files cannot be read, f1 = " + f1.toString() + ": " + e.getMessage(), e);
+            ConcurrentLog.severe("KELONDRO", "ArrayStack: cannot writing or close writing merge, newFile = " + newFile.toString() + ", tmpFile = " + tmpFile.toString() + ": " + e.getMessage(), e);
+            HeapWriter.delete(tmpFile);
+            HeapWriter.delete(newFile);
+            return null;
+        } catch (final SpaceExceededException e) {
+            ConcurrentLog.severe("KELONDRO", "ArrayStack: cannot merge because of memory failure: " + e.getMessage(), e);
+            HeapWriter.delete(tmpFile);
+            HeapWriter.delete(newFile);
             return null;
-        } finally {
-            if (i1 != null) i1.close();
         }
+        // we don't need the old files any more
+        HeapWriter.delete(f1);
+        HeapWriter.delete(f2);
+        return newFile;
     }
 
     private static <ReferenceType extends Reference> File rewriteWorker(
             final ReferenceFactory<ReferenceType> factory,
-            final int keylength, final ByteOrder order, final File f, final File newFile, final int writeBuffer) {
-        // iterate both files and write a new one
-
-        CloneableIterator<ReferenceContainer<ReferenceType>> i = null;
+            final int keylength, final ByteOrder order, final File f, final File newFile, final int writeBuffer, final IOBudget budget) {
         try {
-            i = new ReferenceIterator<ReferenceType>(f, factory);
+            if (isEmpty(f, factory)) {
+                FileUtils.deletedelete(f);
+                return null;
+            }
         } catch (final IOException e) {
             ConcurrentLog.severe("KELONDRO", "ArrayStack: cannot rewrite because input file cannot be read, f = " + f.toString() + ": " + e.getMessage(), e);
             return null;
         }
-        if (!i.hasNext()) {
-            FileUtils.deletedelete(f);
-            return null;
-        }
-        assert i.hasNext();
+
+        // a merge with only one file shrinks the containers and writes them again
         final File tmpFile = new File(newFile.getParentFile(), newFile.getName() + ".prt");
         try {
-            final HeapWriter writer = new HeapWriter(tmpFile, newFile, keylength, order, writeBuffer);
-            rewrite(i, order, writer);
+            final HeapWriter writer = new HeapWriter(tmpFile, newFile, keylength, order, writeBuffer, budget);
+            ReferenceMerger.merge(new File[]{f}, factory, order, writer);
             writer.close(true);
-            i.close();
         } catch (final IOException e) {
             ConcurrentLog.severe("KELONDRO", "ArrayStack: cannot writing or close writing rewrite, newFile = " + newFile.toString() + ", tmpFile = " + tmpFile.toString() + ": " + e.getMessage(), e);
             FileUtils.deletedelete(tmpFile);
@@ -1055,129 +1224,13 @@ public class ArrayStack implements BLOB {
         return newFile;
     }
 
-    private static <ReferenceType extends Reference> void merge(
-            final CloneableIterator<ReferenceContainer<ReferenceType>> i1,
-            final CloneableIterator<ReferenceContainer<ReferenceType>> i2,
-            final ByteOrder ordering, final HeapWriter writer) throws IOException, SpaceExceededException {
-        assert i1.hasNext();
-        assert i2.hasNext();
-        byte[] c1lh, c2lh;
-        ReferenceContainer<ReferenceType> c1, c2;
-        c1 = i1.next();
-        c2 = i2.next();
-        int e, s;
-        while (true) {
-            assert c1 != null;
-            assert c2 != null;
-            e = ordering.compare(c1.getTermHash(), c2.getTermHash());
-            if (e < 0) {
-            	s = c1.shrinkReferences();
-            	if (s > 0) ConcurrentLog.info("KELONDRO", "ArrayStack: shrinking index for " + ASCII.String(c1.getTermHash()) + " by " + s + " to " + c1.size() + " entries");
-                writer.add(c1.getTermHash(), c1.exportCollection());
-                if (i1.hasNext()) {
-                    c1lh = c1.getTermHash();
-                    c1 = i1.next();
-                    assert ordering.compare(c1.getTermHash(), c1lh) > 0;
-                    continue;
-                }
-                c1 = null;
-                break;
-            }
-            if (e > 0) {
-                s = c2.shrinkReferences();
-                if (s > 0) ConcurrentLog.info("KELONDRO", "ArrayStack: shrinking index for " + ASCII.String(c2.getTermHash()) + " by " + s + " to " + c2.size() + " entries");
-                writer.add(c2.getTermHash(), c2.exportCollection());
-                if (i2.hasNext()) {
-                    c2lh = c2.getTermHash();
-                    c2 = i2.next();
-                    assert ordering.compare(c2.getTermHash(), c2lh) > 0;
-                    continue;
-                }
-                c2 = null;
-                break;
-            }
-            assert e == 0;
-            // merge the entries
-            c1 = c1.merge(c2);
-            s = c1.shrinkReferences();
-            if (s > 0) ConcurrentLog.info("KELONDRO", "ArrayStack: shrinking index for " + ASCII.String(c1.getTermHash()) + " by " + s + " to " + c1.size() + " entries");
-            writer.add(c1.getTermHash(), c1.exportCollection());
-            c1lh = c1.getTermHash();
-            c2lh = c2.getTermHash();
-            if (i1.hasNext() && i2.hasNext()) {
-                c1 = i1.next();
-                assert ordering.compare(c1.getTermHash(), c1lh) > 0;
-                c2 = i2.next();
-                assert ordering.compare(c2.getTermHash(), c2lh) > 0;
-                continue;
-            }
-            c1 = null;
-            c2 = null;
-            if (i1.hasNext()) {
-                c1 = i1.next();
-                assert ordering.compare(c1.getTermHash(), c1lh) > 0;
-            }
-            if (i2.hasNext()) {
-                c2 = i2.next();
-                assert ordering.compare(c2.getTermHash(), c2lh) > 0;
-            }
-            break;
-
-        }
-        // catch up remaining entries
-        assert !(i1.hasNext() && i2.hasNext());
-        assert (c1 == null) || (c2 == null);
-        while (c1 != null) {
-            //System.out.println("FLUSH REMAINING 1: " + c1.getWordHash());
-            s = c1.shrinkReferences();
-            if (s > 0) ConcurrentLog.info("KELONDRO", "ArrayStack: shrinking index for " + ASCII.String(c1.getTermHash()) + " by " + s + " to " + c1.size() + " entries");
-            writer.add(c1.getTermHash(), c1.exportCollection());
-            if (i1.hasNext()) {
-                c1lh = c1.getTermHash();
-                c1 = i1.next();
-                assert ordering.compare(c1.getTermHash(), c1lh) > 0;
-            } else {
-                c1 = null;
-            }
-        }
-        while (c2 != null) {
-            //System.out.println("FLUSH REMAINING 2: " + c2.getWordHash());
-            s = c2.shrinkReferences();
-            if (s > 0) ConcurrentLog.info("KELONDRO", "ArrayStack: shrinking index for " + ASCII.String(c2.getTermHash()) + " by " + s + " to " + c2.size() + " entries");
-            writer.add(c2.getTermHash(), c2.exportCollection());
-            if (i2.hasNext()) {
-                c2lh = c2.getTermHash();
-                c2 = i2.next();
-                assert ordering.compare(c2.getTermHash(), c2lh) > 0;
-            } else {
-                c2 = null;
-            }
-        }
-        // finished with writing
-    }
-
-    private static <ReferenceType extends Reference> void rewrite(
-            final CloneableIterator<ReferenceContainer<ReferenceType>> i,
-            final ByteOrder ordering, final HeapWriter writer) throws IOException, SpaceExceededException {
-        assert i.hasNext();
-        byte[] clh;
-        ReferenceContainer<ReferenceType> c;
-        c = i.next();
-        int s;
-        while (true) {
-            assert c != null;
-            s = c.shrinkReferences();
-            if (s > 0) ConcurrentLog.info("KELONDRO", "ArrayStack: shrinking index for " + ASCII.String(c.getTermHash()) + " by " + s + " to " + c.size() + " entries");
-            writer.add(c.getTermHash(), c.exportCollection());
-            if (i.hasNext()) {
-                clh = c.getTermHash();
-                c = i.next();
-                assert ordering.compare(c.getTermHash(), clh) > 0;
-                continue;
-            }
-            break;
+    private static boolean isEmpty(final File f, final ReferenceFactory<? extends Reference> factory) throws IOException {
+        final HeapRecordReader reader = new HeapRecordReader(f, factory.getRow().primaryKeyLength);
+        try {
+            return !reader.next();
+        } finally {
+            reader.close();
         }
-        // finished with writing
     }
 
     public static void main(final String[] args) {
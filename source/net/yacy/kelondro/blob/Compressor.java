@@ -36,6 +36,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
@@ -46,12 +47,22 @@ import net.yacy.cora.order.CloneableIterator;
 import net.yacy.cora.util.ByteArray;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.util.LZ4;
 import net.yacy.kelondro.util.MemoryControl;
 
 
 public class Compressor implements BLOB, Iterable<byte[]> {
 
+    /** the codec used to compress new entries; stored entries are decompressed according to their magic */
+    public enum Codec {
+        /** deflate with the configured compression level */
+        GZIP,
+        /** LZ4 block format, much faster but compresses less */
+        LZ4
+    }
+
     private static byte[] gzipMagic  = {(byte) 'z', (byte) '|'}; // magic for gzip-encoded content
+    private static byte[] lz4Magic   = {(byte) 'l', (byte) '|'}; // magic for lz4-encoded content, followed by the 4 byte length of the plain content
     private static byte[] plainMagic = {(byte) 'p', (byte) '|'}; // magic for plain content (no encoding)
 
     private final BLOB backend;
@@ -59,7 +70,10 @@ public class Compressor implements BLOB, Iterable<byte[]> {
     /** entries which are not yet compressed, format is RAW (without magic) */
     private TreeMap<byte[], byte[]> buffer;
     
-    /** Total size (in bytes) of uncompressed entries in buffer */
+    /** entries which are compressed by the writer thread right now, format is RAW (without magic) */
+    private TreeMap<byte[], byte[]> writing;
+    
+    /** Total size (in bytes) of uncompressed entries in buffer and writing */
     private volatile long bufferlength;
     
     /** Maximum {@link #bufferlength} value before compressing and flushing to the backend */
@@ -68,11 +82,31 @@ public class Compressor implements BLOB, Iterable<byte[]> {
     /** Maximum time (in milliseconds) to acquire a synchronization lock on get() and insert() */
     private volatile long lockTimeout;
     
-    /** Synchronization lock */
+    /** Synchronization lock of the buffers */
     private final ReentrantLock lock;
     
+    /** Orders the changes of the backend; taken before the lock of the buffers, never while holding it */
+    private final ReentrantLock backendLock;
+    
     /** The compression level */
     private volatile int compressionLevel;
+    
+    /** The codec for new entries */
+    private volatile Codec codec;
+    
+    /** signals the writer thread that the buffer is more than half full or that an insert waits for room */
+    private final Condition flushRequested;
+    
+    /** signals the inserts which wait for room in the buffer that the writer thread has written an entry */
+    private final Condition spaceAvailable;
+    
+    /** number of inserts which wait for room in the buffer */
+    private int spaceWaiters;
+    
+    /** the thread which compresses buffered entries and writes them to the backend */
+    private final Thread writer;
+    
+    private volatile boolean terminate;
 
     /**
      * @param backend the backend storage
@@ -85,9 +119,80 @@ public class Compressor implements BLOB, Iterable<byte[]> {
         this.maxbufferlength = buffersize;
         this.lockTimeout = lockTimeout;
         this.lock = new ReentrantLock();
+        this.backendLock = new ReentrantLock();
         /* Ensure a value within the range supported by the Deflater class */
         this.compressionLevel = Math.max(Deflater.NO_COMPRESSION, Math.min(Deflater.BEST_COMPRESSION, compressionLevel));
+        this.codec = Codec.GZIP;
         initBuffer();
+        this.flushRequested = this.lock.newCondition();
+        this.spaceAvailable = this.lock.newCondition();
+        this.spaceWaiters = 0;
+        this.terminate = false;
+        this.writer = new Thread("Compressor.writer " + backend.name()) {
+            @Override
+            public void run() {
+                writeBehind();
+            }
+        };
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Compress the entries of the buffer and write them to the backend while the buffer is more than half full
+     * or an insert waits for room. The compression and the backend write are done without holding the lock of
+     * the buffers, so that get() and insert() are not blocked by them. An entry stays readable in the writing
+     * queue until it is in the backend.
+     */
+    private void writeBehind() {
+        while (!this.terminate) {
+            final Map.Entry<byte[], byte[]> entry;
+            this.lock.lock();
+            try {
+                while (!this.terminate && (this.buffer.isEmpty() || (this.bufferlength <= this.maxbufferlength / 2 && this.spaceWaiters == 0))) {
+                    this.flushRequested.await();
+                }
+                if (this.terminate) return;
+                entry = this.buffer.pollFirstEntry();
+                this.writing.put(entry.getKey(), entry.getValue());
+            } catch (final InterruptedException e) {
+                return;
+            } finally {
+                this.lock.unlock();
+            }
+            final byte[] compressed = compress(entry.getValue(), this.compressionLevel, this.codec);
+            this.backendLock.lock();
+            try {
+                // the entry may have been deleted, replaced or flushed meanwhile
+                if (this.isWriting(entry)) {
+                    this.backend.delete(entry.getKey());
+                    this.backend.insert(entry.getKey(), compressed);
+                }
+            } catch (final IOException e) {
+                ConcurrentLog.logException(e);
+            } finally {
+                this.backendLock.unlock();
+            }
+            this.lock.lock();
+            try {
+                if (this.writing.get(entry.getKey()) == entry.getValue()) {
+                    this.writing.remove(entry.getKey());
+                    this.bufferlength -= entry.getValue().length;
+                }
+                this.spaceAvailable.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    private boolean isWriting(final Map.Entry<byte[], byte[]> entry) {
+        this.lock.lock();
+        try {
+            return this.writing.get(entry.getKey()) == entry.getValue();
+        } finally {
+            this.lock.unlock();
+        }
     }
 
     @Override
@@ -107,17 +212,24 @@ public class Compressor implements BLOB, Iterable<byte[]> {
 
     @Override
     public void clear() throws IOException {
-    	this.lock.lock();
+    	this.backendLock.lock();
     	try {
-    		initBuffer();
+    		this.lock.lock();
+    		try {
+    			initBuffer();
+    			this.spaceAvailable.signalAll();
+    		} finally {
+    			this.lock.unlock();
+    		}
     		this.backend.clear();
     	} finally {
-    		this.lock.unlock();
+    		this.backendLock.unlock();
     	}
     }
 
     private void initBuffer() {
         this.buffer = new TreeMap<byte[], byte[]>(this.backend.ordering());
+        this.writing = new TreeMap<byte[], byte[]>(this.backend.ordering());
         this.bufferlength = 0;
     }
 
@@ -128,24 +240,49 @@ public class Compressor implements BLOB, Iterable<byte[]> {
 
     @Override
     public void close(final boolean writeIDX) {
-    	this.lock.lock();
+        this.terminate = true;
+        this.lock.lock();
+        try {
+            this.flushRequested.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+        try {
+            this.writer.join(10000);
+        } catch (final InterruptedException e) {
+        }
+    	this.backendLock.lock();
     	try {
     		// no more thread is running, flush all queues
     		flushAll();
     		this.backend.close(writeIDX);
     	} finally {
-    		this.lock.unlock();
+    		this.backendLock.unlock();
     	}
     }
 
-    private static byte[] compress(final byte[] b, final int compressionLevel) {
+    private static byte[] compress(final byte[] b, final int compressionLevel, final Codec codec) {
         final int l = b.length;
         if (l < 100) return markWithPlainMagic(b);
-        final byte[] bb = compressAddMagic(b, compressionLevel);
-        if (bb.length >= l) return markWithPlainMagic(b);
+        final byte[] bb = codec == Codec.LZ4 ? compressLZ4AddMagic(b) : compressAddMagic(b, compressionLevel);
+        if (bb == null || bb.length >= l) return markWithPlainMagic(b);
         return bb;
     }
 
+    private static byte[] compressLZ4AddMagic(final byte[] b) {
+        final byte[] c = new byte[6 + LZ4.maxCompressedLength(b.length)];
+        c[0] = lz4Magic[0];
+        c[1] = lz4Magic[1];
+        c[2] = (byte) (b.length >>> 24);
+        c[3] = (byte) (b.length >>> 16);
+        c[4] = (byte) (b.length >>> 8);
+        c[5] = (byte) b.length;
+        final int length = LZ4.compress(b, 0, b.length, c, 6);
+        final byte[] r = new byte[6 + length];
+        System.arraycopy(c, 0, r, 0, r.length);
+        return r;
+    }
+
     private static byte[] compressAddMagic(final byte[] b, final int compressionLevel) {
         // compress a byte array and add a leading magic for the compression
         try {
@@ -198,6 +335,14 @@ public class Compressor implements BLOB, Iterable<byte[]> {
                 ConcurrentLog.logException(e);
                 return null;
             }
+        } else if (ByteArray.startsWith(b, lz4Magic)) {
+            final int length = ((b[2] & 0xff) << 24) | ((b[3] & 0xff) << 16) | ((b[4] & 0xff) << 8) | (b[5] & 0xff);
+            try {
+                return LZ4.decompress(b, 6, b.length - 6, length);
+            } catch (final IOException e) {
+                ConcurrentLog.logException(e);
+                return null;
+            }
         } else if (ByteArray.startsWith(b, plainMagic)) {
             //System.out.print("-"); // DEBUG
             final byte[] r = new byte[b.length - 2];
@@ -211,8 +356,7 @@ public class Compressor implements BLOB, Iterable<byte[]> {
 
     @Override
     public byte[] get(final byte[] key) throws IOException, SpaceExceededException {
-        // depending on the source of the result, we additionally do entry compression
-        // because if a document was read once, we think that it will not be retrieved another time again soon
+        // entries which are not yet written are returned from the buffer, the writer thread compresses them later
         byte[] b = null;
         boolean locked = false;
         try {
@@ -223,12 +367,9 @@ public class Compressor implements BLOB, Iterable<byte[]> {
 		}
         if(locked) {
         	try {
-        		b = this.buffer.remove(key);
-        		if (b != null) {
-        			this.bufferlength = this.bufferlength - b.length;
-           			this.backend.insert(key, compress(b, this.compressionLevel));
-        			return b;
-        		}
+        		b = this.buffer.get(key);
+        		if (b == null) b = this.writing.get(key);
+        		if (b != null) return b;
         	} finally {
         		this.lock.unlock();
         	}
@@ -262,10 +403,12 @@ public class Compressor implements BLOB, Iterable<byte[]> {
     public boolean containsKey(final byte[] key) {
         this.lock.lock();
         try {
-            return this.buffer.containsKey(key) || this.backend.containsKey(key);
+            if (this.buffer.containsKey(key) || this.writing.containsKey(key)) return true;
         } finally {
         	this.lock.unlock();
         }
+        // an entry leaves the writing queue only after it was written to the backend
+        return this.backend.containsKey(key);
     }
 
     @Override
@@ -275,38 +418,38 @@ public class Compressor implements BLOB, Iterable<byte[]> {
 
     @Override
     public long length() {
-        this.lock.lock();
         try {
             return this.backend.length() + this.bufferlength;
         } catch (final IOException e) {
             ConcurrentLog.logException(e);
             return 0;
-        } finally {
-        	this.lock.unlock();
         }
     }
 
     @Override
     public long length(final byte[] key) throws IOException {
+        byte[] b;
         this.lock.lock();
         try {
-            byte[] b = this.buffer.get(key);
+            b = this.buffer.get(key);
+            if (b == null) b = this.writing.get(key);
             if (b != null) return b.length;
-            try {
-                b = this.backend.get(key);
-                if (b == null) return 0;
-                b = decompress(b);
-                return (b == null) ? 0 : b.length;
-            } catch (final SpaceExceededException e) {
-                throw new IOException(e.getMessage());
-            }
         } finally {
         	this.lock.unlock();
         }
+        try {
+            b = this.backend.get(key);
+            if (b == null) return 0;
+            b = decompress(b);
+            return (b == null) ? 0 : b.length;
+        } catch (final SpaceExceededException e) {
+            throw new IOException(e.getMessage());
+        }
     }
 
     private int removeFromQueues(final byte[] key) {
-        final byte[] b = this.buffer.remove(key);
+        byte[] b = this.buffer.remove(key);
+        if (b == null) b = this.writing.remove(key);
         if (b != null) return b.length;
         return 0;
     }
@@ -321,29 +464,60 @@ public class Compressor implements BLOB, Iterable<byte[]> {
 			ConcurrentLog.fine("KELONDRO", "Compressor: Interrupted while acquiring a synchronzation lock on insert()");
 		}
     	if(locked) {
+    		boolean inline = false;
     		try {
-    			// first ensure that the files do not exist anywhere
-    			delete(key);
-
-    			// check if the buffer is full or could be full after this write
-    			if (this.bufferlength + b.length * 2 > this.maxbufferlength) {
-    				// in case that we compress, just compress as much as is necessary to get enough room
-    				while (this.bufferlength + b.length * 2 > this.maxbufferlength) {
-    					if (this.buffer.isEmpty()) break;
-    					flushOne();
+    			// if the writer thread cannot keep up with the inserts, wait until it has made room;
+    			// an entry which is larger than the buffer is accepted when the buffer is empty
+    			long nanos = TimeUnit.MILLISECONDS.toNanos(this.lockTimeout);
+    			while (this.bufferlength > 0 && this.bufferlength + b.length > this.maxbufferlength) {
+    				if (nanos <= 0) {
+    					// no room within the timeout: write the entry in this thread, an older queued entry must not overwrite it
+    					ConcurrentLog.fine("KELONDRO", "Compressor: Could not get room in the buffer for insertion within " + this.lockTimeout + " milliseconds, writing inline");
+    					final long rx = removeFromQueues(key);
+    					if (rx > 0) this.bufferlength -= rx;
+    					inline = true;
+    					break;
+    				}
+    				this.spaceWaiters++;
+    				try {
+    					this.flushRequested.signal();
+    					nanos = this.spaceAvailable.awaitNanos(nanos);
+    				} finally {
+    					this.spaceWaiters--;
     				}
-    				// in case that this was not enough, just flush all
-    				if (this.bufferlength + b.length * 2 > this.maxbufferlength) flushAll();
     			}
 
-    			// files are written uncompressed to the uncompressed-queue
-    			// they are either written uncompressed to the database
-    			// or compressed later
-   				this.buffer.put(key, b);
-   				this.bufferlength += b.length;
+    			if (!inline) {
+    				// an older entry which is not yet written is replaced;
+    				// the writer thread replaces the entry in the backend
+    				final long rx = removeFromQueues(key);
+    				if (rx > 0) this.bufferlength -= rx;
+
+    				// files are written uncompressed to the uncompressed-queue
+    				// and compressed later by the writer thread
+    				this.buffer.put(key, b);
+    				this.bufferlength += b.length;
+    				if (this.bufferlength > this.maxbufferlength / 2) this.flushRequested.signal();
+    			}
+    		} catch (final InterruptedException e) {
+    			/* When interrupted, simply nothing is inserted */
+    			ConcurrentLog.fine("KELONDRO", "Compressor: Interrupted while waiting for room in the buffer on insert()");
+    			return;
     		} finally {
     			this.lock.unlock();
     		}
+
+    		if (inline) {
+    			final byte[] compressed = compress(b, this.compressionLevel, this.codec);
+    			this.backendLock.lock();
+    			try {
+    				this.backend.delete(key);
+    				this.backend.insert(key, compressed);
+    			} finally {
+    				this.backendLock.unlock();
+    			}
+    			return;
+    		}
     		
     		if (MemoryControl.shortStatus()) {
     			flushAll();
@@ -355,57 +529,67 @@ public class Compressor implements BLOB, Iterable<byte[]> {
 
     @Override
     public void delete(final byte[] key) throws IOException {
-    	this.lock.lock();
+    	this.backendLock.lock();
     	try {
+    		this.lock.lock();
+    		try {
+    			final long rx = removeFromQueues(key);
+    			if (rx > 0) {
+    				this.bufferlength -= rx;
+    				this.spaceAvailable.signalAll();
+    			}
+    		} finally {
+    			this.lock.unlock();
+    		}
     		this.backend.delete(key);
-    		final long rx = removeFromQueues(key);
-    		if (rx > 0) this.bufferlength -= rx;
     	} finally {
-    		this.lock.unlock();
+    		this.backendLock.unlock();
     	}
     }
 
     @Override
     public int size() {
+    	final int queued;
     	this.lock.lock();
     	try {
-    		return this.backend.size() + this.buffer.size();
+    		queued = this.buffer.size() + this.writing.size();
     	} finally {
     		this.lock.unlock();
     	}
+    	return this.backend.size() + queued;
     }
 
     @Override
     public boolean isEmpty() {
     	this.lock.lock();
     	try {
-    		if (!this.backend.isEmpty()) return false;
     		if (!this.buffer.isEmpty()) return false;
-    		return true;
+    		if (!this.writing.isEmpty()) return false;
     	} finally {
     		this.lock.unlock();
     	}
+    	return this.backend.isEmpty();
     }
 
     @Override
     public CloneableIterator<byte[]> keys(final boolean up, final boolean rotating) throws IOException {
-    	this.lock.lock();
+    	this.backendLock.lock();
     	try {
     		flushAll();
     		return this.backend.keys(up, rotating);
     	} finally {
-    		this.lock.unlock();
+    		this.backendLock.unlock();
     	}
     }
 
     @Override
     public CloneableIterator<byte[]> keys(final boolean up, final byte[] firstKey) throws IOException {
-    	this.lock.lock();
+    	this.backendLock.lock();
     	try {
     		flushAll();
     		return this.backend.keys(up, firstKey);
     	} finally {
-    		this.lock.unlock();
+    		this.backendLock.unlock();
     	}
     }
 
@@ -422,10 +606,10 @@ public class Compressor implements BLOB, Iterable<byte[]> {
     private boolean flushOne() {
         if (this.buffer.isEmpty()) return false;
         // depending on process case, write it to the file or compress it to the other queue
-        final Map.Entry<byte[], byte[]> entry = this.buffer.entrySet().iterator().next();
-        this.buffer.remove(entry.getKey());
+        final Map.Entry<byte[], byte[]> entry = this.buffer.pollFirstEntry();
         try {
-            this.backend.insert(entry.getKey(), compress(entry.getValue(), this.compressionLevel));
+            this.backend.delete(entry.getKey());
+            this.backend.insert(entry.getKey(), compress(entry.getValue(), this.compressionLevel, this.codec));
             this.bufferlength -= entry.getValue().length;
             return true;
         } catch (final IOException e) {
@@ -434,16 +618,30 @@ public class Compressor implements BLOB, Iterable<byte[]> {
         }
     }
 
+    /**
+     * write all buffered entries to the backend in the calling thread
+     */
     public void flushAll() {
-    	this.lock.lock();
+    	this.backendLock.lock();
     	try {
-    		while (!this.buffer.isEmpty()) {
-    			if (!flushOne()) {
-    				break;
+    		this.lock.lock();
+    		try {
+    			// the entries which the writer thread is compressing are written here, the writer skips them then
+    			for (final Map.Entry<byte[], byte[]> entry: this.writing.entrySet()) {
+    				this.buffer.put(entry.getKey(), entry.getValue());
+    			}
+    			this.writing.clear();
+    			while (!this.buffer.isEmpty()) {
+    				if (!flushOne()) {
+    					break;
+    				}
     			}
+    			this.spaceAvailable.signalAll();
+    		} finally {
+    			this.lock.unlock();
     		}
     	} finally {
-    		this.lock.unlock();
+    		this.backendLock.unlock();
     	}
     }
 
@@ -480,6 +678,14 @@ public class Compressor implements BLOB, Iterable<byte[]> {
         this.compressionLevel = Math.max(Deflater.NO_COMPRESSION, Math.min(Deflater.BEST_COMPRESSION, compressionLevel));
     }
     
+    /**
+     * Set the codec for new entries. Entries which are already stored keep their codec.
+     * @param codec the new codec
+     */
+    public void setCodec(final Codec codec) {
+        this.codec = codec;
+    }
+    
     /**
      * Set the new synchronization lock timeout.
      * @param lockTimeout the new synchronization lock timeout (in milliseconds).
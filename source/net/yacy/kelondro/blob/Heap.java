@@ -342,6 +342,11 @@ public final class Heap extends HeapModifier implements BLOB {
         super.clear();
     }
 
+    @Override
+    protected boolean extendable() {
+        return true;
+    }
+
     /**
      * close the BLOB table
      */
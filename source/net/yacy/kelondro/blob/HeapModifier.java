@@ -64,6 +64,7 @@ public class HeapModifier extends HeapReader implements BLOB {
      */
     @Override
     public synchronized void clear() throws IOException {
+        closeSealedAccess();
         this.index.clear();
         this.free.clear();
         this.file.close();
@@ -78,7 +79,8 @@ public class HeapModifier extends HeapReader implements BLOB {
      */
     @Override
     public synchronized void close(boolean writeIDX) {
-        shrinkWithGapsAtEnd();
+        // a mapped file must not be truncated while a reader may still access the mapping
+        if (!isMapped()) shrinkWithGapsAtEnd();
         super.close(writeIDX);
     }
 
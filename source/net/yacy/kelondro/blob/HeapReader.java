@@ -26,9 +26,14 @@ package net.yacy.kelondro.blob;
 
 import java.io.BufferedInputStream;
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
@@ -46,6 +51,8 @@ import net.yacy.cora.storage.HandleMap;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.LookAheadIterator;
 import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.index.BloomFilter;
+import net.yacy.kelondro.index.PackedHandleMap;
 import net.yacy.kelondro.index.RowHandleMap;
 import net.yacy.kelondro.io.CachedFileWriter;
 import net.yacy.kelondro.io.Writer;
@@ -58,6 +65,9 @@ public class HeapReader {
 
     //public final static long keepFreeMem = 20 * 1024 * 1024;
 
+    /** the size of key filters of sealed heap files in bits per key; 0 switches the filters off */
+    public static int keyFilterBitsPerKey = 10;
+
 	private final static ConcurrentLog log = new ConcurrentLog("KELONDRO");
 
     // input values
@@ -70,8 +80,14 @@ public class HeapReader {
     protected HandleMap          index;      // key/seek relation for used records
     protected Gap                free;       // set of {seek, size} pairs denoting space and position of free records
     private   File               fingerprintFileIdx, fingerprintFileGap; // files with dumped indexes. Will be deleted if file is written
+    private   File               fingerprintFileFilter; // file with a dumped key filter, belongs to the dumped index
+    private volatile BloomFilter keyFilter;  // filter of all keys for heap files that are not extended any more, null if not opened
     private   Date               closeDate;  // records a time when the file was closed; used for debugging
 
+    // optional read access for sealed heap files which does not use the shared file pointer
+    private volatile FileChannel readChannel; // positional read access to the heap file, null if not opened
+    private volatile ByteBuffer  readMap;     // read-only mapping of the heap file, null if not mapped
+
     public HeapReader(
             final File heapFile,
             final int keylength,
@@ -88,6 +104,8 @@ public class HeapReader {
         // read or initialize the index
         this.fingerprintFileIdx = null;
         this.fingerprintFileGap = null;
+        this.fingerprintFileFilter = null;
+        this.keyFilter = null;
         if (initIndexReadDump()) {
             // verify that everything worked just fine
             // pick some elements of the index
@@ -172,11 +190,15 @@ public class HeapReader {
             deleteAllFingerprints(this.heapFile, this.fingerprintFileIdx.getName(), this.fingerprintFileGap.getName());
             return false;
         }
+        this.fingerprintFileFilter = HeapWriter.fingerprintFilterFile(this.heapFile, fingerprint);
 
         // there is an index and a gap file:
         // read the index file:
         try {
-            this.index = new RowHandleMap(this.keylength, this.ordering, 8, this.fingerprintFileIdx);
+            // the index of a heap that is not extended is loaded with one read into a packed array
+            this.index = extendable() ?
+                    new RowHandleMap(this.keylength, this.ordering, 8, this.fingerprintFileIdx) :
+                    new PackedHandleMap(this.keylength, this.ordering, 8, this.fingerprintFileIdx);
         } catch (final IOException e) {
             ConcurrentLog.logException(e);
             return false;
@@ -187,10 +209,10 @@ public class HeapReader {
 
         // check saturation
         if (this.index instanceof RowHandleMap) {
-        int[] saturation = ((RowHandleMap) this.index).saturation(); // {<the maximum length of consecutive equal-beginning bytes in the key>, <the minimum number of leading zeros in the second column>}
-        log.info("HeapReader: saturation of " + this.fingerprintFileIdx.getName() + ": keylength = " + saturation[0] + ", vallength = " + saturation[1] + ", size = " + this.index.size() +
-                    ", maximum saving for index-compression = " + (saturation[0] * this.index.size() / 1024 / 1024) + " MB" +
-                    ", exact saving for value-compression = " + (saturation[1] * this.index.size() / 1024 / 1024) + " MB");
+            int[] saturation = ((RowHandleMap) this.index).saturation(); // {<the maximum length of consecutive equal-beginning bytes in the key>, <the minimum number of leading zeros in the second column>}
+            log.info("HeapReader: saturation of " + this.fingerprintFileIdx.getName() + ": keylength = " + saturation[0] + ", vallength = " + saturation[1] + ", size = " + this.index.size() +
+                        ", maximum saving for index-compression = " + (saturation[0] * this.index.size() / 1024 / 1024) + " MB" +
+                        ", exact saving for value-compression = " + (saturation[1] * this.index.size() / 1024 / 1024) + " MB");
         }
 
         // read the gap file:
@@ -220,6 +242,55 @@ public class HeapReader {
             FileUtils.deletedelete(this.fingerprintFileGap);
             this.fingerprintFileGap = null;
         }
+        if (this.fingerprintFileFilter != null) {
+            FileUtils.deletedelete(this.fingerprintFileFilter);
+            this.fingerprintFileFilter = null;
+        }
+    }
+
+    /**
+     * load or compute a filter of all keys in this heap. Lookups of keys which are not in the filter
+     * are answered without asking the index. Keys must never be added to the heap after this, so this must
+     * only be used for heap files which are not extended any more; removals are not a problem.
+     * @return true if the filter is available
+     */
+    public synchronized boolean openKeyFilter() {
+        if (this.keyFilter != null) return true;
+        if (keyFilterBitsPerKey <= 0 || this.index == null) return false;
+        if (this.fingerprintFileFilter != null && this.fingerprintFileFilter.exists()) {
+            try {
+                this.keyFilter = new BloomFilter(this.fingerprintFileFilter);
+                return true;
+            } catch (final IOException e) {
+                log.warn("HeapReader: cannot read key filter " + this.fingerprintFileFilter.getName() + ", computing a new one: " + e.getMessage());
+                FileUtils.deletedelete(this.fingerprintFileFilter);
+            }
+        }
+        final BloomFilter filter;
+        synchronized (this.index) {
+            filter = BloomFilter.of(this.index.keys(true, null), this.index.size(), keyFilterBitsPerKey);
+        }
+        this.keyFilter = filter;
+
+        // store the filter together with the index dump, if the dump is still valid
+        if (this.fingerprintFileFilter != null && this.fingerprintFileIdx != null && this.fingerprintFileIdx.exists()) {
+            try {
+                filter.dump(this.fingerprintFileFilter);
+            } catch (final IOException e) {
+                log.warn("HeapReader: cannot write key filter " + this.fingerprintFileFilter.getName() + ": " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * test if a key may be in the heap. This is true if no key filter is open.
+     * @param key
+     * @return false if the key is surely not in the heap
+     */
+    public boolean mightContain(final byte[] key) {
+        final BloomFilter filter = this.keyFilter;
+        return filter == null || filter.mightContain(normalizeKey(key));
     }
 
     protected static String fingerprintFileHash(File f) {
@@ -242,7 +313,8 @@ public class HeapReader {
             if (l[i].endsWith(".idx") ||
                 l[i].endsWith(".gap") ||
                 l[i].endsWith(".idx.gz") ||
-                l[i].endsWith(".gap.gz")
+                l[i].endsWith(".gap.gz") ||
+                l[i].endsWith(".blm")
                ) FileUtils.deletedelete(new File(d, l[i]));
         }
     }
@@ -313,6 +385,25 @@ public class HeapReader {
         	ConcurrentLog.logException(e);
         }
         log.info("HeapReader: finished index generation for " + this.heapFile.toString() + ", " + this.index.size() + " entries, " + this.free.size() + " gaps.");
+
+        // replace the index by a packed copy if this heap is not extended
+        if (!extendable() && this.index != null) {
+            try {
+                final HandleMap packed = PackedHandleMap.of(this.keylength, this.ordering, this.index);
+                this.index.close();
+                this.index = packed;
+            } catch (final SpaceExceededException e) {
+                log.warn("HeapReader: not enough memory to pack the index of " + this.heapFile.getName() + ", keeping the row index");
+            }
+        }
+    }
+
+    /**
+     * heap files which are only read, reduced or deleted hold their index in a packed, read-optimized structure
+     * @return true if entries may be appended to this heap
+     */
+    protected boolean extendable() {
+        return false;
     }
 
     private void mergeFreeEntries() throws IOException {
@@ -387,6 +478,11 @@ public class HeapReader {
             return false;
         }
         key = normalizeKey(key);
+        final BloomFilter filter = this.keyFilter;
+        if (filter != null && !filter.mightContain(key)) return false;
+
+        // sealed files are read without the monitor; the index is thread-safe on its own
+        if (this.readChannel != null) return this.index.get(key) >= 0;
 
         synchronized (this.index) {
             // check if the file index contains the key
@@ -488,6 +584,11 @@ public class HeapReader {
             return null;
         }
         key = normalizeKey(key);
+        final BloomFilter filter = this.keyFilter;
+        if (filter != null && !filter.mightContain(key)) return null;
+
+        final HandleMap sealedIndex = this.index;
+        if (this.readChannel != null && sealedIndex != null) return getSealed(sealedIndex, key);
 
         synchronized (this.index) {
             // check if the index contains the key
@@ -549,6 +650,57 @@ public class HeapReader {
         }
     }
 
+    /**
+     * read a blob from a sealed heap file. This does not synchronize on the index and does not move
+     * the shared file pointer; the record is read with positional reads or from the mapped file.
+     * @param sealedIndex the index of this heap
+     * @param key the normalized key
+     * @return the blob or null if the key does not exist
+     * @throws IOException
+     * @throws SpaceExceededException
+     */
+    private byte[] getSealed(final HandleMap sealedIndex, final byte[] key) throws IOException, SpaceExceededException {
+        final long pos = sealedIndex.get(key);
+        if (pos < 0) return null;
+
+        // read the record length and the key with a single access
+        final byte[] head = new byte[4 + this.keylength];
+        readFullyAt(head, pos);
+        final int len = readInt(head) - this.keylength;
+        if (len < 0) {
+            log.severe("HeapReader: file " + this.heapFile + " corrupted at " + pos + ": negative len. len = " + len + ", pk.len = " + this.keylength);
+            sealedIndex.remove(key);
+            return null;
+        }
+        if (!this.ordering.equal(key, 0, head, 4, this.keylength)) {
+            // a concurrent deletion fills the record with zeros; that is not a corruption
+            if (head[4] == 0) return null;
+            log.severe("HeapReader: indexed verification access failed for " + this.heapFile.toString());
+            sealedIndex.remove(key);
+            return null;
+        }
+        long memr = len + this.keylength + 64;
+        if (MemoryControl.available() < memr) {
+            if (!MemoryControl.request(memr, true)) throw new SpaceExceededException(memr, "HeapReader.getSealed()/check"); // not enough memory available for this blob
+        }
+
+        // read the blob
+        byte[] blob;
+        try {
+            blob = new byte[len];
+        } catch (final OutOfMemoryError e) {
+            // try once again after GC
+            MemoryControl.gc(1000, "HeapReader.getSealed()/blob");
+            try {
+                blob = new byte[len];
+            } catch (final OutOfMemoryError ee) {
+                throw new SpaceExceededException(len, "HeapReader.getSealed()/blob");
+            }
+        }
+        readFullyAt(blob, pos + 4 + this.keylength);
+        return blob;
+    }
+
     public byte[] get(Object key) {
         if (!(key instanceof byte[])) return null;
         try {
@@ -585,6 +737,16 @@ public class HeapReader {
             return 0;
         }
         key = normalizeKey(key);
+        final BloomFilter filter = this.keyFilter;
+        if (filter != null && !filter.mightContain(key)) return -1;
+
+        if (this.readChannel != null) {
+            final long pos = this.index.get(key);
+            if (pos < 0) return -1;
+            final byte[] reclen = new byte[4];
+            readFullyAt(reclen, pos);
+            return readInt(reclen) - this.keylength;
+        }
 
         synchronized (this.index) {
             // check if the index contains the key
@@ -597,11 +759,149 @@ public class HeapReader {
         }
     }
 
+    /**
+     * read the first bytes of a BLOB. This needs about the same IO as length(key) and can be used
+     * to read a head which describes the BLOB, like the number of entries of an exported collection.
+     * @param key
+     * @param n the maximum number of bytes
+     * @return the first n bytes of the BLOB or the whole BLOB if it is shorter; null if the BLOB does not exist
+     * @throws IOException
+     */
+    public byte[] head(byte[] key, final int n) throws IOException {
+        if (this.index == null) {
+            log.severe("HeapReader: this.index == null in head(); closeDate=" + this.closeDate + ", now=" + new Date() + (this.heapFile == null ? "" : (" file = " + this.heapFile.toString())));
+            return null;
+        }
+        key = normalizeKey(key);
+        final BloomFilter filter = this.keyFilter;
+        if (filter != null && !filter.mightContain(key)) return null;
+
+        if (this.readChannel != null) {
+            final long pos = this.index.get(key);
+            if (pos < 0) return null;
+            final byte[] reclen = new byte[4];
+            readFullyAt(reclen, pos);
+            final int len = readInt(reclen) - this.keylength;
+            if (len < 0) return null;
+            final byte[] head = new byte[Math.min(n, len)];
+            readFullyAt(head, pos + 4 + this.keylength);
+            return head;
+        }
+
+        synchronized (this.index) {
+            final long pos = this.index.get(key);
+            if (pos < 0) return null;
+            this.file.seek(pos);
+            final int len = this.file.readInt() - this.keylength;
+            if (len < 0) return null;
+            final byte[] head = new byte[Math.min(n, len)];
+            this.file.seek(pos + 4 + this.keylength);
+            this.file.readFully(head, 0, head.length);
+            return head;
+        }
+    }
+
+    /**
+     * open a read access for a sealed heap file, where no more entries are appended.
+     * After this, get, length and containsKey do not synchronize on the index and do not
+     * use the shared file pointer, so concurrent readers are not serialized.
+     * Deletions and reductions are still possible, because they do not change the file length.
+     * @param map if true, the file is mapped into memory; otherwise positional reads are used
+     * @return true if the read access is open
+     */
+    public synchronized boolean openSealedAccess(final boolean map) {
+        if (this.readChannel != null) return true;
+        if (this.index == null) return false;
+        try {
+            final FileChannel channel = FileChannel.open(this.heapFile.toPath(), StandardOpenOption.READ);
+            final long size = channel.size();
+            if (map && size > 0 && size <= Integer.MAX_VALUE) {
+                try {
+                    this.readMap = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                } catch (final IOException e) {
+                    log.warn("HeapReader: cannot map " + this.heapFile.getName() + ", using positional reads: " + e.getMessage());
+                }
+            }
+            this.readChannel = channel;
+            return true;
+        } catch (final IOException e) {
+            log.warn("HeapReader: cannot open sealed read access for " + this.heapFile.getName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * check if the file is mapped into memory
+     * @return true if reads are served from a mapping of the heap file
+     */
+    public boolean isMapped() {
+        return this.readMap != null;
+    }
+
+    /**
+     * close the read access for sealed files; all following reads use the synchronized file access again
+     */
+    protected synchronized void closeSealedAccess() {
+        final FileChannel channel = this.readChannel;
+        this.readChannel = null;
+        this.readMap = null; // the mapping is released by the garbage collector
+        if (channel != null) try {
+            channel.close();
+        } catch (final IOException e) {
+            ConcurrentLog.logException(e);
+        }
+    }
+
+    private synchronized FileChannel reopenSealedAccess(final FileChannel failed) {
+        if (this.readChannel != failed) return this.readChannel; // already re-opened or closed
+        try {
+            this.readChannel = FileChannel.open(this.heapFile.toPath(), StandardOpenOption.READ);
+        } catch (final IOException e) {
+            log.warn("HeapReader: cannot re-open sealed read access for " + this.heapFile.getName() + ": " + e.getMessage());
+            this.readChannel = null;
+            this.readMap = null;
+        }
+        return this.readChannel;
+    }
+
+    private void readFullyAt(final byte[] b, final long pos) throws IOException {
+        final ByteBuffer map = this.readMap;
+        if (map != null) {
+            if (pos < 0 || pos + b.length > map.limit()) throw new EOFException("HeapReader: read beyond end of mapped file " + this.heapFile.getName() + " at " + pos);
+            map.get((int) pos, b, 0, b.length);
+            return;
+        }
+        final FileChannel channel = this.readChannel;
+        if (channel == null) throw new ClosedChannelException();
+        try {
+            readFullyAt(channel, b, pos);
+        } catch (final ClosedChannelException e) {
+            // a channel is closed for all threads if one reading thread is interrupted
+            final FileChannel reopened = reopenSealedAccess(channel);
+            if (reopened == null || Thread.currentThread().isInterrupted()) throw e;
+            readFullyAt(reopened, b, pos);
+        }
+    }
+
+    private void readFullyAt(final FileChannel channel, final byte[] b, long pos) throws IOException {
+        final ByteBuffer bb = ByteBuffer.wrap(b);
+        while (bb.hasRemaining()) {
+            final int r = channel.read(bb, pos);
+            if (r < 0) throw new EOFException("HeapReader: EOF in " + this.heapFile.getName() + " at " + pos);
+            pos += r;
+        }
+    }
+
+    private static int readInt(final byte[] b) {
+        return ((b[0] & 0xff) << 24) | ((b[1] & 0xff) << 16) | ((b[2] & 0xff) << 8) | (b[3] & 0xff);
+    }
+
     /**
      * close the BLOB table
      */
     public void close(boolean writeIDX) {
         if (this.index == null) return;
+        closeSealedAccess();
         synchronized (this.index) {
             try {
             if (this.file != null)
@@ -643,6 +943,9 @@ public class HeapReader {
                             this.index.dump(newFingerprintFileIdx);
                             log.info("HeapReader: wrote a dump for the " + this.index.size() +  " index entries of " + this.heapFile.getName()+ " in " + (System.currentTimeMillis() - start) + " milliseconds.");
                         }
+                        // the key filter may still contain removed keys, but it never misses a key
+                        File newFingerprintFileFilter = HeapWriter.fingerprintFilterFile(this.heapFile, fingerprint);
+                        if (this.keyFilter != null && !newFingerprintFileFilter.exists()) this.keyFilter.dump(newFingerprintFileFilter);
                     }
                     this.index.close();
                     this.index = null;
@@ -654,6 +957,7 @@ public class HeapReader {
             this.free = null;
             if (this.index != null) this.index.close();
             this.index = null;
+            this.keyFilter = null;
             this.closeDate = new Date();
             } catch (Throwable e) {ConcurrentLog.logException(e);}
 
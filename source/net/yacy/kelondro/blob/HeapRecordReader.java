@@ -0,0 +1,141 @@
+/**
+ *  HeapRecordReader
+ *  Copyright 2026 by YaCy contributors
+ *  First released 18.10.2026 at https://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.blob;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * A sequential reader of the records of a heap file which does not load a whole BLOB into memory.
+ * After next() the key of the record is known and the BLOB can be read in pieces; BLOB bytes
+ * which are not read are skipped with the next call of next(). Empty records are skipped.
+ * This is the streaming counterpart of HeapReader.entries.
+ */
+public final class HeapRecordReader implements Closeable {
+
+    private final File blobFile;
+    private final int keylen;
+    private DataInputStream is;
+    private byte[] key;      // the key of the current record or null if there is none
+    private int remaining;   // the number of BLOB bytes of the current record that had not been read
+
+    public HeapRecordReader(final File blobFile, final int keylen) throws IOException {
+        if (!blobFile.exists()) throw new IOException("file " + blobFile + " does not exist");
+        this.blobFile = blobFile;
+        this.keylen = keylen;
+        this.is = new DataInputStream(new BufferedInputStream(new FileInputStream(blobFile), 256 * 1024));
+        this.key = null;
+        this.remaining = 0;
+    }
+
+    /**
+     * move to the next record
+     * @return true if there is a next record, false at the end of the file
+     * @throws IOException if the file is corrupted or cannot be read
+     */
+    public boolean next() throws IOException {
+        if (this.is == null) return false;
+        skipFully(this.remaining);
+        this.remaining = 0;
+        this.key = null;
+        int len;
+        byte b;
+        while (true) {
+            try {
+                len = this.is.readInt();
+            } catch (final EOFException e) {
+                close();
+                return false;
+            }
+            if (len == 0) continue; // rare, but possible: zero length record (takes 4 bytes)
+            b = this.is.readByte(); // read a single byte to check for an empty record
+            if (b == 0) {
+                skipFully(len - 1);
+                continue;
+            }
+            if (len < this.keylen) throw new IOException("HeapRecordReader: corrupted record in " + this.blobFile.getName() + ", len = " + len);
+            this.key = new byte[this.keylen];
+            this.key[0] = b;
+            this.is.readFully(this.key, 1, this.keylen - 1);
+            this.remaining = len - this.keylen;
+            return true;
+        }
+    }
+
+    /**
+     * @return the key of the current record
+     */
+    public byte[] key() {
+        return this.key;
+    }
+
+    /**
+     * @return the number of BLOB bytes of the current record which had not been read
+     */
+    public int remaining() {
+        return this.remaining;
+    }
+
+    /**
+     * read the next bytes of the BLOB of the current record
+     * @param b
+     * @param off
+     * @param len must not be larger than remaining()
+     * @throws IOException
+     */
+    public void readFully(final byte[] b, final int off, final int len) throws IOException {
+        if (len > this.remaining) throw new EOFException("HeapRecordReader: read of " + len + " bytes exceeds the record, remaining = " + this.remaining);
+        this.is.readFully(b, off, len);
+        this.remaining -= len;
+    }
+
+    /**
+     * read the remaining BLOB of the current record into memory
+     * @return the BLOB bytes which had not been read yet
+     * @throws IOException
+     */
+    public byte[] readRemaining() throws IOException {
+        final byte[] b = new byte[this.remaining];
+        readFully(b, 0, b.length);
+        return b;
+    }
+
+    private void skipFully(int n) throws IOException {
+        while (n > 0) {
+            final int s = this.is.skipBytes(n);
+            if (s <= 0) throw new EOFException("HeapRecordReader: unexpected end of " + this.blobFile.getName());
+            n -= s;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (this.is != null) try { this.is.close(); } catch (final IOException e) {}
+        this.is = null;
+        this.key = null;
+        this.remaining = 0;
+    }
+}
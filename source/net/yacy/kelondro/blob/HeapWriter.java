@@ -29,13 +29,17 @@ import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import net.yacy.cora.document.encoding.UTF8;
 import net.yacy.cora.order.ByteOrder;
 import net.yacy.cora.storage.HandleMap;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.index.BloomFilter;
 import net.yacy.kelondro.index.RowHandleMap;
+import net.yacy.kelondro.io.IOBudget;
 import net.yacy.kelondro.util.FileUtils;
 
 
@@ -50,6 +54,11 @@ public final class HeapWriter {
     private final File         heapFileREADY; // the final file of the heap when the file is closed
     private DataOutputStream   os;            // the output stream where the BLOB is written
     private long               seek;          // the current write position
+    private final IOBudget     budget;        // a write budget for background writes, may be null
+    private FileChannel        channel;       // the channel of the temporary file, used to complete records which are written in pieces
+    private long               recordSeek;    // the start of a record which is written in pieces, -1 if there is none
+    private long               recordLength;  // the number of bytes of that record after the length field
+    private long               recordDeclared; // the declared length of that record, -1 if the length is written when the record is finished
     //private HashSet<String>    doublecheck;// only for testing
 
     /*
@@ -79,6 +88,21 @@ public final class HeapWriter {
      * @throws IOException
      */
     public HeapWriter(final File temporaryHeapFile, final File readyHeapFile, final int keylength, final ByteOrder ordering, int outBuffer) throws IOException {
+        this(temporaryHeapFile, readyHeapFile, keylength, ordering, outBuffer, null);
+    }
+
+    /**
+     * create a heap file which is written with a limited write rate
+     * @param temporaryHeapFile
+     * @param readyHeapFile
+     * @param keylength
+     * @param ordering
+     * @param outBuffer
+     * @param budget the write budget that is consumed by each added BLOB, or null for no limitation
+     * @throws IOException
+     */
+    public HeapWriter(final File temporaryHeapFile, final File readyHeapFile, final int keylength, final ByteOrder ordering, int outBuffer, final IOBudget budget) throws IOException {
+        this.budget = budget;
         this.heapFileTMP = temporaryHeapFile;
         this.heapFileREADY = readyHeapFile;
         this.keylength = keylength;
@@ -91,6 +115,7 @@ public final class HeapWriter {
         		// try this again without buffer
         		this.os = new DataOutputStream(fileStream);
         	}
+        	this.channel = fileStream.getChannel();
         } catch(Exception e) {
         	try {
         		fileStream.close();
@@ -100,6 +125,7 @@ public final class HeapWriter {
         	throw e;
         }
         this.seek = 0;
+        this.recordSeek = -1;
     }
 
     /**
@@ -117,15 +143,81 @@ public final class HeapWriter {
         assert key.length == this.keylength : "key.length == " + key.length + ", this.keylength = " + this.keylength; // after normalizing they should be equal in length
         assert this.index.get(key) < 0 : "index.get(key) = " + this.index.get(key) + ", index.size() = " + this.index.size() + ", file.length() = " + this.heapFileTMP.length() +  ", key = " + UTF8.String(key); // must not occur before
         if ((blob == null) || (blob.length == 0)) return;
+        assert this.recordSeek < 0 : "a record is not finished";
         this.index.putUnique(key, this.seek);
         int chunkl = this.keylength + blob.length;
         this.os.writeInt(chunkl);
         this.os.write(key);
         this.os.write(blob);
         this.seek += chunkl + 4;
+        if (this.budget != null) this.budget.consume(chunkl + 4);
         //os.flush(); // necessary? may cause bad IO performance :-(
     }
 
+    /**
+     * begin a BLOB that is written in pieces with write() and finished with endRecord().
+     * This is used for BLOBs which shall not be held in memory as a whole.
+     * @param key a key that has not been added before
+     * @param length the length of the BLOB or -1 if it is not known; then the length is written by endRecord()
+     * @throws IOException
+     * @throws SpaceExceededException
+     */
+    public synchronized void beginRecord(byte[] key, final int length) throws IOException, SpaceExceededException {
+        assert this.recordSeek < 0 : "a record is not finished";
+        key = HeapReader.normalizeKey(key, this.keylength);
+        assert this.index.get(key) < 0 : "key = " + UTF8.String(key); // must not occur before
+        this.index.putUnique(key, this.seek);
+        this.recordSeek = this.seek;
+        this.recordDeclared = length < 0 ? -1 : this.keylength + (long) length;
+        this.os.writeInt(length < 0 ? 0 : this.keylength + length); // a placeholder if the length is not known
+        this.os.write(key);
+        this.recordLength = this.keylength;
+    }
+
+    /**
+     * write a piece of the BLOB that was started with beginRecord()
+     * @param b
+     * @param off
+     * @param len
+     * @throws IOException
+     */
+    public synchronized void write(final byte[] b, final int off, final int len) throws IOException {
+        assert this.recordSeek >= 0 : "no record was started";
+        this.os.write(b, off, len);
+        this.recordLength += len;
+        if (this.budget != null) this.budget.consume(len);
+    }
+
+    /**
+     * finish a BLOB that was started with beginRecord()
+     * @param head if not null, these bytes replace the first bytes of the BLOB; this can be used to
+     *   write a head which contains values which are only known at the end of the BLOB
+     * @throws IOException
+     */
+    public synchronized void endRecord(final byte[] head) throws IOException {
+        assert this.recordSeek >= 0 : "no record was started";
+        if (this.recordLength > Integer.MAX_VALUE) throw new IOException("HeapWriter: BLOB exceeds 2GB");
+        if (this.recordDeclared >= 0 && this.recordDeclared != this.recordLength) {
+            throw new IOException("HeapWriter: BLOB length " + this.recordLength + " differs from declared length " + this.recordDeclared);
+        }
+        assert head == null || head.length <= this.recordLength - this.keylength;
+        if (this.recordDeclared < 0 || head != null) {
+            // the record is completed within the file; the buffered bytes must be written first
+            this.os.flush();
+            final ByteBuffer len = ByteBuffer.allocate(4).putInt((int) this.recordLength);
+            len.flip();
+            writeAt(len, this.recordSeek);
+            if (head != null) writeAt(ByteBuffer.wrap(head), this.recordSeek + 4 + this.keylength);
+        }
+        this.seek += this.recordLength + 4;
+        if (this.budget != null) this.budget.consume(4 + this.keylength);
+        this.recordSeek = -1;
+    }
+
+    private void writeAt(final ByteBuffer b, long position) throws IOException {
+        while (b.hasRemaining()) position += this.channel.write(b, position);
+    }
+
     /**
      * close the BLOB table
      * @throws
@@ -143,6 +235,7 @@ public final class HeapWriter {
     		this.os.close();
     	}
         this.os = null;
+        this.channel = null;
 
         // rename the file into final name
         if (this.heapFileREADY.exists()) FileUtils.deletedelete(this.heapFileREADY);
@@ -162,6 +255,9 @@ public final class HeapWriter {
             } else {
                 new Gap().dump(fingerprintGapFile(this.heapFileREADY, fingerprint));
                 this.index.dump(fingerprintIndexFile(this.heapFileREADY, fingerprint));
+                if (HeapReader.keyFilterBitsPerKey > 0) {
+                    BloomFilter.of(this.index.keys(true, null), this.index.size(), HeapReader.keyFilterBitsPerKey).dump(fingerprintFilterFile(this.heapFileREADY, fingerprint));
+                }
                 log.info("HeapWriter: wrote a dump for the " + this.index.size() +  " index entries of " + this.heapFileREADY.getName()+ " in " + (System.currentTimeMillis() - start) + " milliseconds.");
             }
             this.index.close();
@@ -180,7 +276,7 @@ public final class HeapWriter {
         FileUtils.deletedelete(f);
         for (String s: l) {
             if (s.startsWith(n) &&
-                (s.endsWith(".idx") || s.endsWith(".gap")))
+                (s.endsWith(".idx") || s.endsWith(".gap") || s.endsWith(".blm")))
                FileUtils.deletedelete(new File(p, s));
         }
     }
@@ -194,4 +290,9 @@ public final class HeapWriter {
         assert f != null;
         return new File(f.getParentFile(), f.getName() + "." + fingerprint + ".gap");
     }
+
+    protected static File fingerprintFilterFile(File f, String fingerprint) {
+        assert f != null;
+        return new File(f.getParentFile(), f.getName() + "." + fingerprint + ".blm");
+    }
 }
@@ -0,0 +1,323 @@
+// WordReferenceColumns.java
+// (C) 2026 by YaCy contributors
+// first published 18.10.2026 on https://yacy.net
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.data.word;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.rwi.ReferenceContainer;
+import net.yacy.kelondro.workflow.WorkflowProcessor;
+
+/**
+ * The references of a container decoded into one primitive array per ranking value.
+ * Ranking reads all references of a container but keeps only few of them, so the values are decoded
+ * into columns instead of one WordReferenceVars object per reference; the objects are created with
+ * get() only for the references which are kept. The container is decoded in chunks which can be
+ * processed concurrently, each chunk writes only its own range of the arrays.
+ */
+public final class WordReferenceColumns {
+
+    // the columns of the ranking values
+    public static final int HITCOUNT      =  0;
+    public static final int LLOCAL        =  1;
+    public static final int LOTHER        =  2;
+    public static final int PHRASESINTEXT =  3;
+    public static final int POSINTEXT     =  4;
+    public static final int POSINPHRASE   =  5;
+    public static final int POSOFPHRASE   =  6;
+    public static final int URLCOMPS      =  7;
+    public static final int URLLENGTH     =  8;
+    public static final int WORDSINTEXT   =  9;
+    public static final int WORDSINTITLE  = 10;
+    public static final int VIRTUALAGE    = 11;
+    public static final int DISTANCE      = 12;
+    public static final int COLUMNS       = 13;
+
+    /** number of references in one chunk */
+    public static final int CHUNK_SIZE = 1024;
+
+    private static final int HASH_LENGTH = Word.commonHashLength;
+    private static final int LANGUAGE_LENGTH = WordReferenceRow.urlEntryRow.width(WordReferenceRow.col_language);
+
+    private final ReferenceContainer<WordReference> container;
+    private final int size;
+    private final int[][] values;     // values[column][reference]
+    private final int[] flags;        // the 32 bit flags of the reference
+    private final byte[] types;       // the document types
+    private final byte[] urlhashes;   // HASH_LENGTH bytes for each reference
+    private final byte[] languages;   // LANGUAGE_LENGTH bytes for each reference
+    private final boolean[] decoded;  // true for all chunks which are decoded
+
+    public WordReferenceColumns(final ReferenceContainer<WordReference> container) {
+        this.container = container;
+        this.size = container.size();
+        this.values = new int[COLUMNS][this.size];
+        this.flags = new int[this.size];
+        this.types = new byte[this.size];
+        this.urlhashes = new byte[this.size * HASH_LENGTH];
+        this.languages = new byte[this.size * LANGUAGE_LENGTH];
+        this.decoded = new boolean[chunks()];
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public int chunks() {
+        return (this.size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    }
+
+    public int chunkStart(final int chunk) {
+        return chunk * CHUNK_SIZE;
+    }
+
+    public int chunkEnd(final int chunk) {
+        return Math.min(this.size, (chunk + 1) * CHUNK_SIZE);
+    }
+
+    /**
+     * decode the references of one chunk
+     * @param chunk the number of the chunk
+     * @return the minimum and maximum values of the chunk
+     */
+    public Bounds decode(final int chunk) {
+        final Bounds bounds = new Bounds();
+        final byte[] flagbytes = new byte[4];
+        final int end = chunkEnd(chunk);
+        for (int i = chunkStart(chunk); i < end; i++) {
+            final Row.Entry entry = this.container.get(i, false);
+            if (entry == null) return bounds; // the container was closed, the chunk is not used
+            entry.writeToArray(WordReferenceRow.col_urlhash, this.urlhashes, i * HASH_LENGTH);
+            entry.writeToArray(WordReferenceRow.col_language, this.languages, i * LANGUAGE_LENGTH);
+            entry.writeToArray(WordReferenceRow.col_flags, flagbytes, 0);
+            this.flags[i] = (flagbytes[0] & 0xff) | ((flagbytes[1] & 0xff) << 8) | ((flagbytes[2] & 0xff) << 16) | ((flagbytes[3] & 0xff) << 24);
+            this.types[i] = entry.getColByte(WordReferenceRow.col_doctype);
+            this.values[HITCOUNT][i] = 0xff & entry.getColByte(WordReferenceRow.col_hitcount);
+            this.values[LLOCAL][i] = 0xff & entry.getColByte(WordReferenceRow.col_llocal);
+            this.values[LOTHER][i] = 0xff & entry.getColByte(WordReferenceRow.col_lother);
+            this.values[PHRASESINTEXT][i] = (int) entry.getColLong(WordReferenceRow.col_phrasesInText);
+            this.values[POSINTEXT][i] = (int) entry.getColLong(WordReferenceRow.col_posintext);
+            this.values[POSINPHRASE][i] = 0xff & entry.getColByte(WordReferenceRow.col_posinphrase);
+            this.values[POSOFPHRASE][i] = 0xff & entry.getColByte(WordReferenceRow.col_posofphrase);
+            this.values[URLCOMPS][i] = 0xff & entry.getColByte(WordReferenceRow.col_urlComps);
+            this.values[URLLENGTH][i] = 0xff & entry.getColByte(WordReferenceRow.col_urlLength);
+            this.values[WORDSINTEXT][i] = (int) entry.getColLong(WordReferenceRow.col_wordsInText);
+            this.values[WORDSINTITLE][i] = 0xff & entry.getColByte(WordReferenceRow.col_wordsInTitle);
+            this.values[VIRTUALAGE][i] = (int) entry.getColLong(WordReferenceRow.col_lastModified);
+            this.values[DISTANCE][i] = (int) entry.getColLong(WordReferenceRow.col_worddistance);
+            bounds.include(this, i);
+        }
+        this.decoded[chunk] = true;
+        return bounds;
+    }
+
+    /**
+     * run a task for each chunk. The chunks are taken by the calling thread and by up to
+     * WorkflowProcessor.availableCPU - 1 helper tasks handed to the executor; the method returns
+     * when all chunks are processed. The calling thread does not wait for helper tasks which did not start.
+     * @param executor the executor for the helper tasks
+     * @param task the task, called with the number of the chunk
+     */
+    public void forEachChunk(final Executor executor, final IntConsumer task) {
+        final int chunks = chunks();
+        final AtomicInteger next = new AtomicInteger(0);
+        final CountDownLatch finished = new CountDownLatch(chunks);
+        final Runnable worker = () -> {
+            int chunk;
+            while ((chunk = next.getAndIncrement()) < chunks) {
+                try {
+                    task.accept(chunk);
+                } catch (final RuntimeException e) {
+                    ConcurrentLog.logException(e);
+                } finally {
+                    finished.countDown();
+                }
+            }
+        };
+        final int helpers = Math.min(WorkflowProcessor.availableCPU, chunks) - 1;
+        try {
+            for (int i = 0; i < helpers; i++) executor.execute(worker);
+        } catch (final RejectedExecutionException e) {
+            // the executor is shut down, the calling thread does the work alone
+        }
+        worker.run();
+        try {
+            finished.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param i the number of the reference
+     * @return true if the chunk of the reference was decoded
+     */
+    public boolean isDecoded(final int i) {
+        return this.decoded[i / CHUNK_SIZE];
+    }
+
+    public int value(final int column, final int i) {
+        return this.values[column][i];
+    }
+
+    public int flags(final int i) {
+        return this.flags[i];
+    }
+
+    public boolean flag(final int i, final int bit) {
+        return (this.flags[i] & (1 << bit)) != 0;
+    }
+
+    public char type(final int i) {
+        return (char) this.types[i];
+    }
+
+    public double termFrequency(final int i) {
+        return ((double) this.values[HITCOUNT][i]) / ((double) (this.values[WORDSINTEXT][i] + this.values[WORDSINTITLE][i] + 1));
+    }
+
+    public byte[] urlhash(final int i) {
+        return Arrays.copyOfRange(this.urlhashes, i * HASH_LENGTH, (i + 1) * HASH_LENGTH);
+    }
+
+    public String hosthash(final int i) {
+        return ASCII.String(this.urlhashes, i * HASH_LENGTH + 6, 6);
+    }
+
+    public int domLengthNormalized(final int i) {
+        return DigestURL.domLengthNormalized(this.urlhashes, i * HASH_LENGTH);
+    }
+
+    /**
+     * @param i the number of the reference
+     * @return the language code of the reference or null if the reference has no language
+     */
+    public String language(final int i) {
+        final int offset = i * LANGUAGE_LENGTH;
+        for (int j = 0; j < LANGUAGE_LENGTH; j++) {
+            if (this.languages[offset + j] != 0) return ASCII.String(this.languages, offset, LANGUAGE_LENGTH);
+        }
+        return null;
+    }
+
+    /**
+     * @param i the number of the reference
+     * @param language a language code
+     * @return true if the reference has the given language
+     */
+    public boolean isLanguage(final int i, final String language) {
+        if (language.length() != LANGUAGE_LENGTH) return false;
+        final int offset = i * LANGUAGE_LENGTH;
+        for (int j = 0; j < LANGUAGE_LENGTH; j++) {
+            if (this.languages[offset + j] != language.charAt(j)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param i the number of the reference
+     * @param local true if the reference comes from the local index
+     * @return the reference as object
+     */
+    public WordReferenceVars get(final int i, final boolean local) {
+        return new WordReferenceVars(this, i, local);
+    }
+
+    /**
+     * the minimum and maximum of the ranking values of references
+     */
+    public static final class Bounds implements Cloneable {
+
+        private final int[] min, max;
+        private double minTermFrequency, maxTermFrequency;
+
+        public Bounds() {
+            this.min = new int[COLUMNS];
+            this.max = new int[COLUMNS];
+            Arrays.fill(this.min, Integer.MAX_VALUE);
+            Arrays.fill(this.max, Integer.MIN_VALUE);
+            this.minTermFrequency = Double.MAX_VALUE;
+            this.maxTermFrequency = -Double.MAX_VALUE;
+        }
+
+        private void include(final WordReferenceColumns columns, final int i) {
+            for (int column = 0; column < COLUMNS; column++) {
+                final int v = columns.values[column][i];
+                if (v < this.min[column]) this.min[column] = v;
+                if (v > this.max[column]) this.max[column] = v;
+            }
+            final double tf = columns.termFrequency(i);
+            if (tf < this.minTermFrequency) this.minTermFrequency = tf;
+            if (tf > this.maxTermFrequency) this.maxTermFrequency = tf;
+        }
+
+        public synchronized void include(final Bounds other) {
+            synchronized (other) {
+                for (int column = 0; column < COLUMNS; column++) {
+                    if (other.min[column] < this.min[column]) this.min[column] = other.min[column];
+                    if (other.max[column] > this.max[column]) this.max[column] = other.max[column];
+                }
+                if (other.minTermFrequency < this.minTermFrequency) this.minTermFrequency = other.minTermFrequency;
+                if (other.maxTermFrequency > this.maxTermFrequency) this.maxTermFrequency = other.maxTermFrequency;
+            }
+        }
+
+        /**
+         * @return true if no reference is included
+         */
+        public synchronized boolean isEmpty() {
+            return this.min[0] > this.max[0];
+        }
+
+        public int min(final int column) {
+            return this.min[column];
+        }
+
+        public int max(final int column) {
+            return this.max[column];
+        }
+
+        public double minTermFrequency() {
+            return this.minTermFrequency;
+        }
+
+        public double maxTermFrequency() {
+            return this.maxTermFrequency;
+        }
+
+        @Override
+        public synchronized Bounds clone() {
+            final Bounds c = new Bounds();
+            c.include(this);
+            return c;
+        }
+    }
+}
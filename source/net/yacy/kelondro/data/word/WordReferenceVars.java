@@ -29,7 +29,6 @@ package net.yacy.kelondro.data.word;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Queue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import net.yacy.cora.date.MicroDate;
@@ -37,14 +36,10 @@ import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.encoding.UTF8;
 import net.yacy.cora.order.Base64Order;
 import net.yacy.cora.util.ByteArray;
-import net.yacy.cora.util.ConcurrentLog;
-import net.yacy.kelondro.index.Row;
 import net.yacy.kelondro.index.Row.Entry;
 import net.yacy.kelondro.rwi.AbstractReference;
 import net.yacy.kelondro.rwi.Reference;
-import net.yacy.kelondro.rwi.ReferenceContainer;
 import net.yacy.kelondro.util.Bitfield;
-import net.yacy.kelondro.workflow.WorkflowProcessor;
 
 
 public class WordReferenceVars extends AbstractReference implements WordReference, Reference, Cloneable, Comparable<WordReferenceVars>, Comparator<WordReferenceVars> {
@@ -157,6 +152,37 @@ public class WordReferenceVars extends AbstractReference implements WordReferenc
         this.local = local;
     }
 
+    /**
+     * create a reference from decoded columns
+     * @param columns the columns of a container
+     * @param i the number of the reference in the columns
+     * @param local true if the reference comes from the local index
+     */
+    WordReferenceVars(final WordReferenceColumns columns, final int i, final boolean local) {
+        final int f = columns.flags(i);
+        this.flags = new Bitfield(new byte[]{(byte) f, (byte) (f >>> 8), (byte) (f >>> 16), (byte) (f >>> 24)});
+        this.virtualAge = columns.value(WordReferenceColumns.VIRTUALAGE, i);
+        this.lastModified = MicroDate.reverseMicroDateDays(this.virtualAge);
+        this.language = columns.language(i);
+        this.urlHash = columns.urlhash(i);
+        this.type = columns.type(i);
+        this.hitcount = columns.value(WordReferenceColumns.HITCOUNT, i);
+        this.llocal = columns.value(WordReferenceColumns.LLOCAL, i);
+        this.lother = columns.value(WordReferenceColumns.LOTHER, i);
+        this.phrasesintext = columns.value(WordReferenceColumns.PHRASESINTEXT, i);
+        this.positions = null;
+        this.distance = columns.value(WordReferenceColumns.DISTANCE, i);
+        this.posinphrase = columns.value(WordReferenceColumns.POSINPHRASE, i);
+        this.posintext = columns.value(WordReferenceColumns.POSINTEXT, i);
+        this.posofphrase = columns.value(WordReferenceColumns.POSOFPHRASE, i);
+        this.urlcomps = columns.value(WordReferenceColumns.URLCOMPS, i);
+        this.urllength = columns.value(WordReferenceColumns.URLLENGTH, i);
+        this.wordsintext = columns.value(WordReferenceColumns.WORDSINTEXT, i);
+        this.wordsintitle = columns.value(WordReferenceColumns.WORDSINTITLE, i);
+        this.termFrequency = columns.termFrequency(i);
+        this.local = local;
+    }
+
     /**
      * initializer for special poison object
      */
@@ -536,121 +562,4 @@ public class WordReferenceVars extends AbstractReference implements WordReferenc
         if (position > 0) this.positions.add(position);
     }
 
-    /**
-     * transform a reference container into a stream of parsed entries
-     * @param container
-     * @return a blocking queue filled with WordReferenceVars that is still filled when the object is returned
-     */
-    public static BlockingQueue<WordReferenceVars> transform(final ReferenceContainer<WordReference> container, final long maxtime, final boolean local) {
-    	final LinkedBlockingQueue<WordReferenceVars> vars = new LinkedBlockingQueue<WordReferenceVars>();
-    	if (container.size() <= 100) {
-    	    // transform without concurrency to omit thread creation overhead
-    	    for (final Row.Entry entry: container) {
-    	        try {
-    	            vars.put(new WordReferenceVars(new WordReferenceRow(entry), local));
-    	        } catch (final InterruptedException e) {}
-    	    }
-            try {
-                vars.put(WordReferenceVars.poison);
-            } catch (final InterruptedException e) {}
-            return vars;
-    	}
-    	final Thread distributor = new TransformDistributor(container, vars, maxtime, local);
-    	distributor.start();
-
-    	// return the resulting queue while the processing queues are still working
-    	return vars;
-    }
-
-    private static class TransformDistributor extends Thread {
-
-    	private ReferenceContainer<WordReference> container;
-    	private BlockingQueue<WordReferenceVars> out;
-    	private long maxtime;
-    	private final boolean local;
-    	private TransformDistributor(final ReferenceContainer<WordReference> container, final BlockingQueue<WordReferenceVars> out, final long maxtime, final boolean local) {
-    		super("WordReferenceVars.TransformDistributor");
-    		this.container = container;
-    		this.out = out;
-    		this.maxtime = maxtime;
-    		this.local = local;
-    	}
-
-        @Override
-    	public void run() {
-        	// start the transformation threads
-        	final int cores0 = Math.min(WorkflowProcessor.availableCPU, this.container.size() / 100) + 1;
-        	final TransformWorker[] worker = new TransformWorker[cores0];
-        	for (int i = 0; i < cores0; i++) {
-        		worker[i] = new TransformWorker(this.out, this.maxtime, this.local);
-        		worker[i].start();
-        	}
-        	long timeout = this.maxtime == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + this.maxtime;
-
-        	// fill the queue
-        	int p = this.container.size();
-    		while (p > 0) {
-    			p--;
-				worker[p % cores0].add(this.container.get(p, false));
-				if (p % 100 == 0 && System.currentTimeMillis() > timeout) {
-				    ConcurrentLog.warn("KELONDRO", "TransformDistributor: distribution of WordReference entries to worker queues ended with timeout = " + this.maxtime);
-				    break;
-				}
-            }
-
-        	// insert poison to stop the queues
-        	for (int i = 0; i < cores0; i++) {
-        	    worker[i].add(WordReferenceRow.poisonRowEntry);
-        	}
-
-        	// wait for the worker to terminate because we want to place a poison entry into the out queue afterwards
-        	for (int i = 0; i < cores0; i++) {
-                try {
-                    worker[i].join();
-                } catch (final InterruptedException e) {
-                }
-            }
-
-        	this.out.add(WordReferenceVars.poison);
-    	}
-    }
-
-    private static class TransformWorker extends Thread {
-
-    	private BlockingQueue<Row.Entry> in;
-    	private BlockingQueue<WordReferenceVars> out;
-    	private long maxtime;
-    	private final boolean local;
-
-    	private TransformWorker(final BlockingQueue<WordReferenceVars> out, final long maxtime, final boolean local) {
-    		super("WordReferenceVars.TransformWorker");
-    		this.in = new LinkedBlockingQueue<Row.Entry>();
-    		this.out = out;
-    		this.maxtime = maxtime;
-    		this.local = local;
-    	}
-
-    	private void add(final Row.Entry entry) {
-    		try {
-				this.in.put(entry);
-			} catch (final InterruptedException e) {
-			}
-    	}
-
-        @Override
-    	public void run() {
-        	Row.Entry entry;
-        	long timeout = this.maxtime == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + this.maxtime;
-    		try {
-				while ((entry = this.in.take()) != WordReferenceRow.poisonRowEntry) {
-				    this.out.put(new WordReferenceVars(new WordReferenceRow(entry), local));
-				    if (System.currentTimeMillis() > timeout) {
-	                    ConcurrentLog.warn("KELONDRO", "TransformWorker: normalization of row entries from row to vars ended with timeout = " + this.maxtime);
-				        break;
-				    }
-				}
-			} catch (final InterruptedException e) {}
-    	}
-    }
-
 }
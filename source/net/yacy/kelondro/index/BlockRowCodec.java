@@ -0,0 +1,371 @@
+/**
+ *  BlockRowCodec
+ *  Copyright 2026 by YaCy contributors
+ *  First released 18.10.2026 at https://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.index;
+
+import java.io.ByteArrayOutputStream;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.util.MemoryControl;
+
+/**
+ * A compressed export format for sorted row collections, an alternative to RowCollection.exportCollection().
+ * The rows are stored in blocks of up to blockRows rows. In a block the primary keys are prefix-coded
+ * against the previous key and packed with 6 bits per character if they are Base64 strings (like url hashes);
+ * all other columns are stored column by column, either as one constant, as varints or as raw cells,
+ * whatever is shortest. Each block has a head with its number of rows and its length, so a reader can
+ * decode one block after another without holding the whole collection.
+ *
+ * <pre>
+ * collection: MAGIC (1 byte), number of rows (4 bytes), blocks
+ * block:      number of rows (4 bytes), length of body (4 bytes), body
+ * body:       key mode (1 byte), prefix lengths (1 byte per row), key suffixes,
+ *             for each column after the key: column mode (1 byte), column values
+ * </pre>
+ *
+ * The first byte of an exported RowCollection is the highest byte of its size which is never
+ * larger than 127, so both formats can be distinguished with isPacked().
+ */
+public final class BlockRowCodec {
+
+    public static final byte MAGIC = (byte) 0xB1;
+
+    /** length of the head of a packed collection */
+    public static final int headSize = 5;
+
+    /** length of the head of a block */
+    public static final int blockHeadSize = 8;
+
+    /** maximum number of rows in a block */
+    public static final int blockRows = 128;
+
+    private static final byte key_raw = 0;
+    private static final byte key_b64 = 1;
+    private static final byte col_constant = 0;
+    private static final byte col_varint = 1;
+    private static final byte col_raw = 2;
+
+    private static final byte[] b64 = new byte[256]; // character to 6-bit value, or -1 for other characters
+    static {
+        for (int i = 0; i < b64.length; i++) b64[i] = -1;
+        for (int i = 0; i < Base64Order.alpha_enhanced.length; i++) b64[Base64Order.alpha_enhanced[i] & 0xff] = (byte) i;
+    }
+
+    private BlockRowCodec() {}
+
+    /**
+     * @param b an exported collection or the beginning of it
+     * @return true if the collection had been written by this codec
+     */
+    public static boolean isPacked(final byte[] b) {
+        return b != null && b.length >= headSize && b[0] == MAGIC;
+    }
+
+    /**
+     * @param b the head of a packed collection
+     * @return the number of rows in the collection
+     */
+    public static int count(final byte[] b) {
+        assert isPacked(b);
+        return (int) NaturalOrder.decodeLong(b, 1, 4);
+    }
+
+    /**
+     * @param count the number of rows
+     * @return the head of a packed collection
+     */
+    public static byte[] head(final int count) {
+        final byte[] head = new byte[headSize];
+        head[0] = MAGIC;
+        NaturalOrder.encodeLong(count, head, 1, 4);
+        return head;
+    }
+
+    /**
+     * encode rows into a packed collection
+     * @param rowdef the row definition
+     * @param rows the rows, sorted by the primary key
+     * @param count the number of rows
+     * @return the packed collection
+     */
+    public static byte[] encode(final Row rowdef, final byte[] rows, final int count) {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream(headSize + count * rowdef.objectsize / 2 + 16);
+        os.write(head(count), 0, headSize);
+        for (int i = 0; i < count; i += blockRows) {
+            final byte[] block = encodeBlock(rowdef, rows, i * rowdef.objectsize, Math.min(blockRows, count - i));
+            os.write(block, 0, block.length);
+        }
+        return os.toByteArray();
+    }
+
+    /**
+     * decode a packed collection into a sorted RowSet
+     * @param b the packed collection
+     * @param rowdef the row definition
+     * @return the rows
+     * @throws SpaceExceededException
+     */
+    public static RowSet decode(final byte[] b, final Row rowdef) throws SpaceExceededException {
+        final int count = count(b);
+        if (count <= 0) return new RowSet(rowdef, 0);
+        final long alloc = ((long) count) * ((long) rowdef.objectsize);
+        if (alloc > Integer.MAX_VALUE) throw new SpaceExceededException((int) alloc, "BlockRowCodec.decode: alloc > Integer.MAX_VALUE");
+        MemoryControl.request((int) alloc, true);
+        final byte[] chunkcache;
+        try {
+            chunkcache = new byte[(int) alloc];
+        } catch (final OutOfMemoryError e) {
+            throw new SpaceExceededException((int) alloc, "BlockRowCodec.decode: OutOfMemoryError");
+        }
+        int p = headSize;
+        int rows = 0;
+        try {
+            while (rows < count) {
+                final int n = (int) NaturalOrder.decodeLong(b, p, 4);
+                final int len = (int) NaturalOrder.decodeLong(b, p + 4, 4);
+                p += blockHeadSize;
+                if (n <= 0 || rows + n > count || len < 0 || p + len > b.length) throw new ArrayIndexOutOfBoundsException("block at " + p + ", n = " + n + ", len = " + len);
+                decodeBlock(rowdef, b, p, n, chunkcache, rows * rowdef.objectsize);
+                p += len;
+                rows += n;
+            }
+        } catch (final ArrayIndexOutOfBoundsException e) {
+            ConcurrentLog.severe("KELONDRO", "BlockRowCodec: corrupted collection, count = " + count + ", length = " + b.length + ": " + e.getMessage());
+            return new RowSet(rowdef, 0);
+        }
+        return new RowSet(rowdef, count, chunkcache, count);
+    }
+
+    /**
+     * encode a subset of a packed collection, like a collection where rows had been removed.
+     * The rows stay in the blocks where they had been before, so the result is never larger than the
+     * packed collection; this is needed where a BLOB must be reduced in place.
+     * @param packed a packed collection
+     * @param subset a collection that contains only rows which are also in packed; it is sorted here
+     * @return the packed subset
+     */
+    public static byte[] encodeSubset(final byte[] packed, final RowCollection subset) {
+        final Row rowdef = subset.rowdef;
+        final int objectsize = rowdef.objectsize;
+        final int keylength = rowdef.primaryKeyLength;
+        final int count = count(packed);
+        final ByteArrayOutputStream os = new ByteArrayOutputStream(packed.length);
+        synchronized (subset) {
+            subset.sort();
+            os.write(head(subset.chunkcount), 0, headSize);
+            final byte[] block = new byte[blockRows * objectsize];
+            final byte[] kept = new byte[blockRows * objectsize];
+            int p = headSize, rows = 0, j = 0;
+            try {
+                while (rows < count && j < subset.chunkcount) {
+                    final int n = (int) NaturalOrder.decodeLong(packed, p, 4);
+                    final int len = (int) NaturalOrder.decodeLong(packed, p + 4, 4);
+                    decodeBlock(rowdef, packed, p + blockHeadSize, n, block, 0);
+                    p += blockHeadSize + len;
+                    rows += n;
+                    int k = 0;
+                    for (int i = 0; i < n && j < subset.chunkcount; i++) {
+                        if (NaturalOrder.naturalOrder.equal(block, i * objectsize, subset.chunkcache, j * objectsize, keylength)) {
+                            System.arraycopy(subset.chunkcache, j * objectsize, kept, k * objectsize, objectsize);
+                            k++;
+                            j++;
+                        }
+                    }
+                    if (k > 0) {
+                        final byte[] b = encodeBlock(rowdef, kept, 0, k);
+                        os.write(b, 0, b.length);
+                    }
+                }
+            } catch (final ArrayIndexOutOfBoundsException e) {
+                j = -1;
+            }
+            // if the subset has rows which are not in the packed collection, the blocks are computed again
+            if (j != subset.chunkcount) return encode(rowdef, subset.chunkcache, subset.chunkcount);
+        }
+        return os.toByteArray();
+    }
+
+    /**
+     * encode a block of rows
+     * @param rowdef the row definition
+     * @param rows an array which contains the rows
+     * @param off the start of the first row in rows
+     * @param n the number of rows, at most blockRows
+     * @return the block head and body
+     */
+    public static byte[] encodeBlock(final Row rowdef, final byte[] rows, final int off, final int n) {
+        assert n > 0 && n <= blockRows;
+        final int objectsize = rowdef.objectsize;
+        final int keylength = rowdef.primaryKeyLength;
+        final ByteArrayOutputStream os = new ByteArrayOutputStream(blockHeadSize + n * objectsize);
+        for (int i = 0; i < blockHeadSize; i++) os.write(0); // the head is set at the end
+
+        // the keys
+        boolean base64 = true;
+        for (int i = 0; i < n && base64; i++) {
+            final int r = off + i * objectsize;
+            for (int j = 0; j < keylength; j++) if (b64[rows[r + j] & 0xff] < 0) {base64 = false; break;}
+        }
+        os.write(base64 ? key_b64 : key_raw);
+        final int[] prefix = new int[n];
+        for (int i = 1; i < n; i++) {
+            final int r = off + i * objectsize;
+            int s = 0;
+            while (s < keylength && s < 255 && rows[r + s] == rows[r - objectsize + s]) s++;
+            prefix[i] = s;
+        }
+        for (int i = 0; i < n; i++) os.write(prefix[i]);
+        if (base64) {
+            long bits = 0;
+            int bitcount = 0;
+            for (int i = 0; i < n; i++) {
+                final int r = off + i * objectsize;
+                for (int j = prefix[i]; j < keylength; j++) {
+                    bits = (bits << 6) | b64[rows[r + j] & 0xff];
+                    bitcount += 6;
+                    if (bitcount >= 8) {
+                        bitcount -= 8;
+                        os.write((int) (bits >>> bitcount));
+                    }
+                }
+            }
+            if (bitcount > 0) os.write((int) (bits << (8 - bitcount)));
+        } else {
+            for (int i = 0; i < n; i++) os.write(rows, off + i * objectsize + prefix[i], keylength - prefix[i]);
+        }
+
+        // the other columns
+        final byte[] varints = new byte[n * 10];
+        for (int c = 1; c < rowdef.columns(); c++) {
+            final int start = rowdef.colstart[c];
+            final int width = rowdef.width(c);
+            boolean constant = true;
+            for (int i = 1; i < n && constant; i++) {
+                constant = NaturalOrder.naturalOrder.equal(rows, off + start, rows, off + i * objectsize + start, width);
+            }
+            if (constant) {
+                os.write(col_constant);
+                os.write(rows, off + start, width);
+                continue;
+            }
+            int v = -1;
+            if (width <= 8) {
+                v = 0;
+                for (int i = 0; i < n; i++) {
+                    v = putVarint(varints, v, NaturalOrder.decodeLong(rows, off + i * objectsize + start, width));
+                }
+            }
+            if (v >= 0 && v < n * width) {
+                os.write(col_varint);
+                os.write(varints, 0, v);
+            } else {
+                os.write(col_raw);
+                for (int i = 0; i < n; i++) os.write(rows, off + i * objectsize + start, width);
+            }
+        }
+
+        final byte[] block = os.toByteArray();
+        NaturalOrder.encodeLong(n, block, 0, 4);
+        NaturalOrder.encodeLong(block.length - blockHeadSize, block, 4, 4);
+        return block;
+    }
+
+    /**
+     * decode the body of a block
+     * @param rowdef the row definition
+     * @param b an array which contains the body
+     * @param p the start of the body in b
+     * @param n the number of rows in the block, from the head of the block
+     * @param target the array for the decoded rows
+     * @param toff the position of the first row in target
+     */
+    public static void decodeBlock(final Row rowdef, final byte[] b, int p, final int n, final byte[] target, final int toff) {
+        final int objectsize = rowdef.objectsize;
+        final int keylength = rowdef.primaryKeyLength;
+
+        // the keys
+        final byte mode = b[p++];
+        final int prefixStart = p;
+        p += n;
+        if (mode == key_b64) {
+            long bits = 0;
+            int bitcount = 0;
+            for (int i = 0; i < n; i++) {
+                final int r = toff + i * objectsize;
+                final int s = b[prefixStart + i] & 0xff;
+                if (s > 0) System.arraycopy(target, r - objectsize, target, r, s);
+                for (int j = s; j < keylength; j++) {
+                    if (bitcount < 6) {
+                        bits = (bits << 8) | (b[p++] & 0xff);
+                        bitcount += 8;
+                    }
+                    bitcount -= 6;
+                    target[r + j] = Base64Order.alpha_enhanced[(int) ((bits >>> bitcount) & 0x3f)];
+                }
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                final int r = toff + i * objectsize;
+                final int s = b[prefixStart + i] & 0xff;
+                if (s > 0) System.arraycopy(target, r - objectsize, target, r, s);
+                System.arraycopy(b, p, target, r + s, keylength - s);
+                p += keylength - s;
+            }
+        }
+
+        // the other columns
+        for (int c = 1; c < rowdef.columns(); c++) {
+            final int start = rowdef.colstart[c];
+            final int width = rowdef.width(c);
+            final byte cmode = b[p++];
+            if (cmode == col_constant) {
+                for (int i = 0; i < n; i++) System.arraycopy(b, p, target, toff + i * objectsize + start, width);
+                p += width;
+            } else if (cmode == col_varint) {
+                for (int i = 0; i < n; i++) {
+                    long v = 0;
+                    int shift = 0;
+                    byte x;
+                    do {
+                        x = b[p++];
+                        v |= ((long) (x & 0x7f)) << shift;
+                        shift += 7;
+                    } while (x < 0);
+                    NaturalOrder.encodeLong(v, target, toff + i * objectsize + start, width);
+                }
+            } else {
+                for (int i = 0; i < n; i++) System.arraycopy(b, p + i * width, target, toff + i * objectsize + start, width);
+                p += n * width;
+            }
+        }
+    }
+
+    private static int putVarint(final byte[] b, int p, long v) {
+        while ((v & ~0x7fL) != 0) {
+            b[p++] = (byte) ((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        b[p++] = (byte) v;
+        return p;
+    }
+}
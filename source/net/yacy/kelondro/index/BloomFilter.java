@@ -0,0 +1,158 @@
+/**
+ *  BloomFilter
+ *  Copyright 2026 by YaCy contributors
+ *  First released 18.10.2026 at https://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * A Bloom filter for byte[] keys. It answers the question if a key is possibly in a set;
+ * a negative answer is always correct, a positive answer is wrong with a small probability.
+ * Keys can only be added, never removed. This is used to skip BLOB files in a lookup
+ * which cannot contain a key, without asking their index.
+ */
+public final class BloomFilter {
+
+    private static final int MAGIC = 0x626C6D31; // "blm1"
+
+    private final long[] bits;
+    private final long mask;   // the number of bits minus one; the number of bits is a power of two
+    private final int hashes;  // the number of bit positions per key
+
+    /**
+     * create an empty filter
+     * @param expectedKeys the number of keys that are expected in the filter
+     * @param bitsPerKey the number of bits for each key; 10 bits give a false positive rate of about 1%
+     */
+    public BloomFilter(final int expectedKeys, final int bitsPerKey) {
+        final long wanted = Math.max(64L, (long) Math.max(1, expectedKeys) * Math.max(1, bitsPerKey));
+        final long size = Math.min(1L << 36, Long.highestOneBit(wanted - 1) << 1); // round up to a power of two
+        this.bits = new long[(int) (size >>> 6)];
+        this.mask = size - 1;
+        this.hashes = Math.max(1, Math.min(16, (int) Math.round(Math.log(2) * size / Math.max(1, expectedKeys))));
+    }
+
+    /**
+     * read a filter from a dump
+     * @param file a file that had been written with dump()
+     * @throws IOException if the file cannot be read or has a wrong format
+     */
+    public BloomFilter(final File file) throws IOException {
+        try (final DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            if (is.readInt() != MAGIC) throw new IOException("BloomFilter: wrong format of " + file.toString());
+            this.hashes = is.readInt();
+            final int words = is.readInt();
+            if (this.hashes < 1 || words < 1 || Integer.bitCount(words) != 1) throw new IOException("BloomFilter: wrong header in " + file.toString());
+            this.bits = new long[words];
+            this.mask = ((long) words << 6) - 1;
+            for (int i = 0; i < words; i++) this.bits[i] = is.readLong();
+        }
+    }
+
+    /**
+     * create a filter with all keys of an iteration
+     * @param keys the keys
+     * @param size the number of keys in the iteration
+     * @param bitsPerKey the number of bits for each key
+     * @return the filled filter
+     */
+    public static BloomFilter of(final Iterator<byte[]> keys, final int size, final int bitsPerKey) {
+        final BloomFilter filter = new BloomFilter(size, bitsPerKey);
+        while (keys.hasNext()) filter.add(keys.next());
+        return filter;
+    }
+
+    public void add(final byte[] key) {
+        final long h = hash(key);
+        final long h2 = (h >>> 32) | 1L;
+        long p = h;
+        for (int i = 0; i < this.hashes; i++) {
+            final long b = p & this.mask;
+            this.bits[(int) (b >>> 6)] |= 1L << b;
+            p += h2;
+        }
+    }
+
+    /**
+     * test a key
+     * @param key
+     * @return false if the key was never added, true if it was probably added
+     */
+    public boolean mightContain(final byte[] key) {
+        final long h = hash(key);
+        final long h2 = (h >>> 32) | 1L;
+        long p = h;
+        for (int i = 0; i < this.hashes; i++) {
+            final long b = p & this.mask;
+            if ((this.bits[(int) (b >>> 6)] & (1L << b)) == 0) return false;
+            p += h2;
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of bytes that this filter occupies in RAM
+     */
+    public long mem() {
+        return this.bits.length * 8L;
+    }
+
+    /**
+     * dump the filter to a file; the dump is written to a temporary file first which then replaces the file
+     * @param file
+     * @throws IOException if the dump cannot be written or cannot replace the file
+     */
+    public void dump(final File file) throws IOException {
+        final File tmp = new File(file.getParentFile(), file.getName() + ".prt");
+        try (final DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024))) {
+            os.writeInt(MAGIC);
+            os.writeInt(this.hashes);
+            os.writeInt(this.bits.length);
+            for (final long w: this.bits) os.writeLong(w);
+        }
+        FileUtils.forceMove(tmp, file);
+    }
+
+    /**
+     * a 64 bit hash of the key bytes; keys in kelondro are mostly hashes already
+     * but may share prefixes, so all bytes are mixed
+     */
+    private static long hash(final byte[] key) {
+        long h = 0x9E3779B97F4A7C15L ^ key.length;
+        for (final byte b: key) {
+            h ^= b & 0xff;
+            h *= 0x100000001B3L;
+        }
+        // finalizer of the SplitMix64 generator
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+}
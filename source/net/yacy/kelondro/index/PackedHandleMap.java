@@ -0,0 +1,626 @@
+/**
+ *  PackedHandleMap
+ *  Copyright 2026 by YaCy contributors
+ *  First released 18.10.2026 at https://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.index;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import net.yacy.cora.order.ByteOrder;
+import net.yacy.cora.order.CloneableIterator;
+import net.yacy.cora.storage.HandleMap;
+import net.yacy.cora.util.SpaceExceededException;
+
+/**
+ * A HandleMap for indexes which are written once and then mostly read, like the index of a heap file
+ * that is not extended any more. All entries are stored in a single sorted byte[] of fixed-size records;
+ * each record is the key followed by the value in big-endian order with only as many bytes as
+ * the largest value needs. There are no objects per entry and no partitions.
+ *
+ * A dump of this map has the same format as a dump of a RowHandleMap with 8 value bytes: the sorted
+ * sequence of all records. Such a dump is loaded with a single read into one array.
+ *
+ * Lookups are binary searches and may run concurrently. Removals only mark the entry as removed.
+ * New keys are possible but each insertion copies the whole array, so this class must not be used
+ * for maps which are filled entry by entry.
+ */
+public final class PackedHandleMap implements HandleMap {
+
+    private final int keylength;
+    private final ByteOrder ordering;
+    private final ReentrantReadWriteLock lock;
+    private byte[] records;    // sorted records of (key, value)
+    private int valuelength;   // number of value bytes in each record
+    private int reclength;     // keylength + valuelength
+    private int count;         // number of records in the array, including removed records
+    private int removed;       // number of records which are marked as removed
+
+    /**
+     * create an empty map
+     * @param keylength the length of all keys
+     * @param ordering the order of the keys
+     */
+    public PackedHandleMap(final int keylength, final ByteOrder ordering) {
+        this.keylength = keylength;
+        this.ordering = ordering;
+        this.lock = new ReentrantReadWriteLock();
+        this.valuelength = 1;
+        this.reclength = keylength + 1;
+        this.records = new byte[0];
+        this.count = 0;
+        this.removed = 0;
+    }
+
+    /**
+     * initialize a map with the content of a dumped index. The dump must be sorted according to the ordering
+     * and must not contain a key twice, otherwise an IOException is thrown.
+     * @param keylength the length of all keys
+     * @param ordering the order of the keys
+     * @param idxbytes the number of value bytes in each record of the dump
+     * @param file the dump, may be gzipped if the name ends with .gz
+     * @throws IOException
+     * @throws SpaceExceededException if there is not enough memory to load the dump
+     */
+    public PackedHandleMap(final int keylength, final ByteOrder ordering, final int idxbytes, final File file) throws IOException, SpaceExceededException {
+        this(keylength, ordering);
+        final byte[] raw = readFully(file);
+        if (raw.length % (keylength + idxbytes) != 0) throw new IOException("PackedHandleMap: size of " + file.getName() + " does not match the record size");
+        pack(raw, raw.length / (keylength + idxbytes), idxbytes, file.getName());
+    }
+
+    /**
+     * create a map with the content of another map
+     * @param keylength the length of all keys
+     * @param ordering the order of the keys
+     * @param source the map which is copied
+     * @return a packed copy of the source
+     * @throws SpaceExceededException if there is not enough memory for the copy
+     */
+    public static PackedHandleMap of(final int keylength, final ByteOrder ordering, final HandleMap source) throws SpaceExceededException {
+        final PackedHandleMap map = new PackedHandleMap(keylength, ordering);
+        final int size = source.size();
+        final byte[] raw = allocate((long) size * (keylength + 8));
+        final CloneableIterator<byte[]> keys = source.keys(true, null);
+        int c = 0;
+        byte[] key;
+        long l;
+        while (keys.hasNext() && c < size) {
+            key = keys.next();
+            l = source.get(key);
+            if (l < 0) continue; // removed concurrently
+            System.arraycopy(key, 0, raw, c * (keylength + 8), keylength);
+            encode(raw, c * (keylength + 8) + keylength, 8, l);
+            c++;
+        }
+        keys.close();
+        try {
+            map.pack(raw, c, 8, "copy");
+        } catch (final IOException e) {
+            throw new IllegalStateException("source map is not sorted", e);
+        }
+        return map;
+    }
+
+    private static byte[] readFully(final File file) throws IOException, SpaceExceededException {
+        if (file.getName().endsWith(".gz")) {
+            try (final InputStream is = new GZIPInputStream(new FileInputStream(file), 65536)) {
+                final ByteArrayOutputStream os = new ByteArrayOutputStream((int) Math.min(Integer.MAX_VALUE - 8, file.length() * 2));
+                final byte[] b = new byte[65536];
+                int c;
+                while ((c = is.read(b)) > 0) os.write(b, 0, c);
+                return os.toByteArray();
+            }
+        }
+        final byte[] raw = allocate(file.length());
+        try (final DataInputStream is = new DataInputStream(new FileInputStream(file))) {
+            is.readFully(raw);
+        }
+        return raw;
+    }
+
+    private static byte[] allocate(final long size) throws SpaceExceededException {
+        if (size > Integer.MAX_VALUE - 8) throw new SpaceExceededException(size, "PackedHandleMap: index too large for one array");
+        try {
+            return new byte[(int) size];
+        } catch (final OutOfMemoryError e) {
+            throw new SpaceExceededException(size, "PackedHandleMap.allocate()");
+        }
+    }
+
+    /**
+     * move sorted records with a value length of idxbytes into this map, using the smallest possible value length.
+     * The records are packed within the given array, which is then trimmed.
+     */
+    private void pack(final byte[] raw, final int n, final int idxbytes, final String name) throws IOException {
+        final int rawlength = this.keylength + idxbytes;
+        long max = 0;
+        for (int i = 0; i < n; i++) {
+            final long l = decode(raw, i * rawlength + this.keylength, idxbytes);
+            if (l < 0) throw new IOException("PackedHandleMap: negative value in " + name);
+            if (l > max) max = l;
+            if (i > 0 && this.ordering.compare(raw, (i - 1) * rawlength, raw, i * rawlength, this.keylength) >= 0) {
+                throw new IOException("PackedHandleMap: " + name + " is not sorted or has double keys at record " + i);
+            }
+        }
+        final int vl = valueLength(max);
+        final int rl = this.keylength + vl;
+        for (int i = 0; i < n; i++) {
+            final long l = decode(raw, i * rawlength + this.keylength, idxbytes);
+            System.arraycopy(raw, i * rawlength, raw, i * rl, this.keylength); // target is never behind the source
+            encode(raw, i * rl + this.keylength, vl, l);
+        }
+        this.records = (rl == rawlength) ? raw : Arrays.copyOf(raw, n * rl);
+        this.valuelength = vl;
+        this.reclength = rl;
+        this.count = n;
+        this.removed = 0;
+    }
+
+    /**
+     * @return the number of bytes which are needed to store l and which do not produce the removal mark
+     */
+    private static int valueLength(final long l) {
+        int vl = 1;
+        while (vl < 8 && l >= removalMark(vl)) vl++;
+        return vl;
+    }
+
+    private static long removalMark(final int valuelength) {
+        return valuelength == 8 ? Long.MAX_VALUE : (1L << (valuelength * 8)) - 1;
+    }
+
+    private static long decode(final byte[] b, final int offset, final int length) {
+        long l = 0;
+        for (int i = 0; i < length; i++) l = (l << 8) | (b[offset + i] & 0xff);
+        return l;
+    }
+
+    private static void encode(final byte[] b, final int offset, final int length, long l) {
+        for (int i = length - 1; i >= 0; i--) {
+            b[offset + i] = (byte) l;
+            l >>>= 8;
+        }
+    }
+
+    /**
+     * binary search for a key; must be called with a lock
+     * @return the record number of the key or (-(insertion point) - 1) if the key is not in the array
+     */
+    private int find(final byte[] key) {
+        int low = 0, high = this.count - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int c = this.ordering.compare(this.records, mid * this.reclength, key, 0, this.keylength);
+            if (c < 0) low = mid + 1;
+            else if (c > 0) high = mid - 1;
+            else return mid;
+        }
+        return -(low + 1);
+    }
+
+    private long value(final int p) {
+        final long l = decode(this.records, p * this.reclength + this.keylength, this.valuelength);
+        return l == removalMark(this.valuelength) ? -1 : l;
+    }
+
+    private byte[] key(final int p) {
+        final byte[] key = new byte[this.keylength];
+        System.arraycopy(this.records, p * this.reclength, key, 0, this.keylength);
+        return key;
+    }
+
+    /**
+     * change the value of a record; must be called with the write lock
+     */
+    private void setValue(final int p, final long l) {
+        assert l >= 0 : "l = " + l;
+        if (l >= removalMark(this.valuelength)) widen(valueLength(l));
+        encode(this.records, p * this.reclength + this.keylength, this.valuelength, l);
+    }
+
+    private void mark(final int p) {
+        encode(this.records, p * this.reclength + this.keylength, this.valuelength, removalMark(this.valuelength));
+        this.removed++;
+    }
+
+    /**
+     * copy all records into an array with a larger value length; must be called with the write lock
+     */
+    private void widen(final int vl) {
+        final int rl = this.keylength + vl;
+        final byte[] r = new byte[this.count * rl];
+        final long oldMark = removalMark(this.valuelength);
+        for (int i = 0; i < this.count; i++) {
+            final long l = decode(this.records, i * this.reclength + this.keylength, this.valuelength);
+            System.arraycopy(this.records, i * this.reclength, r, i * rl, this.keylength);
+            encode(r, i * rl + this.keylength, vl, l == oldMark ? removalMark(vl) : l);
+        }
+        this.records = r;
+        this.valuelength = vl;
+        this.reclength = rl;
+    }
+
+    /**
+     * insert a new record at position p; must be called with the write lock.
+     * The array is copied so running iterations are not disturbed.
+     */
+    private void insert(final int p, final byte[] key, final long l) throws SpaceExceededException {
+        if (l >= removalMark(this.valuelength)) widen(valueLength(l));
+        final byte[] r = allocate((long) (this.count + 1) * this.reclength);
+        System.arraycopy(this.records, 0, r, 0, p * this.reclength);
+        System.arraycopy(key, 0, r, p * this.reclength, this.keylength);
+        encode(r, p * this.reclength + this.keylength, this.valuelength, l);
+        System.arraycopy(this.records, p * this.reclength, r, (p + 1) * this.reclength, (this.count - p) * this.reclength);
+        this.records = r;
+        this.count++;
+    }
+
+    @Override
+    public long mem() {
+        return this.records.length;
+    }
+
+    @Override
+    public void optimize() {
+        // removed records are kept, because removing them would copy the array
+    }
+
+    @Override
+    public int dump(final File file) throws IOException {
+        final File tmp = new File(file.getParentFile(), file.getName() + ".prt");
+        int c = 0;
+        this.lock.readLock().lock();
+        try (final FileOutputStream fileStream = new FileOutputStream(tmp)) {
+            OutputStream os = new BufferedOutputStream(fileStream, 4 * 1024 * 1024);
+            if (file.getName().endsWith(".gz")) os = new GZIPOutputStream(os, 65536){{this.def.setLevel(Deflater.BEST_COMPRESSION);}};
+            final byte[] value = new byte[8];
+            for (int i = 0; i < this.count; i++) {
+                final long l = value(i);
+                if (l < 0) continue;
+                os.write(this.records, i * this.reclength, this.keylength);
+                encode(value, 0, 8, l);
+                os.write(value);
+                c++;
+            }
+            os.close();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        tmp.renameTo(file);
+        assert file.exists() : file.toString();
+        assert !tmp.exists() : tmp.toString();
+        return c;
+    }
+
+    @Override
+    public void clear() {
+        this.lock.writeLock().lock();
+        try {
+            this.records = new byte[0];
+            this.count = 0;
+            this.removed = 0;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public byte[] smallestKey() {
+        this.lock.readLock().lock();
+        try {
+            for (int i = 0; i < this.count; i++) if (value(i) >= 0) return key(i);
+            return null;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public byte[] largestKey() {
+        this.lock.readLock().lock();
+        try {
+            for (int i = this.count - 1; i >= 0; i--) if (value(i) >= 0) return key(i);
+            return null;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean has(final byte[] key) {
+        return get(key) >= 0;
+    }
+
+    @Override
+    public long get(final byte[] key) {
+        assert key != null;
+        this.lock.readLock().lock();
+        try {
+            final int p = find(key);
+            return p < 0 ? -1 : value(p);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long put(final byte[] key, final long l) throws SpaceExceededException {
+        assert l >= 0 : "l = " + l;
+        assert key != null;
+        this.lock.writeLock().lock();
+        try {
+            final int p = find(key);
+            if (p < 0) {
+                insert(-p - 1, key, l);
+                return -1;
+            }
+            final long old = value(p);
+            if (old < 0) this.removed--;
+            setValue(p, l);
+            return old;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void putUnique(final byte[] key, final long l) throws SpaceExceededException {
+        put(key, l);
+    }
+
+    @Override
+    public long add(final byte[] key, final long a) throws SpaceExceededException {
+        assert key != null;
+        this.lock.writeLock().lock();
+        try {
+            final int p = find(key);
+            if (p < 0) {
+                insert(-p - 1, key, a);
+                return 1;
+            }
+            final long old = value(p);
+            if (old < 0) {
+                this.removed--;
+                setValue(p, a);
+                return 1;
+            }
+            setValue(p, old + a);
+            return old + a;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long inc(final byte[] key) throws SpaceExceededException {
+        return add(key, 1);
+    }
+
+    /**
+     * decrement the value of a key. Negative values mark removed entries, therefore a value is not decremented below 0
+     * and an absent key is not inserted.
+     * @return the new value, or -1 if the key is absent or its value is 0
+     */
+    @Override
+    public long dec(final byte[] key) throws SpaceExceededException {
+        assert key != null;
+        this.lock.writeLock().lock();
+        try {
+            final int p = find(key);
+            if (p < 0) return -1;
+            final long old = value(p);
+            if (old <= 0) return -1;
+            setValue(p, old - 1);
+            return old - 1;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public ArrayList<long[]> removeDoubles() {
+        return new ArrayList<long[]>(0); // keys are unique
+    }
+
+    @Override
+    public ArrayList<byte[]> top(final int count) {
+        final ArrayList<byte[]> list = new ArrayList<byte[]>();
+        this.lock.readLock().lock();
+        try {
+            for (int i = 0; i < this.count && list.size() < count; i++) if (value(i) >= 0) list.add(key(i));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return list;
+    }
+
+    @Override
+    public long remove(final byte[] key) {
+        assert key != null;
+        this.lock.writeLock().lock();
+        try {
+            final int p = find(key);
+            if (p < 0) return -1;
+            final long old = value(p);
+            if (old >= 0) mark(p);
+            return old;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long removeone() {
+        this.lock.writeLock().lock();
+        try {
+            for (int i = this.count - 1; i >= 0; i--) {
+                final long old = value(i);
+                if (old >= 0) {
+                    mark(i);
+                    return old;
+                }
+            }
+            return -1;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.count - this.removed;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public CloneableIterator<byte[]> keys(final boolean up, final byte[] firstKey) {
+        return new KeyIterator(up, firstKey);
+    }
+
+    @Override
+    public Iterator<Map.Entry<byte[], Long>> iterator() {
+        final KeyIterator keys = new KeyIterator(true, null);
+        return new Iterator<Map.Entry<byte[], Long>>() {
+            @Override
+            public boolean hasNext() {
+                return keys.hasNext();
+            }
+            @Override
+            public Map.Entry<byte[], Long> next() {
+                final byte[] key = keys.next();
+                return new AbstractMap.SimpleEntry<byte[], Long>(key, keys.value);
+            }
+            @Override
+            public void remove() {
+                PackedHandleMap.this.remove(keys.last);
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        clear();
+    }
+
+    /**
+     * iterates over a snapshot of the record array. Insertions create a new array and are not visible,
+     * removals are visible if they happen before the iterator reaches the record.
+     */
+    private final class KeyIterator implements CloneableIterator<byte[]> {
+
+        private final boolean up;
+        private final byte[] records;
+        private final int count, reclength, valuelength;
+        private int p;        // the position of the next record to check
+        private byte[] next;  // the next key or null if there is no next key
+        private long nextValue;
+        protected byte[] last; // the key that was returned by the latest next()
+        protected long value;  // the value of the key that was returned by the latest next()
+
+        private KeyIterator(final boolean up, final byte[] firstKey) {
+            this.up = up;
+            PackedHandleMap.this.lock.readLock().lock();
+            try {
+                this.records = PackedHandleMap.this.records;
+                this.count = PackedHandleMap.this.count;
+                this.reclength = PackedHandleMap.this.reclength;
+                this.valuelength = PackedHandleMap.this.valuelength;
+                if (firstKey == null) {
+                    this.p = up ? 0 : this.count - 1;
+                } else {
+                    final int f = find(firstKey);
+                    this.p = f >= 0 ? f : (up ? -f - 1 : -f - 2);
+                }
+            } finally {
+                PackedHandleMap.this.lock.readLock().unlock();
+            }
+            advance();
+        }
+
+        private void advance() {
+            final long mark = removalMark(this.valuelength);
+            while (this.p >= 0 && this.p < this.count) {
+                final int q = this.p;
+                this.p += this.up ? 1 : -1;
+                final long l = decode(this.records, q * this.reclength + PackedHandleMap.this.keylength, this.valuelength);
+                if (l == mark) continue;
+                this.next = new byte[PackedHandleMap.this.keylength];
+                System.arraycopy(this.records, q * this.reclength, this.next, 0, PackedHandleMap.this.keylength);
+                this.nextValue = l;
+                return;
+            }
+            this.next = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        @Override
+        public byte[] next() {
+            if (this.next == null) throw new NoSuchElementException();
+            this.last = this.next;
+            this.value = this.nextValue;
+            advance();
+            return this.last;
+        }
+
+        @Override
+        public void remove() {
+            PackedHandleMap.this.remove(this.last);
+        }
+
+        @Override
+        public CloneableIterator<byte[]> clone(final Object modifier) {
+            return new KeyIterator(this.up, (byte[]) modifier);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
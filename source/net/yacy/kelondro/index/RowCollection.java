@@ -184,7 +184,7 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
         return (int) (time / day) - 10957;
     }
 
-    protected static final long exportOverheadSize = 14;
+    public static final long exportOverheadSize = 14;
 
     private static Row exportRow(final int chunkcachelength) {
         final Column c0 = new Column("int size-4 {b256}");
@@ -218,6 +218,37 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
         return entry.bytes();
     }
 
+    /**
+     * export the collection in the compressed format of BlockRowCodec.
+     * The result can be imported with RowSet.importRowSet like the result of exportCollection()
+     * @return the packed collection
+     */
+    public synchronized byte[] exportPacked() {
+        sort();
+        return BlockRowCodec.encode(this.rowdef, this.chunkcache, this.chunkcount);
+    }
+
+    /**
+     * compute the head of an exported collection for collections which are exported in pieces:
+     * the head is followed by chunkcount sorted rows of the given row definition
+     * @param rowdef the row definition of the collection
+     * @param chunkcount the number of rows
+     * @param lastTimeWrote
+     * @return the first exportOverheadSize bytes of an exported collection
+     */
+    public static byte[] exportHead(final Row rowdef, final int chunkcount, final long lastTimeWrote) {
+        final Row row = exportRow(rowdef.objectsize);
+        final Row.Entry entry = row.newEntry();
+        entry.setCol(exp_chunkcount, chunkcount);
+        entry.setCol(exp_last_read, daysSince2000(System.currentTimeMillis()));
+        entry.setCol(exp_last_wrote, daysSince2000(lastTimeWrote));
+        entry.setCol(exp_order_type, (rowdef.objectOrder == null) ? ASCII.getBytes("__") : ASCII.getBytes(rowdef.objectOrder.signature()));
+        entry.setCol(exp_order_bound, chunkcount);
+        final byte[] head = new byte[(int) exportOverheadSize];
+        System.arraycopy(entry.bytes(), 0, head, 0, head.length);
+        return head;
+    }
+
     public void saveCollection(final File file) throws IOException {
         FileUtils.copy(exportCollection(), file);
     }
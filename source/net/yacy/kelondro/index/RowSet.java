@@ -79,6 +79,7 @@ public class RowSet extends RowCollection implements Index, Iterable<Row.Entry>,
     }
 
     public final static RowSet importRowSet(final byte[] b, final Row rowdef) throws SpaceExceededException {
+        if (BlockRowCodec.isPacked(b)) return BlockRowCodec.decode(b, rowdef);
     	assert b.length >= exportOverheadSize : "b.length = " + b.length;
     	if (b.length < exportOverheadSize) return new RowSet(rowdef, 0);
         final int size = (int) NaturalOrder.decodeLong(b, 0, 4);
@@ -116,6 +117,18 @@ public class RowSet extends RowCollection implements Index, Iterable<Row.Entry>,
         return c;
     }
 
+    /**
+     * compute the number of rows of an exported collection from its first bytes
+     * @param head at least the first exportOverheadSize bytes of an exported collection, or all of it if it is shorter
+     * @return the number of rows
+     */
+    public final static int importRowCount(final byte[] head) {
+        if (BlockRowCodec.isPacked(head)) return BlockRowCodec.count(head);
+        if (head.length < exportOverheadSize) return 0;
+        final int c = (int) NaturalOrder.decodeLong(head, 0, 4);
+        return c < 0 ? 0 : c;
+    }
+
     private RowSet(final Row rowdef, final byte[] chunkcache, final int chunkcount, final int sortBound, final long lastTimeWrote) {
         super(rowdef, chunkcache, chunkcount, sortBound, lastTimeWrote);
     }
@@ -367,6 +380,43 @@ public class RowSet extends RowCollection implements Index, Iterable<Row.Entry>,
         return l;
     }
 
+    /**
+     * find the position of a key in the sorted area by galloping: starting at a given position the
+     * distance to the key is bounded with exponentially growing steps, then a binary search is done
+     * within the bounds. This needs about 2 * log(d) comparisons where d is the distance between the
+     * start position and the key, so increasing keys can be looked up one after another without
+     * enumerating all rows in between.
+     * @param key
+     * @param astart the start of the key in key
+     * @param from the start position; all rows before it must be smaller than the key
+     * @return the position of the key if the key exists, or the position of the first row that is
+     *         greater than the key; sortBound if there is no such row
+     */
+    public final synchronized int gallop(final byte[] key, final int astart, final int from) {
+        assert (this.rowdef.objectOrder != null);
+        final int rbound = this.sortBound;
+        if (from >= rbound) return rbound;
+        if (this.compare(key, astart, from) <= 0) return from;
+        // the row at l is always smaller than the key
+        int l = from;
+        int r = from + 1;
+        int step = 1;
+        while (r < rbound && this.compare(key, astart, r) > 0) {
+            l = r;
+            step <<= 1;
+            r = (rbound - l > step) ? l + step : rbound;
+        }
+        l++;
+        int p, d;
+        while (l < r) {
+            p = (l + r) >>> 1;
+            d = this.compare(key, astart, p);
+            if (d == 0) return p;
+            if (d < 0) r = p; else l = p + 1;
+        }
+        return l;
+    }
+
     public final synchronized Iterator<byte[]> keys() {
         this.sort();
         return super.keys(true);
@@ -27,7 +27,9 @@ package net.yacy.kelondro.io;
 import java.io.File;
 import java.io.IOException;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.yacy.cora.document.encoding.UTF8;
 import net.yacy.cora.util.ConcurrentLog;
@@ -40,17 +42,96 @@ import net.yacy.kelondro.util.FileUtils;
  * write buffer to elements that are INSIDE the filed entries of the file
  * That means, each time, an entry is written to the end of the file, it is NOT buffered here,
  * but possibly buffered in the enclosed kelondroEcoFS
+ * Records with consecutive indexes are written to the file with a single write operation.
+ * If groupCommitLag is set, changed records are written by a background thread (group commit)
+ * at the latest after that time, instead of being written by the thread which fills the buffer.
  */
 public final class BufferedRecords {
 
+    /**
+     * the maximum time in milliseconds that changes stay in the buffer of a new BufferedRecords
+     * object until they are written by the background thread; 0 means no group commit: the buffer
+     * is written when it is full or when it is flushed explicitly
+     */
+    public static long groupCommitLag = 0;
+
+    private static final int maxRunSize = 64 * 1024; // maximum number of bytes in one write
+    private static final Set<BufferedRecords> groupCommit = ConcurrentHashMap.newKeySet();
+    private static Flusher flusher = null;
+
     private final Records efs;
     private final int maxEntries;
     private final TreeMap<Long, byte[]> buffer;
+    private final long lag;
+    private long dirtySince; // the time of the oldest change that is not written, 0 if there is none
 
     public BufferedRecords(final Records efs, final int maxEntries) {
         this.efs = efs;
         this.maxEntries = maxEntries;
         this.buffer = new TreeMap<Long, byte[]>();
+        this.lag = groupCommitLag;
+        this.dirtySince = 0;
+        if (this.lag > 0) {
+            groupCommit.add(this);
+            startFlusher();
+        }
+    }
+
+    private static synchronized void startFlusher() {
+        if (flusher != null && flusher.isAlive()) return;
+        flusher = new Flusher();
+        flusher.start();
+    }
+
+    /**
+     * the background thread that writes the buffers of all BufferedRecords objects in group commit mode
+     */
+    private static class Flusher extends Thread {
+
+        public Flusher() {
+            super("BufferedRecords.Flusher");
+            this.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                synchronized (this) {
+                    try {
+                        this.wait(100);
+                    } catch (final InterruptedException e) {
+                        return;
+                    }
+                }
+                final long now = System.currentTimeMillis();
+                for (final BufferedRecords records: groupCommit) {
+                    try {
+                        records.commit(now);
+                    } catch (final Throwable e) {
+                        ConcurrentLog.logException(e);
+                    }
+                }
+            }
+        }
+
+        private synchronized void wakeup() {
+            this.notify();
+        }
+    }
+
+    /**
+     * write the buffer if the oldest change is older than the lag or if the buffer is full
+     * @param now the current time
+     * @throws IOException
+     */
+    private synchronized void commit(final long now) throws IOException {
+        if (this.dirtySince == 0) return;
+        if (now - this.dirtySince < this.lag && this.buffer.size() <= this.maxEntries) return;
+        flushBuffer();
+    }
+
+    private void changed() {
+        if (this.dirtySince == 0) this.dirtySince = System.currentTimeMillis();
     }
     
     public synchronized void clear() {
@@ -66,13 +147,30 @@ public final class BufferedRecords {
     public synchronized void flushBuffer() throws IOException {
         flushBuffer0();
         if (this.efs != null) this.efs.flushBuffer();
+        this.dirtySince = 0;
     }
 
     private final void flushBuffer0() throws IOException {
         if (this.efs == null) return;
+        if (this.buffer.isEmpty()) return;
+        // collect records with consecutive indexes and write them together
+        final int recordsize = this.efs.recordsize;
+        final int maxRun = Math.max(1, maxRunSize / recordsize);
+        final byte[] run = new byte[Math.min(maxRun, this.buffer.size()) * recordsize];
+        long runStart = 0;
+        int runCount = 0;
+        long index;
         for (final Map.Entry<Long, byte[]> entry: this.buffer.entrySet()) {
-            this.efs.put(entry.getKey().intValue(), entry.getValue(), 0);
+            index = entry.getKey().longValue();
+            if (runCount > 0 && (index != runStart + runCount || runCount == maxRun)) {
+                this.efs.put(runStart, run, 0, runCount);
+                runCount = 0;
+            }
+            if (runCount == 0) runStart = index;
+            System.arraycopy(entry.getValue(), 0, run, runCount * recordsize, recordsize);
+            runCount++;
         }
+        if (runCount > 0) this.efs.put(runStart, run, 0, runCount);
         this.buffer.clear();
     }
 
@@ -85,6 +183,7 @@ public final class BufferedRecords {
     }
 
     public final synchronized void close() {
+        groupCommit.remove(this);
         try {
             flushBuffer0();
         } catch (final IOException e) {
@@ -113,11 +212,19 @@ public final class BufferedRecords {
         if (index > s) throw new IndexOutOfBoundsException("kelondroBufferedEcoFS.put(" + index + ") outside bounds (" + size() + ")");
         if (index == s) {
             this.efs.add(b, start);
+            if (this.lag > 0) changed();
         } else {
             final byte[] bb = new byte[this.efs.recordsize];
             System.arraycopy(b, start, bb, 0, this.efs.recordsize);
             this.buffer.put(Long.valueOf(index), bb);
-            if (this.buffer.size() > this.maxEntries) flushBuffer0();
+            if (this.lag == 0) {
+                if (this.buffer.size() > this.maxEntries) flushBuffer0();
+            } else {
+                changed();
+                // the buffer is written in the background; only if that does not keep up, it is written here
+                if (this.buffer.size() > this.maxEntries) flusher.wakeup();
+                if (this.buffer.size() > 2 * this.maxEntries) flushBuffer0();
+            }
        }
     }
 
@@ -125,6 +232,7 @@ public final class BufferedRecords {
         assert b.length - start >= this.efs.recordsize;
         // index == size() == efs.size();
         this.efs.add(b, start);
+        if (this.lag > 0) changed();
     }
 
     public final synchronized void cleanLast(final byte[] b, final int start) throws IOException {
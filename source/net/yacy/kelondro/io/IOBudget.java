@@ -0,0 +1,98 @@
+/**
+ *  IOBudget
+ *  Copyright 2026 by YaCy contributors
+ *  First released 18.10.2026 at https://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.io;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A write budget in bytes per second. Background jobs which write large amounts of data,
+ * like merges of BLOB files, call consume() for each written chunk and are slowed down
+ * with sleeps if they write faster than the budget allows.
+ */
+public final class IOBudget {
+
+    private volatile long bytesPerSecond; // the budget; a value <= 0 means no limit
+    private long windowStart;             // start time of the current accounting window
+    private long windowBytes;             // bytes consumed within the current window
+    private final AtomicLong totalBytes;
+    private final AtomicLong throttledMillis;
+
+    /**
+     * create a budget
+     * @param bytesPerSecond the number of bytes that may be written each second, a value <= 0 means no limit
+     */
+    public IOBudget(final long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.windowStart = System.currentTimeMillis();
+        this.windowBytes = 0;
+        this.totalBytes = new AtomicLong(0);
+        this.throttledMillis = new AtomicLong(0);
+    }
+
+    public void setBytesPerSecond(final long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public long getBytesPerSecond() {
+        return this.bytesPerSecond;
+    }
+
+    /**
+     * account written bytes and wait until the budget allows to go on
+     * @param bytes the number of bytes which had been written
+     */
+    public void consume(final long bytes) {
+        this.totalBytes.addAndGet(bytes);
+        final long bps = this.bytesPerSecond;
+        if (bps <= 0) return;
+        final long sleep;
+        synchronized (this) {
+            final long now = System.currentTimeMillis();
+            if (now - this.windowStart >= 1000) {
+                this.windowStart = now;
+                this.windowBytes = 0;
+            }
+            this.windowBytes += bytes;
+            sleep = this.windowStart + this.windowBytes * 1000L / bps - now;
+        }
+        if (sleep <= 0) return;
+        try {
+            Thread.sleep(sleep);
+            this.throttledMillis.addAndGet(sleep);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the number of bytes that had been accounted since the budget was created
+     */
+    public long getTotalBytes() {
+        return this.totalBytes.get();
+    }
+
+    /**
+     * @return the time in milliseconds that writers had been delayed to meet the budget
+     */
+    public long getThrottledMillis() {
+        return this.throttledMillis.get();
+    }
+}
@@ -287,6 +287,30 @@ public final class Records {
         }
     }
 
+    /**
+     * write records with consecutive indexes. Records which are all inside the file are written
+     * with a single sequential write; other records are written one by one with put(long, byte[], int)
+     * @param index the index of the first record
+     * @param b the records
+     * @param start offset of the first record in b
+     * @param count the number of records
+     * @throws IOException
+     */
+    public final synchronized void put(final long index, final byte[] b, final int start, final int count) throws IOException {
+        assert b.length - start >= count * this.recordsize;
+        boolean sequential = count > 1 && index + count <= filesize();
+        for (int i = 0; i < count && sequential; i++) {
+            // clean records may shrink the file and are not written here
+            if (isClean(b, start + i * this.recordsize, this.recordsize)) sequential = false;
+        }
+        if (!sequential) {
+            for (int i = 0; i < count; i++) put(index + i, b, start + i * this.recordsize);
+            return;
+        }
+        this.raf.seek(index * this.recordsize);
+        this.raf.write(b, start, count * this.recordsize);
+    }
+
     public final synchronized void add(final byte[] b, final int start) throws IOException {
         assert b.length - start >= this.recordsize;
 
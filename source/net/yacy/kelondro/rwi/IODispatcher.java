@@ -28,9 +28,11 @@ import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.function.BooleanSupplier;
 
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.kelondro.blob.ArrayStack;
+import net.yacy.kelondro.io.IOBudget;
 import net.yacy.kelondro.util.MemoryControl;
 
 
@@ -56,6 +58,8 @@ public class IODispatcher extends Thread {
     private   ArrayBlockingQueue<DumpJob<? extends Reference>> dumpQueue;
     private   boolean                      terminate;
     private final int                      writeBufferSize;
+    private final IOBudget                 mergeBudget; // write budget for merges; dumps are never limited
+    private volatile BooleanSupplier       pauseCondition; // no new merges are scheduled while this is true
 
     public IODispatcher(final int dumpQueueLength, final int mergeQueueLength, final int writeBufferSize) {
     	super("IODispatcher");
@@ -64,11 +68,55 @@ public class IODispatcher extends Thread {
         this.dumpQueue = new ArrayBlockingQueue<DumpJob<? extends Reference>>(dumpQueueLength);
         this.mergeQueue = new ArrayBlockingQueue<MergeJob>(mergeQueueLength);
         this.writeBufferSize = writeBufferSize;
+        this.mergeBudget = new IOBudget(0);
+        this.pauseCondition = null;
         this.terminate = false;
     }
 
+    /**
+     * get the write budget of merge jobs. Dumps of the RAM cache are not limited by this budget
+     * because they must free memory as fast as possible.
+     * @return the write budget for merges
+     */
+    public IOBudget mergeBudget() {
+        return this.mergeBudget;
+    }
+
+    /**
+     * set a condition that pauses the scheduling of merges, i.e. when searches are running.
+     * Merges that are already running are not interrupted.
+     * @param pauseCondition the condition or null to never pause
+     */
+    public void setPauseCondition(final BooleanSupplier pauseCondition) {
+        this.pauseCondition = pauseCondition;
+    }
+
+    /**
+     * @return true if no new merges shall be scheduled now
+     */
+    public boolean isPaused() {
+        final BooleanSupplier c = this.pauseCondition;
+        return c != null && !this.terminate && c.getAsBoolean();
+    }
+
+    /**
+     * compute the number of bytes in input files of queued merge jobs
+     * @return the sum of the lengths of files waiting in the merge queue
+     */
+    public long pendingMergeBytes() {
+        final ArrayBlockingQueue<MergeJob> queue = this.mergeQueue;
+        if (queue == null) return 0;
+        long bytes = 0;
+        for (final MergeJob job: queue) {
+            bytes += job.f1.length();
+            if (job.f2 != null) bytes += job.f2.length();
+        }
+        return bytes;
+    }
+
     public void terminate() {
         this.terminate = true; // asure current run() loop will termiate
+        this.mergeBudget.setBytesPerSecond(0); // finish queued merges without delay
         if (this.termination != null && this.controlQueue != null && isAlive()) {
             this.controlQueue.release();
             // await termination
@@ -118,7 +166,7 @@ public class IODispatcher extends Thread {
             } else {
                 log.warn("emergency merge of files " + f1.getName() + ", " + f2.getName() + " to " + newFile.getName());
             }
-            array.mergeMount(f1, f2, factory, newFile, (int) Math.min(MemoryControl.available() / 3, this.writeBufferSize));
+            array.mergeMount(f1, f2, factory, newFile, (int) Math.min(MemoryControl.available() / 3, this.writeBufferSize), this.mergeBudget);
         } else {
             final MergeJob job = new MergeJob(f1, f2, factory, array, newFile);
             if (isAlive()) {
@@ -263,7 +311,7 @@ public class IODispatcher extends Thread {
         	    log.warn("merge of file (2) " + this.f2.getName() + " failed: file does not exists");
         		return null;
         	}
-            return this.array.mergeMount(this.f1, this.f2, this.factory, this.newFile, (int) Math.min(MemoryControl.available() / 3, IODispatcher.this.writeBufferSize));
+            return this.array.mergeMount(this.f1, this.f2, this.factory, this.newFile, (int) Math.min(MemoryControl.available() / 3, IODispatcher.this.writeBufferSize), IODispatcher.this.mergeBudget);
         }
     }
 
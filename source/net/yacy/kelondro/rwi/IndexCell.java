@@ -33,6 +33,8 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import net.yacy.cora.order.ByteOrder;
 import net.yacy.cora.order.CloneableIterator;
@@ -42,6 +44,7 @@ import net.yacy.cora.storage.ComparableARC;
 import net.yacy.cora.storage.HandleSet;
 import net.yacy.cora.util.ByteArray;
 import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.LookAheadIterator;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.data.word.Word;
 import net.yacy.kelondro.index.RowHandleSet;
@@ -60,6 +63,9 @@ import net.yacy.search.Switchboard;
  * in normal operation, there are only a number of read-only BLOB files and a single RAM cache that is
  * kept in the RAM as long as a given limit of entries is reached. Then the cache is flushed and becomes
  * another BLOB file in the index array.
+ * The RAM cache is split into shards for ranges of the term hashes. Each shard has its own lock and is
+ * flushed on its own, so that concurrent writers do not wait for each other and a flush of one shard
+ * does not stop the writes to the others.
  */
 
 public final class IndexCell<ReferenceType extends Reference> extends AbstractBufferedIndex<ReferenceType> implements BufferedIndex<ReferenceType>, Iterable<ReferenceContainer<ReferenceType>> {
@@ -67,14 +73,18 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
     private static final long cleanupCycle =  60000;
     private static final long dumpCycle    = 300000;
 
+    public static int ramShards = 4; // the number of shards of the RAM cache; overwrite this before a cell is opened
+
     // class variables
     private final ReferenceContainerArray<ReferenceType> array;
-    private       ReferenceContainerCache<ReferenceType> ram;
+    private final AtomicReferenceArray<ReferenceContainerCache<ReferenceType>> ram; // the shards of the RAM cache, in the order of the term hash ranges
+    private final AtomicLongArray                        lastDump; // the time of the last dump of each shard
+    private final ByteOrder                              termOrder;
+    private final int                                    termSize;
     private final ComparableARC<byte[], Integer>         countCache;
     private       int                                    maxRamEntries;
     private       IODispatcher                           merger; // pointer to shared merger
     private       long                                   lastCleanup;
-    private long  lastDump;
     private final long                                   targetFileSize, maxFileSize;
     private final int                                    writeBufferSize;
     private final Map<byte[], HandleSet>                 removeDelayedURLs; // mapping from word hashes to a list of url hashes
@@ -97,11 +107,18 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
 
         this.merger = merger;
         this.array = new ReferenceContainerArray<ReferenceType>(cellPath, prefix, factory, termOrder, termSize);
-        this.ram = new ReferenceContainerCache<ReferenceType>(factory, termOrder, termSize);
+        this.termOrder = termOrder;
+        this.termSize = termSize;
+        final int shards = Math.max(1, ramShards);
+        this.ram = new AtomicReferenceArray<ReferenceContainerCache<ReferenceType>>(shards);
+        this.lastDump = new AtomicLongArray(shards);
+        for (int i = 0; i < shards; i++) {
+            this.ram.set(i, new ReferenceContainerCache<ReferenceType>(factory, termOrder, termSize));
+            this.lastDump.set(i, System.currentTimeMillis());
+        }
         this.countCache = new ComparableARC<byte[], Integer>(1000, termOrder);
         this.maxRamEntries = maxRamEntries;
         this.lastCleanup = System.currentTimeMillis();
-        this.lastDump = System.currentTimeMillis();
         this.targetFileSize = targetFileSize;
         this.maxFileSize = maxFileSize;
         this.writeBufferSize = writeBufferSize;
@@ -130,41 +147,25 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
 
         private void flushBuffer() {
 
-            // dump the cache if necessary
+            // dump the shards of the cache if necessary; each shard is dumped on its own
             final long t = System.currentTimeMillis();
-            if ((IndexCell.this.ram.size() >= IndexCell.this.maxRamEntries ||
-                (IndexCell.this.ram.size() > 2000 && !MemoryControl.request(120L * 1024L * 1024L, false)) ||
-                (!IndexCell.this.ram.isEmpty() && IndexCell.this.lastDump + dumpCycle < t))) {
-                synchronized (IndexCell.this.merger) {
-                    if (IndexCell.this.ram.size() >= IndexCell.this.maxRamEntries ||
-                        (IndexCell.this.ram.size() > 3000 && !MemoryControl.request(80L * 1024L * 1024L, false)) ||
-                        (!IndexCell.this.ram.isEmpty() && IndexCell.this.lastDump + dumpCycle < t)) try {
-                            IndexCell.this.lastDump = System.currentTimeMillis();
-                        // removed delayed
-                        try {removeDelayed();} catch (final IOException e) {}
-                        // dump the ram
-                        final File dumpFile = IndexCell.this.array.newContainerBLOBFile();
-                        // a critical point: when the ram is handed to the dump job,
-                        // don't write into it any more. Use a fresh one instead
-                        ReferenceContainerCache<ReferenceType> ramdump;
-                        final ByteOrder termOrder = IndexCell.this.ram.termKeyOrdering();
-                        final int termSize = IndexCell.this.ram.termKeyLength();
-                        synchronized (this) {
-                            ramdump = IndexCell.this.ram;
-                            // get a fresh ram cache
-                            IndexCell.this.ram = new ReferenceContainerCache<ReferenceType>(IndexCell.this.factory, termOrder, termSize);
-                        }
-                        // WARNING : if this cell is queried before this dump termination, terms are no longer in the cache and would therefore not be found
-                        // dump the buffer
-                        IndexCell.this.merger.dump(ramdump, dumpFile, IndexCell.this.array);
-                        IndexCell.this.lastDump = System.currentTimeMillis();
-                    } catch (final Throwable e) {
-                        // catch all exceptions
-                        ConcurrentLog.logException(e);
-                    }
+            final int shards = IndexCell.this.ram.length();
+            final int maxShardEntries = Math.max(1, IndexCell.this.maxRamEntries / shards);
+            int largest = -1;
+            for (int i = 0; i < shards; i++) {
+                final ReferenceContainerCache<ReferenceType> shard = IndexCell.this.ram.get(i);
+                if (shard.size() >= maxShardEntries || (!shard.isEmpty() && IndexCell.this.lastDump.get(i) + dumpCycle < t)) {
+                    dumpShard(i);
+                } else if (largest < 0 || shard.size() > IndexCell.this.ram.get(largest).size()) {
+                    largest = i;
                 }
             }
 
+            // if the memory is low, dump the largest shard
+            if (largest >= 0 && IndexCell.this.getBufferSize() > 2000 && !MemoryControl.request(120L * 1024L * 1024L, false)) {
+                dumpShard(largest);
+            }
+
             // clean-up the cache
             if ((IndexCell.this.array.entries() > 50 ||
                  IndexCell.this.lastCleanup + cleanupCycle < t)) {
@@ -183,31 +184,70 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
 
     }
 
+    /**
+     * hand a shard of the RAM cache to the merger to dump it to a new BLOB file; the shard is replaced with an empty one
+     * @param i the number of the shard
+     */
+    private void dumpShard(final int i) {
+        synchronized (this.merger) {
+            if (this.ram.get(i).isEmpty()) return;
+            try {
+                this.lastDump.set(i, System.currentTimeMillis());
+                // removed delayed
+                try {removeDelayed();} catch (final IOException e) {}
+                // dump the ram
+                final File dumpFile = this.array.newContainerBLOBFile();
+                // a critical point: when the shard is handed to the dump job,
+                // don't write into it any more. Use a fresh one instead
+                final ReferenceContainerCache<ReferenceType> ramdump = this.ram.getAndSet(i, new ReferenceContainerCache<ReferenceType>(this.factory, this.termOrder, this.termSize));
+                // WARNING : if this cell is queried before this dump termination, terms are no longer in the cache and would therefore not be found
+                // dump the buffer
+                this.merger.dump(ramdump, dumpFile, this.array);
+                this.lastDump.set(i, System.currentTimeMillis());
+            } catch (final Throwable e) {
+                // catch all exceptions
+                ConcurrentLog.logException(e);
+            }
+        }
+    }
+
+    /**
+     * @param termHash
+     * @return the shard of the RAM cache for the range of term hashes that contains termHash
+     */
+    private ReferenceContainerCache<ReferenceType> ram(final byte[] termHash) {
+        return this.ram.get(shard(termHash));
+    }
+
+    private int shard(final byte[] termHash) {
+        final int shards = this.ram.length();
+        if (shards == 1) return 0;
+        final long c = this.termOrder.cardinal(termHash, 0, Math.min(termHash.length, this.termSize));
+        return (int) Math.min(shards - 1, c / (Long.MAX_VALUE / shards + 1));
+    }
+
     private boolean shrink(final long targetFileSize, final long maxFileSize) {
         if (this.array.entries() < 2) return false;
+
+        // files are unmounted when a merge is scheduled, so we do not schedule anything during a pause;
+        // only too many files force a merge because they slow down every access
+        if (this.array.entries() < 50 && this.merger.isPaused()) return false;
         boolean donesomething = false;
 
-        // first try to merge small files that match
+        // merge files of the same size tier, starting with the smallest files
         int term = 10;
         while (term-- > 0 && (this.merger.queueLength() < 3 || this.array.entries() >= 50)) {
-            if (!this.array.shrinkBestSmallFiles(this.merger, targetFileSize)) break;
+            if (!this.array.shrinkSizeTiered(this.merger, targetFileSize, maxFileSize)) break;
             donesomething = true;
         }
 
-        // then try to merge simply any small file
+        // if there are still too many files, merge simply any small file
         term = 10;
-        while (term-- > 0 && (this.merger.queueLength() < 2)) {
+        while (term-- > 0 && this.array.entries() >= 50 && this.merger.queueLength() < 2) {
             if (!this.array.shrinkAnySmallFiles(this.merger, targetFileSize)) break;
             donesomething = true;
         }
 
-        // if there is no small file, then merge matching files up to limit
-        term = 10;
-        while (term-- > 0 && (this.merger.queueLength() < 1)) {
-            if (!this.array.shrinkUpToMaxSizeFiles(this.merger, maxFileSize)) break;
-            donesomething = true;
-        }
-
         // rewrite old files (hack from sixcooler, see http://forum.yacy-websuche.de/viewtopic.php?p=15004#p15004)
         term = 10;
         while (term-- > 0 && (this.merger.queueLength() < 1)) {
@@ -237,10 +277,13 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
     private Collection<byte[]> keys4LargeReferences(int minsize, long maxtime) throws IOException {
         long timeout = System.currentTimeMillis() + maxtime;
         ArrayList<byte[]> keys = new ArrayList<byte[]>();
-        Iterator<ByteArray> ci = this.ram.keys();
-        while (ci.hasNext()) {
-            byte[] k = ci.next().asBytes();
-            if (this.ram.count(k) >= minsize) keys.add(k);
+        for (int i = 0; i < this.ram.length(); i++) {
+            ReferenceContainerCache<ReferenceType> shard = this.ram.get(i);
+            Iterator<ByteArray> ci = shard.keys();
+            while (ci.hasNext()) {
+                byte[] k = ci.next().asBytes();
+                if (shard.count(k) >= minsize) keys.add(k);
+            }
         }
         CloneableIterator<byte[]> ki = this.array.keys(true, false);
         while (ki.hasNext()) {
@@ -262,7 +305,7 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
      */
     @Override
     public int termKeyLength() {
-        return this.ram.termKeyLength();
+        return this.termSize;
     }
 
     /**
@@ -272,30 +315,32 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
      */
     @Override
     public void add(final ReferenceContainer<ReferenceType> newEntries) throws IOException, SpaceExceededException {
+        final ReferenceContainerCache<ReferenceType> shard = ram(newEntries.getTermHash());
         try {
-            this.ram.add(newEntries);
+            shard.add(newEntries);
             final long t = System.currentTimeMillis();
-            if (this.ram.size() % 1000 == 0 || this.lastCleanup + cleanupCycle < t || this.lastDump + dumpCycle < t) {
-                EventTracker.update(EventTracker.EClass.WORDCACHE, Long.valueOf(this.ram.size()), true);
+            if (shard.size() % 1000 == 0 || this.lastCleanup + cleanupCycle < t) {
+                EventTracker.update(EventTracker.EClass.WORDCACHE, Long.valueOf(this.getBufferSize()), true);
             }
         } catch (final SpaceExceededException e) {
-            EventTracker.update(EventTracker.EClass.WORDCACHE, Long.valueOf(this.ram.size()), true);
-            this.ram.add(newEntries);
+            EventTracker.update(EventTracker.EClass.WORDCACHE, Long.valueOf(this.getBufferSize()), true);
+            shard.add(newEntries);
         }
 
     }
 
     @Override
     public void add(final byte[] termHash, final ReferenceType entry) throws IOException, SpaceExceededException {
+        final ReferenceContainerCache<ReferenceType> shard = ram(termHash);
         try {
-            this.ram.add(termHash, entry);
+            shard.add(termHash, entry);
             final long t = System.currentTimeMillis();
-            if (this.ram.size() % 1000 == 0 || this.lastCleanup + cleanupCycle < t || this.lastDump + dumpCycle < t) {
-                EventTracker.update(EventTracker.EClass.WORDCACHE, Long.valueOf(this.ram.size()), true);
+            if (shard.size() % 1000 == 0 || this.lastCleanup + cleanupCycle < t) {
+                EventTracker.update(EventTracker.EClass.WORDCACHE, Long.valueOf(this.getBufferSize()), true);
             }
         } catch (final SpaceExceededException e) {
-            EventTracker.update(EventTracker.EClass.WORDCACHE, Long.valueOf(this.ram.size()), true);
-            this.ram.add(termHash, entry);
+            EventTracker.update(EventTracker.EClass.WORDCACHE, Long.valueOf(this.getBufferSize()), true);
+            shard.add(termHash, entry);
         }
     }
 
@@ -304,7 +349,7 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
      */
     @Override
     public boolean has(final byte[] termHash) {
-        if (this.ram.has(termHash)) return true;
+        if (ram(termHash).has(termHash)) return true;
         return this.array.has(termHash);
     }
 
@@ -327,7 +372,7 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
         assert countFile >= 0;
 
         // count from container in ram
-        final ReferenceContainer<ReferenceType> countRam = this.ram.get(termHash, null);
+        final ReferenceContainer<ReferenceType> countRam = ram(termHash).get(termHash, null);
         assert countRam == null || countRam.size() >= 0;
         int c = countRam == null ? countFile : countFile + countRam.size();
         // exclude entries from delayed remove
@@ -351,7 +396,7 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
      */
     @Override
     public ReferenceContainer<ReferenceType> get(final byte[] termHash, final HandleSet urlselection) throws IOException {
-        final ReferenceContainer<ReferenceType> c0 = this.ram.get(termHash, null);
+        final ReferenceContainer<ReferenceType> c0 = ram(termHash).get(termHash, null);
         ReferenceContainer<ReferenceType> c1 = null;
         try {
             c1 = this.array.get(termHash);
@@ -402,7 +447,7 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
         if (c1 != null) {
             this.array.delete(termHash);
         }
-        final ReferenceContainer<ReferenceType> c0 = this.ram.remove(termHash);
+        final ReferenceContainer<ReferenceType> c0 = ram(termHash).remove(termHash);
         if (c1 == null) return c0;
         if (c0 == null) return c1;
         try {
@@ -430,7 +475,7 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
         if (c1 != null) {
             this.array.delete(termHash);
         }
-        this.ram.delete(termHash);
+        ram(termHash).delete(termHash);
         return;
     }
 
@@ -480,38 +525,38 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
     @Override
     public int remove(final byte[] termHash, final HandleSet urlHashes) throws IOException {
         this.countCache.remove(termHash);
-        final int removed = this.ram.remove(termHash, urlHashes);
-        int reduced;
+        final int removed = ram(termHash).remove(termHash, urlHashes);
+        // the reducer counts the removed references; the reduction of the BLOB size does not tell it for packed containers
+        final RemoveReducer<ReferenceType> reducer = new RemoveReducer<ReferenceType>(urlHashes);
         //final long am = this.array.mem();
         try {
-            reduced = this.array.reduce(termHash, new RemoveReducer<ReferenceType>(urlHashes));
+            this.array.reduce(termHash, reducer);
         } catch (final SpaceExceededException e) {
-            reduced = 0;
             ConcurrentLog.warn("KELONDRO", "IndexCell: not possible to remove urlHashes from a RWI because of too low memory. Remove was not applied. Please increase RAM assignment");
         }
         //assert this.array.mem() <= am : "am = " + am + ", array.mem() = " + this.array.mem();
-        return removed + (reduced / this.array.rowdef().objectsize);
+        return removed + reducer.removed;
     }
 
     @Override
     public boolean remove(final byte[] termHash, final byte[] urlHashBytes) throws IOException {
         this.countCache.remove(termHash);
-        final boolean removed = this.ram.remove(termHash, urlHashBytes);
-        int reduced;
+        final boolean removed = ram(termHash).remove(termHash, urlHashBytes);
+        final RemoveReducer<ReferenceType> reducer = new RemoveReducer<ReferenceType>(urlHashBytes);
         //final long am = this.array.mem();
         try {
-            reduced = this.array.reduce(termHash, new RemoveReducer<ReferenceType>(urlHashBytes));
+            this.array.reduce(termHash, reducer);
         } catch (final SpaceExceededException e) {
-            reduced = 0;
             ConcurrentLog.warn("KELONDRO", "IndexCell: not possible to remove urlHashes from a RWI because of too low memory. Remove was not applied. Please increase RAM assignment");
         }
         //assert this.array.mem() <= am : "am = " + am + ", array.mem() = " + this.array.mem();
-        return removed || (reduced > 0);
+        return removed || reducer.removed > 0;
     }
 
     private static class RemoveReducer<ReferenceType extends Reference> implements ReferenceContainerArray.ContainerReducer<ReferenceType> {
 
         HandleSet urlHashes;
+        int removed = 0; // the number of removed references in all BLOBs
 
         public RemoveReducer(final HandleSet urlHashes) {
             this.urlHashes = urlHashes;
@@ -529,7 +574,7 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
         @Override
         public ReferenceContainer<ReferenceType> reduce(final ReferenceContainer<ReferenceType> container) {
             container.sort();
-            container.removeEntries(this.urlHashes);
+            this.removed += container.removeEntries(this.urlHashes);
             return container;
         }
 
@@ -552,15 +597,15 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
 
     @Override
     public CloneableIterator<ReferenceContainer<ReferenceType>> referenceContainerIterator(final byte[] startTermHash, final boolean rot, final boolean excludePrivate, final boolean ram) {
-        final Order<ReferenceContainer<ReferenceType>> containerOrder = new ReferenceContainerOrder<ReferenceType>(this.factory, this.ram.rowdef().getOrdering().clone());
+        final Order<ReferenceContainer<ReferenceType>> containerOrder = new ReferenceContainerOrder<ReferenceType>(this.factory, this.factory.getRow().getOrdering().clone());
         containerOrder.rotate(new ReferenceContainer<ReferenceType>(this.factory, startTermHash));
         if (ram) {
-            return this.ram.referenceContainerIterator(startTermHash, rot, excludePrivate);
+            return new ShardIterator(startTermHash, rot, excludePrivate);
         }
         return new MergeIterator<ReferenceContainer<ReferenceType>>(
-            this.ram.referenceContainerIterator(startTermHash, rot, excludePrivate),
+            new ShardIterator(startTermHash, rot, excludePrivate),
             new MergeIterator<ReferenceContainer<ReferenceType>>(
-                this.ram.referenceContainerIterator(startTermHash, false, excludePrivate),
+                new ShardIterator(startTermHash, false, excludePrivate),
                 this.array.referenceContainerIterator(startTermHash, false, excludePrivate),
                 containerOrder,
                 ReferenceContainer.containerMergeMethod,
@@ -570,6 +615,56 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
             true);
     }
 
+    /**
+     * iterator over the containers in all shards of the RAM cache. The shards are ranges of term hashes,
+     * so the containers are in the order of their term hashes if the shards are iterated one after another
+     */
+    private class ShardIterator extends LookAheadIterator<ReferenceContainer<ReferenceType>> implements CloneableIterator<ReferenceContainer<ReferenceType>> {
+
+        private final byte[] startTermHash;
+        private final boolean rot, excludePrivate;
+        private int shard;
+        private CloneableIterator<ReferenceContainer<ReferenceType>> shardIterator;
+
+        public ShardIterator(final byte[] startTermHash, final boolean rot, final boolean excludePrivate) {
+            this.startTermHash = startTermHash;
+            this.rot = rot;
+            this.excludePrivate = excludePrivate;
+            this.shard = startTermHash == null || startTermHash.length == 0 ? 0 : shard(startTermHash);
+            this.shardIterator = IndexCell.this.ram.get(this.shard).referenceContainerIterator(startTermHash, false, excludePrivate);
+        }
+
+        @Override
+        protected ReferenceContainer<ReferenceType> next0() {
+            // stop if all shards had been visited without a result; this happens only if the cache is empty during a rotation
+            int visited = 0;
+            while (visited <= IndexCell.this.ram.length()) {
+                while (this.shardIterator.hasNext()) {
+                    final ReferenceContainer<ReferenceType> c = this.shardIterator.next();
+                    if (c != null) return c;
+                }
+                this.shard++;
+                if (this.shard == IndexCell.this.ram.length()) {
+                    if (!this.rot) return null;
+                    this.shard = 0;
+                }
+                this.shardIterator = IndexCell.this.ram.get(this.shard).referenceContainerIterator(null, false, this.excludePrivate);
+                visited++;
+            }
+            return null;
+        }
+
+        @Override
+        public ShardIterator clone(final Object modifier) {
+            return new ShardIterator(modifier == null ? this.startTermHash : (byte[]) modifier, this.rot, this.excludePrivate);
+        }
+
+        @Override
+        public void close() {
+            this.shardIterator.close();
+        }
+    }
+
     /**
      * clear the RAM and BLOB part, deletes everything in the cell
      * @throws IOException
@@ -578,7 +673,7 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
     public synchronized void clear() throws IOException {
         this.countCache.clear();
         this.removeDelayedURLs.clear();
-        this.ram.clear();
+        for (int i = 0; i < this.ram.length(); i++) this.ram.get(i).clear();
         this.array.clear();
         if (Switchboard.getSwitchboard() != null &&
                 Switchboard.getSwitchboard().peers != null &&
@@ -598,16 +693,19 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
     public synchronized void close() {
         this.countCache.clear();
         try {removeDelayed();} catch (final IOException e) {}
-        if (!this.ram.isEmpty()) this.ram.dump(this.array.newContainerBLOBFile(), (int) Math.min(MemoryControl.available() / 3, this.writeBufferSize), true);
+        for (int i = 0; i < this.ram.length(); i++) {
+            final ReferenceContainerCache<ReferenceType> shard = this.ram.get(i);
+            if (!shard.isEmpty()) shard.dump(this.array.newContainerBLOBFile(), (int) Math.min(MemoryControl.available() / 3, this.writeBufferSize), true);
+        }
         // close all
         this.flushShallRun = false;
         if (this.flushThread != null) try { this.flushThread.join(); } catch (final InterruptedException e) {}
-        this.ram.close();
+        for (int i = 0; i < this.ram.length(); i++) this.ram.get(i).close();
         this.array.close();
     }
 
     public boolean isEmpty() {
-        if (this.ram.size() > 0) return false;
+        if (this.getBufferSize() > 0) return false;
         for (int s: this.array.sizes()) if (s > 0) return false;
         return true;
     }
@@ -624,7 +722,7 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
         final int[] as = this.array.sizes();
         final int[] asr = new int[as.length + 1];
         System.arraycopy(as, 0, asr, 0, as.length);
-        asr[as.length] = this.ram.size();
+        asr[as.length] = this.getBufferSize();
         return asr;
     }
 
@@ -640,6 +738,13 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
         return this.array.entries();
     }
 
+    /**
+     * @return the number of bytes in BLOB files that are waiting for a merge
+     */
+    public long getMergeDebt() {
+        return this.array.mergeDebt(this.targetFileSize, this.maxFileSize);
+    }
+
     @Override
     public int minMem() {
         return 10 * 1024 * 1024;
@@ -657,7 +762,9 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
 
     @Override
     public int getBufferMaxReferences() {
-        return this.ram.maxReferences();
+        int max = 0;
+        for (int i = 0; i < this.ram.length(); i++) max = Math.max(max, this.ram.get(i).maxReferences());
+        return max;
     }
 
     @Override
@@ -667,12 +774,16 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
 
     @Override
     public int getBufferSize() {
-        return this.ram.size();
+        int size = 0;
+        for (int i = 0; i < this.ram.length(); i++) size += this.ram.get(i).size();
+        return size;
     }
 
     @Override
     public long getBufferSizeBytes() {
-        return this.ram.usedMemory();
+        long bytes = 0;
+        for (int i = 0; i < this.ram.length(); i++) bytes += this.ram.get(i).usedMemory();
+        return bytes;
     }
 
     @Override
@@ -60,6 +60,7 @@ public class ReferenceContainer<ReferenceType extends Reference> extends RowSet
     private   byte[] termHash;
     protected ReferenceFactory<ReferenceType> factory;
     public static int maxReferences = 0; // overwrite this to enable automatic index shrinking. 0 means no shrinking
+    public static boolean packedExport = false; // if true, containers are written to the BLOB files in the compressed format of BlockRowCodec
 
     public ReferenceContainer(final ReferenceFactory<ReferenceType> factory, final byte[] termHash, final RowSet collection) {
         super(collection);
@@ -113,6 +114,15 @@ public class ReferenceContainer<ReferenceType extends Reference> extends RowSet
         return this.termHash;
     }
 
+    /**
+     * export the container for a BLOB file, in the format that is selected with packedExport.
+     * Both formats can be imported with RowSet.importRowSet
+     * @return the exported container
+     */
+    public byte[] exportContainer() {
+        return packedExport ? super.exportPacked() : super.exportCollection();
+    }
+
     public void add(final Reference entry) throws SpaceExceededException {
         // add without double-occurrence test
         assert entry.toKelondroEntry().objectsize() == super.rowdef.objectsize;
@@ -350,20 +360,10 @@ public class ReferenceContainer<ReferenceType extends Reference> extends RowSet
         // check if there is any result
         if (map.isEmpty()) return null; // no result, nothing found
 
-        // the map now holds the search results in order of number of hits per word
-        // we now must pairwise build up a conjunction of these sets
-        Long k = map.firstKey(); // the smallest, which means, the one with the least entries
-        ReferenceContainer<ReferenceType> searchA, searchB, searchResult = map.remove(k);
-        while (!map.isEmpty() && !searchResult.isEmpty()) {
-            // take the first element of map which is a result and combine it with result
-            k = map.firstKey(); // the next smallest...
-            searchA = searchResult;
-            searchB = map.remove(k);
-            searchResult = ReferenceContainer.joinConstructive(factory, searchA, searchB, maxDistance);
-            // free resources
-            searchA = null;
-            searchB = null;
-        }
+        // the map now holds the search results in order of number of hits per word;
+        // the smallest container drives a join of all containers at once
+        if (map.size() == 1) return map.firstEntry().getValue();
+        final ReferenceContainer<ReferenceType> searchResult = joinConstructiveByGalloping(factory, new ArrayList<ReferenceContainer<ReferenceType>>(map.values()), maxDistance);
 
         // in 'searchResult' is now the combined search result
         if (searchResult.isEmpty()) return null;
@@ -410,37 +410,61 @@ public class ReferenceContainer<ReferenceType extends Reference> extends RowSet
 
         // start most efficient method
         if (stepsEnum > stepsTest) {
-            if (i1.size() < i2.size()) return joinConstructiveByTest(factory, i1, i2, maxDistance);
-            return joinConstructiveByTest(factory, i2, i1, maxDistance);
+            final List<ReferenceContainer<ReferenceType>> containers = new ArrayList<ReferenceContainer<ReferenceType>>(2);
+            containers.add(i1.size() < i2.size() ? i1 : i2);
+            containers.add(i1.size() < i2.size() ? i2 : i1);
+            return joinConstructiveByGalloping(factory, containers, maxDistance);
         }
         return joinConstructiveByEnumeration(factory, i1, i2, maxDistance);
     }
 
-    private static <ReferenceType extends Reference> ReferenceContainer<ReferenceType> joinConstructiveByTest(
+    /**
+     * join containers by galloping over their sorted rows: each row of the smallest container is looked up
+     * in the other containers in the order of their size, and each lookup starts at the position of the
+     * previous lookup in the same container. The number of comparisons grows with the size of the smallest
+     * container and only logarithmically with the size of the others; rows of the larger containers are
+     * only read if they are hits.
+     * @param factory
+     * @param containers the containers, the smallest first
+     * @param maxDistance
+     * @return the joined references
+     * @throws SpaceExceededException
+     */
+    private static <ReferenceType extends Reference> ReferenceContainer<ReferenceType> joinConstructiveByGalloping(
             final ReferenceFactory<ReferenceType> factory,
-            final ReferenceContainer<ReferenceType> small,
-            final ReferenceContainer<ReferenceType> large,
+            final List<ReferenceContainer<ReferenceType>> containers,
             final int maxDistance) throws SpaceExceededException {
-        //System.out.println("DEBUG: JOIN METHOD BY TEST, maxdistance = " + maxDistance);
-        assert small.rowdef.equals(large.rowdef) : "small = " + small.rowdef.toString() + "; large = " + large.rowdef.toString();
-        final int keylength = small.rowdef.width(0);
-        assert (keylength == large.rowdef.width(0));
         final ReferenceContainer<ReferenceType> conj = new ReferenceContainer<ReferenceType>(factory, null, 0); // start with empty search result
-        final Iterator<ReferenceType> se = small.entries();
-        ReferenceType ie1;
-        ReferenceType ie2;
-        while (se.hasNext()) {
-            ie1 = se.next();
-            ie2 = large.getReference(ie1.urlhash());
-            if ((ie1 != null) && (ie2 != null)) {
-                assert (ie1.urlhash().length == keylength) : "ie0.urlHash() = " + ASCII.String(ie1.urlhash());
-                assert (ie2.urlhash().length == keylength) : "ie1.urlHash() = " + ASCII.String(ie2.urlhash());
-                // this is a hit. Calculate word distance:
-
-                ie1 = factory.produceFast(ie2, true);
-                ie1.join(ie2);
-                if (ie1.distance() <= maxDistance) conj.add(ie1);
+        final ReferenceContainer<ReferenceType> driver = containers.get(0);
+        final Row rowdef = driver.rowdef;
+        for (final ReferenceContainer<ReferenceType> c: containers) {
+            assert rowdef.equals(c.rowdef) : "driver = " + rowdef.toString() + "; c = " + c.rowdef.toString();
+            if (!rowdef.getOrdering().signature().equals(c.rowdef.getOrdering().signature())) return conj; // ordering must be equal
+            c.sort();
+        }
+        final ByteOrder ordering = rowdef.getOrdering();
+        final int objectsize = rowdef.objectsize;
+        final int keylength = rowdef.primaryKeyLength;
+        final int n = containers.size();
+        final int[] pos = new int[n]; // the position of the last lookup in each container
+        final int size = driver.size();
+        ReferenceContainer<ReferenceType> c;
+        ReferenceType ie;
+        rows: for (int i = 0; i < size; i++) {
+            final int off = i * objectsize;
+            for (int j = 1; j < n; j++) {
+                c = containers.get(j);
+                pos[j] = c.gallop(driver.chunkcache, off, pos[j]);
+                if (pos[j] >= c.size()) break rows; // all following rows of the driver are greater than the rows of c
+                if (ordering.compare(driver.chunkcache, off, c.chunkcache, pos[j] * objectsize, keylength) != 0) continue rows;
+            }
+            // we have found the same url in all searches!
+            ie = factory.produceFast(factory.produceSlow(driver.get(i, false)), true);
+            for (int j = 1; j < n; j++) {
+                ie.join(factory.produceSlow(containers.get(j).get(pos[j], false)));
+                if (ie.distance() > maxDistance) continue rows;
             }
+            conj.add(ie);
         }
         return conj;
     }
@@ -505,11 +529,36 @@ public class ReferenceContainer<ReferenceType extends Reference> extends RowSet
 
         // start most efficient method
         if (stepsEnum > stepsTest) {
+            if (pivot.size() < excl.size()) return excludeDestructiveByGalloping(pivot, excl);
             return excludeDestructiveByTest(pivot, excl);
         }
         return excludeDestructiveByEnumeration(factory, pivot, excl);
     }
 
+    private static <ReferenceType extends Reference> ReferenceContainer<ReferenceType> excludeDestructiveByGalloping(
+            final ReferenceContainer<ReferenceType> pivot,
+            final ReferenceContainer<ReferenceType> excl) {
+        assert pivot.rowdef.equals(excl.rowdef) : "pivot = " + pivot.rowdef.toString() + "; excl = " + excl.rowdef.toString();
+        if (!((pivot.rowdef.getOrdering().signature().equals(excl.rowdef.getOrdering().signature())))) return pivot; // ordering must be equal
+        pivot.sort();
+        excl.sort();
+        final ByteOrder ordering = pivot.rowdef.getOrdering();
+        final int objectsize = pivot.rowdef.objectsize;
+        final int keylength = pivot.rowdef.primaryKeyLength;
+        final List<byte[]> hits = new ArrayList<byte[]>();
+        final int size = pivot.size();
+        int p = 0;
+        for (int i = 0; i < size; i++) {
+            p = excl.gallop(pivot.chunkcache, i * objectsize, p);
+            if (p >= excl.size()) break;
+            if (ordering.compare(pivot.chunkcache, i * objectsize, excl.chunkcache, p * objectsize, keylength) == 0) {
+                hits.add(pivot.get(i, true).getPrimaryKeyBytes());
+            }
+        }
+        pivot.delete(hits);
+        return pivot;
+    }
+
     private static <ReferenceType extends Reference> ReferenceContainer<ReferenceType> excludeDestructiveByTest(
             final ReferenceContainer<ReferenceType> pivot,
             final ReferenceContainer<ReferenceType> excl) {
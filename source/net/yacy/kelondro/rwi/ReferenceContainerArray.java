@@ -28,6 +28,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.yacy.cora.order.ByteOrder;
 import net.yacy.cora.order.CloneableIterator;
@@ -37,6 +38,7 @@ import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.blob.ArrayStack;
 import net.yacy.kelondro.blob.BLOB;
 import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.index.BlockRowCodec;
 import net.yacy.kelondro.index.Row;
 import net.yacy.kelondro.index.RowSet;
 
@@ -47,6 +49,7 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
 
     private final ReferenceFactory<ReferenceType> factory;
     private final ArrayStack array;
+    private final AtomicLong lastBLOBFileTime = new AtomicLong(0);
 
     /**
      * open a index container array based on BLOB dumps. The content of the BLOBs will not be read
@@ -92,7 +95,9 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
     }
 
     public File newContainerBLOBFile() {
-    	return this.array.newBLOB(new Date());
+        // file names have a resolution of milliseconds; several dumps and merges may ask for a name in the same millisecond
+        final long t = this.lastBLOBFileTime.updateAndGet(last -> Math.max(System.currentTimeMillis(), last + 1));
+    	return this.array.newBLOB(new Date(t));
     }
 
     public void mountBLOBFile(final File location) throws IOException {
@@ -326,18 +331,19 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
 
     public int count(final byte[] termHash) throws IOException {
         final long timeout = System.currentTimeMillis() + METHOD_MAXRUNTIME;
-        final Iterator<Long> entries = this.array.lengthAll(termHash).iterator();
+        // the number of rows is read from the head of each container, because the size of a packed container does not tell it
+        final Iterator<byte[]> entries = this.array.headAll(termHash, (int) RowSet.exportOverheadSize).iterator();
         if (entries == null || !entries.hasNext()) return 0;
-        final Long a = entries.next();
+        final byte[] a = entries.next();
         int k = 1;
-        int c = RowSet.importRowCount(a, this.factory.getRow());
+        int c = RowSet.importRowCount(a);
         assert c >= 0;
         if (System.currentTimeMillis() > timeout) {
             ConcurrentLog.warn("KELONDRO", "ReferenceContainerArray: timeout in count() (1): " + k + " tables searched. timeout = " + METHOD_MAXRUNTIME);
             return c;
         }
         while (entries.hasNext()) {
-            c += RowSet.importRowCount(entries.next(), this.factory.getRow());
+            c += RowSet.importRowCount(entries.next());
             assert c >= 0;
             k++;
             if (System.currentTimeMillis() > timeout) {
@@ -379,7 +385,19 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
             if (b == null) return null;
             final ReferenceContainer<ReferenceType> c = this.rewriter.reduce(new ReferenceContainer<ReferenceType>(ReferenceContainerArray.this.factory, this.wordHash, RowSet.importRowSet(b, ReferenceContainerArray.this.factory.getRow())));
             if (c == null) return null;
-            final byte bb[] = c.exportCollection();
+            if (!BlockRowCodec.isPacked(b)) {
+                final byte bb[] = c.exportCollection();
+                assert bb.length <= b.length;
+                return bb;
+            }
+            // a packed BLOB is reduced in place; it must either keep its length or shrink by at least 4 bytes
+            // (the size of a gap record), so small reductions are padded: packed collections may have trailing bytes
+            byte bb[] = BlockRowCodec.encodeSubset(b, c);
+            if (bb.length > b.length - 4 && bb.length < b.length) {
+                final byte[] padded = new byte[b.length];
+                System.arraycopy(bb, 0, padded, 0, bb.length);
+                bb = padded;
+            }
             assert bb.length <= b.length;
             return bb;
         }
@@ -399,14 +417,6 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
         return this.array.entries();
     }
 
-    public boolean shrinkBestSmallFiles(final IODispatcher merger, final long targetFileSize) {
-        final File[] ff = this.array.unmountBestMatch(2.0f, targetFileSize);
-        if (ff == null) return false;
-        ConcurrentLog.info("KELONDRO", "RICELL-shrink1: unmountBestMatch(2.0, " + targetFileSize + ")");
-        merger.merge(ff[0], ff[1], this.factory, this.array, newContainerBLOBFile());
-        return true;
-    }
-
     public boolean shrinkAnySmallFiles(final IODispatcher merger, final long targetFileSize) {
         final File[] ff = this.array.unmountSmallest(targetFileSize);
         if (ff == null) return false;
@@ -415,14 +425,30 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
         return true;
     }
 
-    public boolean shrinkUpToMaxSizeFiles(final IODispatcher merger, final long maxFileSize) {
-        final File[] ff = this.array.unmountBestMatch(2.0f, maxFileSize);
+    /**
+     * merge the two smallest files of the lowest size tier that has more than one file
+     * @param merger
+     * @param targetFileSize all files smaller than this are in the lowest tier
+     * @param maxFileSize the maximum size of a merged file
+     * @return true if a merge job was scheduled
+     */
+    public boolean shrinkSizeTiered(final IODispatcher merger, final long targetFileSize, final long maxFileSize) {
+        final File[] ff = this.array.unmountSizeTiered(targetFileSize, maxFileSize);
         if (ff == null) return false;
-        ConcurrentLog.info("KELONDRO", "RICELL-shrink3: unmountBestMatch(2.0, " + maxFileSize + ")");
+        ConcurrentLog.info("KELONDRO", "RICELL-shrink-tiered: unmountSizeTiered(" + targetFileSize + ", " + maxFileSize + ")");
         merger.merge(ff[0], ff[1], this.factory, this.array, newContainerBLOBFile());
         return true;
     }
 
+    /**
+     * @param targetFileSize all files smaller than this are in the lowest size tier
+     * @param maxFileSize the maximum size of a merged file
+     * @return the number of bytes in files that are waiting for a size-tiered merge
+     */
+    public long mergeDebt(final long targetFileSize, final long maxFileSize) {
+        return this.array.mergeDebt(targetFileSize, maxFileSize);
+    }
+
     public boolean shrinkOldFiles(final IODispatcher merger) {
         final File ff = this.array.unmountOldest();
         if (ff == null) return false;
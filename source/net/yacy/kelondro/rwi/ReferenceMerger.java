@@ -0,0 +1,350 @@
+/**
+ *  ReferenceMerger
+ *  Copyright 2026 by YaCy contributors
+ *  First released 18.10.2026 at https://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.rwi;
+
+import java.io.File;
+import java.io.IOException;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.ByteOrder;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.blob.HeapRecordReader;
+import net.yacy.kelondro.blob.HeapWriter;
+import net.yacy.kelondro.index.BlockRowCodec;
+import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.index.RowCollection;
+import net.yacy.kelondro.index.RowSet;
+
+/**
+ * k-way merge of heap files which contain reference containers, as written by the RWI dumps.
+ * All files are read sequentially at the same time; containers of the same term are merged into one.
+ * Small containers are loaded and merged as ReferenceContainer objects. Large containers are merged
+ * row by row from the sorted rows in the files and written in pieces, so the memory that is needed
+ * does not depend on the size of a container.
+ */
+public final class ReferenceMerger {
+
+    /** containers which have more bytes than this in all files are merged row by row */
+    public static int streamingThreshold = 4 * 1024 * 1024;
+
+    private static final int bufferSize = 256 * 1024;
+
+    private ReferenceMerger() {}
+
+    /**
+     * merge heap files with reference containers into a heap writer. If the same reference is
+     * contained in more than one file, the one from the file with the lowest position in the files array is kept.
+     * @param files the heap files
+     * @param factory the factory of the references
+     * @param termOrder the order of the term hashes, the keys of the heap files
+     * @param writer the target; it is not closed
+     * @return the number of written containers
+     * @throws IOException
+     * @throws SpaceExceededException
+     */
+    public static <ReferenceType extends Reference> int merge(
+            final File[] files,
+            final ReferenceFactory<ReferenceType> factory,
+            final ByteOrder termOrder,
+            final HeapWriter writer) throws IOException, SpaceExceededException {
+        final int keylength = factory.getRow().primaryKeyLength;
+        final HeapRecordReader[] readers = new HeapRecordReader[files.length];
+        try {
+            for (int i = 0; i < files.length; i++) {
+                readers[i] = new HeapRecordReader(files[i], keylength);
+                if (!readers[i].next()) {
+                    readers[i].close();
+                    readers[i] = null;
+                }
+            }
+            final HeapRecordReader[] group = new HeapRecordReader[readers.length];
+            int count = 0;
+            while (true) {
+                // find the smallest term of all files
+                byte[] term = null;
+                for (final HeapRecordReader reader: readers) {
+                    if (reader != null && (term == null || termOrder.compare(reader.key(), term) < 0)) term = reader.key();
+                }
+                if (term == null) break;
+
+                // collect all files which have a container for the term
+                int g = 0;
+                long bytes = 0;
+                for (final HeapRecordReader reader: readers) {
+                    if (reader != null && termOrder.equal(reader.key(), term)) {
+                        group[g++] = reader;
+                        bytes += reader.remaining();
+                    }
+                }
+                writeContainer(factory, term, group, g, bytes, writer);
+                count++;
+
+                // go to the next containers
+                for (int i = 0; i < readers.length; i++) {
+                    if (readers[i] != null && termOrder.equal(readers[i].key(), term) && !readers[i].next()) {
+                        readers[i].close();
+                        readers[i] = null;
+                    }
+                }
+            }
+            return count;
+        } finally {
+            for (final HeapRecordReader reader: readers) if (reader != null) reader.close();
+        }
+    }
+
+    private static <ReferenceType extends Reference> void writeContainer(
+            final ReferenceFactory<ReferenceType> factory,
+            final byte[] term,
+            final HeapRecordReader[] group, final int g, final long bytes,
+            final HeapWriter writer) throws IOException, SpaceExceededException {
+        final Row rowdef = factory.getRow();
+        final int overhead = (int) RowCollection.exportOverheadSize;
+        if (bytes <= streamingThreshold) {
+            writeLoaded(factory, term, group, g, null, writer);
+            return;
+        }
+
+        // read the heads of all containers; rows can only be merged if they are sorted
+        final byte[][] heads = new byte[g][];
+        final RowCursor[] cursors = new RowCursor[g];
+        long rows = 0;
+        for (int i = 0; i < g; i++) {
+            heads[i] = readHead(group[i]);
+            rows += RowSet.importRowCount(heads[i]);
+            if (BlockRowCodec.isPacked(heads[i])) {
+                cursors[i] = new PackedCursor(group[i], rowdef, BlockRowCodec.count(heads[i]));
+            } else {
+                if (heads[i].length < overhead) break;
+                final long size = NaturalOrder.decodeLong(heads[i], 0, 4);
+                final long orderbound = NaturalOrder.decodeLong(heads[i], 10, 4);
+                if (orderbound != size || size * rowdef.objectsize != group[i].remaining()) break;
+                cursors[i] = new RawCursor(group[i], rowdef.objectsize);
+            }
+        }
+        // a container that cannot be merged row by row stops the loop above, so the last cursor is missing
+        if (cursors[g - 1] == null || (ReferenceContainer.maxReferences > 0 && rows > ReferenceContainer.maxReferences)) {
+            writeLoaded(factory, term, group, g, heads, writer);
+            return;
+        }
+
+        final boolean packed = ReferenceContainer.packedExport;
+        if (g == 1 && (cursors[0] instanceof PackedCursor) == packed) {
+            // nothing to merge and no format to change: copy the container
+            final HeapRecordReader reader = group[0];
+            writer.beginRecord(term, heads[0].length + reader.remaining());
+            writer.write(heads[0], 0, heads[0].length);
+            final byte[] b = new byte[Math.min(bufferSize, Math.max(1, reader.remaining()))];
+            while (reader.remaining() > 0) {
+                final int n = Math.min(b.length, reader.remaining());
+                reader.readFully(b, 0, n);
+                writer.write(b, 0, n);
+            }
+            writer.endRecord(null);
+            return;
+        }
+
+        final ByteOrder rowOrder = rowdef.objectOrder;
+        final int keylength = rowdef.primaryKeyLength;
+        final int objectsize = rowdef.objectsize;
+        final int outRows = Math.max(1, bufferSize / objectsize / BlockRowCodec.blockRows) * BlockRowCodec.blockRows; // whole blocks
+        final byte[] out = new byte[outRows * objectsize];
+        final byte[] last = new byte[keylength];
+        boolean hasLast = false;
+        int outp = 0, count = 0;
+        writer.beginRecord(term, -1);
+        final int headSize = packed ? BlockRowCodec.headSize : overhead;
+        writer.write(new byte[headSize], 0, headSize); // the head is written when the number of rows is known
+        while (true) {
+            // the first cursor with the smallest row wins, so equal rows from later files are skipped
+            RowCursor min = null;
+            for (final RowCursor cursor: cursors) {
+                if (cursor.valid() && (min == null || rowOrder.compare(cursor.buffer, cursor.pos, min.buffer, min.pos, keylength) < 0)) min = cursor;
+            }
+            if (min == null) break;
+            if (!hasLast || !rowOrder.equal(min.buffer, min.pos, last, 0, keylength)) {
+                System.arraycopy(min.buffer, min.pos, last, 0, keylength);
+                hasLast = true;
+                System.arraycopy(min.buffer, min.pos, out, outp, objectsize);
+                outp += objectsize;
+                count++;
+                if (outp == out.length) {
+                    writeRows(rowdef, out, outp, packed, writer);
+                    outp = 0;
+                }
+            }
+            min.pos += objectsize;
+        }
+        if (outp > 0) writeRows(rowdef, out, outp, packed, writer);
+        writer.endRecord(packed ? BlockRowCodec.head(count) : RowCollection.exportHead(rowdef, count, System.currentTimeMillis()));
+    }
+
+    /**
+     * read the head of a container: the head of a packed collection or the head of an exported RowCollection
+     */
+    private static byte[] readHead(final HeapRecordReader reader) throws IOException {
+        if (reader.remaining() == 0) return new byte[0];
+        final byte[] first = new byte[1];
+        reader.readFully(first, 0, 1);
+        final int length = Math.min(reader.remaining() + 1, first[0] == BlockRowCodec.MAGIC ? BlockRowCodec.headSize : (int) RowCollection.exportOverheadSize);
+        final byte[] head = new byte[length];
+        head[0] = first[0];
+        reader.readFully(head, 1, length - 1);
+        return head;
+    }
+
+    private static void writeRows(final Row rowdef, final byte[] rows, final int length, final boolean packed, final HeapWriter writer) throws IOException {
+        if (!packed) {
+            writer.write(rows, 0, length);
+            return;
+        }
+        final int count = length / rowdef.objectsize;
+        for (int i = 0; i < count; i += BlockRowCodec.blockRows) {
+            final byte[] block = BlockRowCodec.encodeBlock(rowdef, rows, i * rowdef.objectsize, Math.min(BlockRowCodec.blockRows, count - i));
+            writer.write(block, 0, block.length);
+        }
+    }
+
+    /**
+     * load the containers of a group into memory, merge and shrink them and write the result
+     * @param heads the heads of the containers if they had been read already, or null
+     */
+    private static <ReferenceType extends Reference> void writeLoaded(
+            final ReferenceFactory<ReferenceType> factory,
+            final byte[] term,
+            final HeapRecordReader[] group, final int g, final byte[][] heads,
+            final HeapWriter writer) throws IOException, SpaceExceededException {
+        ReferenceContainer<ReferenceType> c = null;
+        for (int i = 0; i < g; i++) {
+            final byte[] head = heads == null ? null : heads[i];
+            final byte[] payload;
+            if (head == null) {
+                payload = group[i].readRemaining();
+            } else {
+                payload = new byte[head.length + group[i].remaining()];
+                System.arraycopy(head, 0, payload, 0, head.length);
+                group[i].readFully(payload, head.length, payload.length - head.length);
+            }
+            final ReferenceContainer<ReferenceType> container;
+            try {
+                container = new ReferenceContainer<ReferenceType>(factory, term, RowSet.importRowSet(payload, factory.getRow()));
+            } catch (final SpaceExceededException e) {
+                ConcurrentLog.severe("KELONDRO", "ReferenceMerger: lost entry '" + ASCII.String(term) + "' because of too low memory: " + e.toString());
+                continue;
+            }
+            c = (c == null) ? container : c.merge(container);
+        }
+        if (c == null) return;
+        final int s = c.shrinkReferences();
+        if (s > 0) ConcurrentLog.info("KELONDRO", "ReferenceMerger: shrinking index for " + ASCII.String(term) + " by " + s + " to " + c.size() + " entries");
+        writer.add(term, c.exportContainer());
+    }
+
+    /**
+     * a window on the sorted rows of a container in a heap file
+     */
+    private static abstract class RowCursor {
+
+        protected final HeapRecordReader reader;
+        protected byte[] buffer;
+        protected int pos, filled;
+
+        private RowCursor(final HeapRecordReader reader) {
+            this.reader = reader;
+            this.pos = 0;
+            this.filled = 0;
+        }
+
+        /**
+         * @return true if there is a current row at pos, reading the next rows if necessary
+         */
+        protected abstract boolean valid() throws IOException;
+    }
+
+    /**
+     * a cursor on the rows of an exported RowCollection
+     */
+    private static final class RawCursor extends RowCursor {
+
+        private final int objectsize;
+
+        private RawCursor(final HeapRecordReader reader, final int objectsize) {
+            super(reader);
+            this.objectsize = objectsize;
+            final int rows = reader.remaining() / objectsize;
+            this.buffer = new byte[Math.max(1, Math.min(rows, bufferSize / objectsize)) * objectsize];
+        }
+
+        @Override
+        protected boolean valid() throws IOException {
+            if (this.pos < this.filled) return true;
+            if (this.reader.remaining() < this.objectsize) return false;
+            final int n = Math.min(this.buffer.length, this.reader.remaining() - this.reader.remaining() % this.objectsize);
+            this.reader.readFully(this.buffer, 0, n);
+            this.filled = n;
+            this.pos = 0;
+            return true;
+        }
+    }
+
+    /**
+     * a cursor on the rows of a packed collection, which decodes one block after another
+     */
+    private static final class PackedCursor extends RowCursor {
+
+        private final Row rowdef;
+        private final byte[] blockHead;
+        private byte[] body;
+        private int rows; // the number of rows that are not decoded yet
+
+        private PackedCursor(final HeapRecordReader reader, final Row rowdef, final int count) {
+            super(reader);
+            this.rowdef = rowdef;
+            this.rows = count;
+            this.buffer = new byte[BlockRowCodec.blockRows * rowdef.objectsize];
+            this.blockHead = new byte[BlockRowCodec.blockHeadSize];
+            this.body = new byte[rowdef.objectsize * 16];
+        }
+
+        @Override
+        protected boolean valid() throws IOException {
+            if (this.pos < this.filled) return true;
+            if (this.rows <= 0) return false;
+            this.reader.readFully(this.blockHead, 0, this.blockHead.length);
+            final int n = (int) NaturalOrder.decodeLong(this.blockHead, 0, 4);
+            final int len = (int) NaturalOrder.decodeLong(this.blockHead, 4, 4);
+            if (n <= 0 || n > BlockRowCodec.blockRows || n > this.rows || len < 0) throw new IOException("ReferenceMerger: corrupted block, n = " + n + ", len = " + len);
+            if (this.body.length < len) this.body = new byte[len];
+            this.reader.readFully(this.body, 0, len);
+            try {
+                BlockRowCodec.decodeBlock(this.rowdef, this.body, 0, n, this.buffer, 0);
+            } catch (final ArrayIndexOutOfBoundsException e) {
+                throw new IOException("ReferenceMerger: corrupted block, n = " + n + ", len = " + len);
+            }
+            this.rows -= n;
+            this.filled = n * this.rowdef.objectsize;
+            this.pos = 0;
+            return true;
+        }
+    }
+}
@@ -909,11 +909,12 @@ public final class FileUtils {
     }
 
     /**
+     * move a file and replace the target; the move is atomic if the file system supports it
      * @param from
      * @param to
-     * @throws IOException
+     * @throws IOException if the file cannot be moved
      */
-    private static void forceMove(final File from, final File to) throws IOException {
+    public static void forceMove(final File from, final File to) throws IOException {
         final Path fromPath = from.toPath();
         final Path toPath = to.toPath();
         try {
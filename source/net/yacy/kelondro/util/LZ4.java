@@ -0,0 +1,203 @@
+// LZ4.java
+// (C) 2026 by YaCy contributors
+// first published 18.10.2026 on https://yacy.net
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A compressor and decompressor for the LZ4 block format, see
+ * https://github.com/lz4/lz4/blob/dev/doc/lz4_Block_format.md
+ * The compressor is the greedy single pass variant with a hash table of recent 4-byte sequences;
+ * it compresses less than deflate but is many times faster, and decompression is a plain copy loop.
+ * The block format does not store the length of the uncompressed data, the caller must keep it.
+ */
+public final class LZ4 {
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_DISTANCE = 65535;
+    private static final int HASH_LOG = 14;
+
+    private LZ4() {}
+
+    /**
+     * @param length the length of uncompressed data
+     * @return the maximum length of the compressed data
+     */
+    public static int maxCompressedLength(final int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * compress a byte array
+     * @param src the uncompressed data
+     * @param srcOff the start of the data in src
+     * @param srcLen the length of the data
+     * @param dst the target array, must have at least maxCompressedLength(srcLen) bytes after dstOff
+     * @param dstOff the start of the compressed data in dst
+     * @return the length of the compressed data
+     */
+    public static int compress(final byte[] src, final int srcOff, final int srcLen, final byte[] dst, final int dstOff) {
+        final int srcEnd = srcOff + srcLen;
+        final int matchLimit = srcEnd - LAST_LITERALS;
+        final int limit = srcEnd - MF_LIMIT;
+        final int[] table = new int[1 << HASH_LOG];
+        Arrays.fill(table, -1);
+        int s = srcOff, anchor = srcOff, d = dstOff;
+        while (s < limit) {
+            final int h = hash(readInt(src, s));
+            final int ref = table[h];
+            table[h] = s;
+            if (ref < 0 || s - ref > MAX_DISTANCE || readInt(src, ref) != readInt(src, s)) {
+                s++;
+                continue;
+            }
+            // extend the match backwards into the pending literals and forwards as far as possible
+            int start = s, r = ref;
+            while (start > anchor && r > srcOff && src[start - 1] == src[r - 1]) {
+                start--;
+                r--;
+            }
+            int end = s + MIN_MATCH, e = ref + MIN_MATCH;
+            while (end < matchLimit && src[end] == src[e]) {
+                end++;
+                e++;
+            }
+            d = writeSequence(src, anchor, start - anchor, start - r, end - start, dst, d);
+            s = end;
+            anchor = end;
+        }
+        // the remaining bytes are written as literals
+        final int literals = srcEnd - anchor;
+        d = writeLength(dst, d, literals, Math.min(literals, 15) << 4);
+        System.arraycopy(src, anchor, dst, d, literals);
+        return d + literals - dstOff;
+    }
+
+    /**
+     * compress a byte array
+     * @param src the uncompressed data
+     * @return the compressed data
+     */
+    public static byte[] compress(final byte[] src) {
+        final byte[] dst = new byte[maxCompressedLength(src.length)];
+        final int length = compress(src, 0, src.length, dst, 0);
+        return Arrays.copyOf(dst, length);
+    }
+
+    /**
+     * decompress a byte array
+     * @param src the compressed data
+     * @param srcOff the start of the compressed data in src
+     * @param srcLen the length of the compressed data
+     * @param length the length of the uncompressed data
+     * @return the uncompressed data
+     * @throws IOException if the data is not a valid LZ4 block of the given length
+     */
+    public static byte[] decompress(final byte[] src, final int srcOff, final int srcLen, final int length) throws IOException {
+        if (length < 0) throw new IOException("LZ4: negative length " + length);
+        final byte[] dst = new byte[length];
+        final int srcEnd = srcOff + srcLen;
+        int s = srcOff, d = 0;
+        try {
+            while (true) {
+                final int token = src[s++] & 0xff;
+                int literals = token >>> 4;
+                if (literals == 15) {
+                    int b;
+                    do {
+                        b = src[s++] & 0xff;
+                        literals += b;
+                    } while (b == 255);
+                }
+                if (s + literals > srcEnd) throw new IOException("LZ4: literals exceed the block at " + s);
+                System.arraycopy(src, s, dst, d, literals);
+                s += literals;
+                d += literals;
+                if (s == srcEnd) break;
+                final int offset = (src[s] & 0xff) | ((src[s + 1] & 0xff) << 8);
+                s += 2;
+                int match = token & 15;
+                if (match == 15) {
+                    int b;
+                    do {
+                        b = src[s++] & 0xff;
+                        match += b;
+                    } while (b == 255);
+                }
+                match += MIN_MATCH;
+                int r = d - offset;
+                if (offset == 0 || r < 0) throw new IOException("LZ4: invalid match offset " + offset + " at " + d);
+                if (offset >= match) {
+                    System.arraycopy(dst, r, dst, d, match);
+                    d += match;
+                } else {
+                    // overlapping match, repeat the pattern byte by byte
+                    final int end = d + match;
+                    while (d < end) dst[d++] = dst[r++];
+                }
+            }
+        } catch (final ArrayIndexOutOfBoundsException e) {
+            throw new IOException("LZ4: corrupted block, " + e.getMessage());
+        }
+        if (d != length) throw new IOException("LZ4: decompressed " + d + " bytes, expected " + length);
+        return dst;
+    }
+
+    private static int writeSequence(final byte[] src, final int anchor, final int literals, final int offset, final int matchLength, final byte[] dst, int d) {
+        final int match = matchLength - MIN_MATCH;
+        final int token = (Math.min(literals, 15) << 4) | Math.min(match, 15);
+        d = writeLength(dst, d, literals, token);
+        System.arraycopy(src, anchor, dst, d, literals);
+        d += literals;
+        dst[d++] = (byte) offset;
+        dst[d++] = (byte) (offset >>> 8);
+        if (match >= 15) d = writeExtension(dst, d, match - 15);
+        return d;
+    }
+
+    private static int writeLength(final byte[] dst, int d, final int literals, final int token) {
+        dst[d++] = (byte) token;
+        if (literals >= 15) d = writeExtension(dst, d, literals - 15);
+        return d;
+    }
+
+    private static int writeExtension(final byte[] dst, int d, int value) {
+        while (value >= 255) {
+            dst[d++] = (byte) 255;
+            value -= 255;
+        }
+        dst[d++] = (byte) value;
+        return d;
+    }
+
+    private static int readInt(final byte[] b, final int i) {
+        return (b[i] & 0xff) | ((b[i + 1] & 0xff) << 8) | ((b[i + 2] & 0xff) << 16) | ((b[i + 3] & 0xff) << 24);
+    }
+
+    private static int hash(final int i) {
+        return (i * -1640531535) >>> (32 - HASH_LOG);
+    }
+}
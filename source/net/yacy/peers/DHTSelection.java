@@ -203,18 +203,13 @@ public class DHTSelection {
         ArrayList<Seed> seeds = new ArrayList<>(redundancy);
         final long dhtVerticalTarget = seedDB.scheme.verticalDHTPosition(wordhash, verticalPosition);
         final byte[] verticalhash = Distribution.positionToHash(dhtVerticalTarget);
-        final Iterator<Seed> dhtEnum = getAcceptRemoteIndexSeeds(seedDB, verticalhash, redundancy, false);
+        // the routing table selects the next peers which accept remote index (others are probably robinson peers)
+        // and omits peers which are too young or have an empty or disabled RWI; only the selected seeds are read from the seed table
         int c = Math.min(seedDB.sizeConnected(), redundancy);
-        int cc = 20; // in case that the network grows rapidly, we may jump to several additional peers but that must have a limit
-        while (dhtEnum.hasNext() && c > 0 && cc-- > 0) {
-            Seed seed = dhtEnum.next();
-            if (seed == null || seed.hash == null) continue;
-            if (!seed.getFlagAcceptRemoteIndex()) continue; // probably a robinson peer
-            if (seed.getAge() < minage) continue; // prevent bad results because of too strong network growth
-            if(seed.getWordCount() < minWordCount) {
-            	/* Even if the peer is not a robinson and has the required minimum age, it may have an empty or disabled RWI */
-            	continue;
-            }
+        final List<String> hashes = seedDB.ring().select(verticalhash, c, yacyVersion.YACY_HANDLES_COLLECTION_INDEX, minage, minWordCount);
+        for (final String hash: hashes) {
+            final Seed seed = seedDB.getConnected(hash);
+            if (seed == null || seed.hash == null) continue; // the peer was disconnected in the meantime
             if (RemoteSearch.log.isFine()) RemoteSearch.log.fine("selectPeers/DHTorder: " + seed.hash + ":" + seed.getName() + "/ score " + c);
             seeds.add(seed);
             c--;
@@ -301,14 +296,16 @@ public class DHTSelection {
         private Iterator<Seed> e;
         private int steps;
         private final SeedDB seedDB;
+        private final byte[] firstHash;
         private boolean alsoMyOwn;
         private int pass, insertOwnInPass;
         private Seed nextSeed;
 
         private seedDHTEnum(final SeedDB seedDB, final byte[] firstHash, final boolean alsoMyOwn) {
             this.seedDB = seedDB;
+            this.firstHash = firstHash;
             this.steps = seedDB.sizeConnected() + ((alsoMyOwn) ? 1 : 0);
-            this.e = seedDB.seedsConnected(true, false, firstHash, yacyVersion.YACY_HANDLES_COLLECTION_INDEX);
+            this.e = seedDB.seedsConnectedDHT(firstHash, null, yacyVersion.YACY_HANDLES_COLLECTION_INDEX, true);
             this.pass = 1;
             this.alsoMyOwn = alsoMyOwn;
             if (alsoMyOwn) {
@@ -330,7 +327,7 @@ public class DHTSelection {
 
             if (!this.e.hasNext() && this.pass == 1) {
                 // rotate from the beginning; this closes the ordering of the DHT at the ends
-                this.e = this.seedDB.seedsConnected(true, false, null, yacyVersion.YACY_HANDLES_COLLECTION_INDEX);
+                this.e = this.seedDB.seedsConnectedDHT(null, this.firstHash, yacyVersion.YACY_HANDLES_COLLECTION_INDEX, true);
                 this.pass = 2;
             }
             if (this.e.hasNext()) {
@@ -48,14 +48,15 @@ import net.yacy.search.SwitchboardConstants;
 import net.yacy.search.index.Segment;
 import net.yacy.search.query.QueryParams;
 import net.yacy.search.query.SearchEvent;
+import net.yacy.search.query.SearchExecutor;
+import net.yacy.search.query.SearchTask;
 import net.yacy.search.query.SecondarySearchSuperviser;
 
 /**
  * Handle remote YaCy peers selection and search requests on them, targeting either their Solr index or RWI (Reverse Word Index)
  */
-public class RemoteSearch extends Thread {
+public class RemoteSearch implements Runnable {
 
-    private static final ThreadGroup ysThreadGroup = new ThreadGroup("yacySearchThreadGroup");
     public static final ConcurrentLog log = new ConcurrentLog("DHT");
     
     final private SearchEvent event;
@@ -72,6 +73,8 @@ public class RemoteSearch extends Thread {
     private final int count, maxDistance;
     private final long time;
     final private String language;
+    /** the task of this search in the SearchExecutor, null until it is started */
+    private SearchTask task;
 
     public RemoteSearch(
               final SearchEvent event,
@@ -87,7 +90,6 @@ public class RemoteSearch extends Thread {
               final Seed targetPeer,
               final SecondarySearchSuperviser secondarySearchSuperviser,
               final Blacklist blacklist) {
-        super(ysThreadGroup, "yacySearch_" + targetPeer.getName());
         this.event = event;
         this.wordhashes = wordhashes;
         this.excludehashes = excludehashes;
@@ -102,6 +104,28 @@ public class RemoteSearch extends Thread {
         this.count = count;
         this.time = time;
         this.maxDistance = maxDistance;
+        this.task = null;
+    }
+
+    /**
+     * submit this search to the remote pool of the SearchExecutor
+     */
+    public synchronized void start() {
+        if (this.task == null) this.task = SearchExecutor.execute(SearchExecutor.Pool.REMOTE, "yacySearch_" + this.targetPeer.getName(), this.event, this);
+    }
+
+    /**
+     * @return true if this search was started and is waiting or running
+     */
+    public synchronized boolean isAlive() {
+        return this.task != null && this.task.isAlive();
+    }
+
+    /**
+     * cancel this search
+     */
+    public synchronized void interrupt() {
+        if (this.task != null) this.task.interrupt();
     }
 
     /**
@@ -279,7 +303,7 @@ public class RemoteSearch extends Thread {
 								SwitchboardConstants.REMOTESEARCH_MAXLOAD_SOLR_DEFAULT)) {
 					continue;
 				}
-                Thread t = solrRemoteSearch(event, solrQuery, start, count, s, targets, blacklist, useFacets, true);
+                SearchTask t = solrRemoteSearch(event, solrQuery, start, count, s, targets, blacklist, useFacets, true);
                 event.nodeSearchThreads.add(t);
             }
         }
@@ -318,7 +342,7 @@ public class RemoteSearch extends Thread {
         }
     }
 
-    public static Thread secondaryRemoteSearch(
+    public static SearchTask secondaryRemoteSearch(
     		final SearchEvent event,
             final Set<String> wordhashes,
             final String urlhashes,
@@ -334,7 +358,7 @@ public class RemoteSearch extends Thread {
         // prepare seed targets and threads
         final Seed targetPeer = event.peers.getConnected(targethash);
         if (targetPeer == null || targetPeer.hash == null) return null;
-        Thread secondary = new Thread("RemoteSearch.secondaryRemoteSearch(" + wordhashes + " to " + targethash + ")") {
+        final Runnable secondary = new Runnable() {
             @Override
             public void run() {
                 event.oneFeederStarted();
@@ -368,8 +392,7 @@ public class RemoteSearch extends Thread {
                 }
             }
         };
-        secondary.start();
-        return secondary;
+        return SearchExecutor.execute(SearchExecutor.Pool.REMOTE, "RemoteSearch.secondaryRemoteSearch(" + wordhashes + " to " + targethash + ")", event, secondary);
     }
 
     /**
@@ -383,9 +406,9 @@ public class RemoteSearch extends Thread {
      * @param blacklist the blacklist to use. Can be empty but must not be null.
      * @param useSolrFacets when true, use Solr computed facets when possible to update the event navigators counters
      * @param incrementNavigators when true, increment event navigators either with facet counts or with individual results
-     * @return the created and running Thread instance
+     * @return the submitted task
      */
-    public static Thread solrRemoteSearch(
+    public static SearchTask solrRemoteSearch(
                     final SearchEvent event,
                     final SolrQuery solrQuery,
                     final int start,
@@ -402,7 +425,7 @@ public class RemoteSearch extends Thread {
         // check own peer status
         if (event.peers.mySeed() == null) { return null; }
         // prepare threads
-        Thread solr = new Thread("RemoteSearch.solrRemoteSearch(" + solrQuery.getQuery() + " to " + (targetPeer == null ? "myself" : targetPeer.hash) + ")") {
+        final Runnable solr = new Runnable() {
             @Override
             public void run() {
                     int urls = 0;
@@ -436,8 +459,7 @@ public class RemoteSearch extends Thread {
                     }
             }
         };
-        /*if (targetPeer == null) solr.run(); else*/ solr.start();
-        return solr;
+        return SearchExecutor.execute(targetPeer == null ? SearchExecutor.Pool.SOLR : SearchExecutor.Pool.REMOTE, "RemoteSearch.solrRemoteSearch(" + solrQuery.getQuery() + " to " + (targetPeer == null ? "myself" : targetPeer.hash) + ")", event, solr);
     }
 
     public static int remainingWaiting(final RemoteSearch[] searchThreads) {
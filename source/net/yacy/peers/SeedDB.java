@@ -54,6 +54,7 @@ import net.yacy.cora.protocol.ResponseHeader;
 import net.yacy.cora.protocol.http.HTTPClient;
 import net.yacy.cora.util.CommonPattern;
 import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.LookAheadIterator;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.blob.MapDataMining;
 import net.yacy.kelondro.data.word.Word;
@@ -85,6 +86,7 @@ public final class SeedDB implements AlternativeDomainNames {
     private File seedActiveDBFile, seedPassiveDBFile, seedPotentialDBFile;
     private File myOwnSeedFile;
     private MapDataMining seedActiveDB, seedPassiveDB, seedPotentialDB;
+    private final SeedRing ring; // DHT routing table of the seedActiveDB
 
     protected int lastSeedUpload_seedDBSize = 0;
     public long lastSeedUpload_timeStamp = System.currentTimeMillis();
@@ -120,6 +122,8 @@ public final class SeedDB implements AlternativeDomainNames {
         this.seedActiveDB = openSeedTable(this.seedActiveDBFile);
         this.seedPassiveDB = openSeedTable(this.seedPassiveDBFile);
         this.seedPotentialDB = openSeedTable(this.seedPotentialDBFile);
+        this.ring = new SeedRing();
+        this.loadRing();
 
         // check if we are in the seedCaches: this can happen if someone else published our seed
         this.removeMySeed();
@@ -165,6 +169,7 @@ public final class SeedDB implements AlternativeDomainNames {
         this.seedActiveDB = openSeedTable(this.seedActiveDBFile);
         this.seedPassiveDB = openSeedTable(this.seedPassiveDBFile);
         this.seedPotentialDB = openSeedTable(this.seedPotentialDBFile);
+        this.loadRing();
 
         this.initMySeed();
         this.mySeed.setName(peername);
@@ -272,6 +277,7 @@ public final class SeedDB implements AlternativeDomainNames {
         if (this.mySeed == null) this.initMySeed();
         try {
             final byte[] mySeedHash = ASCII.getBytes(this.mySeed.hash);
+            this.ring.remove(this.mySeed.hash);
             this.seedActiveDB.delete(mySeedHash);
             this.seedPassiveDB.delete(mySeedHash);
             this.seedPotentialDB.delete(mySeedHash);
@@ -318,6 +324,7 @@ public final class SeedDB implements AlternativeDomainNames {
         FileUtils.deletedelete(seedDBFile);
         if (seedDBFile.exists())
         	ConcurrentLog.warn("yacySeedDB", "could not delete file "+ seedDBFile);
+        if (seedDB == this.seedActiveDB) this.ring.clear();
         // create new seed database
         seedDB = openSeedTable(seedDBFile);
         return seedDB;
@@ -400,6 +407,39 @@ public final class SeedDB implements AlternativeDomainNames {
         return new seedEnum(up, rot, (firstHash == null) ? null : firstHash, null, this.seedActiveDB, minVersion);
     }
 
+    /**
+     * enumerates the connected seeds in DHT order from the routing table; only the enumerated seeds are read from the seed table
+     * @param firstHash the first hash or null to start at the beginning of the DHT
+     * @param limitHash the hash where the enumeration stops or null to stop at the end of the DHT
+     * @param minVersion the minimum version of the seeds; developer peers with version 0 are always included
+     * @param acceptRemoteIndex if true, only seeds which accept remote index are enumerated
+     * @return an iterator of seed objects
+     */
+    public Iterator<Seed> seedsConnectedDHT(final byte[] firstHash, final byte[] limitHash, final double minVersion, final boolean acceptRemoteIndex) {
+        final Iterator<String> hashes = this.ring.hashes(firstHash, limitHash, minVersion, acceptRemoteIndex ? SeedRing.ACCEPT_REMOTE_INDEX : 0);
+        return new LookAheadIterator<Seed>() {
+            @Override
+            protected Seed next0() {
+                while (hashes.hasNext()) {
+                    final Seed seed = getConnected(hashes.next());
+                    if (seed != null) return seed; // the seed was removed concurrently
+                }
+                return null;
+            }
+        };
+    }
+
+    /**
+     * the DHT routing table of the connected seeds
+     */
+    SeedRing ring() {
+        return this.ring;
+    }
+
+    private void loadRing() {
+        this.ring.load(this.seedsConnected(true, false, null, Double.NEGATIVE_INFINITY));
+    }
+
     public Iterator<Seed> seedsDisconnected(final boolean up, final boolean rot, final byte[] firstHash, final double minVersion) {
         // enumerates seed-type objects: all seeds sequentially without order
         return new seedEnum(up, rot, (firstHash == null) ? null : firstHash, null, this.seedPassiveDB, minVersion);
@@ -484,6 +524,7 @@ public final class SeedDB implements AlternativeDomainNames {
         synchronized (this) {
             try {
                 this.seedActiveDB.insert(ASCII.getBytes(seed.hash), seedPropMap);
+                this.ring.put(seed);
                 this.seedPassiveDB.delete(ASCII.getBytes(seed.hash));
                 this.seedPotentialDB.delete(ASCII.getBytes(seed.hash));
             } catch (final Exception e) {
@@ -497,6 +538,7 @@ public final class SeedDB implements AlternativeDomainNames {
         if (seed.isProper(false) != null) return;
         synchronized (this) {
             try {
+                this.ring.remove(seed.hash);
                 this.seedActiveDB.delete(ASCII.getBytes(seed.hash));
                 this.seedPotentialDB.delete(ASCII.getBytes(seed.hash));
             } catch (final Exception e) { ConcurrentLog.warn("yacySeedDB", "could not remove hash ("+ e.getClass() +"): "+ e.getMessage()); }
@@ -516,6 +558,7 @@ public final class SeedDB implements AlternativeDomainNames {
         final ConcurrentMap<String, String> seedPropMap = seed.getMap();
         synchronized (this) {
             try {
+                this.ring.remove(seed.hash);
                 this.seedActiveDB.delete(ASCII.getBytes(seed.hash));
                 this.seedPassiveDB.delete(ASCII.getBytes(seed.hash));
             } catch (final Exception e) { ConcurrentLog.warn("yacySeedDB", "could not remove hash ("+ e.getClass() +"): "+ e.getMessage()); }
@@ -636,6 +679,7 @@ public final class SeedDB implements AlternativeDomainNames {
         synchronized (this) {
             if (this.seedActiveDB.containsKey(ASCII.getBytes(seed.hash))) try {
                 this.seedActiveDB.insert(ASCII.getBytes(seed.hash), seedPropMap);
+                this.ring.put(seed);
             } catch (final Exception e) {
                 Network.log.severe("ERROR add: seed.db corrupt (" + e.getMessage() + "); resetting seed.db", e);
                 this.resetActiveTable();
@@ -1124,6 +1168,7 @@ public final class SeedDB implements AlternativeDomainNames {
             	// emergency reset
             	Network.log.severe("seed-db emergency reset", e);
             	this.database.clear();
+            	if (this.database == SeedDB.this.seedActiveDB) SeedDB.this.ring.clear();
 				this.nextSeed = null;
 				return null;
             }
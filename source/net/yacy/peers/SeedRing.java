@@ -0,0 +1,246 @@
+// SeedRing.java
+// (C) 2026 by YaCy contributors
+// first published 18.10.2026 on https://yacy.net
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.peers;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.LookAheadIterator;
+
+/**
+ * The DHT routing table of the connected peers: the peer hashes in DHT order together with the fields
+ * which are needed for the selection of DHT targets (birth date, RWI count, flags and version).
+ * The table is held in memory in primitive arrays and updated with every change of the connected seeds,
+ * so the selection of targets is a binary search on the ring instead of a scan over the seed table.
+ * The arrays are replaced on every change; a lookup uses the arrays which were current when it started.
+ */
+final class SeedRing {
+
+    /** flag bit of peers which accept remote index */
+    static final int ACCEPT_REMOTE_INDEX = 1;
+
+    private static final long DAY = 1000L * 60L * 60L * 24L;
+
+    private static final class Table {
+        private final byte[][] hashes; // sorted in Base64Order.enhancedCoder
+        private final long[] birthdate;
+        private final long[] wordCount;
+        private final int[] flags;
+        private final double[] version;
+
+        private Table(final int size) {
+            this.hashes = new byte[size][];
+            this.birthdate = new long[size];
+            this.wordCount = new long[size];
+            this.flags = new int[size];
+            this.version = new double[size];
+        }
+
+        private int size() {
+            return this.hashes.length;
+        }
+
+        /**
+         * @return the position of the hash or (-(insertion point) - 1) if the hash is not in the table
+         */
+        private int find(final byte[] hash) {
+            int low = 0, high = this.hashes.length - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                final int c = Base64Order.enhancedCoder.compare(this.hashes[mid], hash);
+                if (c < 0) low = mid + 1; else if (c > 0) high = mid - 1; else return mid;
+            }
+            return -(low + 1);
+        }
+
+        /**
+         * @return the position of the first hash which is not smaller than the given hash; 0 for null
+         */
+        private int ceiling(final byte[] hash) {
+            if (hash == null) return 0;
+            final int p = find(hash);
+            return p >= 0 ? p : -p - 1;
+        }
+
+        /**
+         * copy the table with a new or changed entry at position p
+         */
+        private Table put(final int p, final boolean insert, final Seed seed) {
+            final Table t = insert ? new Table(this.size() + 1) : this.copy();
+            if (insert) {
+                copy(this, 0, t, 0, p);
+                copy(this, p, t, p + 1, this.size() - p);
+            }
+            t.set(p, seed);
+            return t;
+        }
+
+        private void set(final int p, final Seed seed) {
+            this.hashes[p] = ASCII.getBytes(seed.hash);
+            this.birthdate[p] = seed.getBirthdate();
+            this.wordCount[p] = seed.getWordCount();
+            this.flags[p] = seed.getFlagAcceptRemoteIndex() ? ACCEPT_REMOTE_INDEX : 0;
+            this.version[p] = seed.getVersion();
+        }
+
+        /**
+         * copy the table without the entry at position p
+         */
+        private Table remove(final int p) {
+            final Table t = new Table(this.size() - 1);
+            copy(this, 0, t, 0, p);
+            copy(this, p + 1, t, p, this.size() - p - 1);
+            return t;
+        }
+
+        private Table copy() {
+            final Table t = new Table(this.size());
+            copy(this, 0, t, 0, this.size());
+            return t;
+        }
+
+        private static void copy(final Table from, final int fromPos, final Table to, final int toPos, final int length) {
+            System.arraycopy(from.hashes, fromPos, to.hashes, toPos, length);
+            System.arraycopy(from.birthdate, fromPos, to.birthdate, toPos, length);
+            System.arraycopy(from.wordCount, fromPos, to.wordCount, toPos, length);
+            System.arraycopy(from.flags, fromPos, to.flags, toPos, length);
+            System.arraycopy(from.version, fromPos, to.version, toPos, length);
+        }
+
+        private boolean accept(final int p, final double minVersion, final int flags) {
+            final double v = this.version[p];
+            return (v >= minVersion || v == 0.0) && (this.flags[p] & flags) == flags; // include 0.0 to access always developer peers
+        }
+    }
+
+    private volatile Table table;
+
+    SeedRing() {
+        this.table = new Table(0);
+    }
+
+    /**
+     * fill the ring with the given seeds
+     * @param seeds the connected seeds
+     */
+    synchronized void load(final Iterator<Seed> seeds) {
+        final TreeMap<byte[], Seed> sorted = new TreeMap<>(Base64Order.enhancedCoder);
+        while (seeds.hasNext()) {
+            final Seed seed = seeds.next();
+            if (seed == null || seed.hash == null) continue;
+            sorted.put(ASCII.getBytes(seed.hash), seed);
+        }
+        final Table t = new Table(sorted.size());
+        int p = 0;
+        for (final Seed seed: sorted.values()) t.set(p++, seed);
+        this.table = t;
+    }
+
+    /**
+     * add a seed or update its fields
+     * @param seed a connected seed
+     */
+    synchronized void put(final Seed seed) {
+        final int p = this.table.find(ASCII.getBytes(seed.hash));
+        this.table = p >= 0 ? this.table.put(p, false, seed) : this.table.put(-p - 1, true, seed);
+    }
+
+    /**
+     * remove a seed
+     * @param hash the hash of the seed
+     */
+    synchronized void remove(final String hash) {
+        final int p = this.table.find(ASCII.getBytes(hash));
+        if (p >= 0) this.table = this.table.remove(p);
+    }
+
+    synchronized void clear() {
+        this.table = new Table(0);
+    }
+
+    int size() {
+        return this.table.size();
+    }
+
+    boolean contains(final String hash) {
+        return this.table.find(ASCII.getBytes(hash)) >= 0;
+    }
+
+    /**
+     * enumerate the hashes from the start hash (inclusive) to the limit hash (exclusive) in DHT order
+     * @param startHash the first hash or null to start at the beginning of the ring
+     * @param limitHash the hash where the enumeration stops or null to stop at the end of the ring
+     * @param minVersion peers with a smaller version are omitted, except developer peers with version 0
+     * @param flags the flags which a peer must have, i.e. ACCEPT_REMOTE_INDEX, or 0
+     * @return the peer hashes
+     */
+    Iterator<String> hashes(final byte[] startHash, final byte[] limitHash, final double minVersion, final int flags) {
+        final Table t = this.table;
+        final int end = limitHash == null ? t.size() : t.ceiling(limitHash);
+        return new LookAheadIterator<String>() {
+            private int p = t.ceiling(startHash);
+            @Override
+            protected String next0() {
+                while (this.p < end) {
+                    final int q = this.p++;
+                    if (t.accept(q, minVersion, flags)) return ASCII.String(t.hashes[q]);
+                }
+                return null;
+            }
+        };
+    }
+
+    /**
+     * select the DHT targets of a vertical position: the next peers on the ring which accept remote index,
+     * starting at the given hash and wrapping around at the end of the ring. Of these peers the ones which are
+     * too young or have too few words are omitted.
+     * @param startHash the position on the ring
+     * @param max the number of peers accepting remote index which are inspected
+     * @param minVersion peers with a smaller version are not inspected, except developer peers with version 0
+     * @param minage the minimum age of a peer in days
+     * @param minWordCount the minimum RWI words count of a peer
+     * @return the hashes of the selected peers in DHT order
+     */
+    List<String> select(final byte[] startHash, final int max, final double minVersion, final int minage, final long minWordCount) {
+        final Table t = this.table;
+        final List<String> selected = new ArrayList<>(Math.max(0, max));
+        final int size = t.size();
+        if (size == 0) return selected;
+        final long now = System.currentTimeMillis();
+        final int start = t.ceiling(startHash);
+        int remaining = max;
+        for (int i = 0; i < size && remaining > 0; i++) {
+            final int p = (start + i) % size;
+            if (!t.accept(p, minVersion, ACCEPT_REMOTE_INDEX)) continue;
+            remaining--;
+            if (Math.abs((now - t.birthdate[p]) / DAY) < minage) continue; // prevent bad results because of too strong network growth
+            if (t.wordCount[p] < minWordCount) continue; // the peer may have an empty or disabled RWI
+            selected.add(ASCII.String(t.hashes[p]));
+        }
+        return selected;
+    }
+}
@@ -40,7 +40,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -106,6 +105,7 @@ public class Blacklist {
     private final ConcurrentMap<BlacklistType, HandleSet> cachedUrlHashs;
     private final ConcurrentMap<BlacklistType, Map<String, Set<Pattern>>> hostpaths_matchable; // key=host, value=path; mapped url is http://host/path; path does not start with '/' here
     private final ConcurrentMap<BlacklistType, Map<String, Set<Pattern>>> hostpaths_notmatchable; // key=host, value=path; mapped url is http://host/path; path does not start with '/' here
+    private final ConcurrentMap<BlacklistType, BlacklistMatcher> matchers; // compiled from the host/path maps, removed when the maps are changed
 
     public Blacklist(final File rootPath) {
 
@@ -115,6 +115,7 @@ public class Blacklist {
         this.hostpaths_matchable = new ConcurrentHashMap<BlacklistType, Map<String, Set<Pattern>>>();
         this.hostpaths_notmatchable = new ConcurrentHashMap<BlacklistType, Map<String, Set<Pattern>>>();
         this.cachedUrlHashs = new ConcurrentHashMap<BlacklistType, HandleSet>();
+        this.matchers = new ConcurrentHashMap<BlacklistType, BlacklistMatcher>();
 
         for (final BlacklistType blacklistType : BlacklistType.values()) {
             this.hostpaths_matchable.put(blacklistType, new ConcurrentHashMap<String, Set<Pattern>>());
@@ -173,6 +174,9 @@ public class Blacklist {
         for (final HandleSet entry : this.cachedUrlHashs.values()) {
             entry.clear();
         }
+        for (final BlacklistType blacklistType : BlacklistType.values()) {
+            invalidate(blacklistType);
+        }
     }
 
     public final int size() {
@@ -256,6 +260,7 @@ public class Blacklist {
                 }
             }
         }
+        invalidate(blFile.getType());
     }
 
     public final void loadList(final BlacklistType blacklistType, final String fileNames, final String sep) {
@@ -279,6 +284,7 @@ public class Blacklist {
 
         final Map<String, Set<Pattern>> blacklistMapNotMatch = getBlacklistMap(blacklistType, false);
         removePatternFromMap(host, path, blacklistMapNotMatch);
+        invalidate(blacklistType);
 
         //TODO: check if delete from blacklist is desired, on reload entry will not be available in any blacklist
         //      even if remove (above) from internal maps (at runtime) is only done for given blacklistType
@@ -424,6 +430,7 @@ public class Blacklist {
 			} catch (final IOException e) {
 				ConcurrentLog.logException(e);
 			} finally {
+				invalidate(blacklistType);
 				if (pw != null) {
 					pw.close();
 					if (pw.checkError()) {
@@ -489,6 +496,7 @@ public class Blacklist {
                     blacklistMap.put(h, (hostList = new HashSet<Pattern>()));
                 }
                 hostList.add(pattern);
+                invalidate(supportedBlacklistType);
             }
         }
 
@@ -633,16 +641,13 @@ public class Blacklist {
             throw new IllegalArgumentException("path may not be null");
         }
 
-        // getting the proper blacklists
-        final Map<String, Set<Pattern>> blacklistMapMatched = getBlacklistMap(blacklistType, true);
-        
-        final Map<String, Set<Pattern>> blacklistMapNotMatched = getBlacklistMap(blacklistType, false);
-
-        return Blacklist.isListed(hostlow, path, blacklistMapMatched, blacklistMapNotMatched);
+        return getMatcher(blacklistType).isListed(hostlow, path);
     }
 
     /**
      * Check if the URL made of the specified host and path is blacklisted. All parameters must not be null.
+     * The maps are compiled for this check only; the blacklist types of a Blacklist are checked with a matcher
+     * which is compiled once, see {@link #isListed(BlacklistType, String, String)}.
      * @param hostlow host part
      * @param path path on the host
      * @param blacklistMapMatched blacklist patterns indexed by matched hosts
@@ -652,90 +657,76 @@ public class Blacklist {
 	protected final static boolean isListed(final String hostlow, final String path,
 			final Map<String, Set<Pattern>> blacklistMapMatched,
 			final Map<String, Set<Pattern>> blacklistMapNotMatched) {
-		long beginTime = 0;
-		if(log.isFine()) {
-			beginTime = System.nanoTime();
-		}
-		final String p = (!path.isEmpty() && path.charAt(0) == '/') ? path.substring(1) : path;
-
-        Pattern[] app;
-        boolean matched = false;
-        Pattern pp; // path-pattern
-
-        // try to match complete domain
-        if (!matched && blacklistMapMatched.get(hostlow) != null) {
-            app = blacklistMapMatched.get(hostlow).toArray(new Pattern[0]);
-            for (int i = app.length - 1; !matched && i > -1; i--) {
-                pp = app[i];
-                matched |= pp.matcher(p).matches();
-            }
-        }
-        // first try to match the domain with wildcard '*'
-        // [TL] While "." are found within the string
-        int index = 0;
-        while (!matched && (index = hostlow.indexOf('.', index + 1)) != -1) {
-            if (blacklistMapMatched.get(hostlow.substring(0, index + 1) + "*") != null) {
-                app = blacklistMapMatched.get(hostlow.substring(0, index + 1) + "*").toArray(new Pattern[0]);
-                for (int i = app.length - 1; !matched && i > -1; i--) {
-                    pp = app[i];
-                    matched |= pp.matcher(p).matches();
-                }
-            }
-            if (blacklistMapMatched.get(hostlow.substring(0, index)) != null) {
-                app = blacklistMapMatched.get(hostlow.substring(0, index)).toArray(new Pattern[0]);
-                for (int i = app.length - 1; !matched && i > -1; i--) {
-                    pp = app[i];
-                    matched |= pp.matcher(p).matches();
-                }
+		return new BlacklistMatcher(blacklistMapMatched, blacklistMapNotMatched).isListed(hostlow, path);
+	}
+
+    /**
+     * get the compiled matcher of a blacklist type; the matcher is compiled again after the blacklist type was changed
+     * @param blacklistType type of blacklist (DHT, CRAWLER ...)
+     * @return the matcher of the blacklist type
+     */
+    private BlacklistMatcher getMatcher(final BlacklistType blacklistType) {
+        BlacklistMatcher matcher = this.matchers.get(blacklistType);
+        if (matcher != null) return matcher;
+        synchronized (this.matchers) {
+            matcher = this.matchers.get(blacklistType);
+            if (matcher == null) {
+                matcher = new BlacklistMatcher(getBlacklistMap(blacklistType, true), getBlacklistMap(blacklistType, false));
+                this.matchers.put(blacklistType, matcher);
+                if (log.isFine()) log.fine("compiled " + blacklistType + " blacklist: " + matcher.size() + " host entries in " + (matcher.getBuildTime() / 1000000) + " milliseconds");
             }
+            return matcher;
         }
-        index = hostlow.length();
-        while (!matched && (index = hostlow.lastIndexOf('.', index - 1)) != -1) {
-            if (blacklistMapMatched.get("*" + hostlow.substring(index, hostlow.length())) != null) {
-                app = blacklistMapMatched.get("*" + hostlow.substring(index, hostlow.length())).toArray(new Pattern[0]);
-                for (int i = app.length - 1; !matched && i > -1; i--) {
-                    pp = app[i];
-                    matched |= pp.matcher(p).matches();
-                }
-            }
-            if (blacklistMapMatched.get(hostlow.substring(index + 1, hostlow.length())) != null) {
-                app = blacklistMapMatched.get(hostlow.substring(index + 1, hostlow.length())).toArray(new Pattern[0]);
-                for (int i = app.length - 1; !matched && i > -1; i--) {
-                    pp = app[i];
-                    matched |= pp.matcher(p).matches();
-                }
-            }
+    }
+
+    /**
+     * remove the compiled matcher of a blacklist type after its host/path maps were changed
+     * @param blacklistType type of blacklist (DHT, CRAWLER ...)
+     */
+    private void invalidate(final BlacklistType blacklistType) {
+        synchronized (this.matchers) {
+            this.matchers.remove(blacklistType);
         }
+    }
 
+    /**
+     * @return the number of host entries in the compiled blacklists
+     */
+    public final int matcherSize() {
+        int size = 0;
+        for (final BlacklistMatcher matcher : this.matchers.values()) size += matcher.size();
+        return size;
+    }
 
-        // loop over all Regex-entries
-        if (!matched) {
-            String key;
-            for (final Entry<String, Set<Pattern>> entry : blacklistMapNotMatched.entrySet()) {
-                key = entry.getKey();
-                try {
-                    if (Pattern.matches(key, hostlow)) {
-                        app = entry.getValue().toArray(new Pattern[0]);
-                        for (final Pattern ap : app) {
-                            if (ap.matcher(p).matches()) {
-                                return true;
-                            }
-                        }
-                    }
-                } catch (final PatternSyntaxException e) {
-                    //System.out.println(e.toString());
-                }
-            }
-        }
-        if(log.isFine()) {
-        	/* Trace URLs spending too much CPU time : set Blacklist.level = FINE in yacy.logging file */
-        	long timeInSeconds = (System.nanoTime() - beginTime) / 1000000000;
-        	if(timeInSeconds > 10) {
-        		log.fine("Long processing : " + timeInSeconds + " seconds. URL :  " + hostlow + path);
-        	}
+    /**
+     * @return the number of checks in the compiled blacklists since they were compiled
+     */
+    public final long matcherLookups() {
+        long count = 0;
+        for (final BlacklistMatcher matcher : this.matchers.values()) count += matcher.getLookupCount();
+        return count;
+    }
+
+    /**
+     * @return the number of checks in the compiled blacklists which found a blacklisted url
+     */
+    public final long matcherListed() {
+        long count = 0;
+        for (final BlacklistMatcher matcher : this.matchers.values()) count += matcher.getListedCount();
+        return count;
+    }
+
+    /**
+     * @return the average time of a check in the compiled blacklists in nanoseconds
+     */
+    public final long matcherAverageLookupTime() {
+        long count = 0, time = 0;
+        for (final BlacklistMatcher matcher : this.matchers.values()) {
+            count += matcher.getLookupCount();
+            time += matcher.getLookupTime();
         }
-        return matched;
-	}
+        return count == 0 ? 0 : time / count;
+    }
 
     public static BlacklistError checkError(final String element, final Map<String, String> properties) {
 
@@ -0,0 +1,287 @@
+// BlacklistMatcher.java
+// (C) 2026 by YaCy contributors
+// first published 18.10.2026 on https://yacy.net
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import net.yacy.cora.util.ConcurrentLog;
+
+/**
+ * The compiled form of the blacklist maps of one blacklist type. A matcher is never changed;
+ * the Blacklist builds a new one when a list is changed and replaces the old one.
+ * <ul>
+ * <li>Host keys without regular expression are stored in two tries of host labels. The trie of the reversed labels
+ * finds exact hosts, domains of a host ("example.com" also lists "www.example.com") and "*.example.com";
+ * the trie of the labels finds host prefixes ("www.example" and "www.example.*").</li>
+ * <li>Host keys with regular expressions are compiled once.</li>
+ * <li>The path patterns of a host key are joined into one pattern, so a path is matched once for each host key.</li>
+ * </ul>
+ */
+final class BlacklistMatcher {
+
+    private final static ConcurrentLog log = new ConcurrentLog(Blacklist.class.getSimpleName());
+
+    /** patterns with back references can not be joined because the group numbers would change */
+    private static final Pattern BACKREFERENCE = Pattern.compile("\\\\[1-9]|\\\\k<");
+
+    private final Node suffixes, prefixes;
+    private final List<HostPattern> hostPatterns;
+    private final int size;
+    private final long buildTime;
+    private final AtomicLong lookups, listed, lookupTime;
+
+    private static final class Node {
+        private Map<String, Node> children = null;
+        private PathMatcher plain = null;    // a host key ends at this node
+        private PathMatcher wildcard = null; // a host key with a wildcard label ends at this node
+
+        private Node child(final String label) {
+            return this.children == null ? null : this.children.get(label);
+        }
+
+        private Node add(final String label) {
+            if (this.children == null) this.children = new HashMap<>();
+            Node node = this.children.get(label);
+            if (node == null) {
+                node = new Node();
+                this.children.put(label, node);
+            }
+            return node;
+        }
+    }
+
+    private static final class HostPattern {
+        private final Pattern host;
+        private final PathMatcher paths;
+        private HostPattern(final Pattern host, final PathMatcher paths) {
+            this.host = host;
+            this.paths = paths;
+        }
+    }
+
+    private static final class PathMatcher {
+        private final Pattern[] patterns;
+
+        /**
+         * join the patterns with the same flags into one alternation; a pattern which can not be joined is kept as it is
+         */
+        private PathMatcher(final Collection<Pattern> patterns) {
+            final Map<Integer, List<Pattern>> byFlags = new HashMap<>();
+            final List<Pattern> result = new ArrayList<>();
+            for (final Pattern pattern: patterns) {
+                if (BACKREFERENCE.matcher(pattern.pattern()).find()) {
+                    result.add(pattern);
+                } else {
+                    byFlags.computeIfAbsent(pattern.flags(), f -> new ArrayList<>()).add(pattern);
+                }
+            }
+            for (final Map.Entry<Integer, List<Pattern>> entry: byFlags.entrySet()) {
+                final List<Pattern> group = entry.getValue();
+                if (group.size() == 1) {
+                    result.add(group.get(0));
+                    continue;
+                }
+                final StringBuilder joined = new StringBuilder();
+                for (final Pattern pattern: group) {
+                    if (joined.length() > 0) joined.append('|');
+                    joined.append("(?:").append(pattern.pattern()).append(')');
+                }
+                try {
+                    result.add(Pattern.compile(joined.toString(), entry.getKey()));
+                } catch (final PatternSyntaxException e) {
+                    result.addAll(group);
+                }
+            }
+            this.patterns = result.toArray(new Pattern[result.size()]);
+        }
+
+        private boolean matches(final String path) {
+            for (final Pattern pattern: this.patterns) {
+                if (pattern.matcher(path).matches()) return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * compile the blacklist maps of one blacklist type
+     * @param blacklistMapMatched blacklist patterns indexed by matched hosts
+     * @param blacklistMapNotMatched blacklist patterns indexed by host regular expressions
+     */
+    BlacklistMatcher(final Map<String, Set<Pattern>> blacklistMapMatched, final Map<String, Set<Pattern>> blacklistMapNotMatched) {
+        final long start = System.nanoTime();
+        this.suffixes = new Node();
+        this.prefixes = new Node();
+        this.hostPatterns = new ArrayList<>(blacklistMapNotMatched.size());
+        int count = 0;
+        for (final Map.Entry<String, Set<Pattern>> entry: blacklistMapMatched.entrySet()) {
+            final String key = entry.getKey();
+            final PathMatcher paths = new PathMatcher(new ArrayList<>(entry.getValue()));
+            if (key.startsWith("*.")) {
+                reversed(this.suffixes, split(key.substring(2))).wildcard = paths;
+            } else if (key.endsWith(".*")) {
+                forward(this.prefixes, split(key.substring(0, key.length() - 2))).wildcard = paths;
+            } else {
+                final String[] labels = split(key);
+                reversed(this.suffixes, labels).plain = paths;
+                forward(this.prefixes, labels).plain = paths;
+            }
+            count++;
+        }
+        for (final Map.Entry<String, Set<Pattern>> entry: blacklistMapNotMatched.entrySet()) {
+            try {
+                this.hostPatterns.add(new HostPattern(Pattern.compile(entry.getKey()), new PathMatcher(new ArrayList<>(entry.getValue()))));
+                count++;
+            } catch (final PatternSyntaxException e) {
+                log.fine("ignored blacklist host pattern " + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+        this.size = count;
+        this.lookups = new AtomicLong(0);
+        this.listed = new AtomicLong(0);
+        this.lookupTime = new AtomicLong(0);
+        this.buildTime = System.nanoTime() - start;
+    }
+
+    private static Node reversed(Node node, final String[] labels) {
+        for (int i = labels.length - 1; i >= 0; i--) node = node.add(labels[i]);
+        return node;
+    }
+
+    private static Node forward(Node node, final String[] labels) {
+        for (final String label: labels) node = node.add(label);
+        return node;
+    }
+
+    /**
+     * split a host into its labels; empty labels are kept
+     */
+    private static String[] split(final String host) {
+        int n = 1;
+        for (int i = 0; i < host.length(); i++) if (host.charAt(i) == '.') n++;
+        final String[] labels = new String[n];
+        int start = 0, l = 0;
+        for (int i = 0; i < host.length(); i++) {
+            if (host.charAt(i) == '.') {
+                labels[l++] = host.substring(start, i);
+                start = i + 1;
+            }
+        }
+        labels[l] = host.substring(start);
+        return labels;
+    }
+
+    private static boolean matches(final PathMatcher paths, final String path) {
+        return paths != null && paths.matches(path);
+    }
+
+    /**
+     * Check if the URL made of the specified host and path is blacklisted. All parameters must not be null.
+     * @param hostlow host part in lower case
+     * @param path path on the host
+     * @return true when host/path is blacklisted
+     */
+    boolean isListed(final String hostlow, final String path) {
+        final long start = System.nanoTime();
+        final boolean matched = match(hostlow, (!path.isEmpty() && path.charAt(0) == '/') ? path.substring(1) : path);
+        final long time = System.nanoTime() - start;
+        this.lookups.incrementAndGet();
+        this.lookupTime.addAndGet(time);
+        if (matched) this.listed.incrementAndGet();
+        if (time > 1000000000L && log.isFine()) {
+            /* Trace URLs spending too much CPU time : set Blacklist.level = FINE in yacy.logging file */
+            log.fine("Long processing : " + (time / 1000000) + " milliseconds. URL :  " + hostlow + path);
+        }
+        return matched;
+    }
+
+    private boolean match(final String hostlow, final String p) {
+        final String[] labels = split(hostlow);
+
+        // the complete host, its domains and wildcards of its domains
+        Node node = this.suffixes;
+        for (int i = labels.length - 1; i >= 0; i--) {
+            node = node.child(labels[i]);
+            if (node == null) break;
+            if (matches(node.plain, p)) return true;
+            if (i > 0 && matches(node.wildcard, p)) return true;
+        }
+
+        // prefixes of the host with and without wildcard
+        node = this.prefixes;
+        for (int i = 0; i < labels.length - 1; i++) {
+            node = node.child(labels[i]);
+            if (node == null) break;
+            if (matches(node.plain, p) || matches(node.wildcard, p)) return true;
+        }
+
+        // host regular expressions
+        for (final HostPattern hostPattern: this.hostPatterns) {
+            if (hostPattern.host.matcher(hostlow).matches() && hostPattern.paths.matches(p)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of host keys
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * @return the time in nanoseconds which was needed to compile the matcher
+     */
+    long getBuildTime() {
+        return this.buildTime;
+    }
+
+    /**
+     * @return the number of lookups since the matcher was compiled
+     */
+    long getLookupCount() {
+        return this.lookups.get();
+    }
+
+    /**
+     * @return the number of lookups which found a blacklisted url
+     */
+    long getListedCount() {
+        return this.listed.get();
+    }
+
+    /**
+     * @return the time in nanoseconds of all lookups
+     */
+    long getLookupTime() {
+        return this.lookupTime.get();
+    }
+}
@@ -36,7 +36,10 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
@@ -203,6 +206,82 @@ public final class LoaderDispatcher {
         }
     }
 
+    /**
+     * Load a resource from cache or web without blocking a thread while the request is sent and the response is received.
+     * Resources which can not be loaded asynchronously (see {@link HTTPLoader#isAsyncLoadable}) are loaded with {@link #load}
+     * in the calling thread. The access time delay for the host is not waited in a sleep but the request is sent later.
+     *
+     * @param request the request essentials
+     * @param cacheStrategy strategy according to NOCACHE, IFFRESH, IFEXIST, CACHEONLY
+     * @param blacklistType
+     * @param agent
+     * @param executor runs the completion of the load, the storage of the content in the cache
+     * @return the loaded entity; the future fails with an IOException when the resource could not be loaded
+     */
+    public CompletableFuture<Response> loadAsync(final Request request, final CacheStrategy cacheStrategy, final BlacklistType blacklistType, final ClientIdentification.Agent agent, final Executor executor) {
+        final DigestURL url = request.url();
+        final int maxFileSize = this.protocolMaxFileSize(url);
+        if (!HTTPLoader.isAsyncLoadable(url)) {
+            try {
+                return CompletableFuture.completedFuture(this.load(request, cacheStrategy, maxFileSize, blacklistType, agent));
+            } catch (final IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        final String host = url.getHost();
+        final CrawlProfile crawlProfile = request.profileHandle() == null ? null : this.sb.crawler.get(UTF8.getBytes(request.profileHandle()));
+        final long wait;
+        try {
+            // check if url is in blacklist
+            if (blacklistType != null && Switchboard.urlBlacklist.isListed(blacklistType, host.toLowerCase(Locale.ROOT), url.getFile())) {
+                LoaderDispatcher.log.warn("event=loader.reject subsystem=crawler reason=blacklist blacklistType=" + blacklistType + " " + requestLogMeta(request, url));
+                this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), crawlProfile, FailCategory.FINAL_LOAD_CONTEXT, "url in blacklist", -1);
+                throw new IOException("DISPATCHER Rejecting URL '" + request.url().toString() + "'. URL is in blacklist.$");
+            }
+
+            // check if we have the page in the cache
+            final Response response = this.loadFromCache(request, cacheStrategy, agent, url, crawlProfile);
+            if (response != null) return CompletableFuture.completedFuture(response);
+
+            // check case where we want results from the cache exclusively, and never from the Internet (offline mode)
+            if (cacheStrategy == CacheStrategy.CACHEONLY) {
+                LoaderDispatcher.log.info("event=loader.reject subsystem=crawler reason=cacheonly-miss cacheStrategy=" + cacheStrategy + " " + requestLogMeta(request, url));
+                throw new IOException("cache only strategy");
+            }
+
+            // check access time: the request is delayed instead of a sleep. The delayed access time is remembered at once,
+            // so the next request of the host is delayed after this one
+            wait = this.accessDelay(agent, url);
+            if (accessTime.size() > accessTimeMaxsize) accessTime.clear(); // prevent a memory leak here
+            accessTime.put(host, System.currentTimeMillis() + wait);
+        } catch (final IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        final Semaphore check = new Semaphore(0);
+        this.loaderSteering.put(url, check);
+        final CompletableFuture<Void> due = wait > 0 ?
+                CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(wait, TimeUnit.MILLISECONDS, executor)) :
+                CompletableFuture.completedFuture(null);
+        return due
+                .thenCompose(v -> this.httpLoader.loadAsync(request, crawlProfile, maxFileSize, blacklistType, agent))
+                .thenApplyAsync(response -> {
+                    if (response.getContent() == null) {
+                        final ResponseHeader responseHeader = response.getResponseHeader();
+                        LoaderDispatcher.log.warn("event=loader.response subsystem=crawler result=empty status=" +
+                                (responseHeader == null ? -1 : responseHeader.getStatusCode()) + " " + requestLogMeta(request, url));
+                        throw new CompletionException(new IOException("empty response (code " + response.getStatus() + ") for url " + url.toNormalform(true)));
+                    }
+                    this.storeCache(response, crawlProfile);
+                    return response;
+                }, executor)
+                .whenComplete((response, e) -> {
+                    // release the waiting loads of the url
+                    if (this.loaderSteering.remove(url, check)) check.release(1000);
+                });
+    }
+
     /**
      * load a resource from the web, from ftp, from smb or a file
      * @param request the request essentials
@@ -273,11 +352,19 @@ public final class LoaderDispatcher {
             throw new IOException("empty response (code " + response.getStatus() + ") for url " + url.toNormalform(true));
         }
 
+        this.storeCache(response, crawlProfile);
+        return response;
+    }
+
+    /**
+     * store a loaded response in the cache if the crawl profile and the response allow it
+     */
+    private void storeCache(final Response response, final CrawlProfile crawlProfile) {
         // we got something. Now check if we want to store that to the cache
         // first check looks if we want to store the content to the cache
         if (crawlProfile == null || !crawlProfile.storeHTCache()) {
             // no caching wanted. Thats ok, do not write any message
-            return response;
+            return;
         }
         // second check tells us if the protocol tells us something about caching
         final String storeError = response.shallStoreCacheForCrawler();
@@ -294,7 +381,6 @@ public final class LoaderDispatcher {
         } else {
             LoaderDispatcher.log.warn("cannot write " + response.url() + " to Cache (4): " + storeError);
         }
-        return response;
     }
 
     /**
@@ -441,10 +527,7 @@ public final class LoaderDispatcher {
 	private void checkAccessTime(ClientIdentification.Agent agent, final DigestURL url) {
 		if (!url.isLocal()) {
 			final String host = url.getHost();
-			final Long lastAccess = accessTime.get(host);
-			long wait = 0;
-			if (lastAccess != null)
-				wait = Math.max(0, agent.minimumDelta() + lastAccess.longValue() - System.currentTimeMillis());
+			final long wait = this.accessDelay(agent, url);
 			if (wait > 0) {
 				// force a sleep here. Instead just sleep we clean up the
 				// accessTime map
@@ -462,6 +545,18 @@ public final class LoaderDispatcher {
 		}
 	}
 
+	/**
+	 * @param agent agent identifier
+	 * @param url target url
+	 * @return the time in milliseconds which must pass before the host of the url may be accessed again
+	 */
+	private long accessDelay(final ClientIdentification.Agent agent, final DigestURL url) {
+		if (url.isLocal()) return 0;
+		final Long lastAccess = accessTime.get(url.getHost());
+		if (lastAccess == null) return 0;
+		return Math.max(0, agent.minimumDelta() + lastAccess.longValue() - System.currentTimeMillis());
+	}
+
 	/**
 	 * @param url the URL of a resource to load
 	 * @return the crawler configured maximum size allowed to load for the protocol of the URL
@@ -80,8 +80,12 @@ import java.util.TreeSet;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -181,15 +185,20 @@ import net.yacy.htroot.NetworkPicture;
 import net.yacy.http.YaCyHttpServer;
 import net.yacy.kelondro.blob.ArrayStack;
 import net.yacy.kelondro.blob.BEncodedHeap;
+import net.yacy.kelondro.blob.Compressor;
+import net.yacy.kelondro.blob.HeapReader;
 import net.yacy.kelondro.blob.Tables;
 import net.yacy.kelondro.blob.Tables.SortDirection;
 import net.yacy.kelondro.data.meta.URIMetadataNode;
 import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.io.BufferedRecords;
 import net.yacy.kelondro.logging.GuiHandler;
 import net.yacy.kelondro.logging.ThreadDump;
+import net.yacy.kelondro.rwi.IndexCell;
 import net.yacy.kelondro.rwi.ReferenceContainer;
 import net.yacy.kelondro.util.FileUtils;
 import net.yacy.kelondro.util.MemoryControl;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
 import net.yacy.kelondro.util.OS;
 import net.yacy.kelondro.util.SetTools;
 import net.yacy.kelondro.workflow.BusyThread;
@@ -221,6 +230,7 @@ import net.yacy.search.index.SingleDocumentMatcher;
 import net.yacy.search.query.AccessTracker;
 import net.yacy.search.query.SearchEvent;
 import net.yacy.search.query.SearchEventCache;
+import net.yacy.search.query.SearchExecutor;
 import net.yacy.search.ranking.RankingProfile;
 import net.yacy.search.schema.CollectionConfiguration;
 import net.yacy.search.schema.CollectionSchema;
@@ -460,6 +470,7 @@ public final class Switchboard extends serverSwitch {
         MultiProtocolURL.initSessionIDNames(FileUtils.loadList(new File(this.getAppPath(), sessionidNamesFile)));
 
         // init tables
+        BufferedRecords.groupCommitLag = this.getConfigLong("table.groupCommitLag", 0);
         this.tables = new WorkTables(this.workPath);
 
         // set a high maximum cache size to current size; this is adopted later automatically
@@ -573,8 +584,17 @@ public final class Switchboard extends serverSwitch {
 
         // initialize index
         ReferenceContainer.maxReferences = this.getConfigInt("index.maxReferences", 0);
+        ReferenceContainer.packedExport = this.getConfigBool("index.rwi.packedContainers", false);
+        IndexCell.ramShards = this.getConfigInt("index.rwi.ramShards", 4);
+        ArrayStack.sealedReadMode = ArrayStack.SealedReadMode.parse(this.getConfig("index.blob.sealedReadMode", "monitor"));
+        HeapReader.keyFilterBitsPerKey = this.getConfigInt("index.blob.keyFilterBitsPerKey", 10);
+        SearchExecutor.remoteThreads = this.getConfigInt("search.executor.remoteThreads", 64);
+        SearchExecutor.localThreads = this.getConfigInt("search.executor.localThreads", 16);
+        SearchExecutor.solrThreads = this.getConfigInt("search.executor.solrThreads", 16);
+        SearchExecutor.queueTimeout = this.getConfigLong("search.executor.queueTimeout", 10000);
         final File segmentsPath = new File(new File(indexPath, networkName), "SEGMENTS");
         try {this.index = new Segment(this.log, segmentsPath, archivePath, solrCollectionConfigurationWork, solrWebgraphConfigurationWork);} catch (final IOException e) {ConcurrentLog.logException(e);}
+        this.setIndexMergeLimits();
         if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_RWI, true)) try {
             this.index.connectRWI(wordCacheMaxCount, fileSizeMax);
         } catch (final IOException e) {ConcurrentLog.logException(e);}
@@ -586,6 +606,10 @@ public final class Switchboard extends serverSwitch {
             try {this.index.fulltext().connectLocalSolr();} catch (final IOException e) {ConcurrentLog.logException(e);}
         }
         this.index.fulltext().setUseWebgraph(this.getConfigBool(SwitchboardConstants.CORE_SERVICE_WEBGRAPH, false));
+        this.index.fulltext().setIngestLimits(
+                this.getConfigInt(SwitchboardConstants.INDEX_INGEST_BATCH_SIZE, Fulltext.INGEST_BATCH_SIZE_DEFAULT),
+                this.getConfigLong(SwitchboardConstants.INDEX_INGEST_MAX_DELAY, Fulltext.INGEST_MAX_DELAY_DEFAULT),
+                this.getConfigInt(SwitchboardConstants.INDEX_INGEST_CAPACITY, Fulltext.INGEST_CAPACITY_DEFAULT));
 
         // set up the solr interface
         final String solrurls = this.getConfig(SwitchboardConstants.FEDERATED_SERVICE_SOLR_INDEXING_URL, "http://127.0.0.1:8983/solr");
@@ -780,6 +804,10 @@ public final class Switchboard extends serverSwitch {
                         SwitchboardConstants.HTCACHE_SYNC_LOCK_TIMEOUT_DEFAULT),
                 this.getConfigInt(SwitchboardConstants.HTCACHE_COMPRESSION_LEVEL,
                         SwitchboardConstants.HTCACHE_COMPRESSION_LEVEL_DEFAULT));
+        Cache.setCodec("lz4".equalsIgnoreCase(this.getConfig(SwitchboardConstants.HTCACHE_CODEC,
+                SwitchboardConstants.HTCACHE_CODEC_DEFAULT)) ? Compressor.Codec.LZ4 : Compressor.Codec.GZIP);
+        Cache.setMemoryTierSize(1024L * 1024L * this.getConfigLong(SwitchboardConstants.HTCACHE_MEMORY_TIER_SIZE,
+                Cache.DEFAULT_MEMORY_TIER_SIZE / 1024L / 1024L));
 
         // create the packs directories
         this.packsHoldPath = this.getDataPath(SwitchboardConstants.PACKS_HOLD_PATH, SwitchboardConstants.PACKS_HOLD_PATH_DEFAULT);
@@ -950,6 +978,8 @@ public final class Switchboard extends serverSwitch {
                     + " property: " + pse.getMessage());
             System.exit(-1);
         }
+        Domains.setNameCacheTinyLFU(this.getConfigBool(SwitchboardConstants.HTTPC_NAME_CACHE_TINYLFU, false));
+        TextSnippet.snippetsCache.setTinyLFU(this.getConfigBool(SwitchboardConstants.SNIPPET_CACHE_TINYLFU, false));
 
         // generate snippets cache
         this.log.config("Initializing Snippet Cache");
@@ -1467,6 +1497,7 @@ public final class Switchboard extends serverSwitch {
             final File segmentsPath = new File(new File(indexPrimaryPath, networkName), "SEGMENTS");
             final File archivePath = this.getDataPath(SwitchboardConstants.INDEX_ARCHIVE_PATH, SwitchboardConstants.INDEX_ARCHIVE_DEFAULT);
             this.index = new Segment(this.log, segmentsPath, archivePath, collectionConfiguration, webgraphConfiguration);
+            this.setIndexMergeLimits();
             if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_RWI, true)) this.index.connectRWI(wordCacheMaxCount, fileSizeMax);
             if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_CITATION, true)) this.index.connectCitation(wordCacheMaxCount, fileSizeMax);
             if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_FULLTEXT,
@@ -1474,6 +1505,10 @@ public final class Switchboard extends serverSwitch {
                 this.index.fulltext().connectLocalSolr();
             }
             this.index.fulltext().setUseWebgraph(this.getConfigBool(SwitchboardConstants.CORE_SERVICE_WEBGRAPH, false));
+            this.index.fulltext().setIngestLimits(
+                    this.getConfigInt(SwitchboardConstants.INDEX_INGEST_BATCH_SIZE, Fulltext.INGEST_BATCH_SIZE_DEFAULT),
+                    this.getConfigLong(SwitchboardConstants.INDEX_INGEST_MAX_DELAY, Fulltext.INGEST_MAX_DELAY_DEFAULT),
+                    this.getConfigInt(SwitchboardConstants.INDEX_INGEST_CAPACITY, Fulltext.INGEST_CAPACITY_DEFAULT));
 
             // set up the solr interface
             final String solrurls = this.getConfig(SwitchboardConstants.FEDERATED_SERVICE_SOLR_INDEXING_URL, "http://127.0.0.1:8983/solr");
@@ -1793,7 +1828,7 @@ public final class Switchboard extends serverSwitch {
      * @return if it exists, the name of the database is returned, if it not exists, null is returned
      */
     public HarvestProcess getHarvestProcess(final String hash) {
-        if (this.index.fulltext().getDefaultConnector().exists(hash)) return HarvestProcess.LOADED;
+        if (this.index.fulltext().exists(hash)) return HarvestProcess.LOADED;
         final HarvestProcess hp = this.crawlQueues.exists(ASCII.getBytes(hash));
         if (hp != null) return hp;
         return null; // todo: can also be in error
@@ -1833,6 +1868,20 @@ public final class Switchboard extends serverSwitch {
                         : new RankingProfile("", crypt.simpleDecode(this.getConfig(SwitchboardConstants.SEARCH_RANKING_RWI_PROFILE, "")));
     }
 
+    /**
+     * apply the write budget and the search pause of the RWI and citation index merges
+     */
+    private void setIndexMergeLimits() {
+        if (this.index == null) return;
+        final long pauseAfterSearch = this.getConfigLong("index.merge.pauseAfterSearch", 0);
+        this.index.setMergeLimits(
+                this.getConfigLong("index.merge.maxBytesPerSecond", 0),
+                pauseAfterSearch <= 0 ? null : () -> {
+                    final long now = System.currentTimeMillis();
+                    return now - this.localSearchLastAccess < pauseAfterSearch || now - this.remoteSearchLastAccess < pauseAfterSearch;
+                });
+    }
+
     /**
      * checks if the proxy, the local search or remote search was accessed some time before If no limit is
      * exceeded, null is returned. If a limit is exceeded, then the name of the service that caused the
@@ -1945,6 +1994,7 @@ public final class Switchboard extends serverSwitch {
         this.messageDB.close();
         this.webStructure.close();
         this.crawler.close();
+        SearchExecutor.shutdown();
         this.log.config("SWITCHBOARD SHUTDOWN STEP 3: sending termination signal to database manager (stand by...)");
         this.index.close();
         this.peers.close();
@@ -2075,20 +2125,8 @@ public final class Switchboard extends serverSwitch {
                 }
             }
             return moved;
-        } else if (inFileName.endsWith(".warc") || inFileName.endsWith(".warc.gz")) {
-            try {
-                final WarcImporter wri = new WarcImporter(infile, collectionName);
-                wri.start();
-                try {
-                    wri.join();
-                } catch (final InterruptedException ex) {
-                    return moved;
-                }
-                moved = infile.renameTo(outfile);
-            } catch (final IOException ex) {
-                this.log.warn("IO Error processing warc file " + infile);
-            }
-            return moved;
+        } else if (isWarcPack(inFileName)) {
+            return this.processWarcPacks(Collections.singletonList(inFileName), collectionName);
         } else if (inFileName.endsWith(".zim")) {
             try {
                 final ZimImporter wri = new ZimImporter(infile.getAbsolutePath(), collectionName);
@@ -2253,6 +2291,64 @@ public final class Switchboard extends serverSwitch {
         }
     }
 
+    /**
+     * import warc packs; the packs are imported concurrently, at most packs.warc.files at the same time.
+     * Each worker takes the next pack as soon as its import is finished.
+     * @param inFileNames names of warc files in the packs load path
+     * @param collectionName the collection of the imported documents
+     * @return true if a pack was imported and moved to the packs loaded path
+     */
+    public boolean processWarcPacks(final List<String> inFileNames, final String collectionName) {
+        final int concurrency = Math.max(1, this.getConfigInt(SwitchboardConstants.PACKS_WARC_FILES, 2));
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, Math.max(1, inFileNames.size())),
+                new NamePrefixThreadFactory("processWarcPacks"));
+        final AtomicBoolean moved = new AtomicBoolean(false);
+        for (final String inFileName : inFileNames) {
+            executor.execute(() -> {
+                if (this.shallTerminate()) return;
+                final File infile = new File(this.packsLoadPath, inFileName);
+                if ( !infile.exists() || !infile.canWrite() || !infile.canRead() ) return;
+                final WarcImporter wri;
+                try {
+                    wri = new WarcImporter(infile, collectionName);
+                } catch (final IOException ex) {
+                    this.log.warn("IO Error processing warc file " + infile);
+                    return;
+                }
+                wri.start();
+                boolean interrupted = false;
+                while (wri.isAlive()) {
+                    try {
+                        wri.join();
+                    } catch (final InterruptedException ex) {
+                        // stop the importer and wait for it; the file of a stopped import stays in the load path
+                        interrupted = true;
+                        wri.quit();
+                    }
+                }
+                if (interrupted && wri.isStopped()) return;
+                if (infile.renameTo(new File(this.packsLoadedPath, infile.getName()))) moved.set(true);
+            });
+        }
+        executor.shutdown();
+        boolean interrupted = false;
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (final InterruptedException ex) {
+                // drop the packs which are not started and stop the running imports
+                interrupted = true;
+                executor.shutdownNow();
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        return moved.get();
+    }
+
+    private static boolean isWarcPack(final String s) {
+        return s.endsWith(".warc") || s.endsWith(".warc.gz");
+    }
+
     public boolean isPackFile(String s) {
         return s.endsWith(".xml")
                 || s.endsWith(".xml.gz")
@@ -2329,12 +2425,22 @@ public final class Switchboard extends serverSwitch {
             final String[] packlist = this.packsLoadPath.list();
             if ( packlist != null && packlist.length > 0 ) {
                 // look if the is any xml inside
+                boolean warcPacksDone = false;
                 for ( final String pack : packlist ) {
 
                     // check for interruption
                     this.checkInterruption();
 
-                    if (this.isPackFile(pack)) {
+                    if (isWarcPack(pack)) {
+                        // all warc packs are imported together, several at the same time
+                        if (warcPacksDone) continue;
+                        warcPacksDone = true;
+                        final List<String> warcPacks = new ArrayList<>();
+                        for (final String p : packlist) if (isWarcPack(p)) warcPacks.add(p);
+                        if (this.processWarcPacks(warcPacks, "user")) {
+                            return true;
+                        }
+                    } else if (this.isPackFile(pack)) {
                         // read the pack file and store entry in index
                         if ( this.processPack(pack, "user") ) {
                             return true;
@@ -164,6 +164,10 @@ public final class SwitchboardConstants {
     public static final String PACKS_LOADPREREQ             = "70_packs_loadprereq";
     public static final String PACKS_IDLESLEEP              = "70_packs_idlesleep";
     public static final String PACKS_BUSYSLEEP              = "70_packs_busysleep";
+    /** Key of the setting for the number of threads of a warc import which create the responses for the indexer, 0 for one thread per processor */
+    public static final String PACKS_WARC_THREADS           = "packs.warc.threads";
+    /** Key of the setting for the number of warc packs which are imported at the same time */
+    public static final String PACKS_WARC_FILES             = "packs.warc.files";
     // 85_scheduler
     /**
      * <p><code>public static final String <strong>SCHEDULER</strong> = "85_scheduler"</code></p>
@@ -354,13 +358,23 @@ public final class SwitchboardConstants {
     public static final String CORE_SERVICE_CITATION            = "core.service.citation.tmp";
     public static final String CORE_SERVICE_WEBGRAPH            = "core.service.webgraph.tmp";
 
+    /** Key of the setting for the maximum number of documents which are written to Solr in one batch, 1 writes every document directly */
+    public static final String INDEX_INGEST_BATCH_SIZE          = "index.ingest.batchSize";
+    /** Key of the setting for the maximum time in milliseconds that a document waits for its batch */
+    public static final String INDEX_INGEST_MAX_DELAY           = "index.ingest.maxDelay";
+    /** Key of the setting for the maximum number of documents waiting for a batch; the indexer waits if it is reached */
+    public static final String INDEX_INGEST_CAPACITY            = "index.ingest.capacity";
+
     /**
      * <p><code>public static final String <strong>CRAWLER_THREADS_ACTIVE_MAX</strong> = "crawler.MaxActiveThreads"</code></p>
      * <p>Name of the setting how many active crawler-threads may maximal be running on the same time</p>
      */
     public static final String CRAWLER_THREADS_ACTIVE_MAX       = "crawler.MaxActiveThreads";
+    /** Key of the setting for the maximum number of concurrent crawler loads; a load which waits for the response does not occupy a crawler thread */
+    public static final String CRAWLER_LOADS_ACTIVE_MAX         = "crawler.MaxActiveLoads";
     public static final String CRAWLER_LATENCY_FACTOR           = "crawler.latencyFactor";
     public static final String CRAWLER_MAX_SAME_HOST_IN_QUEUE   = "crawler.MaxSameHostInQueue";
+    public static final String CRAWLER_FRONTIER_SINGLE_FILE     = "crawler.frontier.singleFile"; // store the crawl stacks in one file each instead of one directory per host
     public static final String CRAWLER_FOLLOW_REDIRECTS         = "crawler.http.FollowRedirects"; // ignore the target url and follow to the redirect
     public static final String CRAWLER_RECORD_REDIRECTS         = "crawler.http.RecordRedirects"; // record the ignored redirected page to the index store
 
@@ -402,6 +416,10 @@ public final class SwitchboardConstants {
      */
     public static final String WORDCACHE_MAX_COUNT              = "wordCacheMaxCount";
     public static final String HTTPC_NAME_CACHE_CACHING_PATTERNS_NO = "httpc.nameCacheNoCachingPatterns";
+    /** Key of the setting selecting the TinyLFUARC instead of the ConcurrentARC for the dns name caches */
+    public static final String HTTPC_NAME_CACHE_TINYLFU = "httpc.nameCache.tinyLFU";
+    /** Key of the setting selecting the TinyLFUARC instead of the ConcurrentARC for the text snippet cache */
+    public static final String SNIPPET_CACHE_TINYLFU = "search.snippetCache.tinyLFU";
     public static final String ROBOTS_TXT                       = "httpd.robots.txt";
     public static final String ROBOTS_TXT_DEFAULT               = RobotsTxtConfig.LOCKED + "," + RobotsTxtConfig.DIRS;
     /** Key of the setting configuring how many active robots.txt loading threads may be running on the same time at max */
@@ -438,6 +456,15 @@ public final class SwitchboardConstants {
     /** Default timeout value (in milliseconds) for acquiring a synchronization lock on getContent/store Cache operations */
     public static final long HTCACHE_SYNC_LOCK_TIMEOUT_DEFAULT = 2000;
 
+    /** Key of the setting configuring the codec for newly cached content : gzip or lz4 */
+    public static final String HTCACHE_CODEC   = "proxyCache.codec";
+
+    /** Default codec for cached content */
+    public static final String HTCACHE_CODEC_DEFAULT = "gzip";
+
+    /** Key of the setting configuring the size (in megabytes) of the memory tier holding recently stored or read content */
+    public static final String HTCACHE_MEMORY_TIER_SIZE   = "proxyCache.memoryTierSize";
+
     public static final String RELEASE_PATH             = "releases";
     public static final String RELEASE_PATH_DEFAULT     = "DATA/RELEASE";
 
@@ -0,0 +1,406 @@
+/**
+ *  BatchIngest
+ *  Copyright 2026 by YaCy contributors
+ *  First released 18.10.2026 at https://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.search.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+
+import net.yacy.cora.federate.solr.connector.SolrConnector;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.search.schema.CollectionSchema;
+
+/**
+ * Collects documents for one Solr core and writes them with SolrConnector.add(Collection).
+ * A batch is written when it has reached the batch size or when its oldest document waited for the maximum delay.
+ * The buffer holds at most capacity documents; add() blocks while it is full, which slows down the indexing
+ * threads instead of piling up documents in memory.
+ * The ids of buffered documents can be checked with contains(), a write of all buffered documents can be forced with flush()
+ * and buffered documents which shall be deleted can be dropped with remove().
+ */
+public class BatchIngest {
+
+    private final static ConcurrentLog log = new ConcurrentLog("BatchIngest");
+
+    private final String name;
+    private final Supplier<SolrConnector> connector;
+    private volatile int batchSize;
+    private volatile long maxDelay;
+    private volatile int capacity;
+
+    private final ReentrantLock lock;        // guards the buffer
+    private final Condition ready, notFull;
+    private final ReentrantLock writeLock;   // held while a batch is taken from the buffer and written
+    private final List<SolrInputDocument> buffer;
+    private final Map<String, SolrInputDocument> pending; // buffered and written documents by id
+    private long oldest;                     // time when the oldest buffered document was added
+    private Thread writer;
+    private boolean closed;
+
+    private final AtomicLong batches, documents, failures, writeTime;
+
+    /**
+     * @param name the name of the core, used in the log and the writer thread name
+     * @param connector the connector to write to; is requested for every batch because the connector changes when Solr is reconnected
+     * @param batchSize maximum number of documents in one batch; batching is switched off with a value below 2
+     * @param maxDelay maximum time in milliseconds which a document waits in the buffer
+     * @param capacity maximum number of buffered documents
+     */
+    public BatchIngest(final String name, final Supplier<SolrConnector> connector, final int batchSize, final long maxDelay, final int capacity) {
+        this.name = name;
+        this.connector = connector;
+        this.lock = new ReentrantLock();
+        this.ready = this.lock.newCondition();
+        this.notFull = this.lock.newCondition();
+        this.writeLock = new ReentrantLock();
+        this.buffer = new ArrayList<>();
+        this.pending = new ConcurrentHashMap<>();
+        this.oldest = 0;
+        this.writer = null;
+        this.closed = false;
+        this.batches = new AtomicLong(0);
+        this.documents = new AtomicLong(0);
+        this.failures = new AtomicLong(0);
+        this.writeTime = new AtomicLong(0);
+        setLimits(batchSize, maxDelay, capacity);
+    }
+
+    /**
+     * change the batch size, the maximum delay and the capacity of the buffer
+     */
+    public void setLimits(final int batchSize, final long maxDelay, final int capacity) {
+        this.batchSize = batchSize;
+        this.maxDelay = Math.max(0, maxDelay);
+        this.capacity = Math.max(batchSize, capacity);
+        this.lock.lock();
+        try {
+            this.ready.signalAll();
+            this.notFull.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return false if the batch size is below 2; then the documents shall be written directly
+     */
+    public boolean isBatching() {
+        return this.batchSize > 1;
+    }
+
+    /**
+     * add a document to the buffer; blocks while the buffer is full
+     * @param doc the document
+     * @throws IOException if the thread was interrupted while waiting for space in the buffer
+     */
+    public void add(final SolrInputDocument doc) throws IOException {
+        final String id = (String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName());
+        final boolean isClosed;
+        this.lock.lock();
+        try {
+            while (this.buffer.size() >= this.capacity && !this.closed) {
+                this.notFull.await();
+            }
+            if (id != null) this.pending.put(id, doc);
+            if (this.buffer.isEmpty()) this.oldest = System.currentTimeMillis();
+            this.buffer.add(doc);
+            isClosed = this.closed;
+            if (this.writer == null && !isClosed) {
+                this.writer = new Thread(this::writeBehind, "BatchIngest.writer " + this.name);
+                this.writer.setDaemon(true);
+                this.writer.start();
+            }
+            if (this.buffer.size() >= this.batchSize) this.ready.signal();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for space in the " + this.name + " buffer", e);
+        } finally {
+            this.lock.unlock();
+        }
+        if (isClosed) flush(); // there is no writer after close()
+    }
+
+    /**
+     * add documents to the buffer
+     * @param docs the documents
+     * @throws IOException if the thread was interrupted while waiting for space in the buffer
+     */
+    public void add(final Collection<SolrInputDocument> docs) throws IOException {
+        for (final SolrInputDocument doc: docs) add(doc);
+    }
+
+    /**
+     * @param id a document id
+     * @return true if a document with the given id is buffered or currently written
+     */
+    public boolean contains(final String id) {
+        return this.pending.containsKey(id);
+    }
+
+    /**
+     * @return the number of buffered documents
+     */
+    public int size() {
+        this.lock.lock();
+        try {
+            return this.buffer.size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * write all buffered documents; returns when the documents are written, including a batch which was written concurrently
+     */
+    public void flush() {
+        this.writeLock.lock();
+        try {
+            write(takeAll());
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    /**
+     * remove all buffered documents without writing them
+     */
+    public void clear() {
+        this.writeLock.lock();
+        try {
+            takeAll();
+            this.pending.clear();
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    /**
+     * remove buffered documents without writing them. Documents which are currently written cannot be taken back;
+     * if a matching document is in a running write, this waits until that write is finished, so that a following
+     * deletion in Solr is not overtaken by the write.
+     * @param field the name of the field which is compared, i.e. the id or the source id of a webgraph edge
+     * @param values the field values of the documents to be removed
+     * @return the number of removed documents
+     */
+    public int remove(final String field, final Collection<String> values) {
+        if (values == null || values.isEmpty()) return 0;
+        final String idField = CollectionSchema.id.getSolrFieldName();
+        int removed = 0;
+        this.lock.lock();
+        try {
+            final Iterator<SolrInputDocument> i = this.buffer.iterator();
+            while (i.hasNext()) {
+                final SolrInputDocument doc = i.next();
+                if (!values.contains(doc.getFieldValue(field))) continue;
+                i.remove();
+                removed++;
+                final Object id = doc.getFieldValue(idField);
+                if (id != null) this.pending.remove(id, doc);
+            }
+            if (removed > 0) this.notFull.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+
+        // the remaining pending documents are in a batch which is written right now
+        boolean writing = false;
+        if (idField.equals(field)) {
+            for (final String value: values) if (this.pending.containsKey(value)) {writing = true; break;}
+        } else {
+            for (final SolrInputDocument doc: this.pending.values()) if (values.contains(doc.getFieldValue(field))) {writing = true; break;}
+        }
+        if (writing) {
+            this.writeLock.lock();
+            this.writeLock.unlock();
+        }
+        return removed;
+    }
+
+    /**
+     * write all buffered documents and stop the writer thread
+     */
+    public void close() {
+        Thread w;
+        this.lock.lock();
+        try {
+            this.closed = true;
+            w = this.writer;
+            this.writer = null;
+            this.ready.signalAll();
+            this.notFull.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+        if (w != null) try {
+            w.join(60000);
+        } catch (final InterruptedException e) {}
+        flush();
+    }
+
+    /**
+     * @return the name of the core
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    public long getBatchCount() {
+        return this.batches.get();
+    }
+
+    public long getDocumentCount() {
+        return this.documents.get();
+    }
+
+    public long getFailureCount() {
+        return this.failures.get();
+    }
+
+    /**
+     * @return the average time in milliseconds to write one document, measured over all batches
+     */
+    public double getAverageWriteTime() {
+        final long d = this.documents.get();
+        return d == 0 ? 0.0d : ((double) this.writeTime.get()) / d;
+    }
+
+    private List<SolrInputDocument> takeAll() {
+        this.lock.lock();
+        try {
+            final List<SolrInputDocument> batch = new ArrayList<>(this.buffer);
+            this.buffer.clear();
+            this.notFull.signalAll();
+            return batch;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void writeBehind() {
+        try {
+            while (true) {
+                // wait until a batch is full or the oldest document waited long enough
+                this.lock.lock();
+                try {
+                    while (true) {
+                        if (this.closed) return;
+                        if (this.buffer.isEmpty()) {
+                            this.ready.await();
+                            continue;
+                        }
+                        final long wait = this.oldest + this.maxDelay - System.currentTimeMillis();
+                        if (this.buffer.size() >= this.batchSize || wait <= 0) break;
+                        this.ready.await(wait, TimeUnit.MILLISECONDS);
+                    }
+                } finally {
+                    this.lock.unlock();
+                }
+
+                // take one batch and write it
+                this.writeLock.lock();
+                try {
+                    final List<SolrInputDocument> batch;
+                    this.lock.lock();
+                    try {
+                        final int count = Math.min(this.batchSize, this.buffer.size());
+                        final List<SolrInputDocument> head = this.buffer.subList(0, count);
+                        batch = new ArrayList<>(head);
+                        head.clear();
+                        this.oldest = System.currentTimeMillis();
+                        this.notFull.signalAll();
+                    } finally {
+                        this.lock.unlock();
+                    }
+                    write(batch);
+                } finally {
+                    this.writeLock.unlock();
+                }
+            }
+        } catch (final InterruptedException e) {
+            // the writer ends, a new writer is started with the next document
+        } finally {
+            this.lock.lock();
+            try {
+                if (this.writer == Thread.currentThread()) this.writer = null;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * write a batch; if the batch fails, the documents are written one by one so that one bad document does not drop the batch
+     */
+    private void write(final List<SolrInputDocument> batch) {
+        if (batch.isEmpty()) return;
+        final long start = System.currentTimeMillis();
+        final SolrConnector c = this.connector.get();
+        try {
+            if (c == null || c.isClosed()) {
+                this.failures.addAndGet(batch.size());
+                log.warn("event=index.batch subsystem=index core=" + this.name + " result=dropped reason=closed count=" + batch.size());
+                return;
+            }
+            int failed = 0;
+            String reason = null;
+            try {
+                c.add(batch);
+            } catch (final IOException | SolrException e) {
+                reason = e.getMessage();
+                for (final SolrInputDocument doc: batch) {
+                    try {
+                        c.add(doc);
+                    } catch (final IOException | SolrException ee) {
+                        failed++;
+                        log.warn("event=index.document subsystem=index core=" + this.name + " result=failure id=" +
+                                doc.getFieldValue(CollectionSchema.id.getSolrFieldName()) + " reason=" + ee.getMessage());
+                    }
+                }
+            }
+            final long time = System.currentTimeMillis() - start;
+            this.batches.incrementAndGet();
+            this.documents.addAndGet(batch.size() - failed);
+            this.failures.addAndGet(failed);
+            this.writeTime.addAndGet(time);
+            if (log.isInfo()) log.info("event=index.batch subsystem=index core=" + this.name +
+                    " result=" + (reason == null ? "success" : "retried") + " count=" + batch.size() + " failed=" + failed +
+                    " buffered=" + size() + " durationMs=" + time +
+                    (reason == null ? "" : " reason=" + reason));
+        } finally {
+            for (final SolrInputDocument doc: batch) {
+                final Object id = doc.getFieldValue(CollectionSchema.id.getSolrFieldName());
+                if (id != null) this.pending.remove(id, doc);
+            }
+        }
+    }
+}
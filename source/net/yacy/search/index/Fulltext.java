@@ -32,6 +32,7 @@ import java.lang.reflect.Array;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -113,6 +114,13 @@ public final class Fulltext {
     private final WebgraphConfiguration   webgraphConfiguration;
     private       boolean                 writeWebgraph;
 
+    /** batches of documents and webgraph edges waiting to be written */
+    private final BatchIngest             documentIngest, edgeIngest;
+
+    public static final int  INGEST_BATCH_SIZE_DEFAULT = 100;
+    public static final long INGEST_MAX_DELAY_DEFAULT  = 1000;
+    public static final int  INGEST_CAPACITY_DEFAULT   = 1000;
+
     protected Fulltext(final File segmentPath, final File archivePath,
             final CollectionConfiguration collectionConfiguration, final WebgraphConfiguration webgraphConfiguration) {
         this.segmentPath = segmentPath;
@@ -123,6 +131,49 @@ public final class Fulltext {
         this.collectionConfiguration = collectionConfiguration;
         this.webgraphConfiguration = webgraphConfiguration;
         this.writeWebgraph = false;
+        this.documentIngest = new BatchIngest(CollectionSchema.CORE_NAME, this::getDefaultConnector, INGEST_BATCH_SIZE_DEFAULT, INGEST_MAX_DELAY_DEFAULT, INGEST_CAPACITY_DEFAULT);
+        this.edgeIngest = new BatchIngest(WebgraphSchema.CORE_NAME, this::getWebgraphConnector, INGEST_BATCH_SIZE_DEFAULT * 10, INGEST_MAX_DELAY_DEFAULT, INGEST_CAPACITY_DEFAULT * 10);
+    }
+
+    /**
+     * set the limits of the batches which are written to Solr by putDocument() and putEdges()
+     * @param batchSize the maximum number of documents in one batch, a value below 2 switches batching off.
+     *   A document has many edges, the webgraph batches are ten times larger
+     * @param maxDelay the maximum time in milliseconds that a document waits for the next batch
+     * @param capacity the maximum number of documents waiting; putDocument() blocks if it is reached
+     */
+    public void setIngestLimits(final int batchSize, final long maxDelay, final int capacity) {
+        this.documentIngest.setLimits(batchSize, maxDelay, capacity);
+        this.edgeIngest.setLimits(batchSize * 10, maxDelay, capacity * 10);
+        if (!this.documentIngest.isBatching()) flushIngest();
+    }
+
+    public BatchIngest getDocumentIngest() {
+        return this.documentIngest;
+    }
+
+    public BatchIngest getEdgeIngest() {
+        return this.edgeIngest;
+    }
+
+    /**
+     * write all documents and edges which are waiting in a batch. This is done before every deletion by query,
+     * otherwise a buffered document could be written after it was deleted.
+     */
+    public void flushIngest() {
+        this.documentIngest.flush();
+        this.edgeIngest.flush();
+    }
+
+    /**
+     * drop the documents and the edges of the given documents which are waiting in a batch. This is done before the
+     * deletion of single documents by id; deletions by query must use flushIngest() because they cannot be matched
+     * against the buffered documents.
+     * @param ids the document ids
+     */
+    private void removeIngest(final Collection<String> ids) {
+        this.documentIngest.remove(CollectionSchema.id.getSolrFieldName(), ids);
+        this.edgeIngest.remove(WebgraphSchema.source_id_s.getSolrFieldName(), ids);
     }
 
     public void setUseWebgraph(final boolean check) {
@@ -258,6 +309,8 @@ public final class Fulltext {
         if (this.exportthread != null) {
             this.exportthread.interrupt();
         }
+        this.documentIngest.clear();
+        this.edgeIngest.clear();
         this.solrInstancesLock.lock();
         try {
             final EmbeddedInstance instance = this.solrInstances.getEmbedded();
@@ -274,6 +327,8 @@ public final class Fulltext {
     }
 
     public void clearRemoteSolr() throws IOException {
+        this.documentIngest.clear();
+        this.edgeIngest.clear();
         this.solrInstancesLock.lock();
         try {
             final ShardInstance instance = this.solrInstances.getRemote();
@@ -313,6 +368,8 @@ public final class Fulltext {
     }
 
     public void close() {
+        this.documentIngest.close();
+        this.edgeIngest.close();
         try {
             this.solrInstances.close();
         } catch (final Throwable e) {
@@ -322,6 +379,7 @@ public final class Fulltext {
 
     private long lastCommit = 0;
     public void commit(final boolean softCommit) {
+        flushIngest();
         final long t = System.currentTimeMillis();
         if (this.lastCommit + 10000 > t) return;
         this.lastCommit = t;
@@ -373,41 +431,58 @@ public final class Fulltext {
         return null;
     }
 
+    /**
+     * store a document. If batching is switched on, the document is added to the next batch and written
+     * within the maximum delay of the batches, see setIngestLimits(); this blocks while too many documents are waiting.
+     * @param doc the document
+     * @throws IOException if the document could not be written or the thread was interrupted while waiting
+     */
     public void putDocument(final SolrInputDocument doc) throws IOException {
         final SolrConnector connector = this.getDefaultConnector();
         if (connector == null || connector.isClosed()) return;
-        final String id = (String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName());
         final String url = (String) doc.getFieldValue(CollectionSchema.sku.getSolrFieldName());
-        final String host = (String) doc.getFieldValue(CollectionSchema.host_s.getSolrFieldName());
-        final Object httpStatus = doc.getFieldValue(CollectionSchema.httpstatus_i.getSolrFieldName());
         assert url != null && url.length() < 30000;
-        final long start = System.currentTimeMillis();
-        try {
-            connector.add(doc);
-        } catch (final SolrException e) {
-            ConcurrentLog.warn("Fulltext", "event=index.document subsystem=index result=failure id=" + id +
-                    " url=" + url + " host=" + host + " status=" + httpStatus + " reason=" + e.getMessage() +
-                    " durationMs=" + (System.currentTimeMillis() - start));
-            throw new IOException(e.getMessage(), e);
+        if (this.documentIngest.isBatching()) {
+            this.documentIngest.add(doc);
+        } else {
+            final long start = System.currentTimeMillis();
+            try {
+                connector.add(doc);
+            } catch (final SolrException e) {
+                ConcurrentLog.warn("Fulltext", "event=index.document subsystem=index result=failure id=" + doc.getFieldValue(CollectionSchema.id.getSolrFieldName()) +
+                        " url=" + url + " host=" + doc.getFieldValue(CollectionSchema.host_s.getSolrFieldName()) +
+                        " status=" + doc.getFieldValue(CollectionSchema.httpstatus_i.getSolrFieldName()) + " reason=" + e.getMessage() +
+                        " durationMs=" + (System.currentTimeMillis() - start));
+                throw new IOException(e.getMessage(), e);
+            }
+            if (ConcurrentLog.isFine("Fulltext")) ConcurrentLog.fine("Fulltext", "event=index.document subsystem=index result=queued id=" +
+                    doc.getFieldValue(CollectionSchema.id.getSolrFieldName()) + " url=" + url + " durationMs=" + (System.currentTimeMillis() - start));
         }
-        ConcurrentLog.info("Fulltext", "event=index.document subsystem=index result=queued id=" + id +
-                " url=" + url + " host=" + host + " status=" + httpStatus + " durationMs=" + (System.currentTimeMillis() - start));
         if (MemoryControl.shortStatus()) this.clearCaches();
     }
 
+    /**
+     * store the webgraph edges of a document; batched like putDocument()
+     * @param edges the edges
+     * @throws IOException if the edges could not be written or the thread was interrupted while waiting
+     */
     public void putEdges(final Collection<SolrInputDocument> edges) throws IOException {
         if (!this.useWebgraph()) return;
         if (edges == null || edges.size() == 0) return;
-        final long start = System.currentTimeMillis();
-        try {
-            this.getWebgraphConnector().add(edges);
-        } catch (final SolrException e) {
-            ConcurrentLog.warn("Fulltext", "event=index.webgraph subsystem=index result=failure count=" + edges.size() +
-                    " reason=" + e.getMessage() + " durationMs=" + (System.currentTimeMillis() - start));
-            throw new IOException(e.getMessage(), e);
+        if (this.edgeIngest.isBatching()) {
+            this.edgeIngest.add(edges);
+        } else {
+            final long start = System.currentTimeMillis();
+            try {
+                this.getWebgraphConnector().add(edges);
+            } catch (final SolrException e) {
+                ConcurrentLog.warn("Fulltext", "event=index.webgraph subsystem=index result=failure count=" + edges.size() +
+                        " reason=" + e.getMessage() + " durationMs=" + (System.currentTimeMillis() - start));
+                throw new IOException(e.getMessage(), e);
+            }
+            if (ConcurrentLog.isFine("Fulltext")) ConcurrentLog.fine("Fulltext", "event=index.webgraph subsystem=index result=queued count=" + edges.size() +
+                    " durationMs=" + (System.currentTimeMillis() - start));
         }
-        ConcurrentLog.info("Fulltext", "event=index.webgraph subsystem=index result=queued count=" + edges.size() +
-                " durationMs=" + (System.currentTimeMillis() - start));
         if (MemoryControl.shortStatus()) this.clearCaches();
     }
 
@@ -445,6 +520,7 @@ public final class Fulltext {
      * @throws IOException
      */
     public void deleteStaleDomainHashes(final Set<String> hosthashes, final Date freshdate) {
+        flushIngest();
         // delete in solr
         final Date now = new Date();
         deleteDomainWithConstraint(this.getDefaultConnector(), CollectionSchema.host_id_s.getSolrFieldName(), hosthashes,
@@ -456,6 +532,7 @@ public final class Fulltext {
     }
 
     public void deleteStaleDomainNames(final Set<String> hostnames, final Date freshdate) {
+        flushIngest();
 
         final Date now = new Date();
         deleteDomainWithConstraint(this.getDefaultConnector(), CollectionSchema.host_s.getSolrFieldName(), hostnames,
@@ -471,6 +548,7 @@ public final class Fulltext {
      * @param hosthashes
      */
     public void deleteDomainErrors(final Set<String> hosthashes) {
+        flushIngest();
         deleteDomainWithConstraint(this.getDefaultConnector(), CollectionSchema.host_id_s.getSolrFieldName(), hosthashes, CollectionSchema.failreason_s.getSolrFieldName() + AbstractSolrConnector.CATCHALL_DTERM);
     }
 
@@ -498,6 +576,7 @@ public final class Fulltext {
     }
 
     public void deleteOldDocuments(final long deltaToNow, final boolean loaddate) {
+        flushIngest();
         final Date deleteageDate = new Date(System.currentTimeMillis() - deltaToNow);
         final String collection1Query = (loaddate ? CollectionSchema.load_date_dt : CollectionSchema.last_modified).getSolrFieldName() + ":[* TO " + ISO8601Formatter.FORMATTER.format(deleteageDate) + "]";
         final String webgraphQuery = (loaddate ? WebgraphSchema.load_date_dt : WebgraphSchema.last_modified).getSolrFieldName() + ":[* TO " + ISO8601Formatter.FORMATTER.format(deleteageDate) + "]";
@@ -514,6 +593,7 @@ public final class Fulltext {
      * @param freshdate either NULL or a date in the past which is the limit for deletion. Only documents older than this date are deleted
      */
     public int remove(final String basepath, final Date freshdate) {
+        flushIngest();
         DigestURL uri;
         try {uri = new DigestURL(basepath);} catch (final MalformedURLException e) {return 0;}
         final String host = uri.getHost();
@@ -543,6 +623,7 @@ public final class Fulltext {
      */
     public void remove(final Collection<String> deleteIDs) {
         if (deleteIDs == null || deleteIDs.size() == 0) return;
+        removeIngest(deleteIDs);
         try {
             this.getDefaultConnector().deleteByIds(deleteIDs);
             if (this.writeWebgraph) { // Webgraph.id is combination of sourceHash+targetHash+hexCounter, to be successful use source_id_s and/or target_id_s
@@ -566,6 +647,7 @@ public final class Fulltext {
         if (urlHash == null) return false;
         try {
             final String id = ASCII.String(urlHash);
+            removeIngest(Collections.singleton(id));
             this.getDefaultConnector().deleteById(id);
             if (this.writeWebgraph) { // Webgraph.id is combination of sourceHash+targetHash+hexCounter, to be successful use source_id_s and/or target_id_s
                 /* Add quotes around the url hash to prevent Solr logging a ParseException stack trace when the hash start with a '-' character */
@@ -589,6 +671,7 @@ public final class Fulltext {
      * @return whether the documents exists
      */
     public boolean exists(final String id) {
+        if (this.documentIngest.contains(id)) return true;
         return this.getDefaultConnector().exists(id);
     }
 
@@ -40,6 +40,7 @@ import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
 import java.util.regex.Pattern;
 
 import org.apache.solr.common.SolrDocument;
@@ -125,6 +126,8 @@ public class Segment {
     private         IndexTable                     firstSeenIndex;
     private         IndexTable                     loadTimeIndex;
     private         IODispatcher                   merger = null; // shared iodispatcher for kelondro indexes
+    private         long                           mergeBytesPerSecond = 0; // write budget of index merges, 0 = unlimited
+    private         BooleanSupplier                mergePauseCondition = null; // no merges are scheduled while this is true
 
     /**
      * create a new Segment
@@ -146,6 +149,37 @@ public class Segment {
         this.loadTimeIndex = new IndexTable(new File(segmentPath, loadtimeIndexName), 12, 8, false, false);
     }
 
+    private IODispatcher newMerger() {
+        final IODispatcher dispatcher = new IODispatcher(2, 2, writeBufferSize);
+        dispatcher.mergeBudget().setBytesPerSecond(this.mergeBytesPerSecond);
+        dispatcher.setPauseCondition(this.mergePauseCondition);
+        dispatcher.start();
+        return dispatcher;
+    }
+
+    /**
+     * set limits for the background merges of the RWI and citation index files
+     * @param bytesPerSecond the maximum write rate of merges, 0 for no limit
+     * @param pauseCondition no merges are started while this condition is true; may be null
+     */
+    public synchronized void setMergeLimits(final long bytesPerSecond, final BooleanSupplier pauseCondition) {
+        this.mergeBytesPerSecond = bytesPerSecond;
+        this.mergePauseCondition = pauseCondition;
+        if (this.merger != null) {
+            this.merger.mergeBudget().setBytesPerSecond(bytesPerSecond);
+            this.merger.setPauseCondition(pauseCondition);
+        }
+    }
+
+    /**
+     * @return the number of bytes in RWI index files that are waiting for a merge, including queued merge jobs
+     */
+    public long RWIMergeDebt() {
+        if (this.termIndex == null) return 0;
+        final IODispatcher dispatcher = this.merger;
+        return this.termIndex.getMergeDebt() + (dispatcher == null ? 0 : dispatcher.pendingMergeBytes());
+    }
+
     public boolean connectedRWI() {
         return this.termIndex != null;
     }
@@ -154,8 +188,7 @@ public class Segment {
         if (this.termIndex != null) return;
 
         if (this.merger == null) { // init shared iodispatcher if none running
-            this.merger = new IODispatcher(2, 2, writeBufferSize);
-            this.merger.start();
+            this.merger = newMerger();
         }
         this.termIndex = new IndexCell<WordReference>(
                         new File(this.segmentPath, "default"),
@@ -184,8 +217,7 @@ public class Segment {
         if (this.urlCitationIndex != null) return;
 
         if (this.merger == null) { // init shared iodispatcher if none running
-            this.merger = new IODispatcher(2,2,writeBufferSize);
-            this.merger.start();
+            this.merger = newMerger();
         }
         this.urlCitationIndex = new IndexCell<CitationReference>(
                         new File(this.segmentPath, "default"),
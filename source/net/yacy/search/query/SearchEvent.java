@@ -41,12 +41,11 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 import java.util.regex.Pattern;
 
 import org.apache.solr.common.SolrDocument;
@@ -82,6 +81,7 @@ import net.yacy.document.Tokenizer;
 import net.yacy.kelondro.data.meta.URIMetadataNode;
 import net.yacy.kelondro.data.word.Word;
 import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceColumns;
 import net.yacy.kelondro.data.word.WordReferenceFactory;
 import net.yacy.kelondro.data.word.WordReferenceVars;
 import net.yacy.kelondro.index.RowHandleSet;
@@ -143,15 +143,15 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
     final WorkTables workTables;
     public final SecondarySearchSuperviser secondarySearchSuperviser;
     public final List<RemoteSearch> primarySearchThreadsL;
-    public final List<Thread> nodeSearchThreads;
-    public Thread[] secondarySearchThreads;
+    public final List<SearchTask> nodeSearchThreads;
+    public SearchTask[] secondarySearchThreads;
     public final SortedSet<byte[]> preselectedPeerHashes;
     private final SortedMap<byte[], Integer> IACount;
     private final SortedMap<byte[], String> IAResults;
     private final SortedMap<byte[], HeuristicResult> heuristics;
     private byte[] IAmaxcounthash, IAneardhthash;
-    public Thread rwiProcess;
-    public Thread localsolrsearch;
+    public SearchTask rwiProcess;
+    public SearchTask localsolrsearch;
 
     /** Offset of the next local Solr index request
      * Example : last local request with offset=10 and itemsPerPage=20, sets this attribute to 30. */
@@ -211,6 +211,16 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
     private final int[] flagcount;
     private final AtomicInteger feedersAlive, feedersTerminated, snippetFetchAlive;
     private boolean addRunning;
+    /** counts every event that may let a waiting oneResult() make progress; waiters block on it instead of sleeping */
+    private final AtomicLong resultSignal = new AtomicLong(0);
+    /** number of threads blocked in awaitResultSignal, the signal is only sent if there is any */
+    private final AtomicInteger resultWaiters = new AtomicInteger(0);
+    /** the local solr search task that has already reported its termination as a feeder */
+    private volatile SearchTask localsolrTerminated = null;
+    /** tasks of this event in the SearchExecutor which are not finished; they are cancelled in cleanup() */
+    private final Set<SearchTask> tasks = ConcurrentHashMap.newKeySet();
+    /** number of submitted tasks that have not been started, they may still feed */
+    private final AtomicInteger tasksWaiting = new AtomicInteger(0);
     private final AtomicInteger receivedRemoteReferences;
     private final ReferenceOrder order;
 
@@ -461,8 +471,9 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         this.rwiProcess = null;
         if (query.getSegment().connectedRWI() && !Switchboard.getSwitchboard().getConfigBool(SwitchboardConstants.DEBUG_SEARCH_LOCAL_DHT_OFF, false)) {
             // we start the local search only if this peer is doing a remote search or when it is doing a local search and the peer is old
-            this.rwiProcess = new RWIProcess(this.localsolrsearch);
-            this.rwiProcess.start();
+            this.rwiProcess = SearchExecutor.execute(SearchExecutor.Pool.LOCAL,
+                    "SearchEvent.RWIProcess(" + (this.localsolrsearch != null ? this.localsolrsearch.getName() : "") + ")",
+                    this, new RWIProcess(this.localsolrsearch));
         }
 
         if (this.remote) {
@@ -478,17 +489,13 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                 // start this concurrently because the remote search needs an enumeration
                 // of the remote peers which may block in some cases when i.e. DHT is active
                 // at the same time.
-                new Thread("SearchEvent.primaryRemoteSearches") {
-                    @Override
-                    public void run() {
+                SearchExecutor.execute(SearchExecutor.Pool.LOCAL, "SearchEvent.primaryRemoteSearches", this, () ->
                         RemoteSearch.primaryRemoteSearches(
                                 SearchEvent.this,
                                 0, remote_maxcount,
                                 remote_maxtime,
                                 Switchboard.urlBlacklist,
-                                (SearchEvent.this.query.domType == QueryParams.Searchdom.GLOBAL) ? null : preselectedPeerHashes);
-                    }
-                }.start();
+                                (SearchEvent.this.query.domType == QueryParams.Searchdom.GLOBAL) ? null : preselectedPeerHashes));
             }
             if ( this.primarySearchThreadsL != null ) {
                 ConcurrentLog.fine("SEARCH_EVENT", "STARTING "
@@ -594,12 +601,11 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
     /**
      * A concurrent task to perform the current search query on the local RWI.
      */
-    private class RWIProcess extends Thread {
+    private class RWIProcess implements Runnable {
 
-        final Thread waitForThread;
+        final SearchTask waitForThread;
 
-        public RWIProcess(final Thread waitForThread) {
-            super("SearchEvent.RWIProcess(" + (waitForThread != null ? waitForThread.getName() : "") + ")");
+        public RWIProcess(final SearchTask waitForThread) {
             this.waitForThread = waitForThread;
         }
 
@@ -704,7 +710,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         long timer = System.currentTimeMillis();
 
         // normalize entries
-        final BlockingQueue<WordReferenceVars> decodedEntries = this.order.normalizeWith(index, maxtime, local);
+        final WordReferenceColumns decodedEntries = this.order.normalizeWith(index, maxtime);
         final int is = index.size();
         EventTracker.update(EventTracker.EClass.SEARCH, new ProfilingGraph.EventSearch(
                 this.query.id(true),
@@ -716,138 +722,104 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
 
         // iterate over normalized entries and select some that are better than currently stored
         timer = System.currentTimeMillis();
+        final long[] ranking = this.order.cardinal(decodedEntries);
 
         // apply all constraints
         final long timeout = maxtime == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + maxtime;
         int successcounter = 0;
-        try {
-            WordReferenceVars iEntry;
-            long remaining;
-            String acceptableAlternativeSitehash = null;
-            if (this.query.modifier.sitehost != null && this.query.modifier.sitehost.length() > 0) try {
-                acceptableAlternativeSitehash = DigestURL.hosthash(this.query.modifier.sitehost.startsWith("www.") ? this.query.modifier.sitehost.substring(4) : "www." + this.query.modifier.sitehost, 80);
-            } catch (final MalformedURLException e1) {}
-            pollloop: while ( true ) {
-                remaining = timeout - System.currentTimeMillis();
-                if (remaining <= 0) {
-                    ConcurrentLog.warn("SearchEvent", "event=search.rwi.add subsystem=search result=timeout phase=before-poll local=" + local +
-                            " queryId=" + this.query.id(true) + " contentDomain=" + this.query.contentdom +
-                            " query=\"" + queryString + "\"" +
-                            " remainingMs=" + remaining + " decodedQueueSize=" + decodedEntries.size() +
-                            " fullResource=" + fullResource + " maxtimeMs=" + maxtime);
-                    break;
-                }
-                iEntry = decodedEntries.poll(remaining, TimeUnit.MILLISECONDS);
-                if (iEntry == null) {
-                    ConcurrentLog.warn("SearchEvent", "event=search.rwi.add subsystem=search result=timeout phase=poll local=" + local +
-                            " queryId=" + this.query.id(true) + " contentDomain=" + this.query.contentdom +
-                            " query=\"" + queryString + "\"" +
-                            " remainingMs=" + remaining + " decodedQueueSize=" + decodedEntries.size() +
-                            " fullResource=" + fullResource + " maxtimeMs=" + maxtime);
-                    break pollloop;
-                }
-                if (iEntry == WordReferenceVars.poison) {
-                    break pollloop;
-                }
-                assert (iEntry.urlhash().length == index.row().primaryKeyLength);
-
-                final String urlHash = ASCII.String(iEntry.urlhash());
-                final int candidateQuality = candidateQuality(local, false, 0);
-                if (!shouldAcceptCandidate(urlHash, candidateQuality)) {
-                    if (log.isFine()) log.fine("dropped RWI: lower-quality duplicate");
-                    continue pollloop;
-                }
-
-                // increase flag counts
-                final Bitfield flags = iEntry.flags();
-                for (int j = 0; j < 32; j++) {
-                    if (flags.get(j)) this.flagcount[j]++;
-                }
-
-                // check constraints
-                if (!this.testFlags(flags)) {
-                    if (log.isFine()) log.fine("dropped RWI: flag test failed");
-                    continue pollloop;
-                }
-
-                // check document domain
-                if (this.query.contentdom.getCode() > 0) {
-                    boolean domainMatch = true;
-                    if(this.query.isStrictContentDom()) {
-                        if((this.query.contentdom == ContentDomain.AUDIO && iEntry.getType() != Response.DT_AUDIO) ||
-                                (this.query.contentdom == ContentDomain.VIDEO && iEntry.getType() != Response.DT_MOVIE) ||
-                                (this.query.contentdom == ContentDomain.IMAGE && iEntry.getType() != Response.DT_IMAGE) ||
-                                (this.query.contentdom == ContentDomain.APP && !(flags.get(Tokenizer.flag_cat_hasapp)))) {
-                            domainMatch = false;
-                        }
-                    } else if((this.query.contentdom == ContentDomain.AUDIO && !(flags.get(Tokenizer.flag_cat_hasaudio))) ||
-                            (this.query.contentdom == ContentDomain.VIDEO && !(flags.get(Tokenizer.flag_cat_hasvideo))) ||
-                            (this.query.contentdom == ContentDomain.IMAGE && !(flags.get(Tokenizer.flag_cat_hasimage))) ||
-                            (this.query.contentdom == ContentDomain.APP && !(flags.get(Tokenizer.flag_cat_hasapp)))) {
+        String acceptableAlternativeSitehash = null;
+        if (this.query.modifier.sitehost != null && this.query.modifier.sitehost.length() > 0) try {
+            acceptableAlternativeSitehash = DigestURL.hosthash(this.query.modifier.sitehost.startsWith("www.") ? this.query.modifier.sitehost.substring(4) : "www." + this.query.modifier.sitehost, 80);
+        } catch (final MalformedURLException e1) {}
+        entryloop: for (int i = 0; i < decodedEntries.size(); i++) {
+            if (!decodedEntries.isDecoded(i)) continue entryloop;
+            if (i % 100 == 0 && System.currentTimeMillis() > timeout) {
+                ConcurrentLog.warn("SearchEvent", "event=search.rwi.normalization subsystem=search result=timeout local=" + local +
+                        " queryId=" + this.query.id(true) + " contentDomain=" + this.query.contentdom +
+                        " query=\"" + queryString + "\"" +
+                        " count=" + successcounter + " remaining=" + (decodedEntries.size() - i) +
+                        " fullResource=" + fullResource + " maxtimeMs=" + maxtime);
+                break entryloop;
+            }
+
+            final String urlHash = ASCII.String(decodedEntries.urlhash(i));
+            final int candidateQuality = candidateQuality(local, false, 0);
+            if (!shouldAcceptCandidate(urlHash, candidateQuality)) {
+                if (log.isFine()) log.fine("dropped RWI: lower-quality duplicate");
+                continue entryloop;
+            }
+
+            // increase flag counts
+            final int flags = decodedEntries.flags(i);
+            for (int j = 0; j < 32; j++) {
+                if ((flags & (1 << j)) != 0) this.flagcount[j]++;
+            }
+
+            // check constraints
+            if (!this.testFlags(flags)) {
+                if (log.isFine()) log.fine("dropped RWI: flag test failed");
+                continue entryloop;
+            }
+
+            // check document domain
+            if (this.query.contentdom.getCode() > 0) {
+                boolean domainMatch = true;
+                if(this.query.isStrictContentDom()) {
+                    if((this.query.contentdom == ContentDomain.AUDIO && decodedEntries.type(i) != Response.DT_AUDIO) ||
+                            (this.query.contentdom == ContentDomain.VIDEO && decodedEntries.type(i) != Response.DT_MOVIE) ||
+                            (this.query.contentdom == ContentDomain.IMAGE && decodedEntries.type(i) != Response.DT_IMAGE) ||
+                            (this.query.contentdom == ContentDomain.APP && !(decodedEntries.flag(i, Tokenizer.flag_cat_hasapp)))) {
                         domainMatch = false;
                     }
-                    if(!domainMatch) {
-                        if (log.isFine()) {
-                            log.fine("dropped RWI: contentdom fail");
-                        }
-                        continue pollloop;
-                    }
+                } else if((this.query.contentdom == ContentDomain.AUDIO && !(decodedEntries.flag(i, Tokenizer.flag_cat_hasaudio))) ||
+                        (this.query.contentdom == ContentDomain.VIDEO && !(decodedEntries.flag(i, Tokenizer.flag_cat_hasvideo))) ||
+                        (this.query.contentdom == ContentDomain.IMAGE && !(decodedEntries.flag(i, Tokenizer.flag_cat_hasimage))) ||
+                        (this.query.contentdom == ContentDomain.APP && !(decodedEntries.flag(i, Tokenizer.flag_cat_hasapp)))) {
+                    domainMatch = false;
                 }
-
-                // check language
-                if (this.query.modifier.language != null && !this.query.modifier.language.isEmpty()
-                        && !this.query.modifier.language.equals(iEntry.getLanguageString())) {
+                if(!domainMatch) {
                     if (log.isFine()) {
-                        log.fine("dropped RWI: language constraint = " + this.query.modifier.language);
+                        log.fine("dropped RWI: contentdom fail");
                     }
-                    continue pollloop;
+                    continue entryloop;
                 }
+            }
 
-                // count domZones
-                //this.domZones[DigestURI.domDomain(iEntry.metadataHash())]++;
-
-                // check site constraints
-                final String hosthash = iEntry.hosthash();
-                if ( this.query.modifier.sitehash == null ) {
-                    if (this.query.siteexcludes != null && this.query.siteexcludes.contains(hosthash)) {
-                        if (log.isFine()) log.fine("dropped RWI: siteexcludes");
-                        continue pollloop;
-                    }
-                } else {
-                    // filter out all domains that do not match with the site constraint
-                    if (!hosthash.equals(this.query.modifier.sitehash) && (acceptableAlternativeSitehash == null || !hosthash.equals(acceptableAlternativeSitehash))) {
-                        if (log.isFine()) log.fine("dropped RWI: modifier.sitehash");
-                        continue pollloop;
-                    }
+            // check language
+            if (this.query.modifier.language != null && !this.query.modifier.language.isEmpty()
+                    && !decodedEntries.isLanguage(i, this.query.modifier.language)) {
+                if (log.isFine()) {
+                    log.fine("dropped RWI: language constraint = " + this.query.modifier.language);
                 }
+                continue entryloop;
+            }
 
-                // finally insert result to stack
-                rankingtryloop: while (true) {
-                    try {
-                        this.rwiStack.put(new ReverseElement<>(iEntry, this.order.cardinal(iEntry))); // inserts the element and removes the worst (which is smallest)
-                        break rankingtryloop;
-                    } catch (final ArithmeticException e ) {
-                        // this may happen if the concurrent normalizer changes values during cardinal computation
-                        if (log.isFine()) log.fine("dropped RWI: arithmetic exception");
-                        continue rankingtryloop;
-                    }
-                }
-                registerCandidateQuality(urlHash, candidateQuality);
-                // increase counter for statistics
-                if (local) this.local_rwi_available.incrementAndGet(); else this.remote_rwi_available.incrementAndGet();
+            // count domZones
+            //this.domZones[DigestURI.domDomain(iEntry.metadataHash())]++;
 
-                successcounter++;
+            // check site constraints
+            if ( this.query.modifier.sitehash == null ) {
+                if (this.query.siteexcludes != null && this.query.siteexcludes.contains(decodedEntries.hosthash(i))) {
+                    if (log.isFine()) log.fine("dropped RWI: siteexcludes");
+                    continue entryloop;
+                }
+            } else {
+                // filter out all domains that do not match with the site constraint
+                final String hosthash = decodedEntries.hosthash(i);
+                if (!hosthash.equals(this.query.modifier.sitehash) && (acceptableAlternativeSitehash == null || !hosthash.equals(acceptableAlternativeSitehash))) {
+                    if (log.isFine()) log.fine("dropped RWI: modifier.sitehash");
+                    continue entryloop;
+                }
             }
-            if (System.currentTimeMillis() >= timeout) ConcurrentLog.warn("SearchEvent", "event=search.rwi.normalization subsystem=search result=timeout local=" + local +
-                    " queryId=" + this.query.id(true) + " contentDomain=" + this.query.contentdom +
-                    " query=\"" + queryString + "\"" +
-                    " count=" + successcounter + " fullResource=" + fullResource + " maxtimeMs=" + maxtime);
 
-        } catch (final InterruptedException e ) {
-            ConcurrentLog.warn("SearchEvent", "event=search.rwi.add subsystem=search result=interrupted local=" + local +
-                    " queryId=" + this.query.id(true) + " contentDomain=" + this.query.contentdom +
-                    " query=\"" + queryString + "\"" +
-                    " count=" + successcounter + " fullResource=" + fullResource + " maxtimeMs=" + maxtime);
+            // finally insert result to stack
+            this.rwiStack.put(new ReverseElement<>(decodedEntries.get(i, local), ranking[i])); // inserts the element and removes the worst (which is smallest)
+            signalResults();
+            registerCandidateQuality(urlHash, candidateQuality);
+            // increase counter for statistics
+            if (local) this.local_rwi_available.incrementAndGet(); else this.remote_rwi_available.incrementAndGet();
+
+            successcounter++;
         }
 
         //if ((query.neededResults() > 0) && (container.size() > query.neededResults())) remove(true, true);
@@ -870,30 +842,9 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
 
     protected void cleanup() {
 
-        // stop all threads
-        if (this.localsolrsearch != null) {
-            if (this.localsolrsearch.isAlive()) synchronized (this.localsolrsearch) {this.localsolrsearch.interrupt();}
-        }
-        if (this.nodeSearchThreads != null) {
-            for (final Thread search : this.nodeSearchThreads) {
-                if (search != null) {
-                    synchronized (search) {if (search.isAlive()) {search.interrupt();}}
-                }
-            }
-        }
-        if (this.primarySearchThreadsL != null) {
-            for (final RemoteSearch search : this.primarySearchThreadsL) {
-                if (search != null) {
-                    synchronized (search) {if (search.isAlive()) {search.interrupt();}}
-                }
-            }
-        }
-        if (this.secondarySearchThreads != null) {
-            for (final Thread search : this.secondarySearchThreads ) {
-                if (search != null) {
-                    synchronized (search) {if (search.isAlive()) {search.interrupt();}}
-                }
-            }
+        // stop all tasks, including those which are still waiting for a thread
+        for (final SearchTask task: this.tasks) {
+            task.interrupt();
         }
 
         // clear all data structures
@@ -934,7 +885,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         return this.primarySearchThreadsL;
     }
 
-    public Thread[] getSecondarySearchThreads() {
+    public SearchTask[] getSecondarySearchThreads() {
         return this.secondarySearchThreads;
     }
 
@@ -1141,6 +1092,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                         else
                             score = this.order.cardinal(iEntry);
                         this.nodeStack.put(new ReverseElement<>(iEntry, score)); // inserts the element and removes the worst (which is smallest)
+                        signalResults();
                         break rankingtryloop;
                     } catch (final ArithmeticException e ) {
                         // this may happen if the concurrent normalizer changes values during cardinal computation
@@ -1885,7 +1837,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
      */
     private boolean drainRWIStackToResult(boolean concurrentSnippetFetch) {
         boolean success = false;
-        if (SearchEvent.this.snippetFetchAlive.get() >= 10 || MemoryControl.shortStatus() || !concurrentSnippetFetch) {
+        if (SearchEvent.this.snippetFetchAlive.get() + this.tasksWaiting.get() >= 10 || MemoryControl.shortStatus() || !concurrentSnippetFetch) {
             // too many concurrent processes
             final URIMetadataNode noderwi = pullOneFilteredFromRWI(true);
             if (noderwi != null) {
@@ -1893,7 +1845,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                 success = true;
             }
         } else {
-            final Thread t = new Thread("SearchEvent.drainStacksToResult.oneFilteredFromRWI") {
+            final Runnable t = new Runnable() {
                 @Override
                 public void run() {
                     SearchEvent.this.oneFeederStarted();
@@ -1914,7 +1866,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                     }
                 }
             };
-            if (SearchEvent.this.query.snippetCacheStrategy == null) t.run(); else t.start(); //no need for concurrency if there is no latency
+            if (SearchEvent.this.query.snippetCacheStrategy == null) t.run(); else SearchExecutor.execute(SearchExecutor.Pool.SOLR, "SearchEvent.drainStacksToResult.oneFilteredFromRWI", this, t); //no need for concurrency if there is no latency
         }
         return success;
     }
@@ -1962,7 +1914,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                 success = true;
             } else {
                 // we don't have a snippet from solr, try to get it in our way (by reloading, if necessary)
-                if (SearchEvent.this.snippetFetchAlive.get() >= 10 || !concurrentSnippetFetch) {
+                if (SearchEvent.this.snippetFetchAlive.get() + this.tasksWaiting.get() >= 10 || !concurrentSnippetFetch) {
                     // too many concurrent processes
                     addResult(getSnippet(node, null), localEntryElement.getWeight());
                     success = true;
@@ -1970,7 +1922,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                     final URIMetadataNode snippetNode = node;
                     final Element<URIMetadataNode> snippetEntryElement = localEntryElement;
 
-                    new Thread("SearchEvent.drainStacksToResult.getSnippet") {
+                    SearchExecutor.execute(SearchExecutor.Pool.SOLR, "SearchEvent.drainStacksToResult.getSnippet", this, new Runnable() {
                         @Override
                         public void run() {
                             SearchEvent.this.oneFeederStarted();
@@ -1985,7 +1937,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                                 SearchEvent.this.oneFeederTerminated();
                             }
                         }
-                    }.start();
+                    });
                 }
             }
         }
@@ -2010,6 +1962,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         this.resultList.put(new ReverseElement<>(resultEntry, ranking)); // remove smallest in case of overflow
         if (this.pollImmediately) this.resultList.poll(); // prevent re-ranking in case there is only a single index source which has already ranked entries.
         this.addTopics(resultEntry);
+        signalResults();
     }
 
     private long postRanking(final URIMetadataNode rentry, final ScoreMap<String> topwords) {
@@ -2196,12 +2149,9 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         EventTracker.update(EventTracker.EClass.SEARCH, new ProfilingGraph.EventSearch(this.query.id(true), SearchEventType.ONERESULT, "started, item = " + item + ", available = " + this.getResultCount(), 0, 0), false);
 
         // wait until a local solr is finished, we must do that to be able to check if we need more
-        if (this.localsolrsearch != null && this.localsolrsearch.isAlive()) {
-            try {
-                this.localsolrsearch.join(100);
-            } catch (final InterruptedException e) {
-                log.warn("Wait for local solr search was interrupted.");
-            }
+        final SearchTask solr = this.localsolrsearch;
+        if (solr != null && solr.isAlive()) {
+            awaitResults(() -> !isLocalSolrRunning(solr) || this.local_solr_stored.get() > 0, 100);
         }
         if (item >= this.localsolroffset && this.local_solr_stored.get() == 0 && (this.localsolrsearch != null && this.localsolrsearch.isAlive())) {
             try {
@@ -2230,11 +2180,9 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
 
         // now pull results as long as needed and as long as possible
         if (this.remote && item < 10 && this.resultList.sizeAvailable() <= item) {
-            try {
-                Thread.sleep(100);
-            } catch (final InterruptedException e) {
-                log.warn("Remote search results wait was interrupted.");
-            }
+            // give remote peers a chance to deliver, but not longer than they are actually feeding
+            awaitResults(() -> this.isFeedingFinished() ||
+                    this.resultList.sizeAvailable() + this.nodeStack.sizeQueue() + this.rwiQueueSize() > item, 100);
         }
 
         final int resultListIndex;
@@ -2246,9 +2194,14 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         while ( this.resultList.sizeAvailable() <= resultListIndex &&
                 (this.rwiQueueSize() > 0 || this.nodeStack.sizeQueue() > 0 ||
                         (!this.isFeedingFinished() && System.currentTimeMillis() < finishTime))) {
+            final long signal = this.resultSignal.get();
             if (!drainStacksToResult(true)) {
+                // nothing was added synchronously: wait for a concurrent snippet fetch, new stack entries or a terminated feeder.
+                // Entries left on the stacks are only re-tried after a short time because they may not create a signal on their own;
+                // they are still drained after the finish time, so the wait is at least 1 millisecond to not spin.
+                final boolean stacked = this.rwiQueueSize() > 0 || this.nodeStack.sizeQueue() > 0;
                 try {
-                    Thread.sleep(10);
+                    awaitResultSignal(signal, Math.max(1, Math.min(stacked ? 10 : Long.MAX_VALUE, finishTime - System.currentTimeMillis())));
                 } catch (final InterruptedException e) {
                     log.warn("Search results wait was interrupted.");
                 }
@@ -2505,7 +2458,28 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
     public boolean isFeedingFinished() {
         return
                 this.feedersTerminated.intValue() > (this.remote ? 1 : 0) &&
-                this.feedersAlive.get() == 0;
+                this.feedersAlive.get() == 0 &&
+                this.tasksWaiting.get() == 0;
+    }
+
+    /**
+     * called by the SearchExecutor when a task for this event is submitted
+     */
+    protected void registerTask(final SearchTask task) {
+        this.tasksWaiting.incrementAndGet();
+        this.tasks.add(task);
+    }
+
+    /**
+     * called when a task of this event got a thread or was cancelled before
+     */
+    protected void taskStarted() {
+        this.tasksWaiting.decrementAndGet();
+        signalResults();
+    }
+
+    protected void unregisterTask(final SearchTask task) {
+        this.tasks.remove(task);
     }
 
     /**
@@ -2515,6 +2489,74 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         this.feedersTerminated.incrementAndGet();
         final int c = this.feedersAlive.decrementAndGet();
         assert c >= 0 : "feeders = " + c;
+        final SearchTask solr = this.localsolrsearch;
+        if (solr != null && solr.isCurrentThread()) this.localsolrTerminated = solr;
+        signalResults();
+    }
+
+    /**
+     * @param solr a local solr search task
+     * @return true if the task is still feeding; a task that reported its termination may still be alive for a moment
+     */
+    private boolean isLocalSolrRunning(final SearchTask solr) {
+        return solr.isAlive() && this.localsolrTerminated != solr;
+    }
+
+    /**
+     * Wake up all threads waiting for results. This is called whenever an entry is put on one
+     * of the stacks, a result is added or a feeder terminated.
+     */
+    private void signalResults() {
+        this.resultSignal.incrementAndGet();
+        if (this.resultWaiters.get() == 0) return;
+        synchronized (this.resultSignal) {
+            this.resultSignal.notifyAll();
+        }
+    }
+
+    /**
+     * wait until signalResults() was called after the given signal value was read
+     * @param signal a value of resultSignal that was read before the waiting condition was checked
+     * @param maxWait maximum waiting time in milliseconds
+     * @throws InterruptedException
+     */
+    private void awaitResultSignal(final long signal, final long maxWait) throws InterruptedException {
+        if (maxWait <= 0) return;
+        final long start = System.currentTimeMillis();
+        this.resultWaiters.incrementAndGet();
+        try {
+            synchronized (this.resultSignal) {
+                long remaining = maxWait;
+                while (this.resultSignal.get() == signal && remaining > 0) {
+                    this.resultSignal.wait(remaining);
+                    remaining = maxWait - (System.currentTimeMillis() - start);
+                }
+            }
+        } finally {
+            this.resultWaiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * wait until a condition on the result stacks is true; the condition is checked again after each signal
+     * @param ready the condition
+     * @param maxWait maximum waiting time in milliseconds
+     * @return true if the condition is true, false on timeout or interruption
+     */
+    private boolean awaitResults(final BooleanSupplier ready, final long maxWait) {
+        final long finishTime = maxWait == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + maxWait;
+        try {
+            while (true) {
+                final long signal = this.resultSignal.get();
+                if (ready.getAsBoolean()) return true;
+                final long remaining = finishTime - System.currentTimeMillis();
+                if (remaining <= 0) return false;
+                awaitResultSignal(signal, remaining);
+            }
+        } catch (final InterruptedException e) {
+            log.warn("Search results wait was interrupted.");
+            return false;
+        }
     }
 
     public void oneFeederStarted() {
@@ -2578,6 +2620,23 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         return false;
     }
 
+    protected boolean testFlags(final int flags) {
+        if (this.query.constraint == null) return true;
+        // test if ientry matches with filter
+        // if all = true: let only entries pass that has all matching bits
+        // if all = false: let all entries pass that has at least one matching bit
+        if (this.query.allofconstraint) {
+            for ( int i = 0; i < 32; i++ ) {
+                if ((this.query.constraint.get(i)) && ((flags & (1 << i)) == 0)) return false;
+            }
+            return true;
+        }
+        for (int i = 0; i < 32; i++) {
+            if ((this.query.constraint.get(i)) && ((flags & (1 << i)) != 0)) return true;
+        }
+        return false;
+    }
+
     private void tagCandidate(final URIMetadataNode entry, final boolean local, final int quality) {
         entry.setField(INTERNAL_SOURCE_LOCAL_FIELD, Boolean.valueOf(local));
         entry.setField(INTERNAL_CANDIDATE_QUALITY_FIELD, Integer.valueOf(quality));
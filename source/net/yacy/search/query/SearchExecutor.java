@@ -0,0 +1,214 @@
+/**
+ *  SearchExecutor
+ *  Copyright 2026 by YaCy contributors
+ *  First released 18.10.2026 at https://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.search.query;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
+
+/**
+ * Bounded thread pools for the concurrent tasks of search events. Before, each search event started
+ * its own threads for the local RWI and Solr search, every remote peer, every snippet fetch and the
+ * ranking normalization, so that a burst of queries created thousands of threads.
+ *
+ * Tasks of one pool may only wait for tasks of a pool that comes after it in {@link Pool},
+ * never for tasks of their own pool; this makes the bounded pools free of deadlocks.
+ */
+public class SearchExecutor {
+
+    /** maximum number of threads for requests to remote peers */
+    public static int remoteThreads = 64;
+
+    /** maximum number of threads for the local RWI search and the start of remote searches */
+    public static int localThreads = 16;
+
+    /** maximum number of threads for the local Solr search and snippet fetches */
+    public static int solrThreads = 16;
+
+    /** a request to a remote peer that could not be started within this time is dropped, the search has moved on */
+    public static long queueTimeout = 10000;
+
+    public enum Pool {
+        /** local RWI search, start of remote searches; may wait for tasks of REMOTE, SOLR and RANKING */
+        LOCAL("SearchExecutor.local", "local RWI search and start of remote searches", false),
+        /** blocking I/O to remote peers; may wait for tasks of SOLR and RANKING. Tasks expire after the queue timeout */
+        REMOTE("SearchExecutor.remote", "requests to remote peers", true),
+        /** the local Solr search and snippet fetches, which the search event waits for; may wait for tasks of RANKING */
+        SOLR("SearchExecutor.solr", "local Solr search and snippet fetches", false),
+        /** normalization of ranking values; does not wait for other tasks */
+        RANKING("SearchExecutor.ranking", "normalization of ranking values", false);
+
+        private final String name, description;
+        private final boolean expiring;
+        private volatile ThreadPoolExecutor executor;
+        private final AtomicLong expired, cancelled;
+
+        private Pool(final String name, final String description, final boolean expiring) {
+            this.name = name;
+            this.description = description;
+            this.expiring = expiring;
+            this.executor = null;
+            this.expired = new AtomicLong(0);
+            this.cancelled = new AtomicLong(0);
+        }
+
+        private int maxThreads() {
+            switch (this) {
+                case LOCAL: return Math.max(1, localThreads);
+                case REMOTE: return Math.max(1, remoteThreads);
+                case SOLR: return Math.max(1, solrThreads);
+                default: return Math.max(2, Runtime.getRuntime().availableProcessors());
+            }
+        }
+
+        private ThreadPoolExecutor executor() {
+            ThreadPoolExecutor e = this.executor;
+            if (e != null) return e;
+            synchronized (this) {
+                if (this.executor == null) {
+                    final int threads = maxThreads();
+                    e = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(), new NamePrefixThreadFactory(this.name));
+                    e.allowCoreThreadTimeOut(true);
+                    this.executor = e;
+                }
+                return this.executor;
+            }
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public String getDescription() {
+            return this.description;
+        }
+
+        /** @return the number of tasks waiting for a thread */
+        public int getQueueSize() {
+            final ThreadPoolExecutor e = this.executor;
+            return e == null ? 0 : e.getQueue().size();
+        }
+
+        /** @return the number of threads currently running a task */
+        public int getActiveCount() {
+            final ThreadPoolExecutor e = this.executor;
+            return e == null ? 0 : e.getActiveCount();
+        }
+
+        /** @return the number of threads in the pool */
+        public int getPoolSize() {
+            final ThreadPoolExecutor e = this.executor;
+            return e == null ? 0 : e.getPoolSize();
+        }
+
+        public int getMaxPoolSize() {
+            final ThreadPoolExecutor e = this.executor;
+            return e == null ? maxThreads() : e.getMaximumPoolSize();
+        }
+
+        public long getCompletedCount() {
+            final ThreadPoolExecutor e = this.executor;
+            return e == null ? 0 : e.getCompletedTaskCount();
+        }
+
+        /** @return the number of tasks that were dropped because they waited longer than the queue timeout */
+        public long getExpiredCount() {
+            return this.expired.get();
+        }
+
+        /** @return the number of tasks that were cancelled together with their search event */
+        public long getCancelledCount() {
+            return this.cancelled.get();
+        }
+
+        protected void expired() {
+            this.expired.incrementAndGet();
+        }
+
+        protected void cancelled() {
+            this.cancelled.incrementAndGet();
+        }
+    }
+
+    /**
+     * run a task of a search event in a pool
+     * @param pool the pool, see {@link Pool} for the rules which tasks may wait for others
+     * @param name the name of the task, the executing thread carries this name while the task is running
+     * @param event the search event the task belongs to; the task is cancelled together with the event.
+     *   If null, the task is neither cancelled nor dropped after the queue timeout. Only tasks of the
+     *   REMOTE pool are dropped after the queue timeout, the search event waits for the tasks of the other pools
+     * @param task the work
+     * @return a handle to the task
+     */
+    public static SearchTask execute(final Pool pool, final String name, final SearchEvent event, final Runnable task) {
+        final SearchTask t = new SearchTask(pool, name, event, task,
+                event == null || !pool.expiring ? Long.MAX_VALUE : System.currentTimeMillis() + queueTimeout);
+        if (event != null) event.registerTask(t);
+        try {
+            pool.executor().execute(t);
+        } catch (final RejectedExecutionException e) {
+            // the pool was shut down: account the task as finished, so the search event does not wait for it
+            t.cancel(false);
+        }
+        return t;
+    }
+
+    /**
+     * change the size of a pool, used when the configuration changes
+     */
+    public static void setMaxThreads(final Pool pool, final int threads) {
+        switch (pool) {
+            case LOCAL: localThreads = threads; break;
+            case REMOTE: remoteThreads = threads; break;
+            case SOLR: solrThreads = threads; break;
+            default: return;
+        }
+        synchronized (pool) {
+            final ThreadPoolExecutor e = pool.executor;
+            if (e == null) return;
+            final int max = pool.maxThreads();
+            if (max > e.getMaximumPoolSize()) {
+                e.setMaximumPoolSize(max);
+                e.setCorePoolSize(max);
+            } else {
+                e.setCorePoolSize(max);
+                e.setMaximumPoolSize(max);
+            }
+        }
+    }
+
+    /**
+     * stop all pools, used on shutdown
+     */
+    public static void shutdown() {
+        for (final Pool pool: Pool.values()) {
+            synchronized (pool) {
+                if (pool.executor != null) pool.executor.shutdownNow();
+                pool.executor = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ *  SearchTask
+ *  Copyright 2026 by YaCy contributors
+ *  First released 18.10.2026 at https://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.search.query;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import net.yacy.cora.util.ConcurrentLog;
+
+/**
+ * A task of a search event running in a pool of the {@link SearchExecutor}. It offers the part
+ * of the Thread interface that the search code used on its dedicated threads: a task is alive
+ * from its submission until it is finished, cancelled or dropped.
+ */
+public class SearchTask extends FutureTask<Void> {
+
+    private final SearchExecutor.Pool pool;
+    private final String name;
+    private final SearchEvent event;
+    private final long deadline;
+    private final AtomicBoolean started;
+    private volatile Thread runner;
+    private volatile boolean expired;
+
+    protected SearchTask(final SearchExecutor.Pool pool, final String name, final SearchEvent event, final Runnable task, final long deadline) {
+        super(task, null);
+        this.pool = pool;
+        this.name = name;
+        this.event = event;
+        this.deadline = deadline;
+        this.started = new AtomicBoolean(false);
+        this.runner = null;
+        this.expired = false;
+    }
+
+    @Override
+    public void run() {
+        if (!this.started.compareAndSet(false, true)) return;
+        if (this.event != null) this.event.taskStarted();
+        if (System.currentTimeMillis() > this.deadline) {
+            // the search event does not wait any more for this
+            this.expired = true;
+            cancel(false);
+            return;
+        }
+        final Thread t = Thread.currentThread();
+        final String poolThreadName = t.getName();
+        t.setName(this.name);
+        this.runner = t;
+        try {
+            super.run();
+        } finally {
+            this.runner = null;
+            t.setName(poolThreadName);
+        }
+    }
+
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            if (this.expired) this.pool.expired(); else this.pool.cancelled();
+        } else try {
+            get();
+        } catch (final ExecutionException e) {
+            ConcurrentLog.logException(e.getCause());
+        } catch (final InterruptedException | CancellationException e) {
+        }
+        // a task that was cancelled before it started must be accounted as started, otherwise the event would wait for it
+        if (this.started.compareAndSet(false, true) && this.event != null) this.event.taskStarted();
+        if (this.event != null) this.event.unregisterTask(this);
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return true if the task is waiting for a thread or is running
+     */
+    public boolean isAlive() {
+        return !isDone();
+    }
+
+    /**
+     * @return true if this is called from within the task
+     */
+    public boolean isCurrentThread() {
+        return this.runner == Thread.currentThread();
+    }
+
+    /**
+     * wait until the task is finished, cancelled or dropped
+     * @throws InterruptedException
+     */
+    public void join() throws InterruptedException {
+        try {
+            get();
+        } catch (final ExecutionException | CancellationException e) {
+        }
+    }
+
+    /**
+     * wait until the task is finished, cancelled or dropped, but not longer than the given time
+     * @param millis maximum waiting time in milliseconds
+     * @throws InterruptedException
+     */
+    public void join(final long millis) throws InterruptedException {
+        try {
+            get(millis, TimeUnit.MILLISECONDS);
+        } catch (final ExecutionException | CancellationException | TimeoutException e) {
+        }
+    }
+
+    /**
+     * cancel the task: a waiting task will not be started, the thread of a running task is interrupted
+     */
+    public void interrupt() {
+        cancel(true);
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+}
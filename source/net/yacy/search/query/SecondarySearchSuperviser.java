@@ -168,7 +168,7 @@ public class SecondarySearchSuperviser extends Thread {
 
         // compute words for secondary search and start the secondary searches
         Set<String> words;
-        this.searchEvent.secondarySearchThreads = new Thread[(mypeerinvolved) ? secondarySearchURLs.size() - 1 : secondarySearchURLs.size()];
+        this.searchEvent.secondarySearchThreads = new SearchTask[(mypeerinvolved) ? secondarySearchURLs.size() - 1 : secondarySearchURLs.size()];
         int c = 0;
         for ( final Map.Entry<String, Set<String>> entry : secondarySearchURLs.entrySet() ) {
             String peer = entry.getKey();
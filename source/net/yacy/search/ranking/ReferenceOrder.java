@@ -28,11 +28,9 @@ package net.yacy.search.ranking;
 
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.id.DigestURL;
@@ -42,172 +40,94 @@ import net.yacy.document.LargeNumberCache;
 import net.yacy.document.Tokenizer;
 import net.yacy.kelondro.data.meta.URIMetadataNode;
 import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceColumns;
+import net.yacy.kelondro.data.word.WordReferenceColumns.Bounds;
 import net.yacy.kelondro.data.word.WordReferenceRow;
-import net.yacy.kelondro.data.word.WordReferenceVars;
 import net.yacy.kelondro.rwi.ReferenceContainer;
 import net.yacy.kelondro.util.Bitfield;
+import net.yacy.search.query.SearchExecutor;
 
 
 public class ReferenceOrder {
 
-    private static int cores = Runtime.getRuntime().availableProcessors();
+    /** runs the helper tasks of the chunked normalization and ranking */
+    private static final Executor RANKING_EXECUTOR = task -> SearchExecutor.execute(SearchExecutor.Pool.RANKING, "ReferenceOrder.Normalizer", null, task);
 
     private       int maxdomcount;
-    private       WordReferenceVars min, max;
+    private final Bounds bounds; // minimum and maximum of all normalized references
+    private final AtomicInteger boundsVersion; // incremented with every change of the bounds
+    private volatile Snapshot snapshot; // a copy of the bounds for the ranking of single references
     private final ConcurrentScoreMap<String> doms; // collected for "authority" heuristic
     private final RankingProfile ranking;
     private final String language;
 
     public ReferenceOrder(final RankingProfile profile, final String language) {
-        this.min = null;
-        this.max = null;
+        this.bounds = new Bounds();
+        this.boundsVersion = new AtomicInteger(0);
+        this.snapshot = null;
         this.ranking = profile;
         this.doms = new ConcurrentScoreMap<String>();
         this.maxdomcount = 0;
         this.language = language;
     }
 
-    public BlockingQueue<WordReferenceVars> normalizeWith(final ReferenceContainer<WordReference> container, long maxtime, final boolean local) {
-        final LinkedBlockingQueue<WordReferenceVars> out = new LinkedBlockingQueue<WordReferenceVars>();
-        int threads = cores;
-        if (container.size() < 100) threads = 2;
-        final Thread distributor = new NormalizeDistributor(container, out, threads, maxtime, local);
-        distributor.start();
-
-        // return the resulting queue while the processing queues are still working
-        return out;
-    }
-
-    private final class NormalizeDistributor extends Thread {
-
-        ReferenceContainer<WordReference> container;
-        LinkedBlockingQueue<WordReferenceVars> out;
-        private final int threads;
-        private final long maxtime;
-        private final boolean local;
-        
-        public NormalizeDistributor(final ReferenceContainer<WordReference> container, final LinkedBlockingQueue<WordReferenceVars> out, final int threads, final long maxtime, final boolean local) {
-        	super("ReferenceOrder.NormalizeDistributor");
-            this.container = container;
-            this.out = out;
-            this.threads = threads;
-            this.maxtime = maxtime;
-            this.local = local;
-        }
-
-        @Override
-        public void run() {
-            // transform the reference container into a stream of parsed entries
-            final BlockingQueue<WordReferenceVars> vars = WordReferenceVars.transform(this.container, this.maxtime, this.local);
-
-            // start the transformation threads
-            final Semaphore termination = new Semaphore(this.threads);
-            final NormalizeWorker[] worker = new NormalizeWorker[this.threads];
-            for (int i = 0; i < this.threads; i++) {
-                worker[i] = new NormalizeWorker(this.out, termination, this.maxtime);
-                worker[i].start();
+    /**
+     * normalize ranking: decode the container into columns and find minimum and maximum of separate ranking criteria.
+     * The chunks of the container are decoded concurrently; chunks which are not started before the timeout
+     * are left undecoded, see WordReferenceColumns.isDecoded().
+     * @param container the references
+     * @param maxtime the maximum time for the decoding
+     * @return the decoded references
+     */
+    public WordReferenceColumns normalizeWith(final ReferenceContainer<WordReference> container, final long maxtime) {
+        final WordReferenceColumns columns = new WordReferenceColumns(container);
+        final long timeout = maxtime == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + maxtime;
+        columns.forEachChunk(RANKING_EXECUTOR, chunk -> {
+            if (System.currentTimeMillis() > timeout) {
+                ConcurrentLog.warn("Normalizer", "normalization of chunk " + chunk + " skipped, timeout = " + maxtime);
+                return;
             }
-
-            // fill the queue
-            WordReferenceVars iEntry;
-            int p = 0;
-            long timeout = this.maxtime == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + this.maxtime;
-            try {
-                while ((iEntry = vars.take()) != WordReferenceVars.poison) {
-                    worker[p % this.threads].add(iEntry);
-                    p++;
-                    if (System.currentTimeMillis() > timeout) {
-                        ConcurrentLog.warn("NormalizeDistributor", "adding of decoded rows to workers ended with timeout = " + this.maxtime);
-                        break;
-                    }
-                }
-            } catch (final InterruptedException e) {
+            final Bounds chunkBounds = columns.decode(chunk);
+            if (!columns.isDecoded(columns.chunkStart(chunk))) return;
+            final Map<String, Integer> doms0 = new HashMap<String, Integer>();
+            final Integer int1 = 1;
+            for (int i = columns.chunkStart(chunk); i < columns.chunkEnd(chunk); i++) {
+                final String dom = columns.hosthash(i);
+                final Integer count = doms0.get(dom);
+                doms0.put(dom, count == null ? int1 : LargeNumberCache.valueOf(count.intValue() + 1));
             }
+            this.bounds.include(chunkBounds);
+            this.boundsVersion.incrementAndGet();
 
-            // insert poison to stop the queues
-            for (int i = 0; i < this.threads; i++) worker[i].add(WordReferenceVars.poison);
+            // update domain score
+            for (final Map.Entry<String, Integer> entry: doms0.entrySet()) {
+                this.doms.inc(entry.getKey(), entry.getValue().intValue());
+            }
+        });
+        if (!this.doms.isEmpty()) this.maxdomcount = this.doms.getMaxScore();
+        return columns;
+    }
 
-            // wait for termination but not too long to make it possible that this
-            // is called from outside with a join to get some normalization results
-            // before going on
-            for (int i = 0; i < this.threads; i++) try {worker[i].join(100);} catch (final InterruptedException e) {}
+    private static final class Snapshot {
+        private final int version;
+        private final Bounds bounds;
+        private Snapshot(final int version, final Bounds bounds) {
+            this.version = version;
+            this.bounds = bounds;
         }
     }
 
     /**
-     * normalize ranking: find minimum and maximum of separate ranking criteria
+     * @return a copy of the bounds; the copy is made again only when the bounds have changed since the last copy
      */
-    private class NormalizeWorker extends Thread {
-
-        private final BlockingQueue<WordReferenceVars> out;
-        private final Semaphore termination;
-        private final BlockingQueue<WordReferenceVars> decodedEntries;
-        private final long maxtime;
-
-        public NormalizeWorker(final BlockingQueue<WordReferenceVars> out, final Semaphore termination, long maxtime) {
-        	super("ReferenceOrder.NormalizeWorker");
-            this.out = out;
-            this.termination = termination;
-            this.decodedEntries = new LinkedBlockingQueue<WordReferenceVars>();
-            this.maxtime = maxtime;
-        }
-
-        public void add(final WordReferenceVars entry) {
-            try {
-                this.decodedEntries.put(entry);
-            } catch (final InterruptedException e) {
-            }
-        }
-
-        @Override
-        public void run() {
-            try {
-                WordReferenceVars iEntry;
-                final Map<String, Integer> doms0 = new HashMap<String, Integer>();
-                String dom;
-                Integer count;
-                final Integer int1 = 1;
-                long timeout = this.maxtime == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + this.maxtime;
-                while ((iEntry = this.decodedEntries.take()) != WordReferenceVars.poison) {
-                    // find min/max
-                    if (ReferenceOrder.this.min == null) ReferenceOrder.this.min = iEntry.clone(); else ReferenceOrder.this.min.min(iEntry);
-                    if (ReferenceOrder.this.max == null) ReferenceOrder.this.max = iEntry.clone(); else ReferenceOrder.this.max.max(iEntry);
-                    this.out.put(iEntry); // must be after the min/max check to prevent that min/max is null in cardinal()
-                    // update domcount
-                    dom = iEntry.hosthash();
-                    count = doms0.get(dom);
-                    if (count == null) {
-                        doms0.put(dom, int1);
-                    } else {
-                        doms0.put(dom, LargeNumberCache.valueOf(count.intValue() + 1));
-                    }
-
-                    if (System.currentTimeMillis() > timeout) {
-                        ConcurrentLog.warn("NormalizeWorker", "normlization of decoded rows ended with timeout = " + this.maxtime);
-                        break;
-                    }
-                }
-
-                // update domain score
-                Map.Entry<String, Integer> entry;
-                final Iterator<Map.Entry<String, Integer>> di = doms0.entrySet().iterator();
-                while (di.hasNext()) {
-                    entry = di.next();
-                    ReferenceOrder.this.doms.inc(entry.getKey(), (entry.getValue()).intValue());
-                }
-                if (!ReferenceOrder.this.doms.isEmpty()) ReferenceOrder.this.maxdomcount = ReferenceOrder.this.doms.getMaxScore();
-            } catch (final InterruptedException e) {
-                ConcurrentLog.logException(e);
-            } catch (final Exception e) {
-                ConcurrentLog.logException(e);
-            } finally {
-                // insert poison to signal the termination to next queue
-                try {
-                    this.termination.acquire();
-                    if (this.termination.availablePermits() == 0) this.out.put(WordReferenceVars.poison);
-                } catch (final InterruptedException e) {}
-            }
+    private Bounds bounds() {
+        final int version = this.boundsVersion.get();
+        Snapshot s = this.snapshot;
+        if (s == null || s.version != version) {
+            s = new Snapshot(version, this.bounds.clone());
+            this.snapshot = s;
         }
+        return s.bounds;
     }
 
     public int authority(final String hostHash) {
@@ -222,48 +142,113 @@ public class ReferenceOrder {
      */
     public long cardinal(final WordReference t) {
         // the normalizedEntry must be a normalized indexEntry
-        assert this.min != null;
-        assert this.max != null;
         assert t != null;
         assert this.ranking != null;
+        final Bounds b = this.bounds();
+        assert !b.isEmpty();
         final Bitfield flags = t.flags();
-        final long tf = ((this.max.termFrequency() == this.min.termFrequency()) ? 0 : (((int)(((t.termFrequency()-this.min.termFrequency())*256.0)/(this.max.termFrequency() - this.min.termFrequency())))) << this.ranking.coeff_termfrequency);
-        //System.out.println("tf(" + t.urlHash + ") = " + Math.floor(1000 * t.termFrequency()) + ", min = " + Math.floor(1000 * min.termFrequency()) + ", max = " + Math.floor(1000 * max.termFrequency()) + ", tf-normed = " + tf);
+        int f = 0;
+        for (int j = 0; j < 32; j++) if (flags.get(j)) f |= 1 << j;
         final long r =
              ((256 - DigestURL.domLengthNormalized(t.urlhash())) << this.ranking.coeff_domlength)
-           + ((this.max.urlcomps()      == this.min.urlcomps()   )   ? 0 : (256 - (((t.urlcomps()     - this.min.urlcomps()    ) << 8) / (this.max.urlcomps()    - this.min.urlcomps())    )) << this.ranking.coeff_urlcomps)
-           + ((this.max.urllength()     == this.min.urllength()  )   ? 0 : (256 - (((t.urllength()    - this.min.urllength()   ) << 8) / (this.max.urllength()   - this.min.urllength())   )) << this.ranking.coeff_urllength)
-           + ((this.max.posintext()     == this.min.posintext())     ? 0 : (256 - (((t.posintext()    - this.min.posintext()   ) << 8) / (this.max.posintext()   - this.min.posintext())   )) << this.ranking.coeff_posintext)
-           + ((this.max.posofphrase()   == this.min.posofphrase())   ? 0 : (256 - (((t.posofphrase()  - this.min.posofphrase() ) << 8) / (this.max.posofphrase() - this.min.posofphrase()) )) << this.ranking.coeff_posofphrase)
-           + ((this.max.posinphrase()   == this.min.posinphrase())   ? 0 : (256 - (((t.posinphrase()  - this.min.posinphrase() ) << 8) / (this.max.posinphrase() - this.min.posinphrase()) )) << this.ranking.coeff_posinphrase)
-           + ((this.max.distance()      == this.min.distance()   )   ? 0 : (256 - (((t.distance()     - this.min.distance()    ) << 8) / (this.max.distance()    - this.min.distance())    )) << this.ranking.coeff_worddistance)
-           + ((this.max.virtualAge()    == this.min.virtualAge())    ? 0 :        (((t.virtualAge()   - this.min.virtualAge()  ) << 8) / (this.max.virtualAge()  - this.min.virtualAge())   ) << this.ranking.coeff_date)
-           + ((this.max.wordsintitle()  == this.min.wordsintitle())  ? 0 : (((t.wordsintitle() - this.min.wordsintitle()  ) << 8) / (this.max.wordsintitle() - this.min.wordsintitle())  ) << this.ranking.coeff_wordsintitle)
-           + ((this.max.wordsintext()   == this.min.wordsintext())   ? 0 : (((t.wordsintext()  - this.min.wordsintext()   ) << 8) / (this.max.wordsintext()  - this.min.wordsintext())   ) << this.ranking.coeff_wordsintext)
-           + ((this.max.phrasesintext() == this.min.phrasesintext()) ? 0 : (((t.phrasesintext()- this.min.phrasesintext() ) << 8) / (this.max.phrasesintext()- this.min.phrasesintext()) ) << this.ranking.coeff_phrasesintext)
-           + ((this.max.llocal()        == this.min.llocal())        ? 0 : (((t.llocal()       - this.min.llocal()        ) << 8) / (this.max.llocal()       - this.min.llocal())        ) << this.ranking.coeff_llocal)
-           + ((this.max.lother()        == this.min.lother())        ? 0 : (((t.lother()       - this.min.lother()        ) << 8) / (this.max.lother()       - this.min.lother())        ) << this.ranking.coeff_lother)
-           + ((this.max.hitcount()      == this.min.hitcount())      ? 0 : (((t.hitcount()     - this.min.hitcount()      ) << 8) / (this.max.hitcount()     - this.min.hitcount())      ) << this.ranking.coeff_hitcount)
-           + tf
+           + cardinal(b, WordReferenceColumns.URLCOMPS, t.urlcomps())
+           + cardinal(b, WordReferenceColumns.URLLENGTH, t.urllength())
+           + cardinal(b, WordReferenceColumns.POSINTEXT, t.posintext())
+           + cardinal(b, WordReferenceColumns.POSOFPHRASE, t.posofphrase())
+           + cardinal(b, WordReferenceColumns.POSINPHRASE, t.posinphrase())
+           + cardinal(b, WordReferenceColumns.DISTANCE, t.distance())
+           + cardinal(b, WordReferenceColumns.VIRTUALAGE, t.virtualAge())
+           + cardinal(b, WordReferenceColumns.WORDSINTITLE, t.wordsintitle())
+           + cardinal(b, WordReferenceColumns.WORDSINTEXT, t.wordsintext())
+           + cardinal(b, WordReferenceColumns.PHRASESINTEXT, t.phrasesintext())
+           + cardinal(b, WordReferenceColumns.LLOCAL, t.llocal())
+           + cardinal(b, WordReferenceColumns.LOTHER, t.lother())
+           + cardinal(b, WordReferenceColumns.HITCOUNT, t.hitcount())
+           + termFrequency(b, t.termFrequency())
            + ((this.ranking.coeff_authority > 12) ? (authority(t.hosthash()) << this.ranking.coeff_authority) : 0)
-           + ((flags.get(WordReferenceRow.flag_app_dc_identifier))  ? 255 << this.ranking.coeff_appurl             : 0)
-           + ((flags.get(WordReferenceRow.flag_app_dc_title))       ? 255 << this.ranking.coeff_app_dc_title       : 0)
-           + ((flags.get(WordReferenceRow.flag_app_dc_creator))     ? 255 << this.ranking.coeff_app_dc_creator     : 0)
-           + ((flags.get(WordReferenceRow.flag_app_dc_subject))     ? 255 << this.ranking.coeff_app_dc_subject     : 0)
-           + ((flags.get(WordReferenceRow.flag_app_dc_description)) ? 255 << this.ranking.coeff_app_dc_description : 0)
-           + ((flags.get(WordReferenceRow.flag_app_emphasized))     ? 255 << this.ranking.coeff_appemph            : 0)
-           + ((flags.get(Tokenizer.flag_cat_indexof))      ? 255 << this.ranking.coeff_catindexof         : 0)
-           + ((flags.get(Tokenizer.flag_cat_hasimage))     ? 255 << this.ranking.coeff_cathasimage        : 0)
-           + ((flags.get(Tokenizer.flag_cat_hasaudio))     ? 255 << this.ranking.coeff_cathasaudio        : 0)
-           + ((flags.get(Tokenizer.flag_cat_hasvideo))     ? 255 << this.ranking.coeff_cathasvideo        : 0)
-           + ((flags.get(Tokenizer.flag_cat_hasapp))       ? 255 << this.ranking.coeff_cathasapp          : 0)
+           + flags(f)
            + ((Arrays.equals(t.getLanguage(), ASCII.getBytes(this.language))) ? 255 << this.ranking.coeff_language    : 0);
 
         //if (searchWords != null) r += (yacyURL.probablyWordURL(t.urlHash(), searchWords) != null) ? 256 << ranking.coeff_appurl : 0;
 
         return r; // the higher the number the better the ranking.
     }
-    
+
+    /**
+     * return the ranking of all decoded references of the columns; the ranking is computed concurrently in chunks.
+     * All references are ranked against the same minimum and maximum values, which are the values of all
+     * references normalized until now.
+     * @param columns references decoded with normalizeWith()
+     * @return a ranking for each reference, the higher the number, the better is the ranking. The ranking of
+     *   references which are not decoded is zero.
+     */
+    public long[] cardinal(final WordReferenceColumns columns) {
+        assert this.ranking != null;
+        final Bounds b = this.bounds();
+        final long[] r = new long[columns.size()];
+        columns.forEachChunk(RANKING_EXECUTOR, chunk -> {
+            if (!columns.isDecoded(columns.chunkStart(chunk))) return;
+            for (int i = columns.chunkStart(chunk); i < columns.chunkEnd(chunk); i++) {
+                long c = ((256 - columns.domLengthNormalized(i)) << this.ranking.coeff_domlength);
+                for (int column = 0; column < WordReferenceColumns.COLUMNS; column++) {
+                    c += cardinal(b, column, columns.value(column, i));
+                }
+                r[i] = c
+                    + termFrequency(b, columns.termFrequency(i))
+                    + ((this.ranking.coeff_authority > 12) ? (authority(columns.hosthash(i)) << this.ranking.coeff_authority) : 0)
+                    + flags(columns.flags(i))
+                    + (columns.isLanguage(i, this.language) ? 255 << this.ranking.coeff_language : 0);
+            }
+        });
+        return r;
+    }
+
+    /**
+     * the ranking of one value, scaled to 0..256 between the minimum and maximum of the value
+     */
+    private long cardinal(final Bounds b, final int column, final int value) {
+        final int min = b.min(column);
+        final int max = b.max(column);
+        if (max == min) return 0;
+        final int n = ((value - min) << 8) / (max - min);
+        switch (column) {
+            case WordReferenceColumns.URLCOMPS:      return (256 - n) << this.ranking.coeff_urlcomps;
+            case WordReferenceColumns.URLLENGTH:     return (256 - n) << this.ranking.coeff_urllength;
+            case WordReferenceColumns.POSINTEXT:     return (256 - n) << this.ranking.coeff_posintext;
+            case WordReferenceColumns.POSOFPHRASE:   return (256 - n) << this.ranking.coeff_posofphrase;
+            case WordReferenceColumns.POSINPHRASE:   return (256 - n) << this.ranking.coeff_posinphrase;
+            case WordReferenceColumns.DISTANCE:      return (256 - n) << this.ranking.coeff_worddistance;
+            case WordReferenceColumns.VIRTUALAGE:    return n << this.ranking.coeff_date;
+            case WordReferenceColumns.WORDSINTITLE:  return n << this.ranking.coeff_wordsintitle;
+            case WordReferenceColumns.WORDSINTEXT:   return n << this.ranking.coeff_wordsintext;
+            case WordReferenceColumns.PHRASESINTEXT: return n << this.ranking.coeff_phrasesintext;
+            case WordReferenceColumns.LLOCAL:        return n << this.ranking.coeff_llocal;
+            case WordReferenceColumns.LOTHER:        return n << this.ranking.coeff_lother;
+            case WordReferenceColumns.HITCOUNT:      return n << this.ranking.coeff_hitcount;
+            default: return 0;
+        }
+    }
+
+    private long termFrequency(final Bounds b, final double tf) {
+        if (b.maxTermFrequency() == b.minTermFrequency()) return 0;
+        return ((int) (((tf - b.minTermFrequency()) * 256.0) / (b.maxTermFrequency() - b.minTermFrequency()))) << this.ranking.coeff_termfrequency;
+    }
+
+    private long flags(final int flags) {
+        return
+             (((flags & (1 << WordReferenceRow.flag_app_dc_identifier))  != 0) ? 255 << this.ranking.coeff_appurl             : 0)
+           + (((flags & (1 << WordReferenceRow.flag_app_dc_title))       != 0) ? 255 << this.ranking.coeff_app_dc_title       : 0)
+           + (((flags & (1 << WordReferenceRow.flag_app_dc_creator))     != 0) ? 255 << this.ranking.coeff_app_dc_creator     : 0)
+           + (((flags & (1 << WordReferenceRow.flag_app_dc_subject))     != 0) ? 255 << this.ranking.coeff_app_dc_subject     : 0)
+           + (((flags & (1 << WordReferenceRow.flag_app_dc_description)) != 0) ? 255 << this.ranking.coeff_app_dc_description : 0)
+           + (((flags & (1 << WordReferenceRow.flag_app_emphasized))     != 0) ? 255 << this.ranking.coeff_appemph            : 0)
+           + (((flags & (1 << Tokenizer.flag_cat_indexof))      != 0) ? 255 << this.ranking.coeff_catindexof         : 0)
+           + (((flags & (1 << Tokenizer.flag_cat_hasimage))     != 0) ? 255 << this.ranking.coeff_cathasimage        : 0)
+           + (((flags & (1 << Tokenizer.flag_cat_hasaudio))     != 0) ? 255 << this.ranking.coeff_cathasaudio        : 0)
+           + (((flags & (1 << Tokenizer.flag_cat_hasvideo))     != 0) ? 255 << this.ranking.coeff_cathasvideo        : 0)
+           + (((flags & (1 << Tokenizer.flag_cat_hasapp))       != 0) ? 255 << this.ranking.coeff_cathasapp          : 0);
+    }
+
     public long cardinal(final URIMetadataNode t) {
         // the normalizedEntry must be a normalized indexEntry
         assert t != null;
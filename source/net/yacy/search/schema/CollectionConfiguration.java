@@ -33,6 +33,7 @@ import java.net.MalformedURLException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -45,7 +46,14 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
@@ -101,6 +109,7 @@ import net.yacy.kelondro.index.RowHandleMap;
 import net.yacy.kelondro.rwi.ReferenceContainer;
 import net.yacy.kelondro.util.Bitfield;
 import net.yacy.kelondro.util.MemoryControl;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
 import net.yacy.search.index.Segment;
 import net.yacy.search.index.Segment.ReferenceReport;
 import net.yacy.search.index.Segment.ReferenceReportCache;
@@ -1229,8 +1238,17 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                WebgraphSchema.process_sxt.getSolrFieldName() + AbstractSolrConnector.CATCHALL_DTERM;
     }
 
+    /** the maximum number of documents in a work unit of the postprocessing; the documents of larger hosts are divided by the first character of their id */
+    private static final int POSTPROCESSING_UNIT_SIZE = 10000;
+
+    /** the number of documents which the postprocessing writes back to the index with one request */
+    private static final int POSTPROCESSING_BATCH_SIZE = 100;
+
     /**
-     * Performs post-processing steps for all entries that have a process tag assigned
+     * Performs post-processing steps for all entries that have a process tag assigned.
+     * The work is divided into units of one host each which run on a pool of threads. An interrupted run continues
+     * with the next run: the documents which are written back lose their process tag, and the CitationRank values
+     * of the finished hosts are kept in a checkpoint file for the harvestkey in the segment directory.
      * @param segment Solr segment. Must not be null.
      * @param rrCache reference report cache for the segment.
      * @param harvestkey key from a harvest process, used to mark documents needing post-processing
@@ -1240,6 +1258,7 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
     public int postprocessing(final Segment segment, final ReferenceReportCache rrCache, final String harvestkey, final boolean byPartialUpdate) {
         if (!this.contains(CollectionSchema.process_sxt)) return 0;
         if (!segment.connectedCitation() && !segment.fulltext().useWebgraph()) return 0;
+        segment.fulltext().flushIngest(); // documents which wait for their batch shall be processed as well
         final SolrConnector collectionConnector = segment.fulltext().getDefaultConnector();
         collectionConnector.commit(false); // make sure that we have latest information that can be found
         if (segment.fulltext().useWebgraph()) segment.fulltext().getWebgraphConnector().commit(false);
@@ -1261,44 +1280,59 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
             postprocessingWebgraphCount = -1;
         }
 
-        postprocessingActivity = "create ranking map";
+        // collect the hosts of the documents to be processed; the hosts partition the work
+        postprocessingActivity = "collecting host facets for collection";
         ConcurrentLog.info("CollectionConfiguration", postprocessingActivity);
-        final boolean shallComputeCR = (segment.fulltext().useWebgraph() &&
-                ((webgraph.contains(WebgraphSchema.source_id_s) && webgraph.contains(WebgraphSchema.source_cr_host_norm_i)) ||
-                        (webgraph.contains(WebgraphSchema.target_id_s) && webgraph.contains(WebgraphSchema.target_cr_host_norm_i))) ||
-                      (collection.contains(CollectionSchema.cr_host_count_i) &&
-                       collection.contains(CollectionSchema.cr_host_chance_d) &&
-                       collection.contains(CollectionSchema.cr_host_norm_i)));
-        // create the ranking map
-        final Map<String, CRV> rankings;
-        if(shallComputeCR) {
-            // collect hosts from index which shall take part in citation computation
-            postprocessingActivity = "collecting host facets for collection";
-            ConcurrentLog.info("CollectionConfiguration", postprocessingActivity);
-            ReversibleScoreMap<String> collection1hosts;
-            try {
-                final Map<String, ReversibleScoreMap<String>> hostfacet = collectionConnector.getFacets("{!cache=false}" + collection1query, 10000000, CollectionSchema.host_s.getSolrFieldName());
-                collection1hosts = hostfacet.get(CollectionSchema.host_s.getSolrFieldName());
-            } catch (final IOException e2) {
-                ConcurrentLog.logException(e2);
-                collection1hosts = new ClusteredScoreMap<>(true);
-            }
-
-        	rankings = this.createRankingMap(segment, rrCache, collectionConnector, collection1hosts);
-        } else {
-        	rankings = new ConcurrentHashMap<>();
+        ReversibleScoreMap<String> collection1hosts;
+        try {
+            final Map<String, ReversibleScoreMap<String>> hostfacet = collectionConnector.getFacets("{!cache=false}" + collection1query, 10000000, CollectionSchema.host_s.getSolrFieldName());
+            collection1hosts = hostfacet.get(CollectionSchema.host_s.getSolrFieldName());
+        } catch (final IOException e2) {
+            ConcurrentLog.logException(e2);
+            collection1hosts = new ClusteredScoreMap<>(true);
         }
 
-        // process all documents at the webgraph for the outgoing links of this document
+        final int concurrency = Math.max(1, Math.min((int) (MemoryControl.available() / (100L * 1024L * 1024L)), Runtime.getRuntime().availableProcessors()));
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(concurrency, concurrency, 10L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamePrefixThreadFactory("CollectionConfiguration.postprocessing"));
+        final PostprocessingCheckpoint checkpoint = new PostprocessingCheckpoint(PostprocessingCheckpoint.file(segment.getLocation(), harvestkey));
         final AtomicInteger allcount = new AtomicInteger(0);
-        if (segment.fulltext().useWebgraph() && shallComputeCR) {
-            this.postprocessWebgraph(segment, webgraph, webgraphquery, rankings, allcount);
-        }
-
-        // process all documents in collection
-        this.postprocessDocuments(segment, rrCache, harvestkey, byPartialUpdate, collectionConnector, collection,
-				collection1query, rankings, allcount);
+        boolean complete = false;
+        try {
+            postprocessingActivity = "create ranking map";
+            ConcurrentLog.info("CollectionConfiguration", postprocessingActivity);
+            final boolean shallComputeCR = (segment.fulltext().useWebgraph() &&
+                    ((webgraph.contains(WebgraphSchema.source_id_s) && webgraph.contains(WebgraphSchema.source_cr_host_norm_i)) ||
+                            (webgraph.contains(WebgraphSchema.target_id_s) && webgraph.contains(WebgraphSchema.target_cr_host_norm_i))) ||
+                          (collection.contains(CollectionSchema.cr_host_count_i) &&
+                           collection.contains(CollectionSchema.cr_host_chance_d) &&
+                           collection.contains(CollectionSchema.cr_host_norm_i)));
+            // create the ranking map
+            final Map<String, CRV> rankings = shallComputeCR ?
+                    this.createRankingMap(segment, rrCache, collectionConnector, collection1hosts, checkpoint, pool) :
+                    new ConcurrentHashMap<>();
+
+            // process all documents at the webgraph for the outgoing links of this document
+            if (segment.fulltext().useWebgraph() && shallComputeCR) {
+                this.postprocessWebgraph(segment, webgraph, webgraphquery, rankings, allcount, pool);
+            }
 
+            // process all documents in collection
+            this.postprocessDocuments(segment, rrCache, harvestkey, byPartialUpdate, collectionConnector, collection,
+                    collection1query, collection1hosts, rankings, allcount, pool);
+            complete = true;
+        } catch (final InterruptedException e) {
+            ConcurrentLog.warn("CollectionConfiguration", "postprocessing interrupted, " + checkpoint.size() + " hosts are kept in the checkpoint");
+        } finally {
+            pool.shutdownNow();
+            if (complete) {
+                checkpoint.delete();
+                // all documents are processed, also those of interrupted runs for a harvestkey
+                if (harvestkey == null) PostprocessingCheckpoint.deleteAll(segment.getLocation());
+            } else {
+                checkpoint.close();
+            }
+        }
 
         postprocessingCollection1Count = 0;
         postprocessingWebgraphCount = 0;
@@ -1308,6 +1342,65 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
         return allcount.get();
     }
 
+    /**
+     * run tasks on the pool and wait until all are finished. Exceptions of a task are logged, the other tasks continue.
+     * @param pool the pool of the postprocessing
+     * @param tasks the tasks
+     * @throws InterruptedException if the postprocessing was interrupted while waiting
+     */
+    private static void runAll(final ThreadPoolExecutor pool, final List<Callable<Void>> tasks) throws InterruptedException {
+        for (final Future<Void> task: pool.invokeAll(tasks)) {
+            try {
+                task.get();
+            } catch (final ExecutionException e) {
+                ConcurrentLog.logException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * divide the documents of a host into work units. A host with more than POSTPROCESSING_UNIT_SIZE documents is divided by the
+     * first character of the document id, which is equally distributed over the base64 alphabet.
+     * @param idField the name of the id field
+     * @param hostquery the query for the documents of the host
+     * @param count the number of documents of the host
+     * @return the queries of the work units
+     */
+    private static List<String> partition(final String idField, final String hostquery, final long count) {
+        if (count <= POSTPROCESSING_UNIT_SIZE) return Collections.singletonList(hostquery);
+        final List<String> units = new ArrayList<>(Base64Order.alpha_enhanced.length);
+        for (final byte b: Base64Order.alpha_enhanced) {
+            units.add(idField + ":" + (b == '-' ? "\\-" : Character.toString((char) b)) + "* AND " + hostquery);
+        }
+        return units;
+    }
+
+    /**
+     * write a batch of documents back to the index; if the batch fails, the documents are written one by one
+     * @param connector the connector of the core
+     * @param batch the documents, the list is empty after the call
+     * @param byPartialUpdate when true, perform partial updates on documents
+     * @return the ids of the documents which could not be written
+     */
+    private static List<String> writeBatch(final SolrConnector connector, final List<SolrInputDocument> batch, final boolean byPartialUpdate) {
+        final List<String> failids = new ArrayList<>(0);
+        if (batch.isEmpty()) return failids;
+        try {
+            if (byPartialUpdate) connector.update(batch); else connector.add(batch);
+        } catch (final IOException | SolrException e) {
+            for (final SolrInputDocument sid: batch) {
+                try {
+                    if (byPartialUpdate) connector.update(sid); else connector.add(sid);
+                } catch (final IOException | SolrException ee) {
+                    ConcurrentLog.logException(ee);
+                    failids.add((String) sid.getFieldValue(CollectionSchema.id.getSolrFieldName()));
+                }
+            }
+        }
+        batch.clear();
+        return failids;
+    }
+
     /**
      * Performs postprocessing steps on the main documents dollection.
      * @param segment Solr segment.
@@ -1317,14 +1410,17 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
      * @param collectionConnector connector to the main Solr collection
      * @param collection schema configuration for the collection
      * @param collection1query query used to harvest items to postprocess in the main collection
+     * @param collection1hosts hosts of the items to postprocess, used to partition the work
      * @param rankings postprocessed rankings
      * @param allcount global postprocessed documents count
+     * @param pool the threads which process the work units
+     * @throws InterruptedException if the postprocessing was interrupted
      */
-	private void postprocessDocuments(final Segment segment, final ReferenceReportCache rrCache,
-			final String harvestkey, final boolean byPartialUpdate, final SolrConnector collectionConnector,
-			final CollectionConfiguration collection, final String collection1query, final Map<String, CRV> rankings,
-			final AtomicInteger allcount) {
-		final Map<String, Long> hostExtentCache = new HashMap<>(); // a mapping from the host id to the number of documents which contain this host-id
+    private void postprocessDocuments(final Segment segment, final ReferenceReportCache rrCache,
+            final String harvestkey, final boolean byPartialUpdate, final SolrConnector collectionConnector,
+            final CollectionConfiguration collection, final String collection1query, final ReversibleScoreMap<String> collection1hosts,
+            final Map<String, CRV> rankings, final AtomicInteger allcount, final ThreadPoolExecutor pool) throws InterruptedException {
+        final Map<String, Long> hostExtentCache = new ConcurrentHashMap<>(); // a mapping from the host id to the number of documents which contain this host-id
         final Set<String> uniqueURLs = ConcurrentHashMap.newKeySet(); // will be used in a concurrent environment
         final Set<String> localOmitFields = new HashSet<>();
         localOmitFields.add(CollectionSchema.process_sxt.getSolrFieldName());
@@ -1335,39 +1431,34 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
         final AtomicInteger proccount_referencechange = new AtomicInteger();
         final AtomicInteger proccount_citationchange = new AtomicInteger();
         try {
-            // partitioning of the index, get a facet for a partitioning key
             final long count = collectionConnector.getCountByQuery("{!cache=false}" + collection1query);
-            final String partitioningKey = CollectionSchema.responsetime_i.getSolrFieldName();
-            postprocessingActivity = "collecting " + count + " documents from the collection for harvestkey " + harvestkey + ", partitioned by " + partitioningKey;
+            postprocessingActivity = "collecting " + count + " documents from the collection for harvestkey " + harvestkey + ", partitioned by host";
             if (count > 0) {
-                final Map<String, ReversibleScoreMap<String>> partitioningFacet = collectionConnector.getFacets("{!cache=false}" + collection1query, 100000, partitioningKey);
-                final ReversibleScoreMap<String> partitioning = partitioningFacet.get(partitioningKey);
-                final long emptyCount = collectionConnector.getCountByQuery("{!cache=false}" + "-" + partitioningKey + AbstractSolrConnector.CATCHALL_DTERM + " AND (" + collection1query + ")");
-                if (emptyCount > 0) partitioning.inc("", (int) emptyCount);
-                final long start = System.currentTimeMillis();
-                final List<String> querystrings = new ArrayList<>(partitioning.size());
-                for (final String partitioningValue: partitioning) {
-                    final String partitioningQuery = "{!cache=false}" + ((partitioningValue.length() == 0) ?
-                            "-" + partitioningKey + AbstractSolrConnector.CATCHALL_DTERM + " AND (" + collection1query + ")" :
-                            partitioningKey + ":" + partitioningValue + " AND (" + collection1query + ")");
-                    querystrings.add(partitioningQuery);
+                // one work unit for each host; hosts without subdomain are started first, that gives an opportunity to set the www_unique_b flag to false,
+                // and within a host the documents are sorted on protocol to get http before https; that gives an opportunity to set http_unique_b flag to false
+                final List<String> hosts = new ArrayList<>(collection1hosts.keyList(false)); // large hosts first, then they do not run alone at the end
+                hosts.sort((a, b) -> Boolean.compare(a.startsWith("www."), b.startsWith("www.")));
+                final List<String> unitqueries = new ArrayList<>();
+                long hostcount = 0;
+                for (final String host: hosts) {
+                    final int c = collection1hosts.get(host);
+                    hostcount += c;
+                    unitqueries.addAll(partition(CollectionSchema.id.getSolrFieldName(),
+                            CollectionSchema.host_s.getSolrFieldName() + ":\"" + host + "\" AND (" + collection1query + ")", c));
+                }
+                if (hosts.isEmpty()) {
+                    unitqueries.add(collection1query); // without host facet there is only one unit
+                } else if (hostcount < count) {
+                    unitqueries.add("-" + CollectionSchema.host_s.getSolrFieldName() + AbstractSolrConnector.CATCHALL_DTERM + " AND (" + collection1query + ")");
                 }
-                // start collection of documents
-                final int concurrency = Math.max(1, Math.min((int) (MemoryControl.available() / (100L * 1024L * 1024L)), Runtime.getRuntime().availableProcessors()));
-                //final int concurrency = 1;
+                final long start = System.currentTimeMillis();
                 final boolean reference_computation = this.contains(CollectionSchema.references_i) &&
                         this.contains(CollectionSchema.references_internal_i) &&
                         this.contains(CollectionSchema.references_external_i) &&
                         this.contains(CollectionSchema.references_exthosts_i);
-                ConcurrentLog.info("CollectionConfiguration", postprocessingActivity);
-                final BlockingQueue<SolrDocument> docs = collectionConnector.concurrentDocumentsByQueries(
-                        querystrings,
-                        (this.contains(CollectionSchema.http_unique_b) || this.contains(CollectionSchema.www_unique_b)) ?
-                        CollectionSchema.host_subdomain_s.getSolrFieldName() + " asc," + // sort on subdomain to get hosts without subdomain first; that gives an opportunity to set www_unique_b flag to false
-                        CollectionSchema.url_protocol_s.getSolrFieldName() + " asc" // sort on protocol to get http before https; that gives an opportunity to set http_unique_b flag to false
-                        : null, // null sort is faster!
-                        0, 100000000, Long.MAX_VALUE, concurrency + 1, concurrency, true,
-                        byPartialUpdate ?
+                final String sort = (this.contains(CollectionSchema.http_unique_b) || this.contains(CollectionSchema.www_unique_b)) ?
+                        CollectionSchema.url_protocol_s.getSolrFieldName() + " asc" : null; // null sort is faster!
+                final String[] fields = byPartialUpdate ?
                         new String[]{
                         // the following fields are needed to perform the postprocessing
                         // and should only be used for partial updates; for full updates use a
@@ -1390,108 +1481,96 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                         CollectionSchema.httpstatus_i.getSolrFieldName(),
                         CollectionSchema.inboundlinkscount_i.getSolrFieldName(),
                         CollectionSchema.robots_i.getSolrFieldName()} :
-                        this.allFields());
-                final Thread rewriteThread[] = new Thread[concurrency];
-                for (int rewrite_start = 0; rewrite_start < concurrency; rewrite_start++) {
-                    rewriteThread[rewrite_start] = new Thread("CollectionConfiguration.postprocessing.rewriteThread-" + rewrite_start) {
-                        @Override
-                        public void run() {
-                            SolrDocument doc;
-                            try {
-                                while ((doc = docs.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
-                                    // for each to-be-processed entry work on the process tag
-                                    final Collection<Object> proctags = doc.getFieldValues(CollectionSchema.process_sxt.getSolrFieldName());
-                                    final String u = (String) doc.getFieldValue(CollectionSchema.sku.getSolrFieldName());
-                                    final String i = (String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName());
-                                    if (proctags == null || proctags.size() == 0) {
-                                        // this should not happen since we collected the documents using a process_sxt:[* TO *] term
-                                        ConcurrentLog.warn("CollectionConfiguration", "no process_sxt entry for url " + u + ", id=" + i);
-                                        continue;
-                                    }
-                                    try {
-                                        final DigestURL url = new DigestURL(u, ASCII.getBytes(i));
-                                        final byte[] id = url.hash();
-                                        final SolrInputDocument sid = byPartialUpdate ? new SolrInputDocument() : collection.toSolrInputDocument(doc, localOmitFields);
-                                        sid.setField(CollectionSchema.id.getSolrFieldName(), i);
-                                        for (final Object tag: proctags) try {
-
-                                            // switch over tag types
-                                            final ProcessType tagtype = ProcessType.valueOf((String) tag);
-
-                                            if (tagtype == ProcessType.CITATION &&
-                                                collection.contains(CollectionSchema.cr_host_count_i) &&
-                                                collection.contains(CollectionSchema.cr_host_chance_d) &&
-                                                collection.contains(CollectionSchema.cr_host_norm_i)) {
-                                                final CRV crv = rankings.remove(ASCII.String(id)); // instead of 'get'ting the CRV, we also remove it because we will not need it again and free some memory here
-                                                if (crv != null) {
-                                                    sid.setField(CollectionSchema.cr_host_count_i.getSolrFieldName(), crv.count);
-                                                    sid.setField(CollectionSchema.cr_host_chance_d.getSolrFieldName(), crv.cr);
-                                                    sid.setField(CollectionSchema.cr_host_norm_i.getSolrFieldName(), crv.crn);
-                                                    proccount_citationchange.incrementAndGet();
-                                                }
-                                            }
-
-                                            if (tagtype == ProcessType.UNIQUE) {
-                                                CollectionConfiguration.this.postprocessing_http_unique(segment, doc, sid, url);
-                                                CollectionConfiguration.this.postprocessing_www_unique(segment, doc, sid, url);
-                                                CollectionConfiguration.this.postprocessing_doublecontent(segment, uniqueURLs, doc, sid, url);
-                                            }
-
-                                        } catch (final IllegalArgumentException e) {}
-
-                                        // compute references
-                                        if (reference_computation) {
-                                            final String hosthash = url.hosthash();
-                                            if (!hostExtentCache.containsKey(hosthash)) {
-                                                final StringBuilder q = new StringBuilder();
-                                                q.append(CollectionSchema.host_id_s.getSolrFieldName()).append(":\"").append(hosthash).append("\" AND ").append(CollectionSchema.httpstatus_i.getSolrFieldName()).append(":200");
-                                                final long hostExtentCount = segment.fulltext().getDefaultConnector().getCountByQuery(q.toString());
-                                                hostExtentCache.put(hosthash, hostExtentCount);
-                                            }
-                                            if (CollectionConfiguration.this.postprocessing_references(rrCache, sid, url, hostExtentCache)) proccount_referencechange.incrementAndGet();
-                                        }
-
-                                        // all processing steps checked, remove the processing and harvesting key
-                                        if (byPartialUpdate) {
-                                            sid.setField(CollectionSchema.process_sxt.getSolrFieldName(), null); // setting this to null will cause a removal when doing a partial update
-                                            sid.setField(CollectionSchema.harvestkey_s.getSolrFieldName(), null);
-                                        } /*else { // fields are omitted on sid creation
-                                            sid.removeField(CollectionSchema.process_sxt.getSolrFieldName());
-                                            sid.removeField(CollectionSchema.harvestkey_s.getSolrFieldName());
-                                        }*/
-                                        // with standard solr fields selected, the sid now contains the fields
-                                        // id, http_unique_b, www_unique_b, references_i, references_internal_i, references_external_i, references_exthosts_i, host_extent_i
-                                        // and the value for host_extent_i is by default 2147483647
-
-                                        // send back to index
-                                        //collectionConnector.deleteById(i);
-                                        if (byPartialUpdate) {
-                                            collectionConnector.update(sid);
-                                        } else {
-                                            collectionConnector.add(sid);
-                                        }
-                                        final long thiscount = proccount.incrementAndGet(); allcount.incrementAndGet();
-                                        if (thiscount % 100 == 0) {
-                                            postprocessingActivity = "postprocessed " + thiscount + " from " + count + " collection documents; " +
-                                                (thiscount * 60000L / (System.currentTimeMillis() - start)) + " ppm; " +
-                                                ((System.currentTimeMillis() - start) * (count - thiscount) / thiscount / 60000) + " minutes remaining";
-                                            ConcurrentLog.info("CollectionConfiguration", postprocessingActivity);
-                                        }
-                                    } catch (final Throwable e1) {
-                                        ConcurrentLog.logException(e1);
-                                        failids.add(i);
+                        this.allFields();
+                ConcurrentLog.info("CollectionConfiguration", postprocessingActivity + ", " + unitqueries.size() + " work units, concurrency = " + pool.getCorePoolSize());
+                final List<Callable<Void>> units = new ArrayList<>(unitqueries.size());
+                for (final String unitquery: unitqueries) units.add(() -> {
+                    final BlockingQueue<SolrDocument> docs = collectionConnector.concurrentDocumentsByQuery(
+                            "{!cache=false}" + unitquery, sort, 0, 100000000, Long.MAX_VALUE, 2 * POSTPROCESSING_BATCH_SIZE, 1, true, fields);
+                    final List<SolrInputDocument> batch = new ArrayList<>(POSTPROCESSING_BATCH_SIZE);
+                    SolrDocument doc;
+                    while ((doc = docs.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
+                        // for each to-be-processed entry work on the process tag
+                        final Collection<Object> proctags = doc.getFieldValues(CollectionSchema.process_sxt.getSolrFieldName());
+                        final String u = (String) doc.getFieldValue(CollectionSchema.sku.getSolrFieldName());
+                        final String i = (String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName());
+                        if (proctags == null || proctags.size() == 0) {
+                            // this should not happen since we collected the documents using a process_sxt:[* TO *] term
+                            ConcurrentLog.warn("CollectionConfiguration", "no process_sxt entry for url " + u + ", id=" + i);
+                            continue;
+                        }
+                        try {
+                            final DigestURL url = new DigestURL(u, ASCII.getBytes(i));
+                            final byte[] id = url.hash();
+                            final SolrInputDocument sid = byPartialUpdate ? new SolrInputDocument() : collection.toSolrInputDocument(doc, localOmitFields);
+                            sid.setField(CollectionSchema.id.getSolrFieldName(), i);
+                            for (final Object tag: proctags) try {
+
+                                // switch over tag types
+                                final ProcessType tagtype = ProcessType.valueOf((String) tag);
+
+                                if (tagtype == ProcessType.CITATION &&
+                                    collection.contains(CollectionSchema.cr_host_count_i) &&
+                                    collection.contains(CollectionSchema.cr_host_chance_d) &&
+                                    collection.contains(CollectionSchema.cr_host_norm_i)) {
+                                    final CRV crv = rankings.remove(ASCII.String(id)); // instead of 'get'ting the CRV, we also remove it because we will not need it again and free some memory here
+                                    if (crv != null) {
+                                        sid.setField(CollectionSchema.cr_host_count_i.getSolrFieldName(), crv.count);
+                                        sid.setField(CollectionSchema.cr_host_chance_d.getSolrFieldName(), crv.cr);
+                                        sid.setField(CollectionSchema.cr_host_norm_i.getSolrFieldName(), crv.crn);
+                                        proccount_citationchange.incrementAndGet();
                                     }
-                                    countcheck.incrementAndGet();
                                 }
-                            } catch (final InterruptedException e) {
-                                ConcurrentLog.logException(e);
+
+                                if (tagtype == ProcessType.UNIQUE) {
+                                    CollectionConfiguration.this.postprocessing_http_unique(segment, doc, sid, url);
+                                    CollectionConfiguration.this.postprocessing_www_unique(segment, doc, sid, url);
+                                    CollectionConfiguration.this.postprocessing_doublecontent(segment, uniqueURLs, doc, sid, url);
+                                }
+
+                            } catch (final IllegalArgumentException e) {}
+
+                            // compute references
+                            if (reference_computation) {
+                                final String hosthash = url.hosthash();
+                                if (!hostExtentCache.containsKey(hosthash)) {
+                                    final StringBuilder q = new StringBuilder();
+                                    q.append(CollectionSchema.host_id_s.getSolrFieldName()).append(":\"").append(hosthash).append("\" AND ").append(CollectionSchema.httpstatus_i.getSolrFieldName()).append(":200");
+                                    final long hostExtentCount = segment.fulltext().getDefaultConnector().getCountByQuery(q.toString());
+                                    hostExtentCache.put(hosthash, hostExtentCount);
+                                }
+                                if (CollectionConfiguration.this.postprocessing_references(rrCache, sid, url, hostExtentCache)) proccount_referencechange.incrementAndGet();
+                            }
+
+                            // all processing steps checked, remove the processing and harvesting key
+                            if (byPartialUpdate) {
+                                sid.setField(CollectionSchema.process_sxt.getSolrFieldName(), null); // setting this to null will cause a removal when doing a partial update
+                                sid.setField(CollectionSchema.harvestkey_s.getSolrFieldName(), null);
+                            }
+                            // with standard solr fields selected, the sid now contains the fields
+                            // id, http_unique_b, www_unique_b, references_i, references_internal_i, references_external_i, references_exthosts_i, host_extent_i
+                            // and the value for host_extent_i is by default 2147483647
+
+                            // send back to index in batches
+                            batch.add(sid);
+                            if (batch.size() >= POSTPROCESSING_BATCH_SIZE) failids.addAll(writeBatch(collectionConnector, batch, byPartialUpdate));
+                            final long thiscount = proccount.incrementAndGet(); allcount.incrementAndGet();
+                            if (thiscount % 100 == 0) {
+                                postprocessingActivity = "postprocessed " + thiscount + " from " + count + " collection documents; " +
+                                    (thiscount * 60000L / Math.max(1, System.currentTimeMillis() - start)) + " ppm; " +
+                                    ((System.currentTimeMillis() - start) * (count - thiscount) / thiscount / 60000) + " minutes remaining";
+                                ConcurrentLog.info("CollectionConfiguration", postprocessingActivity);
                             }
+                        } catch (final Throwable e1) {
+                            ConcurrentLog.logException(e1);
+                            failids.add(i);
                         }
-                    };
-                    rewriteThread[rewrite_start].start();
-                }
-                // wait for termination
-                for (int rewrite_start = 0; rewrite_start < concurrency; rewrite_start++) rewriteThread[rewrite_start].join();
+                        countcheck.incrementAndGet();
+                    }
+                    failids.addAll(writeBatch(collectionConnector, batch, byPartialUpdate));
+                    return null;
+                });
+                runAll(pool, units);
 
                 if (failids.size() > 0) {
                     ConcurrentLog.info("CollectionConfiguration", "cleanup_processing: deleting " + failids.size() + " documents which have permanent execution fails");
@@ -1502,230 +1581,253 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                             proccount_referencechange + " reference-count changes, " +
                             proccount_citationchange + " citation ranking changes.");
             }
-
-        } catch (final InterruptedException e2) {
-            ConcurrentLog.warn("CollectionConfiguration", e2.getMessage(), e2);
         } catch (final IOException e3) {
             ConcurrentLog.warn("CollectionConfiguration", e3.getMessage(), e3);
+        } finally {
+            collectionConnector.commit(true); // make changes available directly to prevent that the process repeats again
         }
-        collectionConnector.commit(true); // make changes available directly to prevent that the process repeats again
-	}
+    }
 
-	/**
-	 * Perform postprocessing steps on the webgraph core.
-	 * @param segment Solr segment.
-	 * @param webgraph webgraph schema configuration
-	 * @param webgraphquery query used to harvest items to postprocess in the webgraph collection
-	 * @param rankings postprocessed rankings
-	 * @param allcount global postprocessed documents count
-	 */
-	private void postprocessWebgraph(final Segment segment, final WebgraphConfiguration webgraph, String webgraphquery,
-			final Map<String, CRV> rankings, final AtomicInteger allcount) {
-		postprocessingActivity = "collecting host facets for webgraph cr calculation";
-		ConcurrentLog.info("CollectionConfiguration", postprocessingActivity);
-		final Set<String> omitFields = new HashSet<>();
-		omitFields.add(WebgraphSchema.process_sxt.getSolrFieldName());
-		omitFields.add(WebgraphSchema.harvestkey_s.getSolrFieldName());
-
-		// collect hosts from index which shall take part in citation computation
-		ReversibleScoreMap<String> webgraphhosts;
-		try {
-		    final Map<String, ReversibleScoreMap<String>> hostfacet = segment.fulltext().getWebgraphConnector().getFacets(webgraphquery, 10000000, WebgraphSchema.source_host_s.getSolrFieldName());
-		    webgraphhosts = hostfacet.get(WebgraphSchema.source_host_s.getSolrFieldName());
-		} catch (final IOException e2) {
-		    ConcurrentLog.logException(e2);
-		    webgraphhosts = new ClusteredScoreMap<>(true);
-		}
-		try {
-		    final long start = System.currentTimeMillis();
-		    for (final String host: webgraphhosts.keyList(true)) {
-		        if (webgraphhosts.get(host) <= 0) continue;
-		        final String hostfinal = host;
-		        // select all webgraph edges and modify their cr value
-		        postprocessingActivity = "writing cr values to webgraph for host " + host;
-		        ConcurrentLog.info("CollectionConfiguration", postprocessingActivity);
-		        final String patchquery = WebgraphSchema.source_host_s.getSolrFieldName() + ":\"" + host + "\" AND " + WebgraphSchema.process_sxt.getSolrFieldName() + AbstractSolrConnector.CATCHALL_DTERM;
-		        final long count = segment.fulltext().getWebgraphConnector().getCountByQuery("{!cache=false}" + patchquery);
-		        final int concurrency = Math.min((int) count, Math.max(1, Runtime.getRuntime().availableProcessors() / 4));
-		        ConcurrentLog.info("CollectionConfiguration", "collecting " + count + " documents from the webgraph, concurrency = " + concurrency);
-		        final BlockingQueue<SolrDocument> docs = segment.fulltext().getWebgraphConnector().concurrentDocumentsByQuery(
-		                patchquery,
-		                WebgraphSchema.source_chars_i.getSolrFieldName() + " asc",
-		                0, 100000000, Long.MAX_VALUE, concurrency + 1, concurrency, true
-		                // TODO: add field list and do partial updates
-		                );
-		        final AtomicInteger proccount = new AtomicInteger(0);
-		        final Thread[] t = new Thread[concurrency];
-		        for (int i = 0; i < t.length; i++) {
-		            t[i] = new Thread("CollectionConfiguration.postprocessing.webgraph-" + i) {
-		                @Override
-		                public void run() {
-		                    SolrDocument doc; String id;
-		                    try {
-		                        processloop: while ((doc = docs.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
-		                            try {
-		                                final SolrInputDocument sid = webgraph.toSolrInputDocument(doc, omitFields);
-		                                final Collection<Object> proctags = doc.getFieldValues(WebgraphSchema.process_sxt.getSolrFieldName());
-
-		                                for (final Object tag: proctags) try {
-
-		                                    // switch over tag types
-		                                    final ProcessType tagtype = ProcessType.valueOf((String) tag);
-
-		                                    // set cr values
-		                                    if (tagtype == ProcessType.CITATION) {
-		                                        if (segment.fulltext().useWebgraph() && webgraph.contains(WebgraphSchema.source_id_s) && webgraph.contains(WebgraphSchema.source_cr_host_norm_i)) {
-		                                            id = (String) doc.getFieldValue(WebgraphSchema.source_id_s.getSolrFieldName());
-		                                            final CRV crv = rankings.get(id);
-		                                            if (crv != null) {
-		                                                sid.setField(WebgraphSchema.source_cr_host_norm_i.getSolrFieldName(), crv.crn);
-		                                            }
-		                                        }
-		                                        if (webgraph.contains(WebgraphSchema.target_id_s) && webgraph.contains(WebgraphSchema.target_cr_host_norm_i)) {
-		                                            id = (String) doc.getFieldValue(WebgraphSchema.target_id_s.getSolrFieldName());
-		                                            final CRV crv = rankings.get(id);
-		                                            if (crv != null) {
-		                                                sid.setField(WebgraphSchema.target_cr_host_norm_i.getSolrFieldName(), crv.crn);
-		                                            }
-		                                        }
-		                                    }
-		                                } catch (final IllegalArgumentException e) {
-		                                    ConcurrentLog.logException(e);
-		                                }
-
-		                                // write document back to index
-		                                try {
-		                                    sid.removeField(WebgraphSchema.process_sxt.getSolrFieldName());
-		                                    sid.removeField(WebgraphSchema.harvestkey_s.getSolrFieldName());
-		                                    //segment.fulltext().getWebgraphConnector().deleteById((String) sid.getFieldValue(WebgraphSchema.id.getSolrFieldName()));
-		                                    segment.fulltext().getWebgraphConnector().add(sid);
-		                                } catch (final SolrException e) {
-		                                    ConcurrentLog.logException(e);
-		                                } catch (final IOException e) {
-		                                    ConcurrentLog.logException(e);
-		                                }
-		                                proccount.incrementAndGet();
-		                                allcount.incrementAndGet();
-		                                if (proccount.get() % 1000 == 0) {
-		                                    postprocessingActivity = "writing CitationRank values to webgraph for host " + hostfinal + "postprocessed " + proccount + " from " + count + " documents; " +
-		                                        (proccount.get() * 1000 / (System.currentTimeMillis() - start)) + " docs/second; " +
-		                                        ((System.currentTimeMillis() - start) * (count - proccount.get()) / proccount.get() / 60000) + " minutes remaining";
-		                                    ConcurrentLog.info("CollectionConfiguration", postprocessingActivity);
-		                                }
-		                            } catch (final Throwable e) {
-		                                ConcurrentLog.logException(e);
-		                                continue processloop;
-		                            }
-		                        }
-		                    } catch (final InterruptedException e) {
-		                        ConcurrentLog.warn("CollectionConfiguration", e.getMessage(), e);
-		                    }
-		                }
-		            };
-		            t[i].start();
-		        }
-		        for (int i = 0; i < t.length; i++) try {
-		            t[i].join(10000);
-		            if (t[i].isAlive()) t[i].interrupt();
-		        } catch (final InterruptedException e) {}
-
-		        if (count != proccount.get()) ConcurrentLog.warn("CollectionConfiguration", "ambiguous webgraph document count for host " + host + ": expected=" + count + ", counted=" + proccount);
-		    }
-		} catch (final IOException e2) {
-		    ConcurrentLog.warn("CollectionConfiguration", e2.getMessage(), e2);
-		}
-	}
+    /**
+     * Perform postprocessing steps on the webgraph core, one work unit for each source host.
+     * @param segment Solr segment.
+     * @param webgraph webgraph schema configuration
+     * @param webgraphquery query used to harvest items to postprocess in the webgraph collection
+     * @param rankings postprocessed rankings
+     * @param allcount global postprocessed documents count
+     * @param pool the threads which process the work units
+     * @throws InterruptedException if the postprocessing was interrupted
+     */
+    private void postprocessWebgraph(final Segment segment, final WebgraphConfiguration webgraph, final String webgraphquery,
+            final Map<String, CRV> rankings, final AtomicInteger allcount, final ThreadPoolExecutor pool) throws InterruptedException {
+        postprocessingActivity = "collecting host facets for webgraph cr calculation";
+        ConcurrentLog.info("CollectionConfiguration", postprocessingActivity);
+        final Set<String> omitFields = new HashSet<>();
+        omitFields.add(WebgraphSchema.process_sxt.getSolrFieldName());
+        omitFields.add(WebgraphSchema.harvestkey_s.getSolrFieldName());
+        final SolrConnector webgraphConnector = segment.fulltext().getWebgraphConnector();
 
-	/**
-	 * Patches the citation index for links with canonical tags and perform the citation rank computation
-	 * @param segment Solr segment
-	 * @param rrCache reference report cache for the segment
-	 * @param collectionConnector default connector to the Solr segment
-	 * @param collection1hosts hosts from index which shall take part in citation computation
-	 * @return the ranking map
-	 */
-	private Map<String, CRV> createRankingMap(final Segment segment, final ReferenceReportCache rrCache,
-			final SolrConnector collectionConnector, ReversibleScoreMap<String> collection1hosts) {
-		final Map<String, CRV> rankings = new ConcurrentHashMap<>();
+        // collect hosts from index which shall take part in citation computation
+        ReversibleScoreMap<String> webgraphhosts;
         try {
-            final int concurrency = Math.min(collection1hosts.size(), Runtime.getRuntime().availableProcessors());
-            postprocessingActivity = "collecting CitationRank for " + collection1hosts.size() + " hosts, concurrency = " + concurrency;
-            ConcurrentLog.info("CollectionConfiguration", postprocessingActivity);
-            int countcheck = 0;
-            for (final String host: collection1hosts.keyList(true)) {
-                // Patch the citation index for links with canonical tags.
-                // This shall fulfill the following requirement:
-                // If a document A links to B and B contains a 'canonical C', then the citation rank computation shall consider that A links to C and B does not link to C.
-                // To do so, we first must collect all canonical links, find all references to them, get the anchor list of the documents and patch the citation reference of these links
-                final String patchquery = CollectionSchema.host_s.getSolrFieldName() + ":" + host + " AND " + CollectionSchema.canonical_s.getSolrFieldName() + AbstractSolrConnector.CATCHALL_DTERM;
-                final long patchquerycount = collectionConnector.getCountByQuery("{!cache=false}" + patchquery);
-                final BlockingQueue<SolrDocument> documents_with_canonical_tag = collectionConnector.concurrentDocumentsByQuery(patchquery, CollectionSchema.url_chars_i.getSolrFieldName() + " asc", 0, 100000000, Long.MAX_VALUE, 20, 1, true,
-                        CollectionSchema.id.getSolrFieldName(), CollectionSchema.sku.getSolrFieldName(), CollectionSchema.canonical_s.getSolrFieldName());
-                SolrDocument doc_B;
-                int patchquerycountcheck = 0;
-                try {
-                    while ((doc_B = documents_with_canonical_tag.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
-                        // find all documents which link to the canonical doc
-                        final DigestURL doc_C_url = new DigestURL((String) doc_B.getFieldValue(CollectionSchema.canonical_s.getSolrFieldName()));
-                        final byte[] doc_B_id = ASCII.getBytes(((String) doc_B.getFieldValue(CollectionSchema.id.getSolrFieldName())));
-                        // we remove all references to B, because these become references to C
-                        if (segment.connectedCitation()) {
-                            final ReferenceContainer<CitationReference> doc_A_ids = segment.urlCitation().remove(doc_B_id);
-                            if (doc_A_ids == null) {
-                                //System.out.println("*** document with canonical but no referrer: " + doc_B.getFieldValue(CollectionSchema.sku.getSolrFieldName()));
-                                continue; // the document has a canonical tag but no referrer?
-                            }
-                            final Iterator<CitationReference> doc_A_ids_iterator = doc_A_ids.entries();
-                            // for each of the referrer A of B, set A as a referrer of C
-                            while (doc_A_ids_iterator.hasNext()) {
-                                final CitationReference doc_A_citation = doc_A_ids_iterator.next();
-                                segment.urlCitation().add(doc_C_url.hash(), doc_A_citation);
+            final Map<String, ReversibleScoreMap<String>> hostfacet = webgraphConnector.getFacets(webgraphquery, 10000000, WebgraphSchema.source_host_s.getSolrFieldName());
+            webgraphhosts = hostfacet.get(WebgraphSchema.source_host_s.getSolrFieldName());
+        } catch (final IOException e2) {
+            ConcurrentLog.logException(e2);
+            webgraphhosts = new ClusteredScoreMap<>(true);
+        }
+        final ReversibleScoreMap<String> hostcounts = webgraphhosts;
+        final long start = System.currentTimeMillis();
+        final List<Callable<Void>> units = new ArrayList<>();
+        for (final String host: hostcounts.keyList(false)) {
+            if (hostcounts.get(host) <= 0) continue;
+            // select all webgraph edges and modify their cr value
+            final String patchquery = WebgraphSchema.source_host_s.getSolrFieldName() + ":\"" + host + "\" AND (" + webgraphquery + ")";
+            final List<String> unitqueries = partition(WebgraphSchema.id.getSolrFieldName(), patchquery, hostcounts.get(host));
+            final AtomicInteger proccount = new AtomicInteger(0);
+            final AtomicInteger unitcount = new AtomicInteger(unitqueries.size());
+            for (final String unitquery: unitqueries) units.add(() -> {
+                final BlockingQueue<SolrDocument> docs = webgraphConnector.concurrentDocumentsByQuery(
+                        "{!cache=false}" + unitquery,
+                        WebgraphSchema.source_chars_i.getSolrFieldName() + " asc",
+                        0, 100000000, Long.MAX_VALUE, 2 * POSTPROCESSING_BATCH_SIZE, 1, true
+                        // TODO: add field list and do partial updates
+                        );
+                final List<SolrInputDocument> batch = new ArrayList<>(POSTPROCESSING_BATCH_SIZE);
+                SolrDocument doc; String id;
+                while ((doc = docs.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
+                    try {
+                        final SolrInputDocument sid = webgraph.toSolrInputDocument(doc, omitFields);
+                        final Collection<Object> proctags = doc.getFieldValues(WebgraphSchema.process_sxt.getSolrFieldName());
+
+                        for (final Object tag: proctags) try {
+
+                            // switch over tag types
+                            final ProcessType tagtype = ProcessType.valueOf((String) tag);
+
+                            // set cr values
+                            if (tagtype == ProcessType.CITATION) {
+                                if (webgraph.contains(WebgraphSchema.source_id_s) && webgraph.contains(WebgraphSchema.source_cr_host_norm_i)) {
+                                    id = (String) doc.getFieldValue(WebgraphSchema.source_id_s.getSolrFieldName());
+                                    final CRV crv = rankings.get(id);
+                                    if (crv != null) {
+                                        sid.setField(WebgraphSchema.source_cr_host_norm_i.getSolrFieldName(), crv.crn);
+                                    }
+                                }
+                                if (webgraph.contains(WebgraphSchema.target_id_s) && webgraph.contains(WebgraphSchema.target_cr_host_norm_i)) {
+                                    id = (String) doc.getFieldValue(WebgraphSchema.target_id_s.getSolrFieldName());
+                                    final CRV crv = rankings.get(id);
+                                    if (crv != null) {
+                                        sid.setField(WebgraphSchema.target_cr_host_norm_i.getSolrFieldName(), crv.crn);
+                                    }
+                                }
                             }
+                        } catch (final IllegalArgumentException e) {
+                            ConcurrentLog.logException(e);
                         }
-                        patchquerycountcheck++;
-                        if (MemoryControl.shortStatus()) {
-                            ConcurrentLog.warn("CollectionConfiguration", "terminated canonical collection during postprocessing because of short memory");
-                            break;
+
+                        // write document back to index in batches
+                        sid.removeField(WebgraphSchema.process_sxt.getSolrFieldName());
+                        sid.removeField(WebgraphSchema.harvestkey_s.getSolrFieldName());
+                        batch.add(sid);
+                        if (batch.size() >= POSTPROCESSING_BATCH_SIZE) writeBatch(webgraphConnector, batch, false);
+                        final int c = proccount.incrementAndGet();
+                        allcount.incrementAndGet();
+                        if (c % 1000 == 0) {
+                            postprocessingActivity = "writing CitationRank values to webgraph for host " + host + " postprocessed " + c + " documents; " +
+                                (allcount.get() * 1000L / Math.max(1, System.currentTimeMillis() - start)) + " docs/second";
+                            ConcurrentLog.info("CollectionConfiguration", postprocessingActivity);
                         }
+                    } catch (final Throwable e) {
+                        ConcurrentLog.logException(e);
                     }
-                } catch (final InterruptedException e) {
-                    ConcurrentLog.logException(e);
-                } catch (final SpaceExceededException e) {
-                    ConcurrentLog.logException(e);
                 }
-                if (patchquerycount != patchquerycountcheck) ConcurrentLog.warn("CollectionConfiguration", "ambiguous patchquery count for host " + host + ": expected=" + patchquerycount + ", counted=" + patchquerycountcheck);
+                writeBatch(webgraphConnector, batch, false);
+                if (unitcount.decrementAndGet() == 0 && hostcounts.get(host) != proccount.get()) {
+                    ConcurrentLog.warn("CollectionConfiguration", "ambiguous webgraph document count for host " + host + ": expected=" + hostcounts.get(host) + ", counted=" + proccount);
+                }
+                return null;
+            });
+        }
+        postprocessingActivity = "writing CitationRank values to webgraph for " + hostcounts.size() + " hosts in " + units.size() + " work units";
+        ConcurrentLog.info("CollectionConfiguration", postprocessingActivity);
+        runAll(pool, units);
+    }
 
-                // do the citation rank computation
-                if (collection1hosts.get(host) <= 0) continue;
-                // select all documents for each host
-                final CRHost crh = new CRHost(segment, rrCache, host, 0.85d, 6);
-                int convergence_attempts = 0;
-                while (convergence_attempts++ < 30) {
-                    ConcurrentLog.info("CollectionConfiguration", "convergence step " + convergence_attempts + " for host " + host + " ...");
-                    if (crh.convergenceStep()) break;
-                    if (MemoryControl.shortStatus()) {
-                        ConcurrentLog.warn("CollectionConfiguration", "terminated convergenceStep during postprocessing because of short memory");
-                        break;
+    /**
+     * Patches the citation index for links with canonical tags and perform the citation rank computation.
+     * The hosts are computed in parallel; the values of every finished host are written to the checkpoint,
+     * and hosts with values in the checkpoint are not computed again as long as their number of documents has not changed.
+     * @param segment Solr segment
+     * @param rrCache reference report cache for the segment
+     * @param collectionConnector default connector to the Solr segment
+     * @param collection1hosts hosts from index which shall take part in citation computation
+     * @param checkpoint the values of the hosts of a previous, interrupted run
+     * @param pool the threads which compute the hosts
+     * @return the ranking map
+     * @throws InterruptedException if the postprocessing was interrupted
+     */
+    private Map<String, CRV> createRankingMap(final Segment segment, final ReferenceReportCache rrCache,
+            final SolrConnector collectionConnector, final ReversibleScoreMap<String> collection1hosts,
+            final PostprocessingCheckpoint checkpoint, final ThreadPoolExecutor pool) throws InterruptedException {
+        final Map<String, CRV> rankings = new ConcurrentHashMap<>();
+        final List<String> hosts = new ArrayList<>(collection1hosts.keyList(false));
+
+        // Patch the citation index for links with canonical tags, for all hosts before the citation rank computation of any host
+        postprocessingActivity = "patching citations of canonical links for " + hosts.size() + " hosts, concurrency = " + pool.getCorePoolSize();
+        ConcurrentLog.info("CollectionConfiguration", postprocessingActivity);
+        final List<Callable<Void>> patches = new ArrayList<>(hosts.size());
+        for (final String host: hosts) patches.add(() -> {
+            this.patchCanonicalCitations(segment, collectionConnector, host);
+            return null;
+        });
+        runAll(pool, patches);
+
+        // do the citation rank computation
+        postprocessingActivity = "collecting CitationRank for " + hosts.size() + " hosts, " + checkpoint.size() + " hosts in checkpoint, concurrency = " + pool.getCorePoolSize();
+        ConcurrentLog.info("CollectionConfiguration", postprocessingActivity);
+        final AtomicInteger countcheck = new AtomicInteger(0);
+        final AtomicBoolean shortMemory = new AtomicBoolean(false);
+        final List<Callable<Void>> ranks = new ArrayList<>(hosts.size());
+        for (final String host: hosts) {
+            if (collection1hosts.get(host) <= 0) continue;
+            ranks.add(() -> {
+                if (shortMemory.get()) return null;
+                final long hostcount = collectionConnector.getCountByQuery("{!cache=false raw f=" + CollectionSchema.host_s.getSolrFieldName() + "}" + host);
+                Map<String, CRV> crn = checkpoint.take(host, hostcount);
+                if (crn == null) {
+                    // select all documents for each host
+                    final CRHost crh = new CRHost(segment, rrCache, host, 0.85d, 6);
+                    int convergence_attempts = 0;
+                    while (convergence_attempts++ < 30) {
+                        if (ConcurrentLog.isFine("CollectionConfiguration")) ConcurrentLog.fine("CollectionConfiguration", "convergence step " + convergence_attempts + " for host " + host + " ...");
+                        if (crh.convergenceStep()) break;
+                        if (MemoryControl.shortStatus()) {
+                            ConcurrentLog.warn("CollectionConfiguration", "terminated convergenceStep during postprocessing because of short memory");
+                            break;
+                        }
                     }
+                    ConcurrentLog.info("CollectionConfiguration", "convergence for host " + host + " after " + convergence_attempts + " steps");
+                    // we have now the cr for all documents of a specific host; we store them for later use
+                    crn = crh.normalize();
+                    checkpoint.put(host, crh.cr_host_count, crn);
+                } else {
+                    ConcurrentLog.info("CollectionConfiguration", "CitationRank for host " + host + " taken from checkpoint");
                 }
-                ConcurrentLog.info("CollectionConfiguration", "convergence for host " + host + " after " + convergence_attempts + " steps");
-                // we have now the cr for all documents of a specific host; we store them for later use
-                final Map<String, CRV> crn = crh.normalize();
                 //crh.log(crn);
                 rankings.putAll(crn); // accumulate this here for usage in document update later
+                countcheck.incrementAndGet();
                 if (MemoryControl.shortStatus()) {
                     ConcurrentLog.warn("CollectionConfiguration", "terminated crn akkumulation during postprocessing because of short memory");
+                    shortMemory.set(true);
+                }
+                return null;
+            });
+        }
+        runAll(pool, ranks);
+        if (collection1hosts.size() != countcheck.get()) ConcurrentLog.warn("CollectionConfiguration", "ambiguous host count: expected=" + collection1hosts.size() + ", counted=" + countcheck);
+
+        // the documents of hosts which were finished in an interrupted run are not selected again, but the webgraph needs their values for the link targets
+        if (segment.fulltext().useWebgraph() && !shortMemory.get()) {
+            for (final String host: checkpoint.hosts()) try {
+                final Map<String, CRV> crn = checkpoint.take(host, collectionConnector.getCountByQuery("{!cache=false raw f=" + CollectionSchema.host_s.getSolrFieldName() + "}" + host));
+                if (crn != null) rankings.putAll(crn);
+            } catch (final IOException e) {
+                ConcurrentLog.logException(e);
+            }
+        }
+        return rankings;
+    }
+
+    /**
+     * Patch the citation index for links with canonical tags.
+     * This shall fulfill the following requirement:
+     * If a document A links to B and B contains a 'canonical C', then the citation rank computation shall consider that A links to C and B does not link to C.
+     * To do so, we first must collect all canonical links, find all references to them, get the anchor list of the documents and patch the citation reference of these links
+     * @param segment Solr segment
+     * @param collectionConnector default connector to the Solr segment
+     * @param host the host of the documents with canonical tags
+     * @throws IOException
+     */
+    private void patchCanonicalCitations(final Segment segment, final SolrConnector collectionConnector, final String host) throws IOException {
+        final String patchquery = CollectionSchema.host_s.getSolrFieldName() + ":" + host + " AND " + CollectionSchema.canonical_s.getSolrFieldName() + AbstractSolrConnector.CATCHALL_DTERM;
+        final long patchquerycount = collectionConnector.getCountByQuery("{!cache=false}" + patchquery);
+        final BlockingQueue<SolrDocument> documents_with_canonical_tag = collectionConnector.concurrentDocumentsByQuery(patchquery, CollectionSchema.url_chars_i.getSolrFieldName() + " asc", 0, 100000000, Long.MAX_VALUE, 20, 1, true,
+                CollectionSchema.id.getSolrFieldName(), CollectionSchema.sku.getSolrFieldName(), CollectionSchema.canonical_s.getSolrFieldName());
+        SolrDocument doc_B;
+        int patchquerycountcheck = 0;
+        try {
+            while ((doc_B = documents_with_canonical_tag.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
+                // find all documents which link to the canonical doc
+                final DigestURL doc_C_url = new DigestURL((String) doc_B.getFieldValue(CollectionSchema.canonical_s.getSolrFieldName()));
+                final byte[] doc_B_id = ASCII.getBytes(((String) doc_B.getFieldValue(CollectionSchema.id.getSolrFieldName())));
+                // we remove all references to B, because these become references to C
+                if (segment.connectedCitation()) {
+                    final ReferenceContainer<CitationReference> doc_A_ids = segment.urlCitation().remove(doc_B_id);
+                    if (doc_A_ids == null) {
+                        //System.out.println("*** document with canonical but no referrer: " + doc_B.getFieldValue(CollectionSchema.sku.getSolrFieldName()));
+                        continue; // the document has a canonical tag but no referrer?
+                    }
+                    final Iterator<CitationReference> doc_A_ids_iterator = doc_A_ids.entries();
+                    // for each of the referrer A of B, set A as a referrer of C
+                    while (doc_A_ids_iterator.hasNext()) {
+                        final CitationReference doc_A_citation = doc_A_ids_iterator.next();
+                        segment.urlCitation().add(doc_C_url.hash(), doc_A_citation);
+                    }
+                }
+                patchquerycountcheck++;
+                if (MemoryControl.shortStatus()) {
+                    ConcurrentLog.warn("CollectionConfiguration", "terminated canonical collection during postprocessing because of short memory");
                     break;
                 }
-                countcheck++;
             }
-            if (collection1hosts.size() != countcheck) ConcurrentLog.warn("CollectionConfiguration", "ambiguous host count: expected=" + collection1hosts.size() + ", counted=" + countcheck);
-        } catch (final IOException e2) {
-            ConcurrentLog.logException(e2);
-            collection1hosts = new ClusteredScoreMap<>(true);
+        } catch (final InterruptedException e) {
+            ConcurrentLog.logException(e);
+        } catch (final SpaceExceededException e) {
+            ConcurrentLog.logException(e);
         }
-		return rankings;
-	}
+        if (patchquerycount != patchquerycountcheck) ConcurrentLog.warn("CollectionConfiguration", "ambiguous patchquery count for host " + host + ": expected=" + patchquerycount + ", counted=" + patchquerycountcheck);
+    }
 
 	/**
 	 * Search in the segment any document having the same url as doc but with the opposite secure/unsecure (https or http) version of the protocol.
@@ -1935,7 +2037,7 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
 
 
 
-    private static final class CRV {
+    static final class CRV {
         public double cr;
         public int crn, count;
         public CRV(final int count, final double cr, final int crn) {this.count = count; this.cr = cr; this.crn = crn;}
@@ -0,0 +1,198 @@
+/**
+ *  PostprocessingCheckpoint
+ *  Copyright 2026 by YaCy contributors
+ *  First released 18.10.2026 at https://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.search.schema;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.search.schema.CollectionConfiguration.CRV;
+
+/**
+ * The CitationRank values of the hosts which are already computed in a postprocessing run for a harvestkey.
+ * The convergence of the CitationRank is the expensive part of the postprocessing; if the run is interrupted,
+ * the next run takes the values of the finished hosts from the checkpoint. The documents themselves need no
+ * checkpoint: a document which is written back loses its process tag and is not selected again.
+ *
+ * The checkpoint is an append-only file with tab-separated lines:
+ * <pre>
+ * H host count     values of a host with count documents follow
+ * id cr crn        one line for each document of the host
+ * E                end of the values of the host
+ * </pre>
+ * Values of a host without the end line were interrupted while writing and are ignored.
+ */
+final class PostprocessingCheckpoint implements Closeable {
+
+    private final File file;
+    private final Map<String, Host> hosts;
+    private Writer writer;
+
+    private static final class Host {
+        private final int count;
+        private final Map<String, CRV> rankings;
+        private Host(final int count, final Map<String, CRV> rankings) {
+            this.count = count;
+            this.rankings = rankings;
+        }
+    }
+
+    /**
+     * @param segmentPath the directory of the segment
+     * @param harvestkey the harvestkey of the postprocessing run, null for a run over all documents
+     * @return the file of the checkpoint
+     */
+    static File file(final File segmentPath, final String harvestkey) {
+        return new File(segmentPath, "postprocessing." + (harvestkey == null ? "all" : harvestkey) + ".checkpoint");
+    }
+
+    /**
+     * remove the checkpoints of all harvestkeys
+     * @param segmentPath the directory of the segment
+     */
+    static void deleteAll(final File segmentPath) {
+        final File[] files = segmentPath.listFiles((dir, name) -> name.startsWith("postprocessing.") && name.endsWith(".checkpoint"));
+        if (files == null) return;
+        for (final File f: files) {
+            if (!f.delete()) f.deleteOnExit();
+        }
+    }
+
+    /**
+     * open a checkpoint and load the values of a previous run
+     * @param file the checkpoint file
+     */
+    PostprocessingCheckpoint(final File file) {
+        this.file = file;
+        this.hosts = new ConcurrentHashMap<>();
+        this.writer = null;
+        if (file.exists()) load();
+    }
+
+    private void load() {
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(this.file), StandardCharsets.UTF_8))) {
+            String line, host = null;
+            int count = 0;
+            Map<String, CRV> rankings = null;
+            while ((line = reader.readLine()) != null) {
+                final String[] s = line.split("\t", -1);
+                try {
+                    if (s.length == 3 && "H".equals(s[0])) {
+                        host = s[1];
+                        count = Integer.parseInt(s[2]);
+                        rankings = new HashMap<>();
+                    } else if (s.length == 1 && "E".equals(s[0]) && rankings != null) {
+                        this.hosts.put(host, new Host(count, rankings));
+                        rankings = null;
+                    } else if (s.length == 3 && rankings != null) {
+                        rankings.put(s[0], new CRV(count, Double.parseDouble(s[1]), Integer.parseInt(s[2])));
+                    } else {
+                        rankings = null; // a broken host, wait for the next H line
+                    }
+                } catch (final NumberFormatException e) {
+                    rankings = null;
+                }
+            }
+        } catch (final IOException e) {
+            ConcurrentLog.warn("CollectionConfiguration", "cannot read postprocessing checkpoint " + this.file + ": " + e.getMessage());
+            this.hosts.clear();
+        }
+    }
+
+    /**
+     * @return the number of hosts with values in the checkpoint
+     */
+    int size() {
+        return this.hosts.size();
+    }
+
+    /**
+     * @return the names of the hosts with values in the checkpoint
+     */
+    Set<String> hosts() {
+        return new HashSet<>(this.hosts.keySet());
+    }
+
+    /**
+     * take the values of a host which were computed before; the values are removed from the memory of the checkpoint but not from its file
+     * @param host the host name
+     * @param count the current number of documents of the host
+     * @return the values or null if the host is not in the checkpoint or if the number of documents has changed since
+     */
+    Map<String, CRV> take(final String host, final long count) {
+        final Host h = this.hosts.remove(host);
+        if (h == null || h.count != count) return null;
+        return h.rankings;
+    }
+
+    /**
+     * store the values of a host; the values are written to the file before the method returns
+     * @param host the host name
+     * @param count the number of documents of the host, used to check the values when they are loaded again
+     * @param rankings the values
+     */
+    synchronized void put(final String host, final int count, final Map<String, CRV> rankings) {
+        try {
+            if (this.writer == null) this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(this.file, true), StandardCharsets.UTF_8));
+            this.writer.write("H\t" + host + "\t" + count + "\n");
+            for (final Map.Entry<String, CRV> entry: rankings.entrySet()) {
+                this.writer.write(entry.getKey() + "\t" + entry.getValue().cr + "\t" + entry.getValue().crn + "\n");
+            }
+            this.writer.write("E\n");
+            this.writer.flush();
+        } catch (final IOException e) {
+            ConcurrentLog.warn("CollectionConfiguration", "cannot write postprocessing checkpoint " + this.file + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (this.writer == null) return;
+        try {
+            this.writer.close();
+        } catch (final IOException e) {
+        }
+        this.writer = null;
+    }
+
+    /**
+     * close and remove the checkpoint after a complete postprocessing run
+     */
+    synchronized void delete() {
+        close();
+        this.hosts.clear();
+        if (this.file.exists() && !this.file.delete()) this.file.deleteOnExit();
+    }
+}
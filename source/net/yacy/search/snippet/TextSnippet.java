@@ -32,6 +32,7 @@ import java.util.Iterator;
 import java.util.Locale;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Pattern;
 
 import net.yacy.cora.document.encoding.ASCII;
@@ -42,6 +43,7 @@ import net.yacy.cora.protocol.ClientIdentification;
 import net.yacy.cora.storage.ARC;
 import net.yacy.cora.storage.ConcurrentARC;
 import net.yacy.cora.storage.HandleSet;
+import net.yacy.cora.storage.TinyLFUARC;
 import net.yacy.cora.util.ByteArray;
 import net.yacy.cora.util.ByteBuffer;
 import net.yacy.crawler.retrieval.Request;
@@ -107,9 +109,23 @@ public class TextSnippet implements Comparable<TextSnippet>, Comparator<TextSnip
             Pattern.compile("(?m)^\\s{0,3}(#{1,6}\\s+|>\\s+|[-*+]\\s+|\\d+\\.\\s+)");
 
     public static class Cache {
-        private final ARC<String, String> cache;
+        private volatile ARC<String, String> cache;
+        private final LongAdder hit, miss, insert; // for statistics only
         public Cache() {
             this.cache = new ConcurrentARC<String, String>(MAX_CACHE, Math.min(32, 2 * Runtime.getRuntime().availableProcessors()));
+            this.hit = new LongAdder();
+            this.miss = new LongAdder();
+            this.insert = new LongAdder();
+        }
+
+        /**
+         * select the implementation of the cache; the cache is emptied if the implementation changes
+         * @param tinyLFU true to use a TinyLFUARC, false to use a ConcurrentARC
+         */
+        public void setTinyLFU(final boolean tinyLFU) {
+            if (tinyLFU == (this.cache instanceof TinyLFUARC)) return;
+            final int partitions = Math.min(32, 2 * Runtime.getRuntime().availableProcessors());
+            this.cache = tinyLFU ? new TinyLFUARC<String, String>(MAX_CACHE, partitions) : new ConcurrentARC<String, String>(MAX_CACHE, partitions);
         }
         public void put(final String wordhashes, final String urlhash, final String snippet) {
             // generate key
@@ -117,17 +133,44 @@ public class TextSnippet implements Comparable<TextSnippet>, Comparator<TextSnip
 
             // do nothing if snippet is known or otherwise learn new snippet
             this.cache.insertIfAbsent(key, snippet);
+            this.insert.increment();
         }
 
         public String get(final String wordhashes, final String urlhash) {
             // generate key
             final String key = urlhash + wordhashes;
-            return this.cache.get(key);
+            final String snippet = this.cache.get(key);
+            if (snippet == null) this.miss.increment(); else this.hit.increment();
+            return snippet;
         }
 
         public boolean contains(final String wordhashes, final String urlhash) {
             return this.cache.containsKey(urlhash + wordhashes);
         }
+
+        public int size() {
+            return this.cache.size();
+        }
+
+        public long hitCount() {
+            return this.hit.sum();
+        }
+
+        public long missCount() {
+            return this.miss.sum();
+        }
+
+        public long insertCount() {
+            return this.insert.sum();
+        }
+
+        /**
+         * @return the number of entries which the TinyLFUARC evicted, or -1 if the cache is a ConcurrentARC
+         */
+        public long evictionCount() {
+            final ARC<String, String> c = this.cache;
+            return c instanceof TinyLFUARC ? ((TinyLFUARC<String, String>) c).evictionCount() : -1;
+        }
     }
 
     public static final Cache snippetsCache = new Cache();
@@ -47,15 +47,19 @@
 package net.yacy.server.http;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.PushbackInputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.encoding.UTF8;
@@ -119,11 +123,16 @@ import net.yacy.server.serverObjects;
  * </ul>
  * <i>#(alternative)#::#{repeat}##[test]##{/repeat}##(/alternative)#</i><br>
  * would be adressed as "alternative_repeat_"+number+"_test"
+ * <p>
+ * <b>Compilation</b><br>
+ * A template is parsed once into an immutable tree of {@link Template} elements which is rendered
+ * for every request. Template files are compiled on first use and cached until their modification
+ * time changes. Server side includes (&lt;!--#include virtual="file.html" --&gt;) are recognized
+ * while compiling, their path may contain templates.
  */
 public final class TemplateEngine {
 
     private final static byte hashChar = (byte)'#';
-    private final static byte[] slashChar = {(byte)'/'};
     private final static byte pcChar  = (byte)'%';
     private final static byte[] dpdpa = "::".getBytes();
 
@@ -133,353 +142,526 @@ public final class TemplateEngine {
     private final static byte[] pClose = {rbr, hashChar};
 
     private final static byte lcbr  = (byte)'{';
-    private final static byte rcbr  = (byte)'}';
-    private final static byte[] mOpen  = {hashChar, lcbr};
-    private final static byte[] mClose = {rcbr, hashChar};
+    private final static byte[] mClose = {(byte)'}', hashChar};
 
     private final static byte lrbr  = (byte)'(';
-    private final static byte rrbr  = (byte)')';
-    private final static byte[] aOpen  = {hashChar, lrbr};
-    private final static byte[] aClose = {rrbr, hashChar};
+    private final static byte[] aClose = {(byte)')', hashChar};
 
     //private final static byte[] iOpen  = {hashChar, pcChar};
     private final static byte[] iClose = {pcChar, hashChar};
 
-    private final static byte[] ul = "_".getBytes();
-
-    private final static byte[] alternative_which = " type=\"alternative\" which=\"".getBytes();
-    private final static byte[] multi_num = " type=\"multi\" num=\"".getBytes();
-    private final static byte[] open_endtag = "</".getBytes();
-    private final static byte[] close_quotetagn = "\">\n".getBytes();
-    private final static byte[] close_tagn = ">\n".getBytes();
     private final static byte[] PP = "%%".getBytes();
-    private final static byte[] hash_brackopen_slash = "#(/".getBytes();
-    private final static byte[] brackclose_hash = ")#".getBytes();
+
+    private final static byte[] ssiOpen = "<!--#include virtual=\"".getBytes();
+    private final static byte[] ssiClose = "-->".getBytes();
 
     private final static byte[] UNRESOLVED_PATTERN = "-UNRESOLVED_PATTERN-".getBytes();
 
+    /** alternatives selected by name are compiled on demand, but only this number of names is cached per alternative */
+    private final static int MAX_NAMED_ALTERNATIVES = 100;
+
+    private final static Map<File, Template> templateCache = new ConcurrentHashMap<File, Template>();
+    private final static Map<File, Template> includeCache = new ConcurrentHashMap<File, Template>();
+
     /**
-     * transfer until a specified pattern is found; everything but the pattern is transfered so far
-     * the function returns true, if the pattern is found
+     * Handler for server side includes found in a template
      */
-    private final static boolean transferUntil(final PushbackInputStream i, final OutputStream o, final byte[] pattern) throws IOException {
-        int b, bb;
-        boolean equal;
-        while ((b = i.read()) > 0) {
-            if ((b & 0xFF) == pattern[0]) {
-                // read the whole pattern
-                equal = true;
-                lo: for (int n = 1; n < pattern.length; n++) {
-                    if (((bb = i.read()) & 0xFF) != pattern[n]) {
-                        // push back all
-                        i.unread(bb);
-                        equal = false;
-                        for (int nn = n - 1; nn > 0; nn--) i.unread(pattern[nn]);
-                        break lo;
-                    }
-                }
-                if (equal) return true;
-            }
-            o.write(b);
-        }
-        return false;
+    public interface SSIHandler {
+        /**
+         * include the resource at the given path into the output
+         * @param path the rendered path of the include directive
+         */
+        public void include(String path) throws IOException;
     }
 
-    private final static boolean transferUntil(final PushbackInputStream i, final OutputStream o, final byte p) throws IOException {
-        int b;
-        while ((b = i.read()) > 0) {
-            if ((b & 0xFF) == p) return true;
-            o.write(b);
+    /**
+     * A compiled template: an immutable tree of text and template elements which can be
+     * rendered concurrently with different patterns.
+     */
+    public static final class Template {
+
+        private final Node[] nodes;
+        private final long lastModified, length;
+
+        private Template(final Node[] nodes, final long lastModified, final long length) {
+            this.nodes = nodes;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        /**
+         * render the template
+         * @param servletname name used in log messages
+         * @param out the output, it is not flushed or closed
+         * @param pattern the template values, must not be null
+         * @param ssi handler for server side includes; if null, include directives are written as they are
+         */
+        public void write(final String servletname, final OutputStream out, final serverObjects pattern, final SSIHandler ssi) throws IOException {
+            writeNodes(this.nodes, new Context(servletname, out, pattern, ssi), "");
         }
-        return false;
     }
 
+    /**
+     * Reads a input stream, and writes the data with replaced templates on a output stream
+     */
     public final static void writeTemplate(final String servletname, final InputStream in, final OutputStream out, final serverObjects pattern) throws IOException {
         if (pattern == null) {
             FileUtils.copy(in, out);
         } else {
-            writeTemplate(servletname, in, out, pattern, new byte[0]);
+            compileTemplate(servletname, in).write(servletname, out, pattern, null);
         }
     }
 
     /**
-     * Reads a input stream, and writes the data with replaced templates on a output stream
+     * compile a template without caching it
+     * @param servletname name used in log messages
+     * @param in the template source
+     * @return the compiled template
      */
-    private final static byte[] writeTemplate(final String servletname, final InputStream in, final OutputStream out, final serverObjects pattern, final byte[] prefix) throws IOException {
-        final PushbackInputStream pis = new PushbackInputStream(in, 100);
-        final ByteArrayOutputStream keyStream = new ByteArrayOutputStream(4048);
-        byte[] key;
-        byte[] multi_key;
-        byte[] replacement;
-        int bb;
-        final ByteBuffer structure = new ByteBuffer();
-        final String clientbrowserlang = pattern.get("clientlanguage"); // preferred language or null (used for include files)
-        while (transferUntil(pis, out, hashChar)) {
-            bb = pis.read();
-            keyStream.reset();
-
-            // #{
-            if ((bb & 0xFF) == lcbr) { //multi
-                if (transferUntil(pis, keyStream, mClose)) { //close tag
-                    //multi_key =  "_" + keyStream.toString(); //for _Key
-                    bb = pis.read();
-                    if ((bb & 0xFF) != 10){ //kill newline
-                        pis.unread(bb);
-                    }
-                    multi_key = keyStream.toByteArray(); //IMPORTANT: no prefix here
-                    keyStream.reset(); //reset stream
-
-                    // read a separator character
-                    byte sep_char = -1;
-                    if (multi_key.length > 3 && multi_key[multi_key.length - 2] == '|') {
-                        sep_char = multi_key[multi_key.length - 1];
-                        byte[] a = new byte[multi_key.length - 2];
-                        System.arraycopy(multi_key, 0, a, 0, multi_key.length - 2);
-                        multi_key = a;
-                    }
+    public final static Template compileTemplate(final String servletname, final InputStream in) throws IOException {
+        return compileTemplate(servletname, FileUtils.read(in), 0, 0);
+    }
 
-                    //this needs multi_key without prefix
-                    if (transferUntil(pis, keyStream, appendBytes(mOpen, slashChar, multi_key, mClose))){
-                        bb = pis.read();
-                        if((bb & 0xFF) != 10){ //kill newline
-                            pis.unread(bb);
-                        }
-
-                        final byte[] text=keyStream.toByteArray(); //text between #{key}# an #{/key}#
-                        byte[] textsep = text;
-                        int p = text.length;
-                        if (sep_char != -1) {
-                            byte[] a = new byte[p + 1];
-                            System.arraycopy(text, 0, a, 0, p);
-                            // put the separator in front of a cr/lb
-                            if (p >= 2 && a[p - 1] < 32 && a[p - 2] < 32) { // cr and lf
-                                a[p] = a[p - 1];
-                                a[p - 1] = a[p - 2];
-                                a[p - 2] = sep_char;
-                            } else if (p >= 1 && a[p - 1] < 32) { // cr or lf
-                                a[p] = a[p - 1];
-                                a[p - 1] = sep_char;
-                            } else {
-                                a[p] = sep_char;
-                            }
-                            textsep = a;
-                        }
-                        int num=0;
-                        final String patternKey = getPatternKey(prefix, multi_key);
-                        if(pattern.containsKey(patternKey) && !pattern.get(patternKey).isEmpty()){
-                            try{
-                                num=Integer.parseInt(pattern.get(patternKey)); // Key contains the iteration number as string
-                            }catch(final NumberFormatException e){
-                                ConcurrentLog.warn("TEMPLATE", "event=template.pattern subsystem=http result=invalid-number servlet=" + servletname +
-                                        " patternKey=" + patternKey + " reason=" + e.getMessage());
-                                num=0;
-                            }
-                        }
-
-                        structure.append('<')
-                                 .append(multi_key)
-                                 .append(multi_num)
-                                 .append(ASCII.getBytes(Integer.toString(num)))
-                                 .append(close_quotetagn);
-                        for(int i=0;i < num;i++) {
-                            final PushbackInputStream pis2 = new PushbackInputStream(new ByteArrayInputStream(sep_char != -1 && i < num -1 ? textsep : text));
-                            //System.out.println("recursing with text(prefix="+ multi_key + "_" + i + "_" +"):"); //DEBUG
-                            //System.out.println(text);
-                            structure.append(writeTemplate(servletname, pis2, out, pattern, newPrefix(prefix,multi_key,i)));
-                        }//for
-                        structure.append(open_endtag).append(multi_key).append(close_tagn);
-                    } else {//transferUntil
-                        ConcurrentLog.severe("TEMPLATE", "event=template.pattern subsystem=http result=missing-close type=multi servlet=" + servletname +
-                                " key=" + UTF8.String(multi_key)); //prefix here?
-                    }
-                }
+    /**
+     * get a template file in compiled form. Compiled templates are cached until the file changes
+     * @param file the template file
+     * @return the compiled template
+     * @throws IOException if the file cannot be read
+     */
+    public final static Template getTemplate(final File file) throws IOException {
+        final Template cached = templateCache.get(file);
+        if (cached != null && cached.lastModified == file.lastModified() && cached.length == file.length()) return cached;
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        final Template template = compileTemplate(file.getName(), FileUtils.read(file), lastModified, length);
+        templateCache.put(file, template);
+        return template;
+    }
 
-            // #(
-            } else if ((bb & 0xFF) == lrbr) { //alternative
-                int others=0;
-                final ByteBuffer text = new ByteBuffer();
+    /**
+     * get an included file in compiled form. Line ends are replaced by CRLF, as it was always done for includes
+     */
+    private final static Template getInclude(final File file) throws IOException {
+        final Template cached = includeCache.get(file);
+        if (cached != null && cached.lastModified == file.lastModified() && cached.length == file.length()) return cached;
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        final ByteBuffer include = new ByteBuffer();
+        try (final BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                include.append(UTF8.getBytes(line)).append(ASCII.getBytes(net.yacy.server.serverCore.CRLF_STRING));
+            }
+        }
+        final Template template = compileTemplate(file.getName(), include.getBytes(), lastModified, length);
+        include.close();
+        includeCache.put(file, template);
+        return template;
+    }
 
-                transferUntil(pis, keyStream, aClose);
-                key = keyStream.toByteArray(); //Caution: Key does not contain prefix
+    /**
+     * remove all compiled templates from the cache. This is done when the templates are replaced as a whole,
+     * i.e. when the language or the skin is changed; a single edited file is recompiled on its next use anyway
+     */
+    public final static void clearCache() {
+        templateCache.clear();
+        includeCache.clear();
+    }
 
-                keyStream.reset(); //clear
+    private final static Template compileTemplate(final String servletname, final byte[] b, final long lastModified, final long length) {
+        // a zero byte ends the template
+        int end = 0;
+        while (end < b.length && b[end] != 0) end++;
+        return new Template(compile(servletname, b, 0, end), lastModified, length);
+    }
 
-                boolean byName=false;
-                int whichPattern=0;
-                byte[] patternName = new byte[0];
-                final String patternKey = getPatternKey(prefix, key);
-                final String patternId = pattern.get(patternKey);
-                // lazy parsing of pattern value; numeric values, "true", "false" and no value allowed
-                if (patternId == null) {
-                    whichPattern = 0;
+    /**
+     * parse a part of a template into a sequence of elements
+     */
+    private final static Node[] compile(final String servletname, final byte[] b, final int start, final int end) {
+        final List<Node> nodes = new ArrayList<Node>();
+        int textStart = start;
+        int p = start;
+        while (p < end) {
+            final byte c = b[p];
+            if (c == ssiOpen[0] && startsWith(b, p, end, ssiOpen)) {
+                // <!--#include virtual="path" -->
+                final int quote = indexOf(b, (byte) '"', p + ssiOpen.length + 1, end);
+                final int close = indexOf(b, ssiClose, p + ssiOpen.length + 2, end);
+                if (quote > 0 && close > 0 && quote < close) {
+                    addText(nodes, b, textStart, p);
+                    nodes.add(new SSI(compile(servletname, b, p + ssiOpen.length, quote), compile(servletname, b, quote, close + ssiClose.length)));
+                    p = close + ssiClose.length;
+                    textStart = p;
+                    continue;
+                }
+            }
+            if (c != hashChar) {
+                p++;
+                continue;
+            }
+            if (p + 1 >= end) { // a single hash at the end
+                p = end;
+                break;
+            }
+            final byte bb = b[p + 1];
+            if (bb == lcbr) { //multi #{
+                addText(nodes, b, textStart, p);
+                p = compileMulti(servletname, b, p, end, nodes);
+                textStart = p;
+            } else if (bb == lrbr) { //alternative #(
+                addText(nodes, b, textStart, p);
+                p = compileAlternative(servletname, b, p, end, nodes);
+                textStart = p;
+            } else if (bb == lbr) { //normal #[
+                addText(nodes, b, textStart, p);
+                final int q = indexOf(b, pClose, p + 2, end);
+                if (q < 0) {
+                    // inconsistency, simply finalize this
+                    p = end;
                 } else {
-                    if ("true".equals(patternId)) {
-                        whichPattern = 1;
-                    } else if ("false".equals(patternId)) {
-                        whichPattern = 0;
-                    } else try {
-                        whichPattern = Integer.parseInt(patternId); //index
-                    } catch(final NumberFormatException e){
-                        whichPattern = 0;
-                        byName = true;
-                        patternName = UTF8.getBytes(patternId);
-                    }
+                    nodes.add(new Value(UTF8.String(Arrays.copyOfRange(b, p + 2, q))));
+                    p = q + pClose.length;
                 }
-
-                int currentPattern=0;
-                boolean found=false;
-                keyStream.reset(); //reset stream
-                PushbackInputStream pis2;
-                if (byName) {
-                    transferUntil(pis, keyStream, appendBytes(PP, patternName, null, null));
-                    if(pis.available()==0){
-                        ConcurrentLog.severe("TEMPLATE", "event=template.pattern subsystem=http result=bad-key-value type=alternative servlet=" + servletname +
-                                " key=" + patternKey + " value=" + UTF8.String(patternName));
-                        final byte[] sb = structure.getBytes();
-                        structure.close();
-                        text.close();
-                        return sb;
-                    }
-                    keyStream.reset();
-                    transferUntil(pis, keyStream, dpdpa);
-                    pis2 = new PushbackInputStream(new ByteArrayInputStream(keyStream.toByteArray()));
-                    structure.append(writeTemplate(servletname, pis2, out, pattern, newPrefix(prefix,key)));
-                    transferUntil(pis, keyStream, appendBytes(hash_brackopen_slash, key, brackclose_hash, null));
-                    if(pis.available()==0){
-                        ConcurrentLog.severe("TEMPLATE", "event=template.pattern subsystem=http result=missing-close type=alternative-by-name servlet=" + servletname +
-                                " key=" + UTF8.String(key));
-                    }
+                textStart = p;
+            } else if (bb == pcChar) { //include #%
+                addText(nodes, b, textStart, p);
+                final int q = indexOf(b, iClose, p + 2, end);
+                if (q < 0) {
+                    p = end;
                 } else {
-                    while(!found){
-                        bb=pis.read(); // performance problem? trace always points to this line
-                        if ((bb & 0xFF) == hashChar){
-                            bb=pis.read();
-                            if ((bb & 0xFF) == lrbr){
-                                transferUntil(pis, keyStream, aClose);
-
-                                //reached the end. output last string.
-                                if (java.util.Arrays.equals(keyStream.toByteArray(),appendBytes(slashChar, key, null,null))) {
-                                    pis2 = new PushbackInputStream(new ByteArrayInputStream(text.getBytes()));
-                                    //this maybe the wrong, but its the last
-                                    structure.append('<').append(key).append(alternative_which).append(ASCII.getBytes(Integer.toString(whichPattern))).append(ASCII.getBytes("\" found=\"0\">\n"));
-                                    structure.append(writeTemplate(servletname, pis2, out, pattern, newPrefix(prefix,key)));
-                                    structure.append(open_endtag).append(key).append(close_tagn);
-                                    found=true;
-                                }else if(others >0 && keyStream.toString().startsWith("/")){ //close nested
-                                    others--;
-                                    text.append(aOpen).append(keyStream.toByteArray()).append(brackclose_hash);
-                                } else { //nested
-                                    others++;
-                                    text.append(aOpen).append(keyStream.toByteArray()).append(brackclose_hash);
-                                }
-                                keyStream.reset(); //reset stream
-                                continue;
-                            } //is not #(
-                            pis.unread(bb);//is processed in next loop
-                            bb = (hashChar);//will be added to text this loop
-                            //text += "#";
-                        }else if ((bb & 0xFF) == ':' && others==0){//ignore :: in nested Expressions
-                            bb=pis.read();
-                            if ((bb & 0xFF) == ':'){
-                                if(currentPattern == whichPattern){ //found the pattern
-                                    pis2 = new PushbackInputStream(new ByteArrayInputStream(text.getBytes()));
-                                    structure.append('<').append(key).append(alternative_which).append(ASCII.getBytes(Integer.toString(whichPattern))).append(ASCII.getBytes("\" found=\"0\">\n"));
-                                    structure.append(writeTemplate(servletname, pis2, out, pattern, newPrefix(prefix,key)));
-                                    structure.append(open_endtag).append(key).append(close_tagn);
-
-                                    transferUntil(pis, keyStream, appendBytes(hash_brackopen_slash, key, brackclose_hash,null));//to #(/key)#.
-
-                                    found=true;
-                                }
-                                currentPattern++;
-                                text.clear();
-                                continue;
-                            }
-                            text.append(':');
-                        }
-                        if(!found){
-                            text.append((byte)bb);/*
-                            if(pis.available()==0){
-                                serverLog.logSevere("TEMPLATE", "No Close Key found for #("+UTF8.String(key)+")# (by Index)");
-                                found=true;
-                            }*/
-                        }
-                    }//while
-                }//if(byName) (else branch)
-                text.close();
-            // #[
-            } else if ((bb & 0xFF) == lbr) { //normal
-                if (transferUntil(pis, keyStream, pClose)) {
-                    // pattern detected, write replacement
-                    key = keyStream.toByteArray();
-                    final String patternKey = getPatternKey(prefix, key);
-                    replacement = replacePattern(patternKey, pattern); //replace
-                    structure.append('<').append(key)
-                            .append(ASCII.getBytes(" type=\"normal\">\n"));
-                    structure.append(replacement);
-                    structure.append(ASCII.getBytes("</")).append(key)
-                            .append(close_tagn);
-
-                    FileUtils.copy(replacement, out);
+                    if (q > p + 2) nodes.add(new Include(Arrays.copyOfRange(b, p + 2, q)));
+                    p = q + iClose.length;
+                }
+                textStart = p;
+            } else {
+                // no match, this is simply a '#' without meaning; the next character is not examined for templates
+                p += 2;
+            }
+        }
+        addText(nodes, b, textStart, end);
+        return nodes.toArray(new Node[nodes.size()]);
+    }
+
+    /**
+     * compile a multi template starting at position p
+     * @return the position after the template
+     */
+    private final static int compileMulti(final String servletname, final byte[] b, final int p, final int end, final List<Node> nodes) {
+        final int q = indexOf(b, mClose, p + 2, end);
+        if (q < 0) return end;
+        int r = q + mClose.length;
+        if (r < end && b[r] == 10) r++; //kill newline
+        byte[] multi_key = Arrays.copyOfRange(b, p + 2, q);
+
+        // read a separator character
+        byte sep_char = -1;
+        if (multi_key.length > 3 && multi_key[multi_key.length - 2] == '|') {
+            sep_char = multi_key[multi_key.length - 1];
+            multi_key = Arrays.copyOf(multi_key, multi_key.length - 2);
+        }
+
+        //this needs multi_key without prefix
+        final byte[] close = new byte[multi_key.length + 5];
+        close[0] = hashChar; close[1] = lcbr; close[2] = '/';
+        System.arraycopy(multi_key, 0, close, 3, multi_key.length);
+        close[close.length - 2] = mClose[0]; close[close.length - 1] = mClose[1];
+        final int c = indexOf(b, close, r, end);
+        if (c < 0) {
+            ConcurrentLog.severe("TEMPLATE", "event=template.pattern subsystem=http result=missing-close type=multi servlet=" + servletname +
+                    " key=" + UTF8.String(multi_key));
+            return end;
+        }
+        final Node[] text = compile(servletname, b, r, c); //text between #{key}# an #{/key}#
+        Node[] textsep = null;
+        if (sep_char != -1) {
+            final int l = c - r;
+            final byte[] a = new byte[l + 1];
+            System.arraycopy(b, r, a, 0, l);
+            // put the separator in front of a cr/lb
+            if (l >= 2 && a[l - 1] < 32 && a[l - 2] < 32) { // cr and lf
+                a[l] = a[l - 1];
+                a[l - 1] = a[l - 2];
+                a[l - 2] = sep_char;
+            } else if (l >= 1 && a[l - 1] < 32) { // cr or lf
+                a[l] = a[l - 1];
+                a[l - 1] = sep_char;
+            } else {
+                a[l] = sep_char;
+            }
+            textsep = compile(servletname, a, 0, a.length);
+        }
+        nodes.add(new Multi(UTF8.String(multi_key), text, textsep));
+        int e = c + close.length;
+        if (e < end && b[e] == 10) e++; //kill newline
+        return e;
+    }
+
+    /**
+     * compile an alternative template starting at position p
+     * @return the position after the template
+     */
+    private final static int compileAlternative(final String servletname, final byte[] b, final int p, final int end, final List<Node> nodes) {
+        final int q = indexOf(b, aClose, p + 2, end);
+        if (q < 0) return end;
+        final byte[] key = Arrays.copyOfRange(b, p + 2, q); //Caution: Key does not contain prefix
+        final int bodyStart = q + aClose.length;
+
+        // split the alternatives at "::" which are not inside of nested alternatives
+        final List<Node[]> alternatives = new ArrayList<Node[]>();
+        int altStart = bodyStart;
+        int others = 0;
+        int i = bodyStart;
+        while (i < end) {
+            final byte c = b[i];
+            if (c == hashChar && i + 1 < end && b[i + 1] == lrbr) {
+                final int t = indexOf(b, aClose, i + 2, end);
+                if (t < 0) break;
+                if (t - i - 3 == key.length && b[i + 2] == '/' && startsWith(b, i + 3, t, key)) {
+                    //reached the end
+                    alternatives.add(compile(servletname, b, altStart, i));
+                    nodes.add(new Alternative(UTF8.String(key), alternatives.toArray(new Node[alternatives.size()][]), b, bodyStart, i));
+                    return t + aClose.length;
+                } else if (others > 0 && b[i + 2] == '/') { //close nested
+                    others--;
+                } else { //nested
+                    others++;
+                }
+                i = t + aClose.length;
+            } else if (c == ':' && others == 0) { //ignore :: in nested Expressions
+                if (i + 1 < end && b[i + 1] == ':') {
+                    alternatives.add(compile(servletname, b, altStart, i));
+                    i += dpdpa.length;
+                    altStart = i;
                 } else {
-                    // inconsistency, simply finalize this
-                    FileUtils.copy(pis, out);
-                    pis.close();
-                    final byte[] sb = structure.getBytes();
-                    structure.close();
-                    keyStream.close();
-                    return sb;
+                    i += 2;
+                }
+            } else {
+                i++;
+            }
+        }
+        ConcurrentLog.severe("TEMPLATE", "event=template.pattern subsystem=http result=missing-close type=alternative servlet=" + servletname +
+                " key=" + UTF8.String(key));
+        alternatives.add(compile(servletname, b, altStart, end));
+        nodes.add(new Alternative(UTF8.String(key), alternatives.toArray(new Node[alternatives.size()][]), b, bodyStart, end));
+        return end;
+    }
+
+    private final static void addText(final List<Node> nodes, final byte[] b, final int start, final int end) {
+        if (end > start) nodes.add(new Text(Arrays.copyOfRange(b, start, end)));
+    }
+
+    /**
+     * the state of a rendering process
+     */
+    private static final class Context {
+        private final String servletname;
+        private final OutputStream out;
+        private final serverObjects pattern;
+        private final SSIHandler ssi;
+        private final String clientbrowserlang;
+
+        private Context(final String servletname, final OutputStream out, final serverObjects pattern, final SSIHandler ssi) {
+            this.servletname = servletname;
+            this.out = out;
+            this.pattern = pattern;
+            this.ssi = ssi;
+            this.clientbrowserlang = pattern.get("clientlanguage"); // preferred language or null (used for include files)
+        }
+    }
+
+    private static abstract class Node {
+        /**
+         * render the element
+         * @param ctx the rendering state
+         * @param prefix the prefix of the pattern keys
+         */
+        protected abstract void write(Context ctx, String prefix) throws IOException;
+    }
+
+    private final static void writeNodes(final Node[] nodes, final Context ctx, final String prefix) throws IOException {
+        for (final Node node: nodes) node.write(ctx, prefix);
+    }
+
+    private static final class Text extends Node {
+        private final byte[] text;
+
+        private Text(final byte[] text) {
+            this.text = text;
+        }
+
+        @Override
+        protected void write(final Context ctx, final String prefix) throws IOException {
+            ctx.out.write(this.text);
+        }
+
+    }
+
+    /** #[key]# */
+    private static final class Value extends Node {
+        private final String key;
+
+        private Value(final String key) {
+            this.key = key;
+        }
+
+        @Override
+        protected void write(final Context ctx, final String prefix) throws IOException {
+            ctx.out.write(replacePattern(prefix + this.key, ctx.pattern));
+        }
+
+    }
+
+    /** #{key}#text#{/key}# */
+    private static final class Multi extends Node {
+        private final String key, keyPrefix;
+        private final Node[] text, textsep;
+
+        private Multi(final String key, final Node[] text, final Node[] textsep) {
+            this.key = key;
+            this.keyPrefix = key + "_";
+            this.text = text;
+            this.textsep = textsep;
+        }
+
+        @Override
+        protected void write(final Context ctx, final String prefix) throws IOException {
+            int num = 0;
+            final String patternKey = prefix + this.key;
+            final String value = ctx.pattern.get(patternKey);
+            if (value != null && !value.isEmpty()) {
+                try {
+                    num = Integer.parseInt(value); // Key contains the iteration number as string
+                } catch (final NumberFormatException e) {
+                    ConcurrentLog.warn("TEMPLATE", "event=template.pattern subsystem=http result=invalid-number servlet=" + ctx.servletname +
+                            " patternKey=" + patternKey + " reason=" + e.getMessage());
+                    num = 0;
                 }
+            }
+            final String multiPrefix = prefix + this.keyPrefix;
+            for (int i = 0; i < num; i++) {
+                writeNodes(this.textsep != null && i < num - 1 ? this.textsep : this.text, ctx, multiPrefix + i + "_");
+            }
+        }
 
-            // #%
-            } else if ((bb & 0xFF) == pcChar) { //include
-                keyStream.reset(); //reset stream
-                if(transferUntil(pis, keyStream, iClose)){
-                    byte[] filename = keyStream.toByteArray();
-                    //if(filename.startsWith( Character.toString((char)lbr) ) && filename.endsWith( Character.toString((char)rbr) )){ //simple pattern for filename
-                    if((filename[0] == lbr) && (filename[filename.length-1] == rbr)){ //simple pattern for filename
-                        final byte[] newFilename = new byte[filename.length-2];
-                        System.arraycopy(filename, 1, newFilename, 0, newFilename.length);
-                        final String patternkey = getPatternKey(prefix, newFilename);
-                        filename= replacePattern(patternkey, pattern);
-                    }
-                    if (filename.length > 0 && !java.util.Arrays.equals(filename, UNRESOLVED_PATTERN)) {
-                        final ByteBuffer include = new ByteBuffer();
-                        BufferedReader br = null;
-                        try{
-                            //br = new BufferedReader(new InputStreamReader(new FileInputStream( filename ))); //Simple Include
-                            br = new BufferedReader( new InputStreamReader(new FileInputStream( HTTPDFileHandler.getLocalizedFile(UTF8.String(filename), clientbrowserlang)), StandardCharsets.UTF_8) ); //YaCy (with Locales)
-                            //Read the Include
-                            String line = "";
-                            while ((line = br.readLine()) != null) {
-                                include.append(UTF8.getBytes(line)).append(ASCII.getBytes(net.yacy.server.serverCore.CRLF_STRING));
-                            }
-                        } catch (final IOException e) {
-                            //file not found?
-                            ConcurrentLog.severe("FILEHANDLER","event=template.include subsystem=http result=failure servlet=" + servletname +
-                                    " file=" + UTF8.String(filename) + " reason=" + e.getMessage());
-                        } finally {
-                            if (br != null) try { br.close(); br=null; } catch (final Exception e) {
-                                ConcurrentLog.warn("FILEHANDLER","event=template.include subsystem=http result=close-failure servlet=" + servletname +
-                                        " file=" + UTF8.String(filename) + " reason=" + e.getMessage());
-                            }
-                        }
-                        final PushbackInputStream pis2 = new PushbackInputStream(new ByteArrayInputStream(include.getBytes()));
-                        structure.append(ASCII.getBytes("<fileinclude file=\"")).append(filename).append(close_tagn);
-                        structure.append(writeTemplate(servletname, pis2, out, pattern, new byte[0])); //clear pattern prefix for include
-                        structure.append(ASCII.getBytes("</fileinclude>\n"));
-                        include.close();
+    }
+
+    /** #(key)#text0::text1::...#(/key)# */
+    private static final class Alternative extends Node {
+        private final String key, keyPrefix;
+        private final Node[][] alternatives;
+        // the source of the alternatives, used for the selection by name
+        private final byte[] source;
+        private final int bodyStart, bodyEnd;
+        private final Map<String, Node[]> named;
+
+        private Alternative(final String key, final Node[][] alternatives, final byte[] source, final int bodyStart, final int bodyEnd) {
+            this.key = key;
+            this.keyPrefix = key + "_";
+            this.alternatives = alternatives;
+            this.source = source;
+            this.bodyStart = bodyStart;
+            this.bodyEnd = bodyEnd;
+            this.named = new ConcurrentHashMap<String, Node[]>();
+        }
+
+        @Override
+        protected void write(final Context ctx, final String prefix) throws IOException {
+            int whichPattern = 0;
+            final String patternKey = prefix + this.key;
+            final String patternId = ctx.pattern.get(patternKey);
+            // lazy parsing of pattern value; numeric values, "true", "false" and no value allowed
+            if (patternId != null) {
+                if ("true".equals(patternId)) {
+                    whichPattern = 1;
+                } else if ("false".equals(patternId)) {
+                    whichPattern = 0;
+                } else try {
+                    whichPattern = Integer.parseInt(patternId); //index
+                } catch (final NumberFormatException e) {
+                    final Node[] alternative = byName(ctx.servletname, patternId);
+                    if (alternative == null) {
+                        ConcurrentLog.severe("TEMPLATE", "event=template.pattern subsystem=http result=bad-key-value type=alternative servlet=" + ctx.servletname +
+                                " key=" + patternKey + " value=" + patternId);
+                    } else {
+                        writeNodes(alternative, ctx, prefix + this.keyPrefix);
                     }
+                    return;
                 }
-            // # - no special character. This is simply a '#' without meaning
-            } else { //no match, but a single hash (output # + bb)
-                out.write(hashChar);
-                out.write(bb);
             }
+            // an index out of range selects the last alternative
+            writeNodes(this.alternatives[whichPattern >= 0 && whichPattern < this.alternatives.length ? whichPattern : this.alternatives.length - 1], ctx, prefix + this.keyPrefix);
+        }
+
+        /**
+         * find the alternative %%name text:: of the given name
+         */
+        private Node[] byName(final String servletname, final String name) {
+            Node[] alternative = this.named.get(name);
+            if (alternative != null) return alternative;
+            final byte[] pattern = UTF8.getBytes("%%" + name);
+            final int p = indexOf(this.source, pattern, this.bodyStart, this.bodyEnd);
+            if (p < 0) return null;
+            int e = indexOf(this.source, dpdpa, p + pattern.length, this.bodyEnd);
+            if (e < 0) e = this.bodyEnd;
+            alternative = compile(servletname, this.source, p + pattern.length, e);
+            if (this.named.size() < MAX_NAMED_ALTERNATIVES) this.named.put(name, alternative);
+            return alternative;
+        }
+
+    }
+
+    /** #%file%# or #%[key]%# */
+    private static final class Include extends Node {
+        private final byte[] filename;
+        private final String key; // not null if the file name is a pattern
+
+        private Include(final byte[] filename) {
+            this.filename = filename;
+            //simple pattern for filename
+            this.key = filename[0] == lbr && filename[filename.length - 1] == rbr ? UTF8.String(Arrays.copyOfRange(filename, 1, filename.length - 1)) : null;
+        }
+
+        @Override
+        protected void write(final Context ctx, final String prefix) throws IOException {
+            final byte[] filename = this.key == null ? this.filename : replacePattern(prefix + this.key, ctx.pattern);
+            if (filename.length == 0 || Arrays.equals(filename, UNRESOLVED_PATTERN)) return;
+            final Template include;
+            try {
+                include = getInclude(HTTPDFileHandler.getLocalizedFile(UTF8.String(filename), ctx.clientbrowserlang)); //YaCy (with Locales)
+            } catch (final IOException e) {
+                //file not found?
+                ConcurrentLog.severe("FILEHANDLER","event=template.include subsystem=http result=failure servlet=" + ctx.servletname +
+                        " file=" + UTF8.String(filename) + " reason=" + e.getMessage());
+                return;
+            }
+            writeNodes(include.nodes, ctx, ""); //clear pattern prefix for include
+        }
+
+    }
+
+    /** &lt;!--#include virtual="path" --&gt; */
+    private static final class SSI extends Node {
+        private final Node[] path, tail;
+
+        private SSI(final Node[] path, final Node[] tail) {
+            this.path = path;
+            this.tail = tail;
+        }
+
+        @Override
+        protected void write(final Context ctx, final String prefix) throws IOException {
+            if (ctx.ssi == null) {
+                ctx.out.write(ssiOpen);
+                writeNodes(this.path, ctx, prefix);
+                writeNodes(this.tail, ctx, prefix);
+                return;
+            }
+            final ByteArrayOutputStream path = new ByteArrayOutputStream(256);
+            writeNodes(this.path, new Context(ctx.servletname, path, ctx.pattern, null), prefix);
+            ctx.ssi.include(UTF8.String(path.toByteArray()));
         }
-        final byte[] sb = structure.getBytes();
-        structure.close();
-        return sb;
+
     }
 
     private final static byte[] replacePattern(final String key, final serverObjects pattern) {
@@ -502,64 +684,35 @@ public final class TemplateEngine {
         return replacement;
     }
 
-    private final static byte[] newPrefix(final byte[] oldPrefix, final byte[] key) {
-        final ByteBuffer newPrefix = new ByteBuffer(oldPrefix.length + key.length + 1);
-        newPrefix.append(oldPrefix).append(key).append(ul);
-        final byte[] result = newPrefix.getBytes();
-        try {
-            newPrefix.close();
-        } catch (final IOException e) {
-            ConcurrentLog.logException(e);
-        }
-        return result;
-    }
-
-    private final static byte[] newPrefix(final byte[] oldPrefix, final byte[] multi_key, final int i) {
-        final ByteBuffer newPrefix = new ByteBuffer(oldPrefix.length + multi_key.length + 8);
-        newPrefix.append(oldPrefix).append(multi_key).append(ul).append(ASCII.getBytes(Integer.toString(i))).append(ul);
-        try {
-            newPrefix.close();
-        } catch (final IOException e) {
-            ConcurrentLog.logException(e);
+    private final static boolean startsWith(final byte[] b, final int p, final int end, final byte[] pattern) {
+        if (p + pattern.length > end) return false;
+        for (int i = 0; i < pattern.length; i++) {
+            if (b[p + i] != pattern[i]) return false;
         }
-        return newPrefix.getBytes();
+        return true;
     }
 
-    private final static String getPatternKey(final byte[] prefix, final byte[] key) {
-        final ByteBuffer patternKey = new ByteBuffer(prefix.length + key.length);
-        patternKey.append(prefix).append(key);
-        try {
-            return UTF8.String(patternKey.getBytes());
-        } finally {
-            try {
-                patternKey.close();
-            } catch (final IOException e) {
-                ConcurrentLog.logException(e);
-            }
+    private final static int indexOf(final byte[] b, final byte c, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (b[i] == c) return i;
         }
+        return -1;
     }
 
-    private final static byte[] appendBytes(final byte[] b1, final byte[] b2, final byte[] b3, final byte[] b4) {
-        final ByteBuffer byteArray = new ByteBuffer(b1.length + b2.length + (b3 == null ? 0 : b3.length) + (b4 == null ? 0 : b4.length));
-        byteArray.append(b1).append(b2);
-        if (b3 != null) byteArray.append(b3);
-        if (b4 != null) byteArray.append(b4);
-        final byte[] result = byteArray.getBytes();
-        try {
-            byteArray.close();
-        } catch (final IOException e) {
-            ConcurrentLog.logException(e);
+    private final static int indexOf(final byte[] b, final byte[] pattern, final int start, final int end) {
+        final int last = end - pattern.length;
+        for (int i = start; i <= last; i++) {
+            if (b[i] == pattern[0] && startsWith(b, i, end, pattern)) return i;
         }
-        return result;
+        return -1;
     }
 
     public static void main(final String[] args) {
         // arg1 = test input; arg2 = replacement for pattern 'test'; arg3 = default replacement
         try {
-            final InputStream i = new ByteArrayInputStream(UTF8.getBytes(args[0]));
             final serverObjects h = new serverObjects();
             h.put("test", args[1]);
-            writeTemplate("test", new PushbackInputStream(i, 100), System.out, h, UTF8.getBytes(args[2]));
+            writeNodes(compileTemplate("test", UTF8.getBytes(args[0]), 0, 0).nodes, new Context("test", System.out, h, null), args[2]);
             System.out.flush();
         } catch (final Exception e) {
             ConcurrentLog.logException(e);
@@ -0,0 +1,116 @@
+/**
+ *  ArrayStackBenchmark
+ *  Copyright 2026 by YaCy contributors
+ *  First released 18.10.2026 at https://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.blob;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.index.RowSet;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * lookups in an ArrayStack with a growing number of mounted generations;
+ * the cost of a miss grows with the number of BLOB files that have to be asked
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArrayStackBenchmark {
+
+    @Param({"1", "8", "32"})
+    public int generations;
+
+    @Param({"10000"})
+    public int entriesPerGeneration;
+
+    private File dir;
+    private ArrayStack stack;
+    private byte[][] keys;
+    private byte[][] missing;
+    private int p;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, SpaceExceededException {
+        this.dir = Files.createTempDirectory("ArrayStackBenchmark").toFile();
+        this.stack = new ArrayStack(this.dir, "bench", Base64Order.enhancedCoder, 12, 1024 * 1024, false, true);
+        final Random random = new Random(0);
+        final byte[] blob = new byte[100];
+        random.nextBytes(blob);
+        this.keys = new byte[this.generations * this.entriesPerGeneration][];
+        final long base = System.currentTimeMillis() - this.generations * 1000L;
+        int k = 0;
+        for (int g = 0; g < this.generations; g++) {
+            final File f = this.stack.newBLOB(new Date(base + g * 1000L));
+            final HeapWriter writer = new HeapWriter(new File(f.getParentFile(), f.getName() + ".prt"), f, 12, Base64Order.enhancedCoder, 1024 * 1024);
+            for (int i = 0; i < this.entriesPerGeneration; i++) {
+                this.keys[k] = RowSet.randomHash(random);
+                writer.add(this.keys[k++], blob);
+            }
+            writer.close(true);
+            this.stack.mountBLOB(f, true);
+        }
+        this.missing = new byte[this.entriesPerGeneration][];
+        for (int i = 0; i < this.missing.length; i++) this.missing[i] = RowSet.randomHash(random);
+        this.p = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.stack.close(false);
+        FileUtils.deletedelete(this.dir);
+    }
+
+    @Benchmark
+    public byte[] getHit() throws IOException, SpaceExceededException {
+        this.p = (this.p + 1) % this.keys.length;
+        return this.stack.get(this.keys[this.p]);
+    }
+
+    @Benchmark
+    public boolean containsMiss() {
+        this.p = (this.p + 1) % this.missing.length;
+        return this.stack.containsKey(this.missing[this.p]);
+    }
+
+}
@@ -0,0 +1,124 @@
+/**
+ *  CompressorBenchmark
+ *  Copyright 2026 by YaCy contributors
+ *  First released 18.10.2026 at https://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.blob;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.index.RowSet;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * compress/decompress round-trips through a Compressor on top of a Heap;
+ * the payload is synthetic text from a small vocabulary, so it compresses like a web page
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressorBenchmark {
+
+    @Param({"4000", "64000"})
+    public int documentSize;
+
+    @Param({"1", "9"})
+    public int compressionLevel;
+
+    private static final int ENTRIES = 1000;
+
+    private File dir;
+    private Compressor compressor;
+    private byte[][] keys;
+    private byte[] document;
+    private int p;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.dir = Files.createTempDirectory("CompressorBenchmark").toFile();
+        final Random random = new Random(0);
+        this.document = document(random, this.documentSize);
+        this.keys = new byte[ENTRIES][];
+        for (int i = 0; i < ENTRIES; i++) this.keys[i] = RowSet.randomHash(random);
+        final Heap heap = new Heap(new File(this.dir, "bench.heap"), 12, Base64Order.enhancedCoder, 1024 * 1024);
+        // a zero buffer makes every insert compress and write the previously inserted entry
+        this.compressor = new Compressor(heap, 0, Long.MAX_VALUE, this.compressionLevel);
+        for (final byte[] key: this.keys) this.compressor.insert(key, this.document);
+        this.compressor.flushAll();
+        this.p = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.compressor.close(false);
+        FileUtils.deletedelete(this.dir);
+    }
+
+    private static byte[] document(final Random random, final int size) {
+        final String[] vocabulary = new String[500];
+        for (int i = 0; i < vocabulary.length; i++) {
+            final char[] w = new char[3 + random.nextInt(8)];
+            for (int j = 0; j < w.length; j++) w[j] = (char) ('a' + random.nextInt(26));
+            vocabulary[i] = new String(w);
+        }
+        final StringBuilder sb = new StringBuilder(size + 16);
+        while (sb.length() < size) sb.append(vocabulary[random.nextInt(vocabulary.length)]).append(' ');
+        sb.setLength(size);
+        return UTF8.getBytes(sb.toString());
+    }
+
+    private byte[] nextKey() {
+        this.p = (this.p + 1) % this.keys.length;
+        return this.keys[this.p];
+    }
+
+    @Benchmark
+    public byte[] get() throws IOException, SpaceExceededException {
+        return this.compressor.get(nextKey());
+    }
+
+    @Benchmark
+    public void insert() throws IOException {
+        this.compressor.insert(nextKey(), this.document);
+    }
+
+}
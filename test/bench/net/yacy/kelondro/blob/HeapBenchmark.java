@@ -0,0 +1,108 @@
+/**
+ *  HeapBenchmark
+ *  Copyright 2026 by YaCy contributors
+ *  First released 18.10.2026 at https://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.blob;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.index.RowSet;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * insert and get on a single Heap file filled with random 12-byte keys
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HeapBenchmark {
+
+    @Param({"10000", "100000"})
+    public int entries;
+
+    @Param({"100", "4000"})
+    public int blobSize;
+
+    private File dir;
+    private Heap heap;
+    private byte[][] keys;
+    private byte[] blob;
+    private int p;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.dir = Files.createTempDirectory("HeapBenchmark").toFile();
+        final Random random = new Random(0);
+        this.keys = new byte[this.entries][];
+        for (int i = 0; i < this.entries; i++) this.keys[i] = RowSet.randomHash(random);
+        this.blob = new byte[this.blobSize];
+        random.nextBytes(this.blob);
+        this.heap = new Heap(new File(this.dir, "bench.heap"), 12, Base64Order.enhancedCoder, 1024 * 1024);
+        for (final byte[] key: this.keys) this.heap.insert(key, this.blob);
+        this.p = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.heap.close(false);
+        FileUtils.deletedelete(this.dir);
+    }
+
+    private byte[] nextKey() {
+        this.p = (this.p + 1) % this.keys.length;
+        return this.keys[this.p];
+    }
+
+    @Benchmark
+    public byte[] get() throws IOException, SpaceExceededException {
+        return this.heap.get(nextKey());
+    }
+
+    /**
+     * replaces an existing entry, this covers the write buffer, the free-list and the file growth
+     */
+    @Benchmark
+    public void insert() throws IOException {
+        this.heap.insert(nextKey(), this.blob);
+    }
+
+}
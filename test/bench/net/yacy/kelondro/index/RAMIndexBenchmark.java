@@ -0,0 +1,108 @@
+/**
+ *  RAMIndexBenchmark
+ *  Copyright 2026 by YaCy contributors
+ *  First released 18.10.2026 at https://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.index;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.SpaceExceededException;
+
+/**
+ * put and get on the two RAM index structures that back kelondro tables:
+ * RAMIndex holds complete rows, RowHandleMap holds a key to a long handle
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RAMIndexBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int entries;
+
+    private RAMIndex index;
+    private RowHandleMap handles;
+    private Row.Entry[] rows;
+    private byte[][] keys;
+    private int p;
+
+    @Setup(Level.Trial)
+    public void setup() throws SpaceExceededException {
+        final Row rowdef = new Row("byte[] key-12, Cardinal value-8 {b256}", Base64Order.enhancedCoder);
+        final Random random = new Random(0);
+        this.index = new RAMIndex("bench", rowdef);
+        this.handles = new RowHandleMap(12, Base64Order.enhancedCoder, 8, this.entries, "bench");
+        this.keys = new byte[this.entries][];
+        this.rows = new Row.Entry[this.entries];
+        for (int i = 0; i < this.entries; i++) {
+            this.keys[i] = RowSet.randomHash(random);
+            this.rows[i] = rowdef.newEntry();
+            this.rows[i].setCol(0, this.keys[i]);
+            this.rows[i].setCol(1, i);
+            this.index.put(this.rows[i]);
+            this.handles.put(this.keys[i], i);
+        }
+        this.p = 0;
+    }
+
+    private int next() {
+        this.p = (this.p + 1) % this.keys.length;
+        return this.p;
+    }
+
+    @Benchmark
+    public Row.Entry ramIndexGet() {
+        return this.index.get(this.keys[next()], false);
+    }
+
+    @Benchmark
+    public boolean ramIndexPut() throws SpaceExceededException {
+        return this.index.put(this.rows[next()]);
+    }
+
+    @Benchmark
+    public long handleMapGet() {
+        return this.handles.get(this.keys[next()]);
+    }
+
+    @Benchmark
+    public long handleMapPut() throws SpaceExceededException {
+        final int i = next();
+        return this.handles.put(this.keys[i], i);
+    }
+
+}
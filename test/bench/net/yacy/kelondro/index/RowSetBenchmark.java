@@ -0,0 +1,107 @@
+/**
+ *  RowSetBenchmark
+ *  Copyright 2026 by YaCy contributors
+ *  First released 18.10.2026 at https://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.index;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.SpaceExceededException;
+
+/**
+ * sorting an unsorted RowSet and merging two sorted RowSets,
+ * rows have the shape of a url reference: a 12-byte hash key and a 4-byte value
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowSetBenchmark {
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    private Row rowdef;
+    private byte[] unsorted;
+    private RowSet a, b;
+
+    @Setup(Level.Trial)
+    public void setup() throws SpaceExceededException {
+        this.rowdef = new Row("byte[] key-12, Cardinal value-4 {b256}", Base64Order.enhancedCoder);
+        final Random random = new Random(0);
+        this.unsorted = new byte[this.rows * this.rowdef.objectsize];
+        for (int i = 0; i < this.rows; i++) {
+            final byte[] key = RowSet.randomHash(random);
+            System.arraycopy(key, 0, this.unsorted, i * this.rowdef.objectsize, key.length);
+            for (int j = key.length; j < this.rowdef.objectsize; j++) this.unsorted[i * this.rowdef.objectsize + j] = (byte) random.nextInt();
+        }
+        this.a = new RowSet(this.rowdef, this.rows / 2, this.unsorted.clone(), 0);
+        this.a.sort();
+        this.b = new RowSet(this.rowdef, this.rows - this.rows / 2, copyOfRange(this.unsorted, this.rows / 2), 0);
+        this.b.sort();
+    }
+
+    private byte[] copyOfRange(final byte[] cache, final int fromRow) {
+        final byte[] c = new byte[cache.length - fromRow * this.rowdef.objectsize];
+        System.arraycopy(cache, fromRow * this.rowdef.objectsize, c, 0, c.length);
+        return c;
+    }
+
+    /**
+     * sort() works in place, so every invocation needs a fresh unsorted copy
+     */
+    @State(Scope.Thread)
+    public static class Unsorted {
+        private RowSet set;
+
+        @Setup(Level.Invocation)
+        public void unsort(final RowSetBenchmark bench) {
+            this.set = new RowSet(bench.rowdef, bench.rows, bench.unsorted.clone(), 0);
+        }
+    }
+
+    @Benchmark
+    public RowSet sort(final Unsorted unsorted) {
+        unsorted.set.sort();
+        return unsorted.set;
+    }
+
+    @Benchmark
+    public RowSet merge() throws SpaceExceededException {
+        return this.a.merge(this.b);
+    }
+
+}
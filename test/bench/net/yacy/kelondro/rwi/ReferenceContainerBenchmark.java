@@ -0,0 +1,115 @@
+/**
+ *  ReferenceContainerBenchmark
+ *  Copyright 2026 by YaCy contributors
+ *  First released 18.10.2026 at https://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.rwi;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.crawler.retrieval.Response;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.data.word.WordReferenceVars;
+import net.yacy.kelondro.index.RowSet;
+import net.yacy.kelondro.util.Bitfield;
+
+/**
+ * conjunctive joins and exclusions of reference containers as done for a search query;
+ * the containers share one pool of url hashes, the small one takes every 100th,
+ * the medium one every 2nd and the large one all of them
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReferenceContainerBenchmark {
+
+    @Param({"10000", "200000"})
+    public int references;
+
+    private final ReferenceFactory<WordReference> factory = new WordReferenceFactory();
+    private ReferenceContainer<WordReference> small, medium, large;
+
+    @Setup(Level.Trial)
+    public void setup() throws SpaceExceededException {
+        final Random random = new Random(0);
+        final byte[][] urls = new byte[this.references][];
+        for (int i = 0; i < urls.length; i++) urls[i] = RowSet.randomHash(random);
+        this.small = container("small", urls, 100);
+        this.medium = container("medium", urls, 2);
+        this.large = container("large", urls, 1);
+    }
+
+    private ReferenceContainer<WordReference> container(final String word, final byte[][] urls, final int step) throws SpaceExceededException {
+        final ReferenceContainer<WordReference> rc = new ReferenceContainer<WordReference>(this.factory, Word.word2hash(word), urls.length / step);
+        for (int i = 0; i < urls.length; i += step) {
+            final Queue<Integer> positions = new LinkedBlockingQueue<Integer>();
+            positions.add(1);
+            rc.add(new WordReferenceVars(urls[i], 30, 1, 0, 1, 1, 1, 1, positions, 1, 1, 0, "en",
+                    Response.DT_TEXT, 0, 0, new Bitfield(4), 0.0d));
+        }
+        rc.sort();
+        return rc;
+    }
+
+    @Benchmark
+    public ReferenceContainer<WordReference> joinSmallLarge() throws SpaceExceededException {
+        return ReferenceContainer.joinContainers(this.factory, Arrays.asList(this.small, this.large), Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public ReferenceContainer<WordReference> joinMediumLarge() throws SpaceExceededException {
+        return ReferenceContainer.joinContainers(this.factory, Arrays.asList(this.medium, this.large), Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public ReferenceContainer<WordReference> joinThree() throws SpaceExceededException {
+        return ReferenceContainer.joinContainers(this.factory, Arrays.asList(this.small, this.medium, this.large), Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public ReferenceContainer<WordReference> joinExclude() throws SpaceExceededException {
+        final List<ReferenceContainer<WordReference>> exclude = Collections.singletonList(this.small);
+        return ReferenceContainer.joinExcludeContainers(this.factory, Arrays.asList(this.medium, this.large), exclude, Integer.MAX_VALUE);
+    }
+
+}
@@ -0,0 +1,69 @@
+package net.yacy.cora.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TinyLFUARCTest {
+
+    /**
+     * the cache keeps its size and works as a map
+     */
+    @Test
+    public void testMap() {
+        final TinyLFUARC<String, String> cache = new TinyLFUARC<String, String>(100, 4);
+        assertNull(cache.put("a", "1"));
+        assertEquals("1", cache.put("a", "2"));
+        assertEquals("2", cache.putIfAbsent("a", "3"));
+        cache.insertIfAbsent("b", "2");
+        assertEquals("2", cache.get("b"));
+        assertEquals(2, cache.getKeys("2").size());
+        assertEquals(2, cache.entrySet().size());
+        assertEquals("2", cache.remove("a"));
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+
+        for (int i = 0; i < 10000; i++) cache.insert("k" + i, "v" + i);
+        assertTrue(cache.size() <= 100);
+        assertEquals(cache.size(), cache.weight());
+        assertTrue(cache.evictionCount() > 0);
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+    }
+
+    /**
+     * frequently used entries survive a scan of entries which are used only once
+     */
+    @Test
+    public void testScanResistance() {
+        final TinyLFUARC<String, String> cache = new TinyLFUARC<String, String>(1000, 1);
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 500; i++) {
+                if (cache.get("hot" + i) == null) cache.insert("hot" + i, "v");
+            }
+        }
+        for (int i = 0; i < 100000; i++) cache.insert("scan" + i, "v");
+        int hot = 0;
+        for (int i = 0; i < 500; i++) if (cache.containsKey("hot" + i)) hot++;
+        assertTrue("hot entries " + hot, hot > 450);
+    }
+
+    /**
+     * a weight bounded cache evicts by the weight of the values
+     */
+    @Test
+    public void testWeight() {
+        final TinyLFUARC<String, byte[]> cache = new TinyLFUARC<String, byte[]>(10000, 2, v -> v.length);
+        for (int i = 0; i < 1000; i++) cache.insert("k" + i, new byte[100]);
+        assertTrue(cache.weight() <= 10000);
+        assertTrue(cache.size() <= 100);
+        // a value which is heavier than the cache is not kept
+        cache.insert("huge", new byte[20000]);
+        assertNull(cache.get("huge"));
+        assertTrue(cache.weight() <= 10000);
+    }
+}
@@ -0,0 +1,85 @@
+package net.yacy.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.crawler.retrieval.Request;
+import net.yacy.crawler.robots.RobotsTxt;
+import net.yacy.data.WorkTables;
+import net.yacy.kelondro.util.FileUtils;
+
+public class FrontierBalancerTest {
+
+    private static final File FRONTIER_FILE = new File("test/DATA/INDEX/QUEUES/CrawlerCoreStacks" + FrontierBalancer.FILE_SUFFIX);
+    private static final File DATA_DIR = new File("test/DATA");
+
+    private static Request request(final String url, final int depth) throws IOException {
+        return new Request(null, new DigestURL(url), null, "", null, null, depth, 0);
+    }
+
+    /**
+     * Requests of all hosts are stored in one file, are found by url hash and are listed per host ordered by depth
+     */
+    @Test
+    public void testPushAndReopen() throws IOException, SpaceExceededException {
+        FileUtils.deletedelete(FRONTIER_FILE); // start clean test
+        final RobotsTxt robots = new RobotsTxt(new WorkTables(DATA_DIR), null, 10);
+
+        FrontierBalancer frontier = new FrontierBalancer(FRONTIER_FILE, 1000, true);
+        assertTrue(frontier.isEmpty());
+        final Request deep = request("http://a.example.com/deep.html", 3);
+        final Request top = request("http://a.example.com/", 0);
+        final Request other = request("http://b.example.com/index.html", 1);
+        assertNull(frontier.push(deep, null, robots));
+        assertNull(frontier.push(top, null, robots));
+        assertNull(frontier.push(other, null, robots));
+        assertNotNull("double occurrence", frontier.push(top, null, robots));
+        assertEquals(3, frontier.size());
+        assertTrue(frontier.has(deep.url().hash()));
+        assertEquals(deep.url(), frontier.get(deep.url().hash()).url());
+
+        final Map<String, Integer[]> hosts = frontier.getDomainStackHosts(robots);
+        assertEquals(2, hosts.size());
+        assertEquals(2, hosts.get("a.example.com:80")[0].intValue());
+
+        List<Request> references = frontier.getDomainStackReferences("a.example.com", 10, Long.MAX_VALUE);
+        assertEquals(2, references.size());
+        assertEquals(top.url(), references.get(0).url()); // lowest depth first
+        assertEquals(deep.url(), references.get(1).url());
+        frontier.close();
+
+        // the hosts and depths are read from the same file again
+        frontier = new FrontierBalancer(FRONTIER_FILE, 1000, true);
+        assertEquals(3, frontier.size());
+        assertTrue(frontier.has(top.url().hash()));
+        assertNotNull("double occurrence after reopen", frontier.push(top, null, robots));
+        references = frontier.getDomainStackReferences("a.example.com", 10, Long.MAX_VALUE);
+        assertEquals(top.url(), references.get(0).url());
+
+        final Set<String> hosthashes = new HashSet<>();
+        hosthashes.add(top.url().hosthash());
+        assertEquals(2, frontier.removeAllByHostHashes(hosthashes));
+        assertFalse(frontier.has(deep.url().hash()));
+        assertEquals(1, frontier.size());
+        assertEquals(1, frontier.getDomainStackHosts(robots).size());
+
+        frontier.clear();
+        assertTrue(frontier.isEmpty());
+        frontier.close();
+        FileUtils.deletedelete(FRONTIER_FILE);
+    }
+}
@@ -0,0 +1,76 @@
+package net.yacy.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HostSchedulerTest {
+
+    /**
+     * Hosts are taken in the order of their due time, a taken host is not given out again before it is released
+     */
+    @Test
+    public void testOrder() {
+        final HostScheduler scheduler = new HostScheduler();
+        assertNull(scheduler.take(0));
+        scheduler.add("hostaa");
+        scheduler.add("hostbb");
+        scheduler.add("hostaa");
+        assertEquals(2, scheduler.size());
+
+        assertEquals("hostaa", scheduler.take(0));
+        assertEquals("hostbb", scheduler.take(0));
+        // all hosts are taken
+        assertNull(scheduler.take(0));
+
+        final long now = System.currentTimeMillis();
+        scheduler.release("hostaa", now + 60000);
+        scheduler.release("hostbb", now - 1000);
+        // releasing a host twice does not change its due time
+        scheduler.release("hostbb", now + 60000);
+        assertEquals("hostbb", scheduler.take(0));
+        // a host which is not due is only taken if the caller does not wait for it
+        assertEquals("hostaa", scheduler.take(0));
+
+        scheduler.remove("hostaa");
+        scheduler.release("hostaa", now);
+        assertEquals(1, scheduler.size());
+        scheduler.clear();
+        assertEquals(0, scheduler.size());
+        assertNull(scheduler.take(0));
+    }
+
+    /**
+     * take waits for the next due host and returns early when a host is released
+     */
+    @Test
+    public void testWait() throws InterruptedException {
+        final HostScheduler scheduler = new HostScheduler();
+        scheduler.add("hostaa");
+        assertEquals("hostaa", scheduler.take(0));
+        scheduler.release("hostaa", System.currentTimeMillis() + 200);
+        long start = System.currentTimeMillis();
+        assertEquals("hostaa", scheduler.take(10000));
+        assertTrue(System.currentTimeMillis() - start >= 150);
+
+        // the only host is taken: the waiting thread gets it when it is released
+        final Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (final InterruptedException e) {
+            }
+            scheduler.release("hostaa", 0);
+        });
+        start = System.currentTimeMillis();
+        releaser.start();
+        assertEquals("hostaa", scheduler.take(10000));
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        releaser.join();
+
+        // a host which is not due is returned when the time to wait is over
+        scheduler.release("hostaa", System.currentTimeMillis() + 60000);
+        assertEquals("hostaa", scheduler.take(100));
+    }
+}
@@ -31,6 +31,7 @@ import java.net.MalformedURLException;
 import java.nio.charset.StandardCharsets;
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
@@ -47,6 +48,7 @@ import net.yacy.cora.protocol.Domains;
 import net.yacy.cora.protocol.ResponseHeader;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.kelondro.blob.ArrayStack;
+import net.yacy.kelondro.blob.Compressor;
 
 /**
  * Unit tests for the {@link Cache} class, and stress test as main function.
@@ -186,6 +188,61 @@ public class CacheTest {
 		assertFalse(Cache.hasContent(urlHash));
 	}
 
+	@Test
+	public void testMemoryTier() throws MalformedURLException, IOException {
+		final ResponseHeader okResponse = new ResponseHeader(HttpStatus.SC_OK);
+		final DigestURL url = new DigestURL("https://yacy.net");
+		final byte[] urlHash = url.hash();
+		final byte[] fileContent = TEXT_CONTENT.getBytes(StandardCharsets.UTF_8);
+
+		/* Store and commit : content is served from the memory tier */
+		Cache.store(url, okResponse, fileContent);
+		Cache.commit();
+		final long tierHits = Cache.getMemoryTierHits();
+		assertArrayEquals(fileContent, Cache.getContent(urlHash));
+		assertEquals(tierHits + 1, Cache.getMemoryTierHits());
+
+		/* a document larger than a small fraction of the tier is admitted right after it was stored */
+		final byte[] largeContent = new byte[(int) (Cache.DEFAULT_MEMORY_TIER_SIZE / 4)];
+		Arrays.fill(largeContent, (byte) 'a');
+		final DigestURL largeUrl = new DigestURL("https://yacy.net/large.html");
+		Cache.store(largeUrl, okResponse, largeContent);
+		assertArrayEquals(largeContent, Cache.getContent(largeUrl.hash()));
+		assertEquals(tierHits + 2, Cache.getMemoryTierHits());
+
+		/* a deleted entry is also removed from the memory tier */
+		Cache.delete(urlHash);
+		assertNull(Cache.getContent(urlHash));
+
+		/* a cleared cache also clears the memory tier */
+		Cache.store(url, okResponse, fileContent);
+		Cache.clear();
+		assertNull(Cache.getContent(urlHash));
+	}
+
+	@Test
+	public void testLZ4Codec() throws MalformedURLException, IOException {
+		final ResponseHeader okResponse = new ResponseHeader(HttpStatus.SC_OK);
+		final DigestURL url = new DigestURL("https://yacy.net");
+		final byte[] urlHash = url.hash();
+		final StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			content.append(TEXT_CONTENT).append(' ').append(i).append('\n');
+		}
+		final byte[] fileContent = content.toString().getBytes(StandardCharsets.UTF_8);
+
+		Cache.setCodec(Compressor.Codec.LZ4);
+		/* switch off the memory tier so that the content is read back from the file system */
+		Cache.setMemoryTierSize(0);
+		Cache.store(url, okResponse, fileContent);
+		Cache.commit();
+		assertArrayEquals(fileContent, Cache.getContent(urlHash));
+
+		/* content stored with another codec is still readable */
+		Cache.setCodec(Compressor.Codec.GZIP);
+		assertArrayEquals(fileContent, Cache.getContent(urlHash));
+	}
+
 	@Test
 	public void testClear() throws MalformedURLException, IOException {
 		final ResponseHeader okResponse = new ResponseHeader(HttpStatus.SC_OK);
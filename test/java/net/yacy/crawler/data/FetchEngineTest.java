@@ -0,0 +1,153 @@
+package net.yacy.crawler.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.MalformedURLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.crawler.retrieval.Request;
+
+public class FetchEngineTest {
+
+    private static Request request(final String url) throws MalformedURLException {
+        return new Request(new DigestURL(url), null);
+    }
+
+    private static void waitFor(final FetchEngine engine, final int size) throws InterruptedException {
+        final long timeout = System.currentTimeMillis() + 10000;
+        while (engine.size() > size && System.currentTimeMillis() < timeout) Thread.sleep(10);
+        assertEquals(size, engine.size());
+    }
+
+    /**
+     * Requests of a host which has used up its budget are parked without occupying a thread,
+     * requests of other hosts are loaded meanwhile
+     */
+    @Test
+    public void testHostBudget() throws MalformedURLException, InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch otherHostLoaded = new CountDownLatch(1);
+        final Map<String, AtomicInteger> concurrent = new ConcurrentHashMap<>();
+        final AtomicInteger maxConcurrent = new AtomicInteger(0);
+        final AtomicInteger loaded = new AtomicInteger(0);
+        final FetchEngine engine = new FetchEngine("FetchEngineTest", 4, 8, 2, request -> CompletableFuture.runAsync(() -> {
+            final String host = request.url().getHost();
+            final int c = concurrent.computeIfAbsent(host, h -> new AtomicInteger(0)).incrementAndGet();
+            maxConcurrent.accumulateAndGet(c, Math::max);
+            try {
+                if (host.equals("a.com")) {
+                    release.await(10, TimeUnit.SECONDS);
+                } else {
+                    otherHostLoaded.countDown();
+                }
+            } catch (final InterruptedException e) {
+            } finally {
+                concurrent.get(host).decrementAndGet();
+                loaded.incrementAndGet();
+            }
+        }));
+        try {
+            for (int i = 0; i < 5; i++) assertTrue(engine.offer(request("http://a.com/" + i + ".html")));
+            assertTrue(engine.offer(request("http://b.com/index.html")));
+            assertTrue(otherHostLoaded.await(10, TimeUnit.SECONDS));
+            waitFor(engine, 5);
+            assertEquals(5, engine.hostcount("a.com")); // two loading and three parked requests
+            assertEquals(2, engine.loading().size());
+            assertTrue(engine.contains(new DigestURL("http://a.com/4.html")));
+            assertTrue(engine.offer(request("http://a.com/4.html"))); // a parked url is not submitted twice
+            assertEquals(5, engine.size());
+            release.countDown();
+            waitFor(engine, 0);
+            assertEquals(6, loaded.get());
+            assertEquals(2, maxConcurrent.get());
+            assertEquals(0, engine.hostcount("a.com"));
+            assertFalse(engine.contains(new DigestURL("http://a.com/4.html")));
+            assertTrue(engine.loading().isEmpty());
+        } finally {
+            engine.close(1000);
+        }
+    }
+
+    /**
+     * clear removes the parked requests, close rejects further requests
+     */
+    @Test
+    public void testClearAndClose() throws MalformedURLException, InterruptedException {
+        final CountDownLatch running = new CountDownLatch(1);
+        final AtomicInteger loaded = new AtomicInteger(0);
+        final FetchEngine engine = new FetchEngine("FetchEngineTest", 2, 4, 1, request -> {
+            running.countDown();
+            try {
+                Thread.sleep(10000);
+            } catch (final InterruptedException e) {
+            }
+            loaded.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        });
+        for (int i = 0; i < 3; i++) assertTrue(engine.offer(request("http://a.com/" + i + ".html")));
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        assertEquals(3, engine.size());
+        assertEquals(1, engine.remainingCapacity());
+        engine.clear();
+        assertEquals(1, engine.size());
+        assertFalse(engine.contains(new DigestURL("http://a.com/2.html")));
+        engine.interrupt();
+        waitFor(engine, 0);
+        assertEquals(1, loaded.get());
+        engine.close(1000);
+        assertFalse(engine.offer(request("http://a.com/3.html")));
+        assertEquals(0, engine.size());
+    }
+
+    /**
+     * a load which waits for its response does not occupy a thread: one thread runs many concurrent loads
+     */
+    @Test
+    public void testAsynchronousLoads() throws MalformedURLException, InterruptedException {
+        final List<CompletableFuture<Void>> loads = new CopyOnWriteArrayList<>();
+        final FetchEngine engine = new FetchEngine("FetchEngineTest", 1, 20, 1, request -> {
+            final CompletableFuture<Void> load = new CompletableFuture<>();
+            loads.add(load);
+            return load;
+        });
+        try {
+            for (int i = 0; i < 10; i++) assertTrue(engine.offer(request("http://host" + i + ".com/index.html")));
+            assertTrue(engine.offer(request("http://host0.com/parked.html")));
+            final long timeout = System.currentTimeMillis() + 10000;
+            while (loads.size() < 10 && System.currentTimeMillis() < timeout) Thread.sleep(10);
+            assertEquals(10, loads.size());
+            assertEquals(10, engine.loading().size());
+            assertEquals(11, engine.size());
+            assertEquals(2, engine.hostcount("host0.com"));
+            assertEquals(9, engine.remainingCapacity());
+
+            // a finished load starts the parked request of its host; a failed load releases its slot as well
+            loads.get(0).complete(null);
+            while (loads.size() < 11 && System.currentTimeMillis() < timeout) Thread.sleep(10);
+            assertEquals(11, loads.size());
+            for (int i = 1; i < 10; i++) loads.get(i).completeExceptionally(new RuntimeException("load failed"));
+            waitFor(engine, 1);
+            assertEquals(1, engine.hostcount("host0.com"));
+
+            // interrupt cancels the running loads
+            engine.interrupt();
+            waitFor(engine, 0);
+            assertTrue(loads.get(10).isCancelled());
+            assertTrue(engine.loading().isEmpty());
+        } finally {
+            engine.close(1000);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package net.yacy.http.servlets;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+
+import org.junit.Test;
+
+import net.yacy.http.servlets.TemplateServletRegistry.TemplateServlet;
+
+/**
+ * Unit tests for {@link TemplateServletRegistry}
+ */
+public class TemplateServletRegistryTest {
+
+    /**
+     * The htroot classes are listed from the class path
+     */
+    @Test
+    public void testListClasses() {
+        final Set<String> classNames = TemplateServletRegistry.listClasses(TemplateServletRegistry.class.getClassLoader(), TemplateServletRegistry.HTROOT_PACKAGE);
+        assertNotNull(classNames);
+        assertTrue(classNames.contains("net.yacy.htroot.yacysearch"));
+        assertTrue(classNames.contains("net.yacy.htroot.api.status_p"));
+        for (final String name: classNames) assertFalse(name, name.indexOf('$') >= 0);
+    }
+
+    /**
+     * Targets are mapped to the servlet of their class, targets without class have no servlet
+     */
+    @Test
+    public void testGet() {
+        final TemplateServletRegistry registry = new TemplateServletRegistry();
+        final TemplateServlet search = registry.get("/yacysearch.html");
+        assertNotNull(search);
+        assertSame(search, registry.get("/yacysearch.json"));
+        assertNotNull(registry.get("/api/status_p.xml"));
+        assertNull(registry.get("/env/base.css"));
+        assertNull(registry.get("/doesNotExist.html"));
+        assertNull(registry.get("/index"));
+    }
+}
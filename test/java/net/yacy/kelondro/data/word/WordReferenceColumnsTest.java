@@ -0,0 +1,96 @@
+package net.yacy.kelondro.data.word;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.MalformedURLException;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.crawler.retrieval.Response;
+import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.rwi.ReferenceContainer;
+import net.yacy.kelondro.util.Bitfield;
+
+public class WordReferenceColumnsTest {
+
+    private static ReferenceContainer<WordReference> container(final int size) throws MalformedURLException, SpaceExceededException {
+        final ReferenceContainer<WordReference> container = new ReferenceContainer<WordReference>(new WordReferenceFactory(), Word.word2hash("test"));
+        for (int i = 0; i < size; i++) {
+            final DigestURL url = new DigestURL("http://host" + (i % 50) + ".example.org/page" + i + ".html");
+            final WordReferenceRow row = new WordReferenceRow(
+                    url.hash(), url.toNormalform(true).length(), 2, i % 7,
+                    100 + i % 1000, 10 + i % 30,
+                    System.currentTimeMillis() - i * 86400000L, System.currentTimeMillis(),
+                    UTF8.getBytes(i % 2 == 0 ? "en" : "de"), Response.DT_TEXT,
+                    i % 5, i % 11);
+            final Word word = new Word(1 + i % 500, 1 + i % 9, 1 + i % 20);
+            word.flags = new Bitfield(4);
+            word.flags.set(i % 32, true);
+            row.setWord(word);
+            container.add(row);
+        }
+        return container;
+    }
+
+    /**
+     * the columns contain the same values as the rows of the container
+     */
+    @Test
+    public void testDecode() throws MalformedURLException, SpaceExceededException {
+        final ReferenceContainer<WordReference> container = container(3000);
+        final WordReferenceColumns columns = new WordReferenceColumns(container);
+        assertEquals(3, columns.chunks());
+        final WordReferenceColumns.Bounds bounds = new WordReferenceColumns.Bounds();
+        assertTrue(bounds.isEmpty());
+        final Executor executor = task -> new Thread(task).start();
+        columns.forEachChunk(executor, chunk -> bounds.include(columns.decode(chunk)));
+        assertFalse(bounds.isEmpty());
+
+        int i = 0;
+        for (final Row.Entry entry: container) {
+            final WordReferenceRow row = new WordReferenceRow(entry);
+            assertTrue(columns.isDecoded(i));
+            assertArrayEquals(row.urlhash(), columns.urlhash(i));
+            assertEquals(row.hosthash(), columns.hosthash(i));
+            assertEquals(row.hitcount(), columns.value(WordReferenceColumns.HITCOUNT, i));
+            assertEquals(row.posintext(), columns.value(WordReferenceColumns.POSINTEXT, i));
+            assertEquals(row.posinphrase(), columns.value(WordReferenceColumns.POSINPHRASE, i));
+            assertEquals(row.posofphrase(), columns.value(WordReferenceColumns.POSOFPHRASE, i));
+            assertEquals(row.wordsintext(), columns.value(WordReferenceColumns.WORDSINTEXT, i));
+            assertEquals(row.wordsintitle(), columns.value(WordReferenceColumns.WORDSINTITLE, i));
+            assertEquals(row.lother(), columns.value(WordReferenceColumns.LOTHER, i));
+            assertEquals(row.virtualAge(), columns.value(WordReferenceColumns.VIRTUALAGE, i));
+            assertEquals(row.termFrequency(), columns.termFrequency(i), 0.0);
+            assertEquals(row.getType(), columns.type(i));
+            assertEquals(DigestURL.domLengthNormalized(row.urlhash()), columns.domLengthNormalized(i));
+            assertTrue(columns.isLanguage(i, i % 2 == 0 ? "en" : "de"));
+            for (int bit = 0; bit < 32; bit++) assertEquals(row.flags().get(bit), columns.flag(i, bit));
+
+            assertTrue(bounds.min(WordReferenceColumns.POSINTEXT) <= row.posintext());
+            assertTrue(bounds.max(WordReferenceColumns.POSINTEXT) >= row.posintext());
+
+            // the object created from the columns equals the object created from the row
+            final WordReferenceVars expected = new WordReferenceVars(row, true);
+            final WordReferenceVars vars = columns.get(i, true);
+            assertEquals(expected, vars);
+            assertEquals(expected.flags(), vars.flags());
+            assertEquals(expected.getLanguageString(), vars.getLanguageString());
+            assertEquals(expected.lastModified(), vars.lastModified());
+            assertEquals(expected.virtualAge(), vars.virtualAge());
+            assertEquals(expected.distance(), vars.distance());
+            assertEquals(expected.llocal(), vars.llocal());
+            assertEquals(expected.urllength(), vars.urllength());
+            i++;
+        }
+        assertEquals(3000, i);
+        assertEquals(1, bounds.min(WordReferenceColumns.POSINTEXT));
+        assertEquals(500, bounds.max(WordReferenceColumns.POSINTEXT));
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ *  BlockRowCodecTest
+ *  Copyright 2026 by YaCy contributors
+ *  First released 18.10.2026 at https://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.yacy.kelondro.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.kelondro.data.word.WordReferenceRow;
+
+public class BlockRowCodecTest {
+
+    private static RowSet randomRows(final Row rowdef, final int count, final Random random) throws Exception {
+        final RowSet rows = new RowSet(rowdef, count);
+        final byte[] row = new byte[rowdef.objectsize];
+        for (int i = 0; i < count; i++) {
+            random.nextBytes(row);
+            for (int j = 0; j < rowdef.primaryKeyLength; j++) {
+                row[j] = Base64Order.alpha_enhanced[random.nextInt(64)];
+            }
+            // some columns are constant or small, like in real references
+            for (int j = rowdef.primaryKeyLength; j < rowdef.primaryKeyLength + 8; j++) row[j] = 0;
+            row[rowdef.objectsize - 1] = (byte) random.nextInt(4);
+            rows.addUnique(rowdef.newEntry(row.clone()));
+        }
+        rows.sort();
+        rows.uniq();
+        return rows;
+    }
+
+    private static void assertSameRows(final RowSet expected, final RowSet actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i, false).bytes(), actual.get(i, false).bytes());
+        }
+    }
+
+    @Test
+    public void testRoundtrip() throws Exception {
+        final Row rowdef = WordReferenceRow.urlEntryRow;
+        final Random random = new Random(1);
+        for (final int count: new int[]{0, 1, 127, 128, 129, 1000}) {
+            final RowSet rows = randomRows(rowdef, count, random);
+            final byte[] packed = rows.exportPacked();
+            assertTrue(BlockRowCodec.isPacked(packed));
+            assertEquals(rows.size(), RowSet.importRowCount(packed));
+            assertSameRows(rows, RowSet.importRowSet(packed, rowdef));
+            if (count >= 128) assertTrue(packed.length < rows.exportCollection().length);
+        }
+    }
+
+    @Test
+    public void testExportedCollectionIsNotPacked() throws Exception {
+        final Row rowdef = WordReferenceRow.urlEntryRow;
+        final RowSet rows = randomRows(rowdef, 10, new Random(2));
+        final byte[] exported = rows.exportCollection();
+        assertFalse(BlockRowCodec.isPacked(exported));
+        assertEquals(rows.size(), RowSet.importRowCount(exported));
+    }
+
+    @Test
+    public void testRawKeys() throws Exception {
+        // keys which are not Base64 strings are stored without bit packing
+        final Row rowdef = new Row("byte[] key-4, Cardinal value-4 {b256}", NaturalOrder.naturalOrder);
+        final RowSet rows = new RowSet(rowdef, 300);
+        for (int i = 0; i < 300; i++) {
+            rows.addUnique(rowdef.newEntry(new byte[][]{NaturalOrder.encodeLong(i * 7919L, 4), NaturalOrder.encodeLong(i, 4)}));
+        }
+        rows.sort();
+        assertSameRows(rows, RowSet.importRowSet(rows.exportPacked(), rowdef));
+    }
+
+    @Test
+    public void testEncodeSubset() throws Exception {
+        final Row rowdef = WordReferenceRow.urlEntryRow;
+        final RowSet rows = randomRows(rowdef, 1000, new Random(3));
+        final byte[] packed = rows.exportPacked();
+        final RowSet subset = RowSet.importRowSet(packed, rowdef);
+        for (int i = subset.size() - 1; i >= 0; i -= 3) subset.removeRow(i, true);
+        final byte[] reduced = BlockRowCodec.encodeSubset(packed, subset);
+        assertTrue(reduced.length <= packed.length);
+        assertSameRows(subset, RowSet.importRowSet(reduced, rowdef));
+
+        // trailing bytes after the last block are ignored
+        final byte[] padded = new byte[packed.length];
+        System.arraycopy(reduced, 0, padded, 0, reduced.length);
+        assertSameRows(subset, RowSet.importRowSet(padded, rowdef));
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ *  BloomFilterTest
+ *  Copyright 2026 by YaCy contributors
+ *  First released 18.10.2026 at https://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.yacy.kelondro.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+
+/**
+ * Unit tests for the BloomFilter class.
+ */
+public class BloomFilterTest {
+
+    private static List<byte[]> keys(final String prefix, final int count) {
+        final List<byte[]> keys = new ArrayList<byte[]>(count);
+        for (int i = 0; i < count; i++) keys.add(ASCII.getBytes(String.format("%s%09d", prefix, i)));
+        return keys;
+    }
+
+    /**
+     * all added keys must be found and only few other keys may be found
+     */
+    @Test
+    public void testMightContain() {
+        final List<byte[]> added = keys("abc", 10000);
+        final BloomFilter filter = BloomFilter.of(added.iterator(), added.size(), 10);
+        for (final byte[] key: added) assertTrue(filter.mightContain(key));
+        int falsePositives = 0;
+        for (final byte[] key: keys("xyz", 10000)) if (filter.mightContain(key)) falsePositives++;
+        assertTrue("false positives: " + falsePositives, falsePositives < 300);
+    }
+
+    /**
+     * a dumped filter must answer exactly like the original
+     */
+    @Test
+    public void testDump() throws IOException {
+        final List<byte[]> added = keys("abc", 1000);
+        final BloomFilter filter = BloomFilter.of(added.iterator(), added.size(), 10);
+        final File file = File.createTempFile("BloomFilterTest", ".blm");
+        try {
+            filter.dump(file);
+            final BloomFilter loaded = new BloomFilter(file);
+            assertEquals(filter.mem(), loaded.mem());
+            for (final byte[] key: added) assertTrue(loaded.mightContain(key));
+            for (final byte[] key: keys("xyz", 1000)) assertEquals(filter.mightContain(key), loaded.mightContain(key));
+        } finally {
+            file.delete();
+        }
+    }
+}
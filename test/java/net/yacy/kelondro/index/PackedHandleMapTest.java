@@ -0,0 +1,130 @@
+/**
+ *  PackedHandleMapTest
+ *  Copyright 2026 by YaCy contributors
+ *  First released 18.10.2026 at https://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.yacy.kelondro.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.order.CloneableIterator;
+import net.yacy.cora.util.SpaceExceededException;
+
+/**
+ * Unit tests for the PackedHandleMap class, compared with a TreeMap.
+ */
+public class PackedHandleMapTest {
+
+    private static final String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+
+    private static byte[] key(final int n) {
+        final Random r = new Random(n);
+        final byte[] b = new byte[12];
+        for (int i = 0; i < b.length; i++) b[i] = (byte) alphabet.charAt(r.nextInt(64));
+        return b;
+    }
+
+    /**
+     * put, remove, dump and load must give the same content as a TreeMap
+     */
+    @Test
+    public void testPutRemoveDump() throws IOException, SpaceExceededException {
+        final Random r = new Random(1);
+        final TreeMap<byte[], Long> ref = new TreeMap<byte[], Long>(Base64Order.enhancedCoder);
+        final PackedHandleMap map = new PackedHandleMap(12, Base64Order.enhancedCoder);
+        for (int i = 0; i < 3000; i++) {
+            final byte[] k = key(r.nextInt(2000));
+            final long v = r.nextInt(1 << 20);
+            final Long old = ref.put(k, v);
+            assertEquals(old == null ? -1 : old.longValue(), map.put(k, v));
+        }
+        final byte[][] keys = ref.keySet().toArray(new byte[0][]);
+        for (int i = 0; i < 500; i++) {
+            final byte[] k = keys[r.nextInt(keys.length)];
+            final Long old = ref.remove(k);
+            assertEquals(old == null ? -1 : old.longValue(), map.remove(k));
+        }
+        assertEquals(ref.size(), map.size());
+
+        // a value that needs a wider record
+        map.put(ref.firstKey(), 1L << 40);
+        ref.put(ref.firstKey(), 1L << 40);
+
+        final File file = File.createTempFile("PackedHandleMapTest", ".idx");
+        try {
+            map.dump(file);
+            assertEquals(ref.size() * 20L, file.length());
+            final PackedHandleMap loaded = new PackedHandleMap(12, Base64Order.enhancedCoder, 8, file);
+            for (final Map.Entry<byte[], Long> e: ref.entrySet()) assertEquals(e.getValue().longValue(), loaded.get(e.getKey()));
+            final CloneableIterator<byte[]> i = loaded.keys(true, null);
+            for (final byte[] k: ref.keySet()) assertArrayEquals(k, i.next());
+            assertFalse(i.hasNext());
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * iterations may start at any key and go in both directions
+     */
+    @Test
+    public void testKeysFrom() throws SpaceExceededException {
+        final TreeMap<byte[], Long> ref = new TreeMap<byte[], Long>(Base64Order.enhancedCoder);
+        final PackedHandleMap map = new PackedHandleMap(12, Base64Order.enhancedCoder);
+        for (int i = 0; i < 200; i++) {
+            ref.put(key(i), (long) i);
+            map.put(key(i), i);
+        }
+        final byte[] start = key(1000); // not in the map
+        CloneableIterator<byte[]> i = map.keys(true, start);
+        for (final byte[] k: ref.tailMap(start, true).keySet()) assertArrayEquals(k, i.next());
+        assertFalse(i.hasNext());
+        i = map.keys(false, start);
+        for (final byte[] k: ref.headMap(start, true).descendingKeySet()) assertArrayEquals(k, i.next());
+        assertFalse(i.hasNext());
+    }
+
+    /**
+     * dec() must not insert absent keys or create negative values, which mark removed entries
+     */
+    @Test
+    public void testDec() throws SpaceExceededException {
+        final PackedHandleMap map = new PackedHandleMap(12, Base64Order.enhancedCoder);
+        map.put(key(1), 1);
+        assertEquals(-1, map.dec(key(2)));
+        assertFalse(map.has(key(2)));
+        assertEquals(1, map.size());
+        assertEquals(0, map.dec(key(1)));
+        assertEquals(-1, map.dec(key(1)));
+        assertEquals(0, map.get(key(1)));
+        assertEquals(1, map.size());
+        map.remove(key(1));
+        assertEquals(-1, map.dec(key(1)));
+        assertEquals(0, map.size());
+    }
+}
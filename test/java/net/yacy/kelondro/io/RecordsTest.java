@@ -52,4 +52,37 @@ public class RecordsTest {
         	rec.close();
         }
     }
+
+    /**
+     * Test of writing consecutive records through BufferedRecords, which writes them with one put of Records.
+     */
+    @Test
+    public void testBufferedPut() throws Exception {
+
+        File tablefile = new File(System.getProperty("java.io.tmpdir"), "test3.stack");
+        if (tablefile.exists()) tablefile.delete();
+        BufferedRecords rec = new BufferedRecords(new Records(tablefile, 8), 100);
+
+        try {
+        	for (int i = 0; i < 20; i++) rec.add(ASCII.getBytes("record" + (char) ('A' + i) + "."), 0);
+        	rec.flushBuffer();
+        	// overwrite two runs of records and a clean record in the middle of a run
+        	for (int i = 2; i < 8; i++) rec.put(i, ASCII.getBytes("changed" + (char) ('A' + i)), 0);
+        	rec.put(5, new byte[8], 0);
+        	for (int i = 12; i < 15; i++) rec.put(i, ASCII.getBytes("changed" + (char) ('A' + i)), 0);
+        	byte[] b = new byte[8];
+        	rec.get(3, b, 0);
+        	assertEquals("changedD", ASCII.String(b)); // read from the buffer
+        	rec.flushBuffer();
+        	for (int i = 0; i < 20; i++) {
+        		rec.get(i, b, 0);
+        		if (i == 5) assertEquals(0, b[0]);
+        		else if ((i >= 2 && i < 8) || (i >= 12 && i < 15)) assertEquals("changed" + (char) ('A' + i), ASCII.String(b));
+        		else assertEquals("record" + (char) ('A' + i) + ".", ASCII.String(b));
+        	}
+        	assertEquals(20, rec.size());
+        } finally {
+        	rec.close();
+        }
+    }
 }
@@ -21,8 +21,11 @@ package net.yacy.kelondro.rwi;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.LinkedBlockingQueue;
 
@@ -99,4 +102,46 @@ public class ReferenceContainerTest {
         assertEquals("distance()", wentry.distance(), wc.distance());
     }
 
+    private static WordReferenceVars reference(final DigestURL url) {
+        final Queue<Integer> positions = new LinkedBlockingQueue<Integer>();
+        positions.add(1);
+        return new WordReferenceVars(url.hash(), url.toNormalform(true).length(), 1, 0, 1, 1, 1, 1, positions, 1, 1, 0, "en",
+                Response.DT_TEXT, 0, 0, new Bitfield(4), 0.0d);
+    }
+
+    /**
+     * a container with the references to all urls http://test.org/[i].html where i is a multiple of step
+     */
+    private static ReferenceContainer<WordReference> container(final ReferenceFactory<WordReference> factory, final String word, final int count, final int step) throws Exception {
+        final ReferenceContainer<WordReference> rc = new ReferenceContainer<WordReference>(factory, Word.word2hash(word));
+        for (int i = 0; i < count; i += step) rc.add(reference(new DigestURL("http://test.org/" + i + ".html")));
+        return rc;
+    }
+
+    /**
+     * Test of joinContainers and excludeContainers with containers of very different sizes
+     */
+    @Test
+    public void testJoinExclude() throws Exception {
+        final ReferenceFactory<WordReference> factory = new WordReferenceFactory();
+        final List<ReferenceContainer<WordReference>> include = new ArrayList<ReferenceContainer<WordReference>>();
+        include.add(container(factory, "all", 3000, 1));
+        include.add(container(factory, "rare", 3000, 100));
+        include.add(container(factory, "some", 3000, 3));
+        final List<ReferenceContainer<WordReference>> exclude = new ArrayList<ReferenceContainer<WordReference>>();
+        exclude.add(container(factory, "exclude", 3000, 2));
+
+        // the urls with multiples of 300 are in all include containers, half of them are excluded
+        final ReferenceContainer<WordReference> join = ReferenceContainer.joinExcludeContainers(factory, include, exclude, Integer.MAX_VALUE);
+        assertEquals(5, join.size());
+        for (int i = 300; i < 3000; i += 600) {
+            assertNotNull(join.getReference(new DigestURL("http://test.org/" + i + ".html").hash()));
+        }
+        assertNull(join.getReference(new DigestURL("http://test.org/0.html").hash()));
+
+        // a conjunction with an unknown word has no result
+        include.add(container(factory, "none", 0, 1));
+        assertEquals(0, ReferenceContainer.joinExcludeContainers(factory, include, exclude, Integer.MAX_VALUE).size());
+    }
+
 }
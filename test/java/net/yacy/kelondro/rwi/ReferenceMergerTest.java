@@ -0,0 +1,121 @@
+/**
+ *  ReferenceMergerTest
+ *  Copyright 2026 by YaCy contributors
+ *  First released 18.10.2026 at https://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.yacy.kelondro.rwi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.blob.HeapRecordReader;
+import net.yacy.kelondro.blob.HeapWriter;
+import net.yacy.kelondro.data.citation.CitationReference;
+import net.yacy.kelondro.data.citation.CitationReferenceFactory;
+import net.yacy.kelondro.index.RowSet;
+
+public class ReferenceMergerTest {
+
+    private static final CitationReferenceFactory factory = new CitationReferenceFactory();
+    private static final long day = 24L * 60L * 60L * 1000L;
+
+    private static byte[] hash(final String prefix, final int i) {
+        final String s = prefix + Integer.toString(100000 + i);
+        return ASCII.getBytes(s.substring(s.length() - 12));
+    }
+
+    private static File write(final File dir, final String name, final String[] terms, final int from, final int to, final long date) throws IOException, SpaceExceededException {
+        final File f = new File(dir, name);
+        final HeapWriter writer = new HeapWriter(new File(dir, name + ".prt"), f, 12, Base64Order.enhancedCoder, 1024);
+        for (final String term: terms) {
+            final ReferenceContainer<CitationReference> c = new ReferenceContainer<CitationReference>(factory, ASCII.getBytes(term));
+            for (int i = to - 1; i >= from; i--) c.add(new CitationReference(hash("AAAAAAA", i), date));
+            writer.add(c.getTermHash(), c.exportCollection());
+        }
+        writer.close(true);
+        return f;
+    }
+
+    private static Map<String, RowSet> read(final File f) throws IOException, SpaceExceededException {
+        final Map<String, RowSet> m = new HashMap<String, RowSet>();
+        try (final HeapRecordReader reader = new HeapRecordReader(f, 12)) {
+            while (reader.next()) {
+                m.put(ASCII.String(reader.key()), RowSet.importRowSet(reader.readRemaining(), factory.getRow()));
+            }
+        }
+        return m;
+    }
+
+    private static void mergeAndCheck(final int threshold) throws Exception {
+        final File dir = new File(System.getProperty("java.io.tmpdir"), "ReferenceMergerTest" + System.nanoTime());
+        assertTrue(dir.mkdirs());
+        final int oldThreshold = ReferenceMerger.streamingThreshold;
+        ReferenceMerger.streamingThreshold = threshold;
+        try {
+            final long newer = System.currentTimeMillis();
+            final long older = newer - 400 * day;
+            final File f1 = write(dir, "f1.blob", new String[]{"AAAAAAAAAAAA", "CCCCCCCCCCCC"}, 0, 3000, newer);
+            final File f2 = write(dir, "f2.blob", new String[]{"BBBBBBBBBBBB", "CCCCCCCCCCCC"}, 2000, 5000, older);
+            final File out = new File(dir, "out.blob");
+            final HeapWriter writer = new HeapWriter(new File(dir, "out.blob.prt"), out, 12, Base64Order.enhancedCoder, 1024);
+            assertEquals(3, ReferenceMerger.merge(new File[]{f1, f2}, factory, Base64Order.enhancedCoder, writer));
+            writer.close(true);
+
+            final Map<String, RowSet> m = read(out);
+            assertEquals(3, m.size());
+            assertEquals(3000, m.get("AAAAAAAAAAAA").size());
+            assertEquals(3000, m.get("BBBBBBBBBBBB").size());
+            final RowSet c = m.get("CCCCCCCCCCCC");
+            assertNotNull(c);
+            assertEquals(5000, c.size());
+            // the rows of the first file win
+            final CitationReference shared = new CitationReference(c.get(hash("AAAAAAA", 2500), true));
+            assertTrue(Math.abs(shared.lastModified() - newer) < 5 * day);
+            final CitationReference second = new CitationReference(c.get(hash("AAAAAAA", 4000), true));
+            assertTrue(Math.abs(second.lastModified() - older) < 5 * day);
+            // the merged container must be sorted and unique
+            for (int i = 1; i < c.size(); i++) {
+                assertTrue(Base64Order.enhancedCoder.compare(c.get(i - 1, false).getPrimaryKeyBytes(), c.get(i, false).getPrimaryKeyBytes()) < 0);
+            }
+        } finally {
+            ReferenceMerger.streamingThreshold = oldThreshold;
+            for (final File f: dir.listFiles()) f.delete();
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void testMergeLoaded() throws Exception {
+        mergeAndCheck(Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testMergeStreaming() throws Exception {
+        mergeAndCheck(0);
+    }
+}
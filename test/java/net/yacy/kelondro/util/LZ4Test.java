@@ -0,0 +1,68 @@
+package net.yacy.kelondro.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LZ4Test {
+
+    private static void assertRoundTrip(final byte[] b) throws IOException {
+        final byte[] c = LZ4.compress(b);
+        assertTrue(c.length <= LZ4.maxCompressedLength(b.length));
+        assertArrayEquals(b, LZ4.decompress(c, 0, c.length, b.length));
+    }
+
+    /**
+     * compressed data is decompressed to the original data
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        assertRoundTrip(new byte[0]);
+        assertRoundTrip("a".getBytes(StandardCharsets.UTF_8));
+        assertRoundTrip("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa".getBytes(StandardCharsets.UTF_8));
+
+        final StringBuilder html = new StringBuilder();
+        for (int i = 0; i < 2000; i++) html.append("<li><a href=\"/page").append(i).append(".html\">Page ").append(i).append("</a></li>\n");
+        final byte[] text = html.toString().getBytes(StandardCharsets.UTF_8);
+        assertRoundTrip(text);
+        assertTrue(LZ4.compress(text).length < text.length / 3);
+
+        final Random r = new Random(0);
+        for (int i = 0; i < 50; i++) {
+            final byte[] b = new byte[r.nextInt(100000)];
+            // random data mixed with repeated runs of varying length and distance
+            for (int j = 0; j < b.length; j++) {
+                b[j] = j > 300 && r.nextInt(4) > 0 ? b[Math.max(0, j - 1 - r.nextInt(i + 1) * (1 + r.nextInt(200)))] : (byte) r.nextInt(256);
+            }
+            assertRoundTrip(b);
+        }
+    }
+
+    /**
+     * a corrupted block is reported as an IOException
+     */
+    @Test
+    public void testCorrupted() {
+        final byte[] c = LZ4.compress("abcdefghabcdefghabcdefghabcdefghabcdefgh".getBytes(StandardCharsets.UTF_8));
+        try {
+            LZ4.decompress(c, 0, c.length - 1, 40);
+            assertTrue(false);
+        } catch (final IOException e) {
+        }
+        try {
+            LZ4.decompress(c, 0, c.length, 41);
+            assertTrue(false);
+        } catch (final IOException e) {
+        }
+        try {
+            LZ4.decompress(c, 0, c.length, -1);
+            assertTrue(false);
+        } catch (final IOException e) {
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package net.yacy.peers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+import net.yacy.cora.date.GenericFormatter;
+import net.yacy.cora.document.encoding.ASCII;
+
+public class SeedRingTest {
+
+    private static Seed seed(final String hash, final boolean acceptRemoteIndex, final long wordCount, final int ageDays) {
+        final Seed seed = new Seed(hash, new ConcurrentHashMap<String, String>());
+        seed.setFlagAcceptRemoteIndex(acceptRemoteIndex);
+        seed.put(Seed.ICOUNT, Long.toString(wordCount));
+        seed.put(Seed.VERSION, "1.9");
+        seed.put(Seed.BDATE, GenericFormatter.SHORT_SECOND_FORMATTER.format(new Date(System.currentTimeMillis() - ageDays * 86400000L)));
+        return seed;
+    }
+
+    private static List<String> list(final Iterator<String> i) {
+        final List<String> l = new ArrayList<>();
+        while (i.hasNext()) l.add(i.next());
+        return l;
+    }
+
+    /**
+     * the ring enumerates and selects the peers in DHT order and follows the changes of the seeds
+     */
+    @Test
+    public void testSelect() {
+        final SeedRing ring = new SeedRing();
+        ring.put(seed("CCCCCCCCCCCC", true, 100, 10));
+        ring.put(seed("AAAAAAAAAAAA", true, 100, 10));
+        ring.put(seed("EEEEEEEEEEEE", false, 100, 10)); // a robinson peer
+        ring.put(seed("GGGGGGGGGGGG", true, 0, 10)); // no words
+        ring.put(seed("IIIIIIIIIIII", true, 100, 0)); // a young peer
+        assertEquals(5, ring.size());
+
+        assertEquals(Arrays.asList("AAAAAAAAAAAA", "CCCCCCCCCCCC", "EEEEEEEEEEEE", "GGGGGGGGGGGG", "IIIIIIIIIIII"), list(ring.hashes(null, null, 0.0, 0)));
+        assertEquals(Arrays.asList("CCCCCCCCCCCC", "GGGGGGGGGGGG"), list(ring.hashes(ASCII.getBytes("BBBBBBBBBBBB"), ASCII.getBytes("HHHHHHHHHHHH"), 0.0, SeedRing.ACCEPT_REMOTE_INDEX)));
+
+        // the selection inspects the next three peers accepting remote index and wraps around at the end of the ring
+        assertEquals(Arrays.asList("AAAAAAAAAAAA"), ring.select(ASCII.getBytes("FFFFFFFFFFFF"), 3, 0.0, 1, 1));
+        assertEquals(Arrays.asList("CCCCCCCCCCCC", "GGGGGGGGGGGG", "IIIIIIIIIIII"), ring.select(ASCII.getBytes("BBBBBBBBBBBB"), 3, 0.0, 0, 0));
+
+        // updates and removals
+        ring.put(seed("EEEEEEEEEEEE", true, 100, 10));
+        assertEquals(Arrays.asList("CCCCCCCCCCCC", "EEEEEEEEEEEE"), ring.select(ASCII.getBytes("BBBBBBBBBBBB"), 3, 0.0, 1, 1));
+        ring.remove("CCCCCCCCCCCC");
+        assertFalse(ring.contains("CCCCCCCCCCCC"));
+        assertTrue(ring.contains("EEEEEEEEEEEE"));
+        assertEquals(4, ring.size());
+        assertEquals(Arrays.asList("EEEEEEEEEEEE", "AAAAAAAAAAAA"), ring.select(ASCII.getBytes("BBBBBBBBBBBB"), 4, 0.0, 1, 1));
+    }
+}
@@ -0,0 +1,80 @@
+package net.yacy.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class BlacklistMatcherTest {
+
+    private static void put(final Map<String, Set<Pattern>> map, final String host, final String... paths) {
+        final Set<Pattern> patterns = new HashSet<>();
+        for (final String path: paths) patterns.add(Pattern.compile(path, Pattern.CASE_INSENSITIVE));
+        map.put(host, patterns);
+    }
+
+    /**
+     * the host keys are matched as exact hosts, domains, prefixes and wildcards
+     */
+    @Test
+    public void testHosts() {
+        final Map<String, Set<Pattern>> matched = new HashMap<>();
+        final Map<String, Set<Pattern>> notMatched = new HashMap<>();
+        put(matched, "example.com", ".*");
+        put(matched, "*.wildcard.org", ".*");
+        put(matched, "ads.*", ".*");
+        put(matched, "www.prefix", ".*");
+        put(notMatched, "track[0-9]+\\.net", ".*");
+        put(notMatched, "invalid[", ".*");
+        final BlacklistMatcher matcher = new BlacklistMatcher(matched, notMatched);
+        assertEquals(5, matcher.size());
+
+        // exact host and domain
+        assertTrue(matcher.isListed("example.com", "/"));
+        assertTrue(matcher.isListed("www.example.com", "/"));
+        assertFalse(matcher.isListed("notexample.com", "/"));
+
+        // the wildcard lists the sub domains only
+        assertTrue(matcher.isListed("www.wildcard.org", ""));
+        assertFalse(matcher.isListed("wildcard.org", ""));
+
+        // prefixes
+        assertTrue(matcher.isListed("ads.example.org", ""));
+        assertFalse(matcher.isListed("ads", ""));
+        assertTrue(matcher.isListed("www.prefix.de", ""));
+        assertTrue(matcher.isListed("www.prefix", "")); // the key is also an exact host
+        assertFalse(matcher.isListed("prefix.de", ""));
+        assertFalse(matcher.isListed("www.prefixes.de", ""));
+
+        // regular expressions
+        assertTrue(matcher.isListed("track42.net", ""));
+        assertFalse(matcher.isListed("www.track42.net", ""));
+
+        assertEquals(13, matcher.getLookupCount());
+        assertEquals(7, matcher.getListedCount());
+    }
+
+    /**
+     * the path patterns of a host are joined; patterns with back references are kept apart
+     */
+    @Test
+    public void testPaths() {
+        final Map<String, Set<Pattern>> matched = new HashMap<>();
+        put(matched, "example.com", "bestenlisten/.*", "produkte/.*", "data/js/\\d*\\.js", "(a+)/\\1");
+        final BlacklistMatcher matcher = new BlacklistMatcher(matched, new HashMap<String, Set<Pattern>>());
+        assertTrue(matcher.isListed("example.com", "/bestenlisten/index.html"));
+        assertTrue(matcher.isListed("example.com", "PRODUKTE/x"));
+        assertTrue(matcher.isListed("example.com", "data/js/123.js"));
+        assertTrue(matcher.isListed("example.com", "aa/aa"));
+        assertFalse(matcher.isListed("example.com", "aa/a"));
+        assertFalse(matcher.isListed("example.com", "data/js/abc.js"));
+        assertFalse(matcher.isListed("example.org", "produkte/x"));
+    }
+}
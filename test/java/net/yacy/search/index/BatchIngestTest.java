@@ -0,0 +1,215 @@
+package net.yacy.search.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.After;
+import org.junit.Test;
+
+import net.yacy.cora.federate.solr.connector.SolrConnector;
+import net.yacy.search.schema.CollectionSchema;
+import net.yacy.search.schema.WebgraphSchema;
+
+/**
+ * Unit tests for the {@link BatchIngest} class
+ */
+public class BatchIngestTest {
+
+    /** the batches which were written to the connector */
+    private final List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+
+    /** when set, a write waits until this latch is released */
+    private volatile CountDownLatch release = null;
+
+    /** released when a write starts */
+    private final CountDownLatch writing = new CountDownLatch(1);
+
+    private BatchIngest ingest = null;
+
+    @After
+    public void tearDown() {
+        if (this.release != null) this.release.countDown();
+        if (this.ingest != null) this.ingest.close();
+    }
+
+    /**
+     * @return a connector which records the ids of every written batch
+     */
+    private SolrConnector connector() {
+        final InvocationHandler h = new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "isClosed":
+                        return Boolean.FALSE;
+                    case "add":
+                        BatchIngestTest.this.writing.countDown();
+                        final CountDownLatch latch = BatchIngestTest.this.release;
+                        if (latch != null) latch.await();
+                        final List<String> ids = new ArrayList<>();
+                        if (args[0] instanceof Collection) {
+                            for (final Object doc: (Collection<?>) args[0]) ids.add(id((SolrInputDocument) doc));
+                        } else {
+                            ids.add(id((SolrInputDocument) args[0]));
+                        }
+                        BatchIngestTest.this.batches.add(ids);
+                        return null;
+                    default:
+                        return null;
+                }
+            }
+        };
+        return (SolrConnector) Proxy.newProxyInstance(
+                BatchIngestTest.class.getClassLoader(), new Class<?>[]{SolrConnector.class}, h);
+    }
+
+    private static SolrInputDocument doc(final String id) {
+        final SolrInputDocument doc = new SolrInputDocument();
+        doc.setField(CollectionSchema.id.getSolrFieldName(), id);
+        return doc;
+    }
+
+    private static SolrInputDocument edge(final String id, final String sourceId) {
+        final SolrInputDocument doc = doc(id);
+        doc.setField(WebgraphSchema.source_id_s.getSolrFieldName(), sourceId);
+        return doc;
+    }
+
+    private static String id(final SolrInputDocument doc) {
+        return (String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName());
+    }
+
+    /**
+     * wait until the given number of batches is written
+     */
+    private void awaitBatches(final int count) throws InterruptedException {
+        final long timeout = System.currentTimeMillis() + 10000;
+        while (this.batches.size() < count && System.currentTimeMillis() < timeout) Thread.sleep(10);
+        assertEquals(count, this.batches.size());
+    }
+
+    /**
+     * a batch is written as soon as it has reached the batch size
+     */
+    @Test
+    public void testSizeTriggeredBatch() throws Exception {
+        final SolrConnector connector = connector();
+        this.ingest = new BatchIngest("test", () -> connector, 3, 60000, 10);
+        assertTrue(this.ingest.isBatching());
+        this.ingest.add(Arrays.asList(doc("a"), doc("b"), doc("c")));
+        awaitBatches(1);
+        this.ingest.flush(); // waits until the write is finished
+        assertEquals(1, this.batches.size());
+        assertEquals(Arrays.asList("a", "b", "c"), this.batches.get(0));
+        assertEquals(1, this.ingest.getBatchCount());
+        assertEquals(3, this.ingest.getDocumentCount());
+        assertEquals(0, this.ingest.getFailureCount());
+        assertFalse(this.ingest.contains("a"));
+    }
+
+    /**
+     * an incomplete batch is written when its oldest document waited for the maximum delay
+     */
+    @Test
+    public void testTimeTriggeredBatch() throws Exception {
+        final SolrConnector connector = connector();
+        this.ingest = new BatchIngest("test", () -> connector, 100, 50, 1000);
+        this.ingest.add(doc("a"));
+        awaitBatches(1);
+        assertEquals(Collections.singletonList("a"), this.batches.get(0));
+        assertEquals(0, this.ingest.size());
+    }
+
+    /**
+     * flush() writes all buffered documents, clear() drops them
+     */
+    @Test
+    public void testFlushAndClear() throws Exception {
+        final SolrConnector connector = connector();
+        this.ingest = new BatchIngest("test", () -> connector, 100, 60000, 1000);
+        this.ingest.add(doc("a"));
+        this.ingest.add(doc("b"));
+        assertEquals(2, this.ingest.size());
+        assertTrue(this.ingest.contains("a"));
+        this.ingest.flush();
+        assertEquals(1, this.batches.size());
+        assertEquals(Arrays.asList("a", "b"), this.batches.get(0));
+        assertEquals(0, this.ingest.size());
+        assertFalse(this.ingest.contains("a"));
+
+        this.ingest.add(doc("c"));
+        assertTrue(this.ingest.contains("c"));
+        this.ingest.clear();
+        assertEquals(0, this.ingest.size());
+        assertFalse(this.ingest.contains("c"));
+        this.ingest.flush();
+        assertEquals(1, this.batches.size());
+    }
+
+    /**
+     * remove() drops buffered documents by id or by another field without writing them
+     */
+    @Test
+    public void testRemove() throws Exception {
+        final SolrConnector connector = connector();
+        this.ingest = new BatchIngest("test", () -> connector, 100, 60000, 1000);
+        this.ingest.add(Arrays.asList(edge("a", "x"), edge("b", "y"), edge("c", "x"), edge("d", "z")));
+        assertEquals(1, this.ingest.remove(CollectionSchema.id.getSolrFieldName(), Collections.singleton("b")));
+        assertFalse(this.ingest.contains("b"));
+        assertEquals(2, this.ingest.remove(WebgraphSchema.source_id_s.getSolrFieldName(), Collections.singleton("x")));
+        assertFalse(this.ingest.contains("a"));
+        assertFalse(this.ingest.contains("c"));
+        assertTrue(this.ingest.contains("d"));
+        this.ingest.flush();
+        assertEquals(Collections.singletonList(Collections.singletonList("d")), this.batches);
+    }
+
+    /**
+     * add() blocks while the buffer is full and continues when the writer has taken the next batch
+     */
+    @Test
+    public void testBackpressure() throws Exception {
+        final SolrConnector connector = connector();
+        this.release = new CountDownLatch(1);
+        this.ingest = new BatchIngest("test", () -> connector, 2, 60000, 2);
+
+        // the writer takes the first batch and hangs in the write
+        this.ingest.add(Arrays.asList(doc("a"), doc("b")));
+        assertTrue(this.writing.await(10, TimeUnit.SECONDS));
+
+        // fill the buffer, the next document must wait
+        this.ingest.add(Arrays.asList(doc("c"), doc("d")));
+        final Thread producer = new Thread(() -> {
+            try {
+                this.ingest.add(doc("e"));
+            } catch (final Exception e) {}
+        });
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive());
+        assertEquals(2, this.ingest.size());
+
+        this.release.countDown();
+        producer.join(10000);
+        assertFalse(producer.isAlive());
+        this.ingest.flush();
+        int written = 0;
+        synchronized (this.batches) {
+            for (final List<String> batch: this.batches) written += batch.size();
+        }
+        assertEquals(5, written);
+    }
+}
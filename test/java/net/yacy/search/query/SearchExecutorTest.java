@@ -0,0 +1,48 @@
+package net.yacy.search.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class SearchExecutorTest {
+
+    /**
+     * Test of the Thread-like interface of SearchTask: tasks are alive until finished, join waits for them
+     * and interrupt cancels a running task
+     */
+    @Test
+    public void testJoinAndInterrupt() throws InterruptedException {
+        final AtomicInteger runs = new AtomicInteger(0);
+        final SearchTask done = SearchExecutor.execute(SearchExecutor.Pool.RANKING, "test.done", null, () -> runs.incrementAndGet());
+        done.join();
+        assertFalse(done.isAlive());
+        assertEquals(1, runs.get());
+
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final SearchTask blocking = SearchExecutor.execute(SearchExecutor.Pool.RANKING, "test.blocking", null, () -> {
+            running.countDown();
+            try {
+                Thread.sleep(60000);
+            } catch (final InterruptedException e) {
+                interrupted.countDown();
+            }
+        });
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        assertTrue(blocking.isAlive());
+        blocking.join(10);
+        assertTrue(blocking.isAlive());
+        blocking.interrupt();
+        blocking.join();
+        assertFalse(blocking.isAlive());
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        assertTrue(SearchExecutor.Pool.RANKING.getCancelledCount() >= 1);
+    }
+
+}
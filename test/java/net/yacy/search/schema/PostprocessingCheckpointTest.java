@@ -0,0 +1,60 @@
+package net.yacy.search.schema;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import net.yacy.search.schema.CollectionConfiguration.CRV;
+
+public class PostprocessingCheckpointTest {
+
+    /**
+     * the values of finished hosts are loaded again, an interrupted host and a host with changed documents are ignored
+     */
+    @Test
+    public void testResume() throws IOException {
+        final File dir = Files.createTempDirectory("checkpoint").toFile();
+        final File file = PostprocessingCheckpoint.file(dir, "harvest1");
+        PostprocessingCheckpoint checkpoint = new PostprocessingCheckpoint(file);
+        assertEquals(0, checkpoint.size());
+        final Map<String, CRV> a = new HashMap<>();
+        a.put("AAAAAAAAAAAA", new CRV(2, 0.25d, 3));
+        a.put("BBBBBBBBBBBB", new CRV(2, 0.75d, 10));
+        checkpoint.put("a.example.org", 2, a);
+        final Map<String, CRV> b = new HashMap<>();
+        b.put("CCCCCCCCCCCC", new CRV(1, 1.0d, 10));
+        checkpoint.put("b.example.org", 1, b);
+        checkpoint.close();
+        // a host which was interrupted while it was written
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write("H\tc.example.org\t5\nDDDDDDDDDDDD\t0.5\t4\n".getBytes(StandardCharsets.UTF_8));
+        }
+
+        checkpoint = new PostprocessingCheckpoint(file);
+        assertEquals(2, checkpoint.size());
+        assertTrue(checkpoint.hosts().contains("a.example.org"));
+        assertFalse(checkpoint.hosts().contains("c.example.org"));
+        final Map<String, CRV> a1 = checkpoint.take("a.example.org", 2);
+        assertEquals(2, a1.size());
+        assertEquals(0.75d, a1.get("BBBBBBBBBBBB").cr, 0.0d);
+        assertEquals(10, a1.get("BBBBBBBBBBBB").crn);
+        assertEquals(2, a1.get("BBBBBBBBBBBB").count);
+        assertNull(checkpoint.take("b.example.org", 7)); // the host has new documents
+        assertEquals(0, checkpoint.size());
+
+        checkpoint.delete();
+        assertFalse(file.exists());
+        dir.delete();
+    }
+}
@@ -0,0 +1,102 @@
+package net.yacy.server.http;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.yacy.server.serverObjects;
+
+public class TemplateEngineTest {
+
+    private static String render(final String template, final serverObjects pattern) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TemplateEngine.writeTemplate("test", new ByteArrayInputStream(template.getBytes(StandardCharsets.UTF_8)), out, pattern);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Test of normal templates and of '#' characters without meaning
+     */
+    @Test
+    public void testNormal() throws IOException {
+        final serverObjects pattern = new serverObjects();
+        pattern.put("name", "John");
+        assertEquals("Hello John!", render("Hello #[name]#!", pattern));
+        assertEquals("Hello -UNRESOLVED_PATTERN-", render("Hello #[missing]#", pattern));
+        assertEquals("a #b ## c#", render("a #b ## c#", pattern));
+        // an unterminated template ends the output
+        assertEquals("Hello ", render("Hello #[name", pattern));
+    }
+
+    /**
+     * Test of multi templates with prefixes, separators and nested templates
+     */
+    @Test
+    public void testMulti() throws IOException {
+        final serverObjects pattern = new serverObjects();
+        pattern.put("times", 3);
+        for (int i = 0; i < 3; i++) {
+            pattern.put("times_" + i + "_num", i + 1);
+            pattern.put("times_" + i + "_daytime", i % 2);
+        }
+        assertEquals("1:morning 2:evening 3:morning ",
+                render("#{times}#\n#[num]#:#(daytime)#morning::evening#(/daytime)# #{/times}#", pattern));
+        assertEquals("1,2,3", render("#{times|,}##[num]##{/times}#", pattern));
+        assertEquals("1,\n2,\n3\n", render("#{times|,}##[num]#\n#{/times}#", pattern));
+        assertEquals("", render("#{none}#x#{/none}#", pattern));
+    }
+
+    /**
+     * Test of alternatives selected by index, boolean and name
+     */
+    @Test
+    public void testAlternative() throws IOException {
+        final serverObjects pattern = new serverObjects();
+        pattern.put("a", 1);
+        pattern.put("b", true);
+        pattern.put("c", 7);
+        pattern.put("a_inner", 1);
+        assertEquals("[one]", render("[#(a)#zero::one#(/a)#]", pattern));
+        assertEquals("[yes]", render("[#(b)#no::yes#(/b)#]", pattern));
+        // an index out of range selects the last alternative
+        assertEquals("[two]", render("[#(c)#zero::one::two#(/c)#]", pattern));
+        assertEquals("[zero]", render("[#(missing)#zero::one#(/missing)#]", pattern));
+        // separators of nested alternatives belong to the nested alternative
+        assertEquals("[y]", render("[#(a)##(inner)#x::z#(/inner)#::#(inner)#x::y#(/inner)##(/a)#]", pattern));
+        pattern.put("n", "second");
+        assertEquals("[2]", render("[#(n)#%%first1::%%second2::#(/n)#]", pattern));
+    }
+
+    /**
+     * Test of server side includes which are found while compiling and may contain templates
+     */
+    @Test
+    public void testSSI() throws IOException {
+        final serverObjects pattern = new serverObjects();
+        pattern.put("items", 2);
+        pattern.put("items_0_item", 0);
+        pattern.put("items_1_item", 1);
+        pattern.put("eventID", "abc");
+        final String template = "<ul>#{items}#<!--#include virtual=\"item.html?item=#[item]#&eventID=#[eventID]#\" -->#{/items}#</ul>";
+        final List<String> includes = new ArrayList<String>();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TemplateEngine.compileTemplate("test", new ByteArrayInputStream(template.getBytes(StandardCharsets.UTF_8))).write("test", out, pattern, path -> {
+            includes.add(path);
+            out.write(("<li>" + includes.size() + "</li>").getBytes(StandardCharsets.UTF_8));
+        });
+        assertEquals("<ul><li>1</li><li>2</li></ul>", new String(out.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(2, includes.size());
+        assertEquals("item.html?item=0&eventID=-UNRESOLVED_PATTERN-", includes.get(0));
+
+        // without a handler, the include directives are written as they are
+        assertEquals("<ul><!--#include virtual=\"item.html?item=0&eventID=-UNRESOLVED_PATTERN-\" --><!--#include virtual=\"item.html?item=1&eventID=-UNRESOLVED_PATTERN-\" --></ul>",
+                render(template, pattern));
+    }
+}